@@ -0,0 +1,27 @@
+package com.project.clixify_backend_sb.benchmark;
+
+/*
+Entry point for the JMH benchmarks in src/jmh/java (see the 'benchmarks' profile in pom.xml).
+Every run adds JMH's GC profiler, so next to the throughput each benchmark also reports its allocation rate ('gc.alloc.rate.norm' = bytes allocated per operation).
+
+Run all benchmarks:          mvn -Pbenchmarks test-compile exec:exec
+Run a subset / change opts:  mvn -Pbenchmarks test-compile exec:exec -Djmh.args="ShortCode -f 1 -wi 3 -i 5"
+*/
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class ClixifyBenchmarks
+{
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
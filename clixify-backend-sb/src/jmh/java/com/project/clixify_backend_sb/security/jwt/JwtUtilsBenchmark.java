@@ -0,0 +1,94 @@
+package com.project.clixify_backend_sb.security.jwt;
+
+/*
+Benchmarks for JwtUtils:
+- generateToken             : signing a new token (login)
+- verifyUncached            : getUserDetailsFromJwtToken with the verified-token cache disabled (size 0), i.e. verification + building the principal from the claims,
+                              cycling through 'distinctTokens' different tokens
+- verifyCached              : getUserDetailsFromJwtToken for a token already in the verified-token cache (what most authenticated requests hit)
+*/
+
+import com.project.clixify_backend_sb.service.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilsBenchmark
+{
+    @Param({"1000"})
+    public int distinctTokens;
+
+    private JwtUtils jwtUtils;
+    private JwtUtils uncachedJwtUtils;
+    private UserDetailsImpl userDetails;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        jwtUtils = newJwtUtils(10_000);
+        uncachedJwtUtils = newJwtUtils(0);
+        userDetails = new UserDetailsImpl(1L, "bench@example.com", "benchmark-user", "{noop}password",
+                AuthorityUtils.commaSeparatedStringToAuthorityList("ROLE_USER"));
+
+        tokens = new String[distinctTokens];
+        for(int i = 0; i < distinctTokens; i++)
+        {
+            UserDetailsImpl user = new UserDetailsImpl((long) i, null, "user-" + i, null, userDetails.getAuthorities());
+            tokens[i] = jwtUtils.generateToken(user);
+        }
+        jwtUtils.getUserDetailsFromJwtToken(tokens[0]);      //puts the token used by verifyCached into the cache
+    }
+
+    @Benchmark
+    public String generateToken()
+    {
+        return jwtUtils.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public UserDetailsImpl verifyUncached()
+    {
+        String token = tokens[next];
+        next = next + 1 == tokens.length ? 0 : next + 1;
+        return uncachedJwtUtils.getUserDetailsFromJwtToken(token);
+    }
+
+    @Benchmark
+    public UserDetailsImpl verifyCached()
+    {
+        return jwtUtils.getUserDetailsFromJwtToken(tokens[0]);
+    }
+
+    private static JwtUtils newJwtUtils(int verifiedTokenCacheSize)
+    {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecretKey", Base64.getEncoder().encodeToString(new byte[32]));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtils, "verifiedTokenCacheSize", (long) verifiedTokenCacheSize);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtils.init();
+        return jwtUtils;
+    }
+}
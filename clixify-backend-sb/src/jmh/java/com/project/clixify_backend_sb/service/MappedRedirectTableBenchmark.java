@@ -0,0 +1,79 @@
+package com.project.clixify_backend_sb.service;
+
+//Lookups in the memory-mapped redirect table with 1 million links: a miss should allocate nothing, a hit only the URL String and the RedirectTarget.
+
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedRedirectTableBenchmark
+{
+    private static final int LINKS = 1_000_000;
+
+    private Path file;
+    private MappedRedirectTable table;
+    private String[] existing;
+    private String[] unknown;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        file = Files.createTempFile("redirect-index", ".dat");
+        table = MappedRedirectTable.create(file, LINKS, 256L * 1024 * 1024);
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(1);
+        SnowflakeShortCodeGenerator otherNode = new SnowflakeShortCodeGenerator(2);
+        existing = new String[LINKS];
+        unknown = new String[LINKS];
+        for(int i = 0; i < LINKS; i++)
+        {
+            existing[i] = generator.nextCode();
+            unknown[i] = otherNode.nextCode();
+            table.put(existing[i], new RedirectTarget((long) i, "https://example.com/landing/page-" + i + "?utm_source=newsletter"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public RedirectTarget hit()
+    {
+        return table.get(existing[nextIndex()]);
+    }
+
+    @Benchmark
+    public RedirectTarget miss()
+    {
+        return table.get(unknown[nextIndex()]);
+    }
+
+    private int nextIndex()
+    {
+        next = next + 1 == LINKS ? 0 : next + 1;
+        return next;
+    }
+}
@@ -0,0 +1,54 @@
+package com.project.clixify_backend_sb.service;
+
+//Throughput and allocation of short-code generation, single-threaded and with 8 threads sharing one generator (the CAS on the counter is the contended part).
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortCodeGeneratorBenchmark
+{
+    private SnowflakeShortCodeGenerator generator;
+
+    @Setup
+    public void setUp()
+    {
+        generator = new SnowflakeShortCodeGenerator(1);
+    }
+
+    @Benchmark
+    public String nextCode()
+    {
+        return generator.nextCode();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextCodeContended()
+    {
+        return generator.nextCode();
+    }
+
+    //The id part alone, without the base62 encoding (no allocation expected).
+    @Benchmark
+    public long nextId()
+    {
+        return generator.nextId();
+    }
+}
@@ -0,0 +1,157 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Benchmarks for the in-memory parts of UrlMappingService, on synthetic datasets:
+- convertToDto over a user's whole list of links (what getUrlsByUser did per request before the list was paginated), with clicks pending in the ClickCounter for a part of them.
+- the per-day click aggregation of the analytics endpoints:
+    groupingByClickEvents : the original implementation, loading every ClickEvent of the range and grouping them in Java with groupingBy/counting
+    mapDailyRows          : the current implementation, the database returns one row per day and we only map the rows
+  The gap between the two is what moving the aggregation into SQL saves on the application side (the database work is not measured here).
+*/
+
+import com.project.clixify_backend_sb.dtos.ClickEventDTO;
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.model.ClickEvent;
+import com.project.clixify_backend_sb.model.UrlMapping;
+import com.project.clixify_backend_sb.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlMappingServiceBenchmark
+{
+    private static final LocalDateTime RANGE_START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Param({"100", "5000"})
+    public int linksPerUser;
+
+    @Param({"10000", "1000000"})
+    public int clickEventsInRange;
+
+    @Param({"30"})
+    public int daysInRange;
+
+    private UrlMappingService urlMappingService;
+    private List<UrlMapping> urlMappings;
+    private List<ClickEvent> clickEvents;
+    private List<DailyClickCount> dailyRows;
+
+    @Setup
+    public void setUp()
+    {
+        SplittableRandom random = new SplittableRandom(42);
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(0);
+
+        //Only the ClickCounter is used by the benchmarked methods, the repositories and the rest stay null.
+        ClickCounter clickCounter = new ClickCounter(null, null);
+        urlMappingService = UrlMappingServices.withOnly(clickCounter);
+
+        User user = new User();
+        user.setUserId(1L);
+        user.setUsername("benchmark-user");
+
+        urlMappings = new ArrayList<>(linksPerUser);
+        for(int i = 0; i < linksPerUser; i++)
+        {
+            UrlMapping urlMapping = new UrlMapping();
+            urlMapping.setUMapId((long) i);
+            urlMapping.setOriginalUrl("https://example.com/articles/" + i + "?utm_source=newsletter&utm_medium=email");
+            urlMapping.setShortUrl(generator.nextCode());
+            urlMapping.setClickCount(random.nextInt(10_000));
+            urlMapping.setCreatedDate(RANGE_START.plusMinutes(i));
+            urlMapping.setUser(user);
+            urlMappings.add(urlMapping);
+            if(i % 10 == 0)
+            {
+                clickCounter.increment((long) i);        //every 10th link has clicks waiting for the next flush
+            }
+        }
+
+        UrlMapping clicked = urlMappings.get(0);
+        long rangeSeconds = daysInRange * 86_400L;
+        clickEvents = new ArrayList<>(clickEventsInRange);
+        for(int i = 0; i < clickEventsInRange; i++)
+        {
+            clickEvents.add(new ClickEvent((long) i, RANGE_START.plusSeconds(random.nextLong(rangeSeconds)), clicked));
+        }
+
+        //What the aggregation query returns for the same clicks: one row per day.
+        dailyRows = clickEvents.stream()
+                .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()))
+                .entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> dailyRow(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    @Benchmark
+    public List<UrlMappingDTO> convertToDto()
+    {
+        List<UrlMappingDTO> urlMappingDTOs = new ArrayList<>(urlMappings.size());
+        for(UrlMapping urlMapping : urlMappings)
+        {
+            urlMappingDTOs.add(urlMappingService.convertToDto(urlMapping));
+        }
+        return urlMappingDTOs;
+    }
+
+    @Benchmark
+    public List<ClickEventDTO> groupingByClickEvents()
+    {
+        return clickEvents.stream()
+                .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()))
+                .entrySet().stream()
+                .map(entry -> urlMappingService.toClickEventDto(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<ClickEventDTO> mapDailyRows()
+    {
+        return dailyRows.stream()
+                .map(daily -> urlMappingService.toClickEventDto(daily.getClickDate(), daily.getClickCount()))
+                .collect(Collectors.toList());
+    }
+
+    private static DailyClickCount dailyRow(LocalDate clickDate, Long clickCount)
+    {
+        return new DailyClickCount()
+        {
+            @Override
+            public LocalDate getClickDate()
+            {
+                return clickDate;
+            }
+
+            @Override
+            public Long getClickCount()
+            {
+                return clickCount;
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Builds UrlMappingService instances for benchmarks of its in-memory parts, without a Spring context or a database.
+The collaborators are matched to the constructor parameters by type, so a benchmark names only what the benchmarked methods use,
+and doesn't break (or silently pass something in the wrong place) when the service gets another dependency.
+*/
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+final class UrlMappingServices
+{
+    private UrlMappingServices()
+    {
+    }
+
+    //A UrlMappingService with the given collaborators and null for every other dependency (calling a method that needs one of those fails with a NullPointerException).
+    static UrlMappingService withOnly(Object... collaborators)
+    {
+        Constructor<?> constructor = UrlMappingService.class.getDeclaredConstructors()[0];     //the one from @AllArgsConstructor
+        Class<?>[] types = constructor.getParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for(Object collaborator : collaborators)
+        {
+            int matched = -1;
+            for(int i = 0; i < types.length; i++)
+            {
+                if(types[i].isInstance(collaborator))
+                {
+                    if(matched >= 0)
+                    {
+                        throw new IllegalArgumentException("More than one dependency of UrlMappingService takes a " + collaborator.getClass().getSimpleName());
+                    }
+                    matched = i;
+                }
+            }
+            if(matched < 0)
+            {
+                throw new IllegalArgumentException("UrlMappingService has no dependency of type " + collaborator.getClass().getSimpleName());
+            }
+            arguments[matched] = collaborator;
+        }
+        try
+        {
+            return (UrlMappingService) constructor.newInstance(arguments);
+        }
+        catch(InstantiationException | IllegalAccessException | InvocationTargetException e)
+        {
+            throw new IllegalStateException("Can't create a UrlMappingService", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.project.clixify_backend_sb.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+@Configuration
+@PropertySource("classpath:clixify-jpa.properties")        //JPA defaults (no open-in-view, see the file)
+public class HibernateBatchingConfig
+{
+    //Turns on JDBC batching in Hibernate, so saving many entities (e.g. the bulk URL shortening) sends the INSERTs in batches of 'clixify.jpa.batch-size' instead of one round trip per row.
+    //This only works for entities whose id is not generated by the database (GenerationType.IDENTITY), which is why UrlMapping uses a pooled sequence (with the shard slot added, see model/SlottedSequenceGenerator).
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(@Value("${clixify.jpa.batch-size:100}") int batchSize)
+    {
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", batchSize);
+            properties.putIfAbsent("hibernate.order_inserts", true);       //groups the INSERTs of the same table together so they can share a batch
+        };
+    }
+}
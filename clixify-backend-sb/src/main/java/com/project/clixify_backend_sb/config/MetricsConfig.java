@@ -0,0 +1,27 @@
+package com.project.clixify_backend_sb.config;
+
+/*
+Actuator/Micrometer metrics, scraped by Prometheus from /actuator/prometheus on 'management.server.port'. Where each stage of a request shows up:
+- clixify.redirect                    : RedirectController.redirect, the whole redirect (@Timed)
+- clixify.service                     : every public UrlMappingService method, tagged by method (@Timed)
+- spring.data.repository.invocations  : every repository query, tagged by repository and method (auto-configured by Spring Boot)
+- cache_* (cache="redirect")          : hits/misses/evictions of the redirect cache, a slow redirect with a miss is waiting on the repository query
+- clixify.redirect.index.*            : hits/misses of the off-heap redirect index (checked on a cache miss, when enabled) and its fill level
+- clixify.uniques.sketches            : unique visitor sketches held in memory until the next flush
+- clixify.clicks.*                    : click event writer queue size and written/dropped/failed clicks
+- clixify.jwt.verification / failures : JWT verification time (cache misses only) and failed verifications by reason,
+  cache_* (cache="jwt-verified-tokens") shows how many requests skip the verification
+- clixify.datasource.replica.lag     : how far each read replica is behind the primary (when read replicas are configured), a replica over max-lag gets no reads
+- clixify.auth.login                  : login time, dominated by the BCrypt password check
+- http.server.requests                : every HTTP request (auto-configured by Spring Boot)
+The defaults (exposed endpoints, histograms) are in clixify-metrics.properties.
+*/
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+@Configuration
+@PropertySource("classpath:clixify-metrics.properties")
+public class MetricsConfig
+{
+}
@@ -0,0 +1,88 @@
+package com.project.clixify_backend_sb.config;
+
+/*
+Read replicas, enabled by listing their JDBC URLs in 'clixify.datasource.replica.urls' (comma separated). Without it the application uses
+the single data source that Spring Boot configures from 'spring.datasource.*', exactly as before.
+- The primary is configured from 'spring.datasource.*' (including 'spring.datasource.hikari.*'), the replicas share its driver and pool size
+  and use 'clixify.datasource.replica.username' / 'password' (default: the primary's).
+- The application's DataSource routes each transaction (see ReplicaRoutingDataSource): read-only transactions go to a healthy replica,
+  everything else - creating links, recording clicks, flushing counters and sketches, schema updates - goes to the primary.
+- Read-only are the analytics and listing methods of UrlMappingService and the redirect lookup on a cache miss. A short code that isn't on the
+  replica yet (created less than the replica lag ago) is looked up again on the primary before a redirect answers 404.
+- Needs open-in-view off (the default, see clixify-jpa.properties, and checked on startup): an EntityManager held for the whole request keeps
+  the connection of its first statement, so a redirect whose lookup went to a replica would run the primary fallback on that replica too.
+Note: reads from a replica can be up to 'clixify.datasource.replica.max-lag' behind, e.g. a link created a moment ago may be missing from /myurls for that long.
+*/
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "clixify.datasource.replica.urls")
+public class ReadReplicaConfig
+{
+    //The primary's connection pool, configured like the one Spring Boot would create.
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties)
+    {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties properties,
+                                                             @Value("${clixify.datasource.replica.urls}") List<String> urls,
+                                                             @Value("${clixify.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                                             @Value("${clixify.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                                             @Value("${clixify.datasource.replica.max-lag:PT5S}") Duration maxLag,
+                                                             @Value("${spring.jpa.open-in-view:false}") boolean openInView)
+    {
+        if(openInView)
+        {
+            throw new IllegalStateException("clixify.datasource.replica.urls needs spring.jpa.open-in-view=false");
+        }
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for(int i = 0; i < urls.size(); i++)
+        {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(urls.get(i).trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+            replica.setConnectionTimeout(primaryDataSource.getConnectionTimeout());
+            replica.setReadOnly(true);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag);
+    }
+
+    //The DataSource used by JPA, JdbcTemplate and the transaction manager. The lazy proxy only takes a connection when the first statement runs,
+    //after the transaction has been marked read-only or not, so the routing data source can pick the right database.
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource)
+    {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
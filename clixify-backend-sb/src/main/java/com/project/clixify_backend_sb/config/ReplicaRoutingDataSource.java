@@ -0,0 +1,138 @@
+package com.project.clixify_backend_sb.config;
+
+/*
+Routes the connections of read-only transactions to the read replicas and everything else to the primary (see ReadReplicaConfig).
+- The lookup happens when a statement first needs the connection (the routing data source sits behind a LazyConnectionDataSourceProxy),
+  by then the transaction's read-only flag is known: @Transactional(readOnly = true) -> a replica, anything else (and no transaction) -> the primary.
+- Replicas take turns (round robin) among the ones that are currently healthy.
+- Lag: every 'clixify.datasource.replica.heartbeat-interval' the primary's replication_heartbeat row is set to the current time, and each
+  replica's copy of that row is read back. The replica's lag is how far its copy is behind (about one heartbeat interval when replication keeps up).
+  A replica that lags more than 'clixify.datasource.replica.max-lag', or can't be reached, gets no reads until it has caught up;
+  with no healthy replica the reads go to the primary. Replicas count as unhealthy until their first heartbeat check.
+- The lag of each replica is published as the clixify.datasource.replica.lag gauge (tagged with the replica's pool name).
+Note: with several instances each one writes its own time into the heartbeat, so keep their clocks in sync (NTP) or raise max-lag by the skew.
+*/
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder
+{
+    private static final String PRIMARY = "primary";
+
+    private final JdbcTemplate primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private static final class Replica
+    {
+        final String name;
+        final JdbcTemplate jdbcTemplate;
+        volatile long lagMillis = -1;       //-1 until the first heartbeat check, then the last measured lag
+        volatile boolean healthy;
+
+        Replica(String name, DataSource dataSource)
+        {
+            this.name = name;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+    }
+
+    //'replicas' maps the name of each replica (used as lookup key and metric tag) to its data source.
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag)
+    {
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.primary = new JdbcTemplate(primary);
+        this.replicas = replicas.entrySet().stream().map(replica -> new Replica(replica.getKey(), replica.getValue())).toList();
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey()
+    {
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+        {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for(int i = 0; i < replicas.size(); i++)
+        {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if(replica.healthy)
+            {
+                return replica.name;
+            }
+        }
+        return PRIMARY;         //no replica has caught up, the primary serves the reads
+    }
+
+    @Scheduled(fixedDelayString = "${clixify.datasource.replica.heartbeat-interval:PT1S}")
+    public void heartbeat()
+    {
+        long now = System.currentTimeMillis();
+        try
+        {
+            if(primary.update("update replication_heartbeat set beat_millis = ? where id = 1", now) == 0)
+            {
+                primary.update("insert into replication_heartbeat (id, beat_millis) values (1, ?)", now);
+            }
+        }
+        catch(DataAccessException e)
+        {
+            log.warn("Could not write the replication heartbeat to the primary, reads go to the primary", e);
+            replicas.forEach(replica -> replica.healthy = false);
+            return;
+        }
+        for(Replica replica : replicas)
+        {
+            try
+            {
+                List<Long> beat = replica.jdbcTemplate.queryForList("select beat_millis from replication_heartbeat where id = 1", Long.class);
+                replica.lagMillis = beat.isEmpty() ? Long.MAX_VALUE : Math.max(0, now - beat.get(0));
+            }
+            catch(DataAccessException e)
+            {
+                replica.lagMillis = Long.MAX_VALUE;
+            }
+            boolean healthy = replica.lagMillis <= maxLagMillis;
+            if(healthy != replica.healthy)
+            {
+                log.info("Read replica {} is {} (lag {} ms)", replica.name, healthy ? "back in use" : "lagging or unreachable, its reads go elsewhere",
+                        replica.lagMillis == Long.MAX_VALUE ? "unknown" : replica.lagMillis);
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        for(Replica replica : replicas)
+        {
+            Gauge.builder("clixify.datasource.replica.lag", replica, r -> r.lagMillis == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : r.lagMillis)
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .description("How far the replica's copy of the replication heartbeat is behind (-1 before the first check)")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.project.clixify_backend_sb.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling       //Enables @Scheduled methods, used by the background jobs that periodically flush in-memory state (like click counters) to the database.
+@PropertySource("classpath:clixify-scheduling.properties")      //Scheduler pool size (a thread per job, see the file)
+public class SchedulingConfig
+{
+}
@@ -0,0 +1,46 @@
+package com.project.clixify_backend_sb.config;
+
+import com.project.clixify_backend_sb.service.Shards;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Hands out connections of the shard the current thread works on (see Shards.on()), shard 0 by default.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable
+{
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards)
+    {
+        this.shards = shards;
+        Map<Object, Object> targets = new HashMap<>();
+        for(int shard = 0; shard < shards.size(); shard++)
+        {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey()
+    {
+        return Shards.current();
+    }
+
+    //Closes the pools of the additional shards (shard 0's pool is a bean of its own and closed by Spring).
+    @Override
+    public void close() throws Exception
+    {
+        for(DataSource shard : shards.subList(1, shards.size()))
+        {
+            if(shard instanceof AutoCloseable closeable)
+            {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.project.clixify_backend_sb.config;
+
+/*
+Sharding, enabled by listing the JDBC URLs of the additional databases in 'clixify.datasource.shards.urls' (comma separated). The database
+of 'spring.datasource.*' is shard 0: it keeps the users, the shard map and every link created before sharding was enabled, so an existing
+deployment can turn sharding on and then move slots to the new databases (see service/Shards and service/Resharding).
+- Every shard gets a connection pool like the one Spring Boot would configure (including 'spring.datasource.hikari.*'), with the credentials
+  of 'clixify.datasource.shards.username' / 'password' (default: the ones of shard 0).
+- The application's DataSource routes each connection to the shard the thread is working on. The lazy proxy only takes the connection when the
+  first statement runs, so a transaction started before the shard was chosen still ends up on the right database.
+- Not combined with read replicas (config/ReadReplicaConfig): set one or the other.
+- Relies on open-in-view being off (clixify-jpa.properties): a request-wide EntityManager would keep the shard of its first statement.
+Note: the reactive redirect service (clixify-redirect-reactive) reads a single database and only works without sharding.
+*/
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "clixify.datasource.shards.urls")
+public class ShardingConfig
+{
+    //The connection pool of shard 0, configured like the one Spring Boot would create.
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource firstShardDataSource(DataSourceProperties properties, @Value("${clixify.datasource.replica.urls:}") String replicaUrls)
+    {
+        if(!replicaUrls.isBlank())
+        {
+            throw new IllegalStateException("clixify.datasource.shards.urls and clixify.datasource.replica.urls can't be combined");
+        }
+        HikariDataSource shard = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        shard.setPoolName("shard-0");
+        return shard;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource firstShardDataSource,
+                                                         DataSourceProperties properties,
+                                                         @Value("${clixify.datasource.shards.urls}") List<String> urls,
+                                                         @Value("${clixify.datasource.shards.username:${spring.datasource.username:}}") String username,
+                                                         @Value("${clixify.datasource.shards.password:${spring.datasource.password:}}") String password)
+    {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(firstShardDataSource);
+        for(int i = 0; i < urls.size(); i++)
+        {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setDriverClassName(properties.determineDriverClassName());
+            shard.setJdbcUrl(urls.get(i).trim());
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setPoolName("shard-" + (i + 1));
+            shard.setMaximumPoolSize(firstShardDataSource.getMaximumPoolSize());
+            shard.setConnectionTimeout(firstShardDataSource.getConnectionTimeout());
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource)
+    {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
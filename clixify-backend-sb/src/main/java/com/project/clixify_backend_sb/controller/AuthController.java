@@ -3,20 +3,29 @@ package com.project.clixify_backend_sb.controller;
 import com.project.clixify_backend_sb.dtos.LoginRequest;
 import com.project.clixify_backend_sb.dtos.RegisterRequest;
 import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.security.PasswordHashingBusyException;
+import com.project.clixify_backend_sb.security.jwt.JwtAuthenticationResponse;
+import com.project.clixify_backend_sb.service.RefreshTokenService;
 import com.project.clixify_backend_sb.service.UserService;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/auth")        //we have permitted the requests from this endpoint without them having to be authenticated as it will have public pages like register, login, forgot password endpoints so it has to be public so that people can come and register or login (we configured this in security/WebSecurityConfig)
 @AllArgsConstructor         //In modern Spring, we don't need to use @Autowired annotation to inject dependencies, we can use @AllArgsConstructor annotation to inject dependencies.
 public class AuthController
 {
     private UserService userService;    //Dependency injection of 'UserService' service layer which handles the business logic of user registration.
+    private RefreshTokenService refreshTokenService;
 
     //Controller method for user registration
     @PostMapping("/public/register")        //It is a public registration endpoint
@@ -41,4 +50,21 @@ public class AuthController
         //we are calling the 'authenticateUser' method of 'UserService' service layer which handles the business logic for user login and authentication, and returns the JWT token in the response.
         return ResponseEntity.ok(userService.authenticateUser(loginRequest));
     }
+
+    // {"refreshToken":"..."}  - sample @RequestBody, the refresh token from the login (or from the previous refresh)
+
+    //Controller method for renewing the JWT token without the password: trades the refresh token for a new JWT token and a new refresh token (401 if it is unknown, expired or already used).
+    @PostMapping("/public/refresh")
+    public ResponseEntity<JwtAuthenticationResponse> refreshToken(@RequestBody Map<String, String> request)
+    {
+        JwtAuthenticationResponse response = refreshTokenService.refresh(request.get("refreshToken"));
+        return response == null ? ResponseEntity.status(HttpStatus.UNAUTHORIZED).build() : ResponseEntity.ok(response);
+    }
+
+    //Registrations and logins that found the password hashing pool full (see security/BoundedPasswordEncoder): the client should try again shortly.
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<String> passwordHashingBusy(PasswordHashingBusyException e)
+    {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+    }
 }
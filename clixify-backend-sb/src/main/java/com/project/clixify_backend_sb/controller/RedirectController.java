@@ -1,34 +1,61 @@
 package com.project.clixify_backend_sb.controller;
 
-import com.project.clixify_backend_sb.model.UrlMapping;
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import com.project.clixify_backend_sb.model.RedirectMode;
 import com.project.clixify_backend_sb.service.UrlMappingService;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+
 
 @RestController     //This is a controller class for handling the redirect functionality.
-@AllArgsConstructor     //IMPORTANT - This is a Lombok annotation to inject the dependencies automatically, So here it will inject the 'UrlMappingService' dependency OR ELSE it will throw NullPointerException.
 public class RedirectController
 {
-    private UrlMappingService urlMappingService;    //Dependency injection for UrlMappingService as it has business logic method for getting the original URL from the short URL.
+    private final UrlMappingService urlMappingService;    //Dependency injection for UrlMappingService as it has business logic method for getting the original URL from the short URL.
+    private final CacheControl temporaryCacheControl;     //302s: only the visitor's browser may keep them, and only briefly, so repeated clicks are still counted
+    private final CacheControl permanentCacheControl;     //301/308s: any cache (browsers, CDNs) may keep them, see RedirectMode
+
+    //The explicit Cache-Control also replaces the 'no-cache, no-store' that Spring Security would otherwise add to every response (it only adds it when the header is missing).
+    public RedirectController(UrlMappingService urlMappingService,
+                              @Value("${clixify.redirect.temporary-max-age:PT1M}") Duration temporaryMaxAge,
+                              @Value("${clixify.redirect.permanent-max-age:P1D}") Duration permanentMaxAge)
+    {
+        this.urlMappingService = urlMappingService;
+        this.temporaryCacheControl = CacheControl.maxAge(temporaryMaxAge).cachePrivate();
+        this.permanentCacheControl = CacheControl.maxAge(permanentMaxAge).cachePublic();
+    }
 
     //Controller method with @GetMapping annotation, to handle the GET requests at '/{shortUrl}' endpoint, for redirecting the user to the original URL mapped to the short URL.
+    @Timed(value = "clixify.redirect", histogram = true, description = "Time to resolve a short URL and answer the redirect")     //whole redirect, the stages are timed separately (see config/MetricsConfig)
     @GetMapping("/{shortUrl}")      //shortUrl is passed as part of the URL directly like http://localhost:8080/{shortUrl} as we have defined the path variable in the @GetMapping annotation (that's why we have not used @RequestMapping annotation) alongside @RestController annotation.
-    public ResponseEntity<Void> redirect(@PathVariable String shortUrl)
+    public ResponseEntity<Void> redirect(@PathVariable String shortUrl, HttpServletRequest request)      //the request gives us the visitor's address and User-Agent for the unique visitor counts
     {
-        UrlMapping urlMapping = urlMappingService.getOriginalUrl(shortUrl); //Getting the original URL from the short URL using the business logic method of UrlMappingService, which returns a UrlMapping object, and we can extract the original URL from  it.
-        if(urlMapping != null)          //If the urlMapping Object is not null, then we need to redirect the user to the original URL mapped to the short URL.
+        RedirectTarget redirectTarget = urlMappingService.getOriginalUrl(shortUrl, request.getRemoteAddr(), request.getHeader(HttpHeaders.USER_AGENT)); //Getting the original URL from the short URL using the business logic method of UrlMappingService, which returns a RedirectTarget object (served from the redirect cache when possible), and we can extract the original URL from  it.
+        if(redirectTarget != null)          //If the redirectTarget Object is not null, then we need to redirect the user to the original URL mapped to the short URL.
         {
 
             HttpHeaders httpHeaders = new HttpHeaders();    //First creating a new HttpHeaders object to store the headers in the response as we are making use of HttpHeader for redirect functionality.
-            httpHeaders.add("Location", urlMapping.getOriginalUrl());   //Then adding the original URL to the HttpHeaders object as a header, with key as "Location" and value as the original URL.
-            return ResponseEntity.status(302).headers(httpHeaders).build();     //Then returning the ResponseEntity object with status code 302, along with the HttpHeaders object containing the original URL, as response.
+            httpHeaders.add("Location", redirectTarget.originalUrl());   //Then adding the original URL to the HttpHeaders object as a header, with key as "Location" and value as the original URL.
+            RedirectMode redirectMode = redirectTarget.redirectMode();
+            httpHeaders.setCacheControl(redirectMode.isPermanent() ? permanentCacheControl : temporaryCacheControl);
+            HttpStatus status = switch(redirectMode)        //302 unless the link was made permanent (see RedirectMode)
+            {
+                case TEMPORARY -> HttpStatus.FOUND;
+                case PERMANENT -> HttpStatus.MOVED_PERMANENTLY;
+                case PERMANENT_KEEP_METHOD -> HttpStatus.PERMANENT_REDIRECT;
+            };
+            return ResponseEntity.status(status).headers(httpHeaders).build();     //Then returning the ResponseEntity object with the status code of the link's redirect mode, along with the HttpHeaders object containing the original URL, as response.
         }
-        else        //If the urlMapping Object is null, then we need to return a not found response.
+        else        //If the redirectTarget Object is null, then we need to return a not found response.
         {
             return ResponseEntity.notFound().build();
         }
@@ -0,0 +1,46 @@
+package com.project.clixify_backend_sb.controller;
+
+import com.project.clixify_backend_sb.service.Resharding;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/shards")        //Admin endpoints of the sharded link storage (see service/Shards and service/Resharding)
+@PreAuthorize("hasRole('ADMIN')")           //Admins only, moving slots puts load on the databases
+public class ShardController
+{
+    private Resharding resharding;
+
+    public ShardController(Resharding resharding)
+    {
+        this.resharding = resharding;
+    }
+
+    //Number of slots per shard, e.g. {"0":512,"1":512}
+    @GetMapping
+    public ResponseEntity<Map<Integer, Integer>> getSlotsPerShard()
+    {
+        return ResponseEntity.ok(resharding.slotsPerShard());
+    }
+
+    //Moves the links of one slot to another shard, e.g. POST /api/admin/shards/slots/17/move?to=2. Blocks until the move is done (two settle times plus the copy).
+    @PostMapping("/slots/{slot}/move")
+    public ResponseEntity<Resharding.SlotMove> moveSlot(@PathVariable int slot, @RequestParam("to") int to)
+    {
+        try
+        {
+            return ResponseEntity.ok(resharding.moveSlot(slot, to));
+        }
+        catch(IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        catch(IllegalStateException e)
+        {
+            return ResponseEntity.status(409).build();      //not sharded, or another move is running
+        }
+    }
+}
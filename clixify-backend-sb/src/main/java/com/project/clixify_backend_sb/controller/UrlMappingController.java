@@ -1,15 +1,24 @@
 package com.project.clixify_backend_sb.controller;
 
 import com.project.clixify_backend_sb.dtos.ClickEventDTO;
+import com.project.clixify_backend_sb.dtos.TrendingUrlDTO;
 import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.dtos.UrlMappingPage;
+import com.project.clixify_backend_sb.model.RedirectMode;
 import com.project.clixify_backend_sb.model.UrlMapping;
 import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.service.LinkMovingException;
+import com.project.clixify_backend_sb.service.MonthlyClicksRangeException;
 import com.project.clixify_backend_sb.service.UrlMappingService;
+import com.project.clixify_backend_sb.service.UrlMappingSort;
 import com.project.clixify_backend_sb.service.UserService;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
 import java.time.LocalDate;
@@ -20,13 +29,31 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/urls")        //Mapping the base URL for all the URL mapping related endpoints
-@AllArgsConstructor
 public class UrlMappingController
 {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";      //Response header of /myurls with the cursor of the next page
+    private static final CacheControl ANALYTICS_CACHE_CONTROL = CacheControl.noCache().cachePrivate();     //The analytics may be kept by the user's browser, but must be revalidated with their ETag before every use
+
     private UrlMappingService urlMappingService;        //We inject the object of UrlMappingService to perform the business logic for URL mapping
     private UserService userService;        //We inject the object of UserService to get the user details from the principal object
+    private int maxBulkUrls;                //Maximum number of URLs accepted by one bulk shortening request
+    private int maxPageSize;                //Maximum number of URLs in one page of /myurls
+    private int maxTrending;                //Maximum number of trending links returned by one request (the global list can't be longer than the tracked links anyway)
+
+    public UrlMappingController(UrlMappingService urlMappingService, UserService userService,
+                                @Value("${clixify.bulk.max-urls:50000}") int maxBulkUrls,
+                                @Value("${clixify.myurls.max-page-size:1000}") int maxPageSize,
+                                @Value("${clixify.trending.capacity:100}") int maxTrending)
+    {
+        this.urlMappingService = urlMappingService;
+        this.userService = userService;
+        this.maxBulkUrls = maxBulkUrls;
+        this.maxPageSize = maxPageSize;
+        this.maxTrending = maxTrending;
+    }
 
     // {"originalUrl":"https://example.com"}  - sample key-value pair passed in @RequestBody where 'originalUrl' is the key and 'https://example.com' is the value - can test on Postman
+    // {"originalUrl":"https://example.com", "redirectMode":"PERMANENT"}  - optionally with the redirect mode of the link (TEMPORARY, the default, PERMANENT or PERMANENT_KEEP_METHOD, see RedirectMode)
     // https://abc.com/Hg9K7IJX --> https://example.com         - short URL --> original URL
     // https://xyz.com/WXZfkst5 --> https://spring_boot.com     - short URL --> original URL
 
@@ -36,21 +63,84 @@ public class UrlMappingController
     public ResponseEntity<UrlMappingDTO> createShortUrl(@RequestBody Map<String, String> request, Principal principal)  // the Map Stores the key-value pairs from the @RequestBody and Principal stores the user details, and we pass it to the service layer (UrlMappingService) to generate the short URL
     {                                                                                                                   //When the request is authenticated, principle is auto-injected
         String originalUrl = request.get("originalUrl");    //Extracting the original URL from the @RequestBody
+        RedirectMode redirectMode = request.containsKey("redirectMode") ? RedirectMode.fromParam(request.get("redirectMode")) : RedirectMode.TEMPORARY;
+        if(redirectMode == null)
+        {
+            return ResponseEntity.badRequest().build();
+        }
         User user = userService.findByUsername(principal.getName());        //Extracting the user details from the principal object as every short URL in the database is mapped to a user and we need to get the user details from the principal object to map the short URL to that user.
 
         //Calling the createShortUrl method of UrlMappingService to generate the short URL, which interacts with the repository layer(UrlMapping) to save the short URL in the database and returns the 'UrlMappingDTO' object which is then returned to the client
-        UrlMappingDTO urlMappingDTO = urlMappingService.createShortUrl(originalUrl, user);      //This method returns the 'UrlMappingDTO' object which has the short URL and original URL and user details
+        UrlMappingDTO urlMappingDTO = urlMappingService.createShortUrl(originalUrl, redirectMode, user);      //This method returns the 'UrlMappingDTO' object which has the short URL and original URL and user details
         return ResponseEntity.ok(urlMappingDTO);        //Returning the 'UrlMappingDTO' object to the client which is then converted to JSON and sent to the client
     }
 
-    //Controller method with @GetMapping annotation, to handle the GET requests at '/api/urls/myurls' endpoint, for getting all the URLs mapped/associated with the user(principal) who made the request, and return List of UrlMappingDTO object in response.
+    // {"redirectMode":"PERMANENT"}  - sample @RequestBody for changing how a link redirects
+
+    //Controller method to handle the PUT requests at '/api/urls/{shortUrl}/redirectMode', for changing the redirect mode of one of the user's links, and return the changed UrlMappingDTO in response (404 if the user has no such link, 409 while it is being moved to another shard).
+    @PutMapping("/{shortUrl}/redirectMode")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<UrlMappingDTO> setRedirectMode(@PathVariable String shortUrl, @RequestBody Map<String, String> request, Principal principal)
+    {
+        RedirectMode redirectMode = RedirectMode.fromParam(request.get("redirectMode"));
+        if(redirectMode == null)
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = userService.findByUsername(principal.getName());
+        UrlMappingDTO urlMappingDTO = urlMappingService.setRedirectMode(shortUrl, redirectMode, user);
+        return urlMappingDTO == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(urlMappingDTO);
+    }
+
+    // {"originalUrls":["https://example.com", "https://spring_boot.com"]}  - sample @RequestBody for the bulk endpoint
+
+    //Controller method with @PostMapping annotation, to handle the POST requests at '/api/urls/shorten/bulk' endpoint, for shortening many URLs in one request (e.g. from campaign tooling), and return List of UrlMappingDTO objects (in the same order as the passed URLs) in response.
+    @PostMapping("/shorten/bulk")       //It is a bulk URL shortening endpoint
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<List<UrlMappingDTO>> createShortUrls(@RequestBody Map<String, List<String>> request, Principal principal)
+    {
+        List<String> originalUrls = request.get("originalUrls");        //Extracting the list of original URLs from the @RequestBody
+        if(originalUrls == null || originalUrls.isEmpty() || originalUrls.size() > maxBulkUrls)       //Rejecting empty requests and requests bigger than 'clixify.bulk.max-urls' with 400 Bad Request
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = userService.findByUsername(principal.getName());        //The user is looked up once for the whole batch instead of once per URL
+
+        List<UrlMappingDTO> urlMappingDTOs = urlMappingService.createShortUrls(originalUrls, user);       //Generates the short codes and saves all the URL mappings with JDBC batch inserts
+        return ResponseEntity.ok(urlMappingDTOs);
+    }
+
+    //Controller method with @GetMapping annotation, to handle the GET requests at '/api/urls/myurls' endpoint, for getting the URLs mapped/associated with the user(principal) who made the request one page at a time, and return List of UrlMappingDTO object in response.
+    //e.g. /api/urls/myurls?sort=clicks&limit=50 - sort is 'newest' (default), 'oldest' or 'clicks'. When there are more URLs, the 'X-Next-Cursor' response header holds the cursor of the next page,
+    //which is requested with the same sort and '&cursor=<X-Next-Cursor>'. The last page has no 'X-Next-Cursor' header.
     @GetMapping("/myurls")      //It is a URL retrieval endpoint
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<List<UrlMappingDTO>> getUserUrls(Principal principal)
+    public ResponseEntity<List<UrlMappingDTO>> getUserUrls(Principal principal,
+                                                           @RequestParam(value = "sort", defaultValue = "newest") String sort,
+                                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                                           @RequestParam(value = "limit", defaultValue = "100") int limit)
     {
+        UrlMappingSort urlMappingSort = UrlMappingSort.fromParam(sort);
+        if(urlMappingSort == null || limit < 1 || limit > maxPageSize)         //Rejecting unknown sorts and page sizes above 'clixify.myurls.max-page-size' with 400 Bad Request
+        {
+            return ResponseEntity.badRequest().build();
+        }
         User user = userService.findByUsername(principal.getName());    //First we will get the user from the Security Context. We do so by extracting user's name from principal and using it to find the user from the database with the help of userService findByUsername method.
-        List<UrlMappingDTO> urls = urlMappingService.getUrlsByUser(user);       //Then we will get all the URLs mapped/associated with the user(principal) who made the request, with the help of urlMappingService's getUrlsByUser method, and return List of UrlMappingDTO object in response.
-        return ResponseEntity.ok(urls);         //Returning the List of UrlMappingDTO object to the client which is then converted to JSON and sent to the client
+        UrlMappingPage page;
+        try
+        {
+            page = urlMappingService.getUrlsByUser(user, urlMappingSort, cursor, limit);       //Then we will get one page of the URLs mapped/associated with the user(principal) who made the request, with the help of urlMappingService's getUrlsByUser method.
+        }
+        catch(IllegalArgumentException e)       //A cursor that we didn't hand out, or one of another sort
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.nextCursor() != null)
+        {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.urls());         //Returning the List of UrlMappingDTO object to the client which is then converted to JSON and sent to the client
     }
 
     //Controller method with @GetMapping annotation, to handle the GET requests at '/api/urls/analytics/{shortUrl}' endpoint, for getting the analytics of the URL mapped/associated with the user(principal) who made the request, and return List of ClickEventDTO object in response.
@@ -58,13 +148,19 @@ public class UrlMappingController
     @PreAuthorize("hasRole('USER')")    //shortUrl is passed as part of the URL
     public ResponseEntity<List<ClickEventDTO>> getUrlAnalytics(@PathVariable String shortUrl,
                                                          @RequestParam("startDate") String startDate,
-                                                         @RequestParam("endDate") String endDate)
+                                                         @RequestParam("endDate") String endDate,
+                                                         WebRequest webRequest)
     {
         DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;    //Creating a DateTimeFormatter object to parse the date and time. ISO_LOCAL_DATE_TIME is a pre-defined pattern for parsing date and time in the format of 'yyyy-MM-ddTHH:mm:ss' like 2024-01-01T00:00:00, this 2024-12-01T00:00:00 we get from the request parameters @RequestParam "startDate" and "endDate".
         LocalDateTime start = LocalDateTime.parse(startDate, formatter);    //Parsing the start date and time into LocalDateTime object format for the start date and time.
         LocalDateTime end = LocalDateTime.parse(endDate, formatter);        //Parsing the end date and time into LocalDateTime object format for the end date and time.
+        String eTag = urlMappingService.getClickEventVersion(shortUrl, start, end);     //Cheap version of the result: if the client already has it (If-None-Match), answer 304 without computing the analytics
+        if(eTag != null && webRequest.checkNotModified(eTag))      //checkNotModified() also sets the ETag header (and the 304 status)
+        {
+            return null;
+        }
         List<ClickEventDTO> clickEventDTOS =urlMappingService.getClickEventByDate(shortUrl, start, end);    //Calling the getClickEventByDate method of UrlMappingService to get the analytics of the URL mapped/associated with the user(principal) who made the request, and return List of ClickEventDTO object in response.
-        return ResponseEntity.ok(clickEventDTOS);       //Returning the List of ClickEventDTO object to the client which is then converted to JSON and sent to the client
+        return ResponseEntity.ok().cacheControl(ANALYTICS_CACHE_CONTROL).body(clickEventDTOS);       //Returning the List of ClickEventDTO object to the client which is then converted to JSON and sent to the client
     }
 
 
@@ -72,16 +168,65 @@ public class UrlMappingController
     //Controller method with @GetMapping annotation, to handle the GET requests at '/api/urls/totalClicks' endpoint, for getting the total clicks of the URL mapped/associated with the user(principal) who made the request, and return Map of LocalDate and Long object in response.
     @GetMapping("/totalClicks")     //It is a URL total clicks endpoint
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Map<LocalDate, Long>> getTotalClicksByDate(Principal principal,
-                                                                     @RequestParam("startDate") String startDate,
-                                                                     @RequestParam("endDate") String endDate)     //We need total Clicks of all the URLs that the user(principal) who made the request has mapped/associated, owns. That's why we need to get the user(principal) who made the request.
+    public ResponseEntity<Map<LocalDate, ?>> getTotalClicksByDate(Principal principal,
+                                                                  @RequestParam("startDate") String startDate,
+                                                                  @RequestParam("endDate") String endDate,
+                                                                  @RequestParam(value = "uniqueVisitors", defaultValue = "false") boolean uniqueVisitors,
+                                                                  WebRequest webRequest)     //We need total Clicks of all the URLs that the user(principal) who made the request has mapped/associated, owns. That's why we need to get the user(principal) who made the request.
     {
         DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;     //Creating a DateTimeFormatter object to parse the date. ISO_LOCAL_DATE is a pre-defined pattern for parsing date in the format of 'yyyy-MM-dd' like 2024-01-01, this 2024-12-01 we get from the request parameters @RequestParam "startDate" and "endDate".
         User user = userService.findByUsername(principal.getName());        //First we will get the user from the Security Context. We do so by extracting user's name from principal and using it to find the user from the database with the help of userService findByUsername method.
         LocalDate start = LocalDate.parse(startDate, formatter);    //Parsing the start date into LocalDate object format for the start date.
         LocalDate end = LocalDate.parse(endDate, formatter);        //Parsing the end date into LocalDate object format for the end date.
+        if(webRequest.checkNotModified(urlMappingService.getTotalClicksVersion(user, start, end, uniqueVisitors)))      //Same as the analytics of one link: 304 if the client's copy is still current
+        {
+            return null;
+        }
+        if(uniqueVisitors)      //With '?uniqueVisitors=true' each day maps to {clickDate, count, uniqueVisitors} instead of the plain click count (which stays the default so existing clients keep working)
+        {
+            return ResponseEntity.ok().cacheControl(ANALYTICS_CACHE_CONTROL).body(urlMappingService.getDailyClicksByUserAndDate(user, start, end));
+        }
         Map<LocalDate, Long> totalClicks =urlMappingService.getTotalClicksByUserAndDate(user, start, end);      //Calling the getTotalClicksByUserAndDate method of UrlMappingService to get the total clicks of all the URLs that the user(principal) who made the request has mapped/associated, owns, and return Map of LocalDate and Long object in response.
-        return ResponseEntity.ok(totalClicks);      //Returning the Map of LocalDate and Long object to the client which is then converted to JSON and sent to the client
+        return ResponseEntity.ok().cacheControl(ANALYTICS_CACHE_CONTROL).body(totalClicks);      //Returning the Map of LocalDate and Long object to the client which is then converted to JSON and sent to the client
+    }
+
+    //Controller method with @GetMapping annotation, to handle the GET requests at '/api/urls/trending' endpoint, for getting the most clicked URLs of the user(principal) in the last hour (see service/TrendingLinks), most clicked first.
+    @GetMapping("/trending")        //It is a trending URLs endpoint, e.g. /api/urls/trending?limit=10
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<List<TrendingUrlDTO>> getTrendingUrls(Principal principal, @RequestParam(value = "limit", defaultValue = "10") int limit)
+    {
+        if(limit < 1 || limit > maxTrending)
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = userService.findByUsername(principal.getName());
+        return ResponseEntity.ok(urlMappingService.getTrendingUrlsByUser(user, limit));
+    }
+
+    //Controller method with @GetMapping annotation, to handle the GET requests at '/api/urls/trending/global' endpoint, for getting the most clicked URLs of all users in the last hour. Admins only, as it shows other users' URLs.
+    @GetMapping("/trending/global")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<TrendingUrlDTO>> getGlobalTrendingUrls(@RequestParam(value = "limit", defaultValue = "10") int limit)
+    {
+        if(limit < 1 || limit > maxTrending)
+        {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(urlMappingService.getTrendingUrls(limit));
+    }
+
+    //Changes of a link whose shard slot is being moved (see service/Resharding): the client should try again once the move is over.
+    @ExceptionHandler(LinkMovingException.class)
+    public ResponseEntity<String> linkMoving(LinkMovingException e)
+    {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    //Analytics ranges that cut through a month only kept as a monthly total (see service/ClickHistory): the message tells the client which months are whole-month only.
+    @ExceptionHandler(MonthlyClicksRangeException.class)
+    public ResponseEntity<String> monthlyClicksRange(MonthlyClicksRangeException e)
+    {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 
 }
@@ -1,5 +1,6 @@
 package com.project.clixify_backend_sb.dtos;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.time.LocalDate;
@@ -11,6 +12,8 @@ public class ClickEventDTO      //DTO class for ClickEvent - we use ClickEventDT
     private LocalDate clickDate;    //This field is used to store the date of the click event.
                                     //AND RETURN TYPE MUST BE 'LocalDate' as 'entry.getKey()' returns a LocalDate in 'getClickEventByDate' method of UrlMappingService.
     private Long count; //To store Number of clicks on the short URL
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long uniqueVisitors;    //Approximate number of distinct visitors on that day (HyperLogLog, about 1.6% error), left out of the JSON when unique visitor counting is disabled
 }
 
 /*
@@ -0,0 +1,11 @@
+package com.project.clixify_backend_sb.dtos;
+
+import java.time.LocalDate;
+
+//Interface-based projection returned by the aggregation queries in ClickEventRepository: one row per day with the number of clicks on that day.
+//Spring Data fills the getters from the query aliases ('clickDate' and 'clickCount'), so no 'ClickEvent' entity is ever created for these queries.
+public interface DailyClickCount
+{
+    LocalDate getClickDate();
+    Long getClickCount();
+}
@@ -0,0 +1,17 @@
+package com.project.clixify_backend_sb.dtos;
+
+import com.project.clixify_backend_sb.model.RedirectMode;
+
+//A RedirectTarget together with its short code, streamed from the database to (re)build the off-heap redirect index (see service/RedirectIndex).
+public record IndexedRedirectTarget(
+        String shortUrl,
+        Long urlMappingId,
+        String originalUrl,
+        RedirectMode redirectMode
+)
+{
+    public RedirectTarget redirectTarget()
+    {
+        return new RedirectTarget(urlMappingId, originalUrl, redirectMode);
+    }
+}
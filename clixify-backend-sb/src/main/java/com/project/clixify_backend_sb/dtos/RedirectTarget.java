@@ -0,0 +1,26 @@
+package com.project.clixify_backend_sb.dtos;
+
+import com.project.clixify_backend_sb.model.RedirectMode;
+
+//Lightweight, immutable view of a UrlMapping that carries only what the redirect path needs.
+//We cache this instead of the 'UrlMapping' entity so that the cache never holds a JPA entity (with its lazy 'user' and 'clickEvents' associations) on the heap.
+public record RedirectTarget(
+        Long urlMappingId,      //Primary key of the UrlMapping, needed to record the click against the right mapping without loading the entity again
+        String originalUrl,     //The URL we send back in the 'Location' header
+        RedirectMode redirectMode       //Status code and cacheability of the redirect (TEMPORARY when the column is still null)
+)
+{
+    public RedirectTarget
+    {
+        if(redirectMode == null)
+        {
+            redirectMode = RedirectMode.TEMPORARY;
+        }
+    }
+
+    //A TEMPORARY (302) redirect
+    public RedirectTarget(Long urlMappingId, String originalUrl)
+    {
+        this(urlMappingId, originalUrl, RedirectMode.TEMPORARY);
+    }
+}
@@ -0,0 +1,15 @@
+package com.project.clixify_backend_sb.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingUrlDTO         //DTO for one entry of the trending links (see service/TrendingLinks), most clicked first in the response
+{
+    private String shortUrl;        //Short URL
+    private String originalUrl;     //Original URL
+    private int clicks;             //Approximate number of clicks in the trending window (never below the real number, see CountMinSketch)
+}
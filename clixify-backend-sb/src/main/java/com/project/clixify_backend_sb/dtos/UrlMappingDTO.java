@@ -1,5 +1,6 @@
 package com.project.clixify_backend_sb.dtos;
 
+import com.project.clixify_backend_sb.model.RedirectMode;
 import lombok.Data;
 
 import java.time.LocalDate;
@@ -14,4 +15,5 @@ public class UrlMappingDTO          //DTO class for URL mapping - we use UrlMapp
     private int clickCount;         //Number of clicks on the short URL
     private LocalDateTime createdDate;  //Date when the short URL was created
     private String username;        //Username of the user who created the short URL
+    private RedirectMode redirectMode;  //How the short URL redirects (302 or a cacheable 301/308)
 }
@@ -0,0 +1,11 @@
+package com.project.clixify_backend_sb.dtos;
+
+import java.util.List;
+
+//One page of a user's URL list (see UrlMappingService.getUrlsByUser), with the cursor of the next page, or null on the last page.
+public record UrlMappingPage(
+        List<UrlMappingDTO> urls,
+        String nextCursor
+)
+{
+}
@@ -0,0 +1,18 @@
+package com.project.clixify_backend_sb.dtos;
+
+import com.project.clixify_backend_sb.model.RedirectMode;
+
+import java.time.LocalDateTime;
+
+//Projection of the columns of a UrlMapping that the URL list shows, selected straight into this record by the keyset page queries of UrlMappingRepository,
+//so listing a user's URLs never loads 'UrlMapping' entities (with their 'user' and 'clickEvents' associations).
+public record UrlMappingRow(
+        Long id,
+        String originalUrl,
+        String shortUrl,
+        int clickCount,
+        LocalDateTime createdDate,
+        RedirectMode redirectMode
+)
+{
+}
@@ -0,0 +1,39 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "clickDailyRollups", indexes = @Index(name = "idx_click_daily_rollups_day", columnList = "clickDay"))       //the day index serves the monthly downsampling and deletes of ClickRetention
+@IdClass(ClickDailyRollup.RollupId.class)       //Composite primary key (uMapId, clickDay): exactly one row per URL mapping per day.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickDailyRollup
+{
+    @Id
+    private Long uMapId;            //id of the UrlMapping these clicks belong to (we keep the plain id instead of a @ManyToOne as the rollup is only ever read by id)
+    @Id
+    private LocalDate clickDay;     //the day the clicks happened on
+    private long clickCount;        //number of clicks on that day
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RollupId implements Serializable
+    {
+        private Long uMapId;
+        private LocalDate clickDay;
+    }
+}
+
+/*
+With this Entity/table:
+The clicks of each URL mapping are pre-aggregated per day while they are being recorded (see ClickEventWriter), so the per-URL analytics
+only have to read one row per day instead of every single click event.
+*/
@@ -0,0 +1,41 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "clickDailyVisitorSketches")
+@IdClass(ClickDailyVisitorSketch.SketchId.class)       //Composite primary key (uMapId, clickDay): one sketch per URL mapping per day.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickDailyVisitorSketch
+{
+    @Id
+    private Long uMapId;            //id of the UrlMapping the visitors clicked (plain id like ClickDailyRollup)
+    @Id
+    private LocalDate clickDay;     //the day of the visits
+    @Column(length = 8192)
+    private byte[] visitorSketch;   //deflated HyperLogLog registers (4 KB uncompressed at most, see service/HyperLogLog)
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SketchId implements Serializable
+    {
+        private Long uMapId;
+        private LocalDate clickDay;
+    }
+}
+
+/*
+With this Entity/table:
+Unique visitors can't be added up like clicks (the same visitor on two days, or on two links, must only count once), so instead of a number
+we keep a HyperLogLog sketch of the visitors of each URL mapping per day. Sketches of several days or links are merged to count the visitors of
+the whole range, and no visitor identity (IP address, user agent) is ever stored, only the sketch registers. See service/UniqueVisitorCounter.
+*/
@@ -8,7 +8,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "clickEvents")
+@Table(name = "clickEvents", indexes = @Index(name = "idx_click_events_click_date", columnList = "clickDate"))     //the click date index serves the date range scans of the retention job (downsampling a day, dropping old clicks in batches)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,7 +21,7 @@ public class ClickEvent
     private LocalDateTime clickDate;        //clickDate is the date and time when the click event occurred and we are storing both date and time, so we use LocalDateTime. Else we can use LocalDate to store only date.
                                             //We are storing time along with date as if we want to filter the click events by date as well as by time, so it's better to have granular level information.
     @ManyToOne      //@ManyToOne as many Click events can be associated with 1 URL Mapping.
-    @JoinColumn(name = "uMapId")
+    @JoinColumn(name = "uMapId", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))     //no foreign key: MySQL can't partition a table that has one (service/ClickEventPartitions), and the ClickEventWriter only writes ids of existing links
     private UrlMapping urlMapping;      //as @ManyToOne so each Click Event will be associated with 1 URL Mapping.
 
 }
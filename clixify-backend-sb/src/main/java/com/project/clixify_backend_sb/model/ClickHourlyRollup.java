@@ -0,0 +1,39 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "clickHourlyRollups", indexes = @Index(name = "idx_click_hourly_rollups_hour", columnList = "clickHour"))     //the hour index is what the retention job deletes by
+@IdClass(ClickHourlyRollup.RollupId.class)       //Composite primary key (uMapId, clickHour): one row per URL mapping per hour.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickHourlyRollup
+{
+    @Id
+    private Long uMapId;                //id of the UrlMapping these clicks belong to (plain id like ClickDailyRollup)
+    @Id
+    private LocalDateTime clickHour;    //start of the hour the clicks happened in
+    private long clickCount;            //number of clicks in that hour
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RollupId implements Serializable
+    {
+        private Long uMapId;
+        private LocalDateTime clickHour;
+    }
+}
+
+/*
+With this Entity/table:
+Raw click events older than 'clixify.retention.raw-age' are downsampled into one row per URL mapping per hour by ClickRetention before they are
+dropped, so analytics ranges that start or end in the middle of an old day can still be answered (to the hour).
+*/
@@ -0,0 +1,39 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "clickMonthlyRollups")
+@IdClass(ClickMonthlyRollup.RollupId.class)      //Composite primary key (uMapId, clickMonth): one row per URL mapping per month.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickMonthlyRollup
+{
+    @Id
+    private Long uMapId;            //id of the UrlMapping these clicks belong to (plain id like ClickDailyRollup)
+    @Id
+    private LocalDate clickMonth;   //first day of the month the clicks happened in
+    private long clickCount;        //number of clicks in that month
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RollupId implements Serializable
+    {
+        private Long uMapId;
+        private LocalDate clickMonth;
+    }
+}
+
+/*
+With this Entity/table:
+Daily rollups older than 'clixify.retention.daily-age' are summed up per month by ClickRetention and then dropped, so the oldest history
+takes 12 rows per link and year instead of 365.
+*/
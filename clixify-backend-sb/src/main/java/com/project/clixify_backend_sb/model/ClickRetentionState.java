@@ -0,0 +1,29 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "clickRetentionState")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickRetentionState
+{
+    @Id
+    private Integer id;             //always 1, the table has a single row (read and locked with JDBC by ClickRetention)
+    private LocalDate rawFrom;      //raw click events exist from this day on, older clicks are in click_hourly_rollups (null: nothing downsampled yet)
+    private LocalDate hourlyFrom;   //hourly rollups exist from this day on, older days only have daily rollups
+    private LocalDate dailyFrom;    //daily rollups exist from this day (a first of the month) on, older months only have monthly rollups
+}
+
+/*
+With this Entity/table:
+The boundaries between the storage tiers of the click history (raw -> hourly -> daily -> monthly). They are moved forward together with the
+downsampled rows in one transaction, so the analytics (see service/ClickHistory) always read each period from exactly one tier, also while
+the old rows of the finer tier are still being deleted in batches.
+*/
@@ -0,0 +1,37 @@
+package com.project.clixify_backend_sb.model;
+
+/*
+How a short URL redirects, chosen per link (UrlMapping.redirectMode, "redirectMode" when shortening or PUT /api/urls/{shortUrl}/redirectMode).
+- TEMPORARY: 302 Found, cacheable by the visitor's browser only for 'clixify.redirect.temporary-max-age' (private), so nearly every click
+  reaches us and is counted. The default, and what links from before the redirect modes are treated as.
+- PERMANENT / PERMANENT_KEEP_METHOD: 301 Moved Permanently / 308 Permanent Redirect, cacheable by browsers and shared caches (CDNs) for
+  'clixify.redirect.permanent-max-age'. Repeated clicks are answered from those caches and never reach us, so the analytics of such a link
+  only count the first click of each browser (per max-age), in exchange the redirect costs the visitor no round trip to us at all.
+  308 differs from 301 only for non-GET requests (the method and body are kept).
+Switching a link from permanent back to temporary only reaches browsers once their cached redirect expired (at most the permanent max-age).
+*/
+
+public enum RedirectMode
+{
+    TEMPORARY,
+    PERMANENT,
+    PERMANENT_KEEP_METHOD;
+
+    public boolean isPermanent()
+    {
+        return this != TEMPORARY;
+    }
+
+    //The mode named by a request (case-insensitive), or null if there is no such mode.
+    public static RedirectMode fromParam(String param)
+    {
+        for(RedirectMode mode : values())
+        {
+            if(mode.name().equalsIgnoreCase(param))
+            {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refreshTokens", indexes = @Index(name = "idx_refresh_tokens_expires", columnList = "expiresAt"))     //the index serves the cleanup of expired tokens
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(unique = true, length = 64)
+    private String tokenHash;           //SHA-256 (hex) of the token, the token itself is only known to the client
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    private User user;
+    private LocalDateTime createdDate;
+    private LocalDateTime expiresAt;
+}
+
+/*
+With this Entity/table:
+The refresh tokens handed out at login (see service/RefreshTokenService). A client trades one for a new access token (JWT) and a new refresh token
+at /api/auth/public/refresh, which costs a hash lookup instead of a BCrypt password check. Each token works once, the row is deleted when it is used.
+Like the users, they live on shard 0 only.
+*/
@@ -0,0 +1,26 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "replicationHeartbeat")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicationHeartbeat
+{
+    @Id
+    private Integer id;             //always 1, the table has a single row (written and read with JDBC by config/ReplicaRoutingDataSource)
+    private long beatMillis;        //time of the last heartbeat written to the primary, in epoch millis
+}
+
+/*
+With this Entity/table:
+The primary's row is updated every heartbeat interval and reaches the read replicas through replication, so comparing a replica's copy with
+the time it was written gives the replica's lag. Only used when read replicas are configured (see config/ReadReplicaConfig).
+*/
@@ -0,0 +1,30 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "shardMapReaders")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardMapReader
+{
+    @Id
+    @Column(length = 36)
+    private String instance;        //random id of a running application instance, picked at its start (written and read with JDBC by service/Shards)
+    private long mapVersion;        //version of the shard map (shard_map_version) the instance loaded last
+    private long seenMillis;        //time of the instance's last successful map refresh, in epoch millis
+}
+
+/*
+With this Entity/table:
+One row per running instance, only used on shard 0 and only when sharding is configured. service/Resharding waits until every instance that
+refreshed its map within 'clixify.sharding.instance-timeout' has loaded the version of its change, instead of waiting a fixed time that a
+busy scheduler can overrun. Rows of stopped instances are deleted on shutdown, the ones of crashed instances are ignored once they are too old.
+*/
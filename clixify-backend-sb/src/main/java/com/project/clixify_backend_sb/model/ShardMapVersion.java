@@ -0,0 +1,26 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "shardMapVersion")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardMapVersion
+{
+    @Id
+    private Integer id;             //always 1, the table has a single row (written and read with JDBC by service/Shards)
+    private long mapVersion;        //incremented after every change of shard_slots made by service/Resharding
+}
+
+/*
+With this Entity/table:
+The version of the shard map, only used on shard 0 and only when sharding is configured. An instance that read version N before reading
+shard_slots has a map with every change up to N, which it records in shard_map_readers, so a move can wait until all instances have it.
+*/
@@ -0,0 +1,29 @@
+package com.project.clixify_backend_sb.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "shardSlots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardSlot
+{
+    @Id
+    private Integer slot;           //0-1023, the slot of a short code (see service/Shards.slotOf)
+    private int shard;              //index of the database the links of this slot are on (0: spring.datasource, 1..: clixify.datasource.shards.urls)
+    private boolean moving;         //true while service/Resharding copies the slot to another shard
+
+    //read and written with JDBC by service/Shards and service/Resharding
+}
+
+/*
+With this Entity/table:
+The shard map, only used on shard 0 and only when sharding is configured (see config/ShardingConfig). It has one row per slot, so a slot
+moved by one instance is picked up by the others on their next refresh, and adding a database doesn't change any short code.
+*/
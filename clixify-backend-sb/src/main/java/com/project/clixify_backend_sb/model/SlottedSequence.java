@@ -0,0 +1,21 @@
+package com.project.clixify_backend_sb.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Id from a pooled sequence, with the shard slot of the entity's short code in its low bits (see SlottedSequenceGenerator).
+@IdGeneratorType(SlottedSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface SlottedSequence
+{
+    String sequenceName();
+
+    long initialValue();
+
+    int allocationSize();
+}
@@ -0,0 +1,51 @@
+package com.project.clixify_backend_sb.model;
+
+/*
+Id generator of UrlMapping: id = sequence value * Shards.SLOTS + the shard slot of the mapping's short code (see service/Shards).
+- The short code and the id of a link therefore name the same slot, so everything keyed by the id (click events, rollups, click counts)
+  is found on the same shard as the link, without a lookup.
+- The sequence itself is the pooled sequence UrlMapping used before (same name, same allocation size), so Hibernate still knows the ids
+  before the INSERTs and can batch them. Its values are unique per shard: every shard's sequence starts in its own range (see Shards).
+- Ids handed out before the slot was part of the id are all below Shards.FIRST_SLOTTED_ID (sequence values * SLOTS are above it).
+*/
+
+import com.project.clixify_backend_sb.service.Shards;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.AnnotationBasedGenerator;
+import org.hibernate.generator.GeneratorCreationContext;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.lang.reflect.Member;
+import java.util.Properties;
+
+public class SlottedSequenceGenerator extends SequenceStyleGenerator implements AnnotationBasedGenerator<SlottedSequence>
+{
+    private SlottedSequence config;
+
+    //Called by Hibernate before configure() (the generator itself is created through Spring's bean container, with the default constructor).
+    @Override
+    public void initialize(SlottedSequence config, Member member, GeneratorCreationContext context)
+    {
+        this.config = config;
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException
+    {
+        parameters.put(SEQUENCE_PARAM, config.sequenceName());
+        parameters.put(INITIAL_PARAM, String.valueOf(config.initialValue()));
+        parameters.put(INCREMENT_PARAM, String.valueOf(config.allocationSize()));
+        super.configure(type, parameters, serviceRegistry);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object entity) throws HibernateException
+    {
+        long sequenceValue = ((Number) super.generate(session, entity)).longValue();
+        return sequenceValue * Shards.SLOTS + Shards.slotOf(((UrlMapping) entity).getShortUrl());
+    }
+}
@@ -9,19 +9,29 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "UrlMappings")
+@Table(name = "UrlMappings", indexes = {      //Indexes for the keyset pages of a user's URL list (see UrlMappingRepository.findNewestByUserId and the other page queries)
+        @Index(name = "idx_url_mappings_user_created", columnList = "user_id, createdDate, uMapId"),
+        @Index(name = "idx_url_mappings_user_clicks", columnList = "user_id, clickCount, uMapId")
+})
+@EntityListeners(UrlMappingCacheListener.class)     //Evicts the redirect cache entry of this mapping whenever it is updated or removed (see UrlMappingCacheListener)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class UrlMapping
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long uMapId;
+    @SlottedSequence(sequenceName = "url_mapping_seq",  //Sequence instead of IDENTITY so Hibernate knows the ids before inserting and can batch the INSERTs (IDENTITY forces one INSERT per row).
+            initialValue = 10_000_000,     //starts above the ids that were handed out by the old auto-increment column, so the two can never collide
+            allocationSize = 50)           //ids are reserved 50 at a time, so the sequence (a table on MySQL) is only hit once per 50 new URL mappings
+    private Long uMapId;                   //sequence value * 1024 + the shard slot of the short code, see SlottedSequenceGenerator
     private String originalUrl;
+    @Column(unique = true)      //Short codes are unique (guaranteed by the ShortCodeGenerator), the unique constraint also gives findByShortUrl an index to use.
     private String shortUrl;
     private int clickCount = 0;
     private LocalDateTime createdDate;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 24)
+    private RedirectMode redirectMode = RedirectMode.TEMPORARY;     //302 or a cacheable 301/308, see RedirectMode (null in rows from before the column, read as TEMPORARY)
 
     @ManyToOne      //@ManyToOne as many Url mappings can be associated with 1 user. (as from both sides, so bidirectional) AND as we didn't write 'mappedBy' as we want Urlmappping table to have user_id as foreign key column.
     @JoinColumn(name = "user_id")   //@Join Column is used to specify the name of the foreign key column in the database (must match the actual column name)
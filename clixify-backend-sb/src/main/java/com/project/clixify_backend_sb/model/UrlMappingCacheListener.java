@@ -0,0 +1,51 @@
+package com.project.clixify_backend_sb.model;
+
+/*
+JPA entity listener for 'UrlMapping' which evicts the redirect cache entry (and removes the link from the redirect index) whenever a mapping
+is updated or deleted through JPA, so that a changed original URL is never served from the cache or the index.
+Spring Boot registers Spring's bean container with Hibernate, so Hibernate creates this listener through Spring and the constructor injection below works.
+The RedirectIndex is looked up lazily (ObjectProvider), as it needs UrlMappingRepository and with that the EntityManagerFactory that creates this listener.
+Both run when Hibernate flushes the change, i.e. before the commit, so a redirect loading the link in between still reads the old row and
+puts it back. Inside a transaction both are therefore done again after the commit (the index removal here, the cache in RedirectCache.invalidate()).
+Note: the bulk JPQL 'UPDATE' used to bump the click count does not trigger this listener, which is what we want as click counts are not part of the cached data.
+*/
+
+import com.project.clixify_backend_sb.service.RedirectCache;
+import com.project.clixify_backend_sb.service.RedirectIndex;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class UrlMappingCacheListener
+{
+    private final RedirectCache redirectCache;
+    private final ObjectProvider<RedirectIndex> redirectIndex;
+
+    public UrlMappingCacheListener(RedirectCache redirectCache, ObjectProvider<RedirectIndex> redirectIndex)
+    {
+        this.redirectCache = redirectCache;
+        this.redirectIndex = redirectIndex;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void evict(UrlMapping urlMapping)
+    {
+        String shortUrl = urlMapping.getShortUrl();
+        redirectIndex.getObject().remove(shortUrl);      //first the index, so the cache can't be reloaded from the old index entry
+        if(TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    redirectIndex.getObject().remove(shortUrl);      //registered before the cache's own afterCommit, so it runs first again
+                }
+            });
+        }
+        redirectCache.invalidate(shortUrl);
+    }
+}
@@ -27,7 +27,7 @@ public class  User
     private String password;
     private String role = "ROLE_USER";
 
-    @OneToMany              //@OneToMany annotation as 1 user can have multiple URL mappings. AND
-    @JoinColumn(name = "uMapId")       //@JoinColumn annotation is used to specify the foreign key column name in the current table
+    @OneToMany(mappedBy = "user")      //@OneToMany annotation as 1 user can have multiple URL mappings. AND 'mappedBy' as the foreign key (user_id) is owned by the 'user' field of UrlMapping.
+                                       //(The old @JoinColumn(name = "uMapId") made Hibernate generate a foreign key from url_mappings.u_map_id to users.user_id, see fixes/database/Foreign_Key_Constraint_Fix.md)
     private List<UrlMapping> urlMappings;       //as @OneToMany means 1 user will have List of URL mappings.
 }
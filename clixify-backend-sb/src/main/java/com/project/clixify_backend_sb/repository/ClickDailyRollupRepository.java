@@ -0,0 +1,33 @@
+package com.project.clixify_backend_sb.repository;
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import com.project.clixify_backend_sb.model.ClickDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ClickDailyRollupRepository extends JpaRepository<ClickDailyRollup, ClickDailyRollup.RollupId>      //Repository for the per-day click rollups, the id type is the composite key class of the entity.
+{
+    //Returns one row per day (that had clicks) for the given URL mapping, so the cost depends on the number of days and not on the number of clicks.
+    @Query("select r from ClickDailyRollup r where r.uMapId = :uMapId and r.clickDay between :startDay and :endDay order by r.clickDay")
+    List<ClickDailyRollup> findByUrlMappingIdAndDayRange(@Param("uMapId") Long uMapId, @Param("startDay") LocalDate startDay, @Param("endDay") LocalDate endDay);
+
+    //Clicks per day across all URL mappings of one user, from the rollups (used by ClickHistory for the days whose raw clicks were downsampled).
+    @Query("select r.clickDay as clickDate, sum(r.clickCount) as clickCount from ClickDailyRollup r join UrlMapping u on u.uMapId = r.uMapId " +
+           "where u.user.userId = :userId and r.clickDay between :startDay and :endDay group by r.clickDay order by r.clickDay")
+    List<DailyClickCount> countClicksPerDayByUser(@Param("userId") Long userId, @Param("startDay") LocalDate startDay, @Param("endDay") LocalDate endDay);
+
+    //One-off rebuild of the rollups from the raw click events, used to fill the table for clicks that were recorded before the rollups existed.
+    @Modifying
+    @Transactional
+    @Query(value = "insert into click_daily_rollups (u_map_id, click_day, click_count) " +
+                   "select u_map_id, cast(click_date as date), count(*) from click_events group by u_map_id, cast(click_date as date)", nativeQuery = true)
+    int backfillFromClickEvents();
+}
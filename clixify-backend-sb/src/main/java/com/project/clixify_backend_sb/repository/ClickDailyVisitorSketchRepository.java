@@ -0,0 +1,23 @@
+package com.project.clixify_backend_sb.repository;
+
+import com.project.clixify_backend_sb.model.ClickDailyVisitorSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ClickDailyVisitorSketchRepository extends JpaRepository<ClickDailyVisitorSketch, ClickDailyVisitorSketch.SketchId>      //Repository for the per-day unique visitor sketches (written by UniqueVisitorCounter with JDBC).
+{
+    //The sketches of one URL mapping between two days (both inclusive), one row per day that had visitors.
+    @Query("select s from ClickDailyVisitorSketch s where s.uMapId = :uMapId and s.clickDay between :startDay and :endDay order by s.clickDay")
+    List<ClickDailyVisitorSketch> findByUrlMappingIdAndDayRange(@Param("uMapId") Long uMapId, @Param("startDay") LocalDate startDay, @Param("endDay") LocalDate endDay);
+
+    //The sketches of all URL mappings of one user between two days (both inclusive), merged per day by the caller.
+    @Query("select s from ClickDailyVisitorSketch s where s.uMapId in (select u.uMapId from UrlMapping u where u.user.userId = :userId) " +
+           "and s.clickDay between :startDay and :endDay")
+    List<ClickDailyVisitorSketch> findByUserIdAndDayRange(@Param("userId") Long userId, @Param("startDay") LocalDate startDay, @Param("endDay") LocalDate endDay);
+}
@@ -1,9 +1,12 @@
 package com.project.clixify_backend_sb.repository;
 
 
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
 import com.project.clixify_backend_sb.model.ClickEvent;
 import com.project.clixify_backend_sb.model.UrlMapping;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
@@ -21,4 +24,18 @@ public interface ClickEventRepository extends JpaRepository<ClickEvent, Long>
 
     List<ClickEvent> findByUrlMappingInAndClickDateBetween(List<UrlMapping> urlMappings, LocalDateTime startDate, LocalDateTime endDate);       //This method will be used to show the total clicks of all the URLs that the specific user(whose urlMappings has been passed) has got and return List of ClickEvent objects in response which will have total clicks of all the URLs.
 
+    //AGGREGATION QUERIES: the date bucketing (cast to a date) and the counting (GROUP BY) are done by the database, so only one small row per day comes back instead of every click event.
+
+    //Clicks per day of one URL mapping, used by the per-URL analytics when the requested range does not cover whole days (whole days are answered from the daily rollups).
+    @Query("select cast(c.clickDate as LocalDate) as clickDate, count(c) as clickCount from ClickEvent c " +
+           "where c.urlMapping.uMapId = :uMapId and c.clickDate between :startDate and :endDate " +
+           "group by cast(c.clickDate as LocalDate) order by cast(c.clickDate as LocalDate)")
+    List<DailyClickCount> countClicksPerDayByUrlMapping(@Param("uMapId") Long uMapId, @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    //Clicks per day across all URL mappings of one user. It filters on the user_id column of url_mappings directly, so there's no need to load the user's UrlMapping entities first to build an IN list.
+    @Query("select cast(c.clickDate as LocalDate) as clickDate, count(c) as clickCount from ClickEvent c " +
+           "where c.urlMapping.user.userId = :userId and c.clickDate between :startDate and :endDate " +
+           "group by cast(c.clickDate as LocalDate) order by cast(c.clickDate as LocalDate)")
+    List<DailyClickCount> countClicksPerDayByUser(@Param("userId") Long userId, @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
 }
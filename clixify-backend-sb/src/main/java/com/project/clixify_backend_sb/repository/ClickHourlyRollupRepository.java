@@ -0,0 +1,18 @@
+package com.project.clixify_backend_sb.repository;
+
+import com.project.clixify_backend_sb.model.ClickHourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ClickHourlyRollupRepository extends JpaRepository<ClickHourlyRollup, ClickHourlyRollup.RollupId>       //Repository for the hourly rollups (written by ClickRetention with JDBC).
+{
+    //The hours (both inclusive) of one URL mapping that had clicks, summed up per day by ClickHistory.
+    @Query("select r from ClickHourlyRollup r where r.uMapId = :uMapId and r.clickHour between :startHour and :endHour order by r.clickHour")
+    List<ClickHourlyRollup> findByUrlMappingIdAndHourRange(@Param("uMapId") Long uMapId, @Param("startHour") LocalDateTime startHour, @Param("endHour") LocalDateTime endHour);
+}
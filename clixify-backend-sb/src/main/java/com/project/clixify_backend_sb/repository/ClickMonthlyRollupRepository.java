@@ -0,0 +1,25 @@
+package com.project.clixify_backend_sb.repository;
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import com.project.clixify_backend_sb.model.ClickMonthlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ClickMonthlyRollupRepository extends JpaRepository<ClickMonthlyRollup, ClickMonthlyRollup.RollupId>    //Repository for the monthly rollups (written by ClickRetention with JDBC).
+{
+    //Clicks per month of one URL mapping, for the months starting between the two days (both inclusive). The month's first day is returned as the 'clickDate'.
+    @Query("select r.clickMonth as clickDate, r.clickCount as clickCount from ClickMonthlyRollup r " +
+           "where r.uMapId = :uMapId and r.clickMonth between :startMonth and :endMonth order by r.clickMonth")
+    List<DailyClickCount> countClicksPerMonth(@Param("uMapId") Long uMapId, @Param("startMonth") LocalDate startMonth, @Param("endMonth") LocalDate endMonth);
+
+    //Clicks per month across all URL mappings of one user, like countClicksPerMonth.
+    @Query("select r.clickMonth as clickDate, sum(r.clickCount) as clickCount from ClickMonthlyRollup r join UrlMapping u on u.uMapId = r.uMapId " +
+           "where u.user.userId = :userId and r.clickMonth between :startMonth and :endMonth group by r.clickMonth order by r.clickMonth")
+    List<DailyClickCount> countClicksPerMonthByUser(@Param("userId") Long userId, @Param("startMonth") LocalDate startMonth, @Param("endMonth") LocalDate endMonth);
+}
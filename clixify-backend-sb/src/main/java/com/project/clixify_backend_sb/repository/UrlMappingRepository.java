@@ -1,11 +1,26 @@
 package com.project.clixify_backend_sb.repository;
 
+import com.project.clixify_backend_sb.dtos.IndexedRedirectTarget;
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import com.project.clixify_backend_sb.dtos.UrlMappingRow;
 import com.project.clixify_backend_sb.model.UrlMapping;
 import com.project.clixify_backend_sb.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 //We are creating a custom repository interface for UrlMapping entity to perform database operations.
 @Repository          //Marking the interface with the @Repository annotation to indicate that it is a Spring Managed Repository.
@@ -15,5 +30,89 @@ public interface UrlMappingRepository extends JpaRepository<UrlMapping, Long>
     UrlMapping findByShortUrl(String shortUrl);     //To fetch the UrlMapping object from database with the help of their short URL, this UrlMapping object contains the original URL as well, so we call this method (through urlMappingRepository object which was injected) in UrlMappingService's getOriginalUrl(String shortUrl) method,
                                                     // which inturn is called in RedirectController class for fetching the Original URL mapped to passed short URL, and this findByShortUrl(String shortUrl) method returns an object of 'UrlMapping', from which we extract the original URL in RestController's redirect() method and then pass the original in HttpHeaders and thus user gets redirected to Original URL, when it hits the short URL.
     List<UrlMapping> findByUser(User usr);      //To get the all the URL mappings of a particular user from the database.
+
+    //Keyset pages of one user's URL list, one pair of queries per UrlMappingSort: the first page, and the page after the (sort value, id) of the previous page's last row.
+    //Only the listed columns are selected (no entity, no join to the user), and the user_id indexes of UrlMapping let the database read just 'limit' rows
+    //in index order however many URLs the user owns, where an OFFSET would read and skip every row of the pages before.
+    @Query("select new com.project.clixify_backend_sb.dtos.UrlMappingRow(u.uMapId, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, u.redirectMode) from UrlMapping u " +
+            "where u.user.userId = :userId order by u.createdDate desc, u.uMapId desc")
+    List<UrlMappingRow> findNewestByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("select new com.project.clixify_backend_sb.dtos.UrlMappingRow(u.uMapId, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, u.redirectMode) from UrlMapping u " +
+            "where u.user.userId = :userId and (u.createdDate < :createdDate or (u.createdDate = :createdDate and u.uMapId < :id)) " +
+            "order by u.createdDate desc, u.uMapId desc")
+    List<UrlMappingRow> findNewestByUserIdAfter(@Param("userId") Long userId, @Param("createdDate") LocalDateTime createdDate, @Param("id") Long id, Limit limit);
+
+    @Query("select new com.project.clixify_backend_sb.dtos.UrlMappingRow(u.uMapId, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, u.redirectMode) from UrlMapping u " +
+            "where u.user.userId = :userId order by u.createdDate, u.uMapId")
+    List<UrlMappingRow> findOldestByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("select new com.project.clixify_backend_sb.dtos.UrlMappingRow(u.uMapId, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, u.redirectMode) from UrlMapping u " +
+            "where u.user.userId = :userId and (u.createdDate > :createdDate or (u.createdDate = :createdDate and u.uMapId > :id)) " +
+            "order by u.createdDate, u.uMapId")
+    List<UrlMappingRow> findOldestByUserIdAfter(@Param("userId") Long userId, @Param("createdDate") LocalDateTime createdDate, @Param("id") Long id, Limit limit);
+
+    @Query("select new com.project.clixify_backend_sb.dtos.UrlMappingRow(u.uMapId, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, u.redirectMode) from UrlMapping u " +
+            "where u.user.userId = :userId order by u.clickCount desc, u.uMapId desc")
+    List<UrlMappingRow> findMostClickedByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("select new com.project.clixify_backend_sb.dtos.UrlMappingRow(u.uMapId, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, u.redirectMode) from UrlMapping u " +
+            "where u.user.userId = :userId and (u.clickCount < :clickCount or (u.clickCount = :clickCount and u.uMapId < :id)) " +
+            "order by u.clickCount desc, u.uMapId desc")
+    List<UrlMappingRow> findMostClickedByUserIdAfter(@Param("userId") Long userId, @Param("clickCount") int clickCount, @Param("id") Long id, Limit limit);
+
+    //Ids of all URL mappings of one user, used by the analytics of SegmentedFileClickStore (the click log has no user column to join on).
+    @Query("select u.uMapId from UrlMapping u where u.user.userId = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    //The candidates of one user's trending links (see UrlMappingService.getTrendingUrlsByUser): the ids of the user's most clicked and newest links,
+    //'limit' rows each read in the order of a user_id index, and which of the given links (the globally tracked ones) are the user's.
+    @Query("select u.uMapId from UrlMapping u where u.user.userId = :userId order by u.clickCount desc, u.uMapId desc")
+    List<Long> findMostClickedIdsByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("select u.uMapId from UrlMapping u where u.user.userId = :userId order by u.createdDate desc, u.uMapId desc")
+    List<Long> findNewestIdsByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("select u.uMapId from UrlMapping u where u.user.userId = :userId and u.uMapId in :ids")
+    List<Long> findIdsByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    //The click counts behind the ETags of the analytics (see UrlMappingService.getClickEventVersion): one row by primary key, and a sum over the user's rows of idx_url_mappings_user_clicks.
+    @Query("select u.clickCount from UrlMapping u where u.uMapId = :id")
+    Integer findClickCountById(@Param("id") Long id);
+
+    @Query("select coalesce(sum(u.clickCount), 0) from UrlMapping u where u.user.userId = :userId")
+    long sumClickCountByUserId(@Param("userId") Long userId);
+
+    //Projection query used by the redirect path: selects only the id, original URL and redirect mode instead of loading the whole 'UrlMapping' entity.
+    //Read-only, so it is answered by a read replica when they are configured (see config/ReadReplicaConfig).
+    @Transactional(readOnly = true)
+    @Query("select new com.project.clixify_backend_sb.dtos.RedirectTarget(u.uMapId, u.originalUrl, u.redirectMode) from UrlMapping u where u.shortUrl = :shortUrl")
+    RedirectTarget findRedirectTargetByShortUrl(@Param("shortUrl") String shortUrl);
+
+    //The same lookup, always on the primary: in a transaction of its own that isn't read-only (a surrounding read-only transaction may already be on a replica).
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("select new com.project.clixify_backend_sb.dtos.RedirectTarget(u.uMapId, u.originalUrl, u.redirectMode) from UrlMapping u where u.shortUrl = :shortUrl")
+    RedirectTarget findRedirectTargetByShortUrlOnPrimary(@Param("shortUrl") String shortUrl);
+
+    //Short codes and original URLs of the given URL mappings (missing ids are left out), used to turn the ids of the trending links into DTOs without loading the entities and their users.
+    @Query("select new com.project.clixify_backend_sb.dtos.IndexedRedirectTarget(u.shortUrl, u.uMapId, u.originalUrl, u.redirectMode) from UrlMapping u where u.uMapId in :ids")
+    List<IndexedRedirectTarget> findRedirectTargetsByIds(@Param("ids") Collection<Long> ids);
+
+    //Streams every short code in the table (only the codes, no entities), used to build the Bloom filter of ShortCodeFilter. Must be called inside a transaction and the stream must be closed.
+    //Note: for MySQL, add 'useCursorFetch=true' to the JDBC URL so the driver fetches the rows in chunks of the fetch size instead of loading the whole result at once.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("select u.shortUrl from UrlMapping u")
+    Stream<String> streamAllShortUrls();
+
+    //Streams the redirect target of every URL mapping, used to build the memory-mapped redirect index of RedirectIndex. Same rules as streamAllShortUrls().
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("select new com.project.clixify_backend_sb.dtos.IndexedRedirectTarget(u.shortUrl, u.uMapId, u.originalUrl, u.redirectMode) from UrlMapping u")
+    Stream<IndexedRedirectTarget> streamAllRedirectTargets();
+
+    //Atomically adds 'delta' to the click count in the database (UPDATE ... SET clickCount = clickCount + delta), so concurrent clicks can't overwrite each other like a read-modify-write would.
+    @Modifying
+    @Transactional
+    @Query("update UrlMapping u set u.clickCount = u.clickCount + :delta where u.uMapId = :id")
+    int incrementClickCount(@Param("id") Long id, @Param("delta") int delta);
     //JPA will take care of the rest and will generate the query to fetch the record from the database.
 }
@@ -2,7 +2,11 @@ package com.project.clixify_backend_sb.repository;
 
 import com.project.clixify_backend_sb.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -12,4 +16,10 @@ public interface UserRepository extends JpaRepository<User, Long>           //Ex
     //METHOD NAME CONVENTION: findBy + Field Name
     //We are adding a method to fetch the User from database with the help of their username, as there is no default method for this in JpaRepository, for which the query will be generated by Spring JPA.
     Optional<User> findByUsername(String username);
+
+    //Replaces the password hash of a user (the rehash after a change of the BCrypt cost), without loading the entity.
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
@@ -0,0 +1,158 @@
+package com.project.clixify_backend_sb.security;
+
+/*
+The PasswordEncoder of the application: BCrypt, with every hash computed on a small pool of its own threads instead of the request thread.
+- BCrypt is CPU work on purpose (tens of milliseconds per login). Computed on the request threads, a burst of logins takes every core and the
+  redirects served by the same JVM wait for one. Here at most 'clixify.auth.hash-threads' hashes (default: half the cores, at least one) run
+  at the same time, however many logins arrive.
+- The request waits for its hash. On Tomcat's default platform threads (server.tomcat.threads.max, 200) every waiting login holds a worker
+  thread that no redirect can use meanwhile, so the waiting is bounded: at most 'clixify.auth.hash-queue' (32) hashes wait for a thread, i.e.
+  logins tie up at most hash-queue + hash-threads workers, and a request gives up after 'clixify.auth.hash-timeout' (PT2S), so a full queue
+  is worked off (32 hashes of ~50 ms on a few threads) well within it. Beyond that the request fails fast with PasswordHashingBusyException
+  (503 + Retry-After, see AuthController) instead of queueing without bound. A hash that timed out is dropped from the queue if it hasn't
+  started yet. In the virtual-threads profile a waiting request only parks its virtual thread, and the queue can be longer.
+- The cost is 'clixify.auth.bcrypt-strength' (log2 rounds, 4-31). upgradeEncoding() is true for hashes of any other cost, so
+  DaoAuthenticationProvider hashes the password again with the configured cost on the next successful login (UserDetailsServiceImpl.updatePassword),
+  whether the cost was raised or lowered. While more than half of the queue is taken the rehash is put off to a later login.
+- Metrics: clixify.auth.hash (timer of the hashing itself, by operation), clixify.auth.hash.queued (gauge), clixify.auth.hash.rejected (counter).
+*/
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder
+{
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final Duration timeout;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile MeterRegistry meterRegistry;       //set in bindTo(), the hashes aren't timed before that
+
+    public BoundedPasswordEncoder(@Value("${clixify.auth.bcrypt-strength:10}") int strength,
+                                  @Value("${clixify.auth.hash-threads:0}") int threads,        //0: half the cores
+                                  @Value("${clixify.auth.hash-queue:32}") int queueCapacity,
+                                  @Value("${clixify.auth.hash-timeout:PT2S}") Duration timeout)
+    {
+        this.bcrypt = new BCryptPasswordEncoder(strength);      //rejects a strength outside 4-31
+        this.strength = strength;
+        this.queueCapacity = queueCapacity;
+        this.timeout = timeout;
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword)
+    {
+        return run("encode", () -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword)
+    {
+        return run("matches", () -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    //True if the hash has another cost than the configured one (and the pool has room for the rehash).
+    @Override
+    public boolean upgradeEncoding(String encodedPassword)
+    {
+        if(encodedPassword == null)
+        {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength && executor.getQueue().size() <= queueCapacity / 2;
+    }
+
+    //Runs the hash on the pool and waits for it, at most 'timeout' (the request thread is blocked meanwhile, see above).
+    private <T> T run(String operation, Callable<T> hash)
+    {
+        Future<T> result;
+        try
+        {
+            result = executor.submit(() -> timed(operation, hash));
+        }
+        catch(RejectedExecutionException e)
+        {
+            rejected.incrementAndGet();
+            throw new PasswordHashingBusyException("Too many password checks in progress");
+        }
+        try
+        {
+            return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        catch(TimeoutException e)
+        {
+            result.cancel(false);       //not started yet: it never will be
+            rejected.incrementAndGet();
+            throw new PasswordHashingBusyException("Password check timed out after " + timeout);
+        }
+        catch(InterruptedException e)
+        {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for the password check");
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof RuntimeException runtimeException)
+            {
+                throw runtimeException;         //e.g. IllegalArgumentException for a null password, as from BCryptPasswordEncoder itself
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> T timed(String operation, Callable<T> hash) throws Exception
+    {
+        MeterRegistry registry = meterRegistry;
+        return registry == null ? hash.call() : Timer.builder("clixify.auth.hash").tag("operation", operation).register(registry).recordCallable(hash);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        this.meterRegistry = registry;
+        Gauge.builder("clixify.auth.hash.queued", executor, pool -> pool.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(registry);
+        FunctionCounter.builder("clixify.auth.hash.rejected", rejected, AtomicLong::get)
+                .description("Logins and registrations rejected because the password hashing pool was busy")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void stop()
+    {
+        executor.shutdownNow();
+    }
+}
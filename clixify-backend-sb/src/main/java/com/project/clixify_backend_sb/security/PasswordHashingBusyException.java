@@ -0,0 +1,12 @@
+package com.project.clixify_backend_sb.security;
+
+//Thrown when a password can't be hashed or checked right now because BoundedPasswordEncoder's queue is full (or the hash waited too long in it).
+//AuthController answers it with 503 and a Retry-After header. A RuntimeException (not an AuthenticationException), so the AuthenticationManager
+//passes it on instead of turning it into a failed login.
+public class PasswordHashingBusyException extends RuntimeException
+{
+    public PasswordHashingBusyException(String message)
+    {
+        super(message);
+    }
+}
@@ -4,17 +4,19 @@ import com.project.clixify_backend_sb.security.jwt.JwtAuthenticationFilter;
 import com.project.clixify_backend_sb.service.UserDetailsServiceImpl;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementPortType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.SingleResultAuthorizationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -25,6 +27,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class WebSecurityConfig
 {
     private UserDetailsServiceImpl userDetailsService;
+    private BoundedPasswordEncoder passwordEncoder;     //BCrypt on a bounded pool of its own threads, with the cost of 'clixify.auth.bcrypt-strength' (see BoundedPasswordEncoder)
 
     //Method to create a @Bean of type 'JwtAuthenticationFilter' which returns the object of type 'JwtAuthenticationFilter'.
     @Bean
@@ -33,13 +36,6 @@ public class WebSecurityConfig
         return new JwtAuthenticationFilter();
     }
 
-    //Method to create a @Bean of type 'PasswordEncoder' which returns the object of type 'BCryptPasswordEncoder'. It is used to encode the password using bcrypt password hashing function.
-    @Bean
-    public PasswordEncoder passwordEncoder()
-    {
-        return new BCryptPasswordEncoder();     //Bcrypt is a secure password hashing function designed to protect passwords by making them computationally expensive to crack. It is based on the Blowfish cipher and incorporates features like salting and adaptive hashing to enhance security. However, it is important to note that bcrypt is a one-way hashing algorithm, meaning it is designed to be irreversible. This makes it impossible to "decode" a bcrypt hash back into the original password.
-    }
-
     //Method to create a @Bean of type 'DaoAuthenticationProvider' which returns the object of type 'DaoAuthenticationProvider'.
     //This DaoAuthenticationProvider is used by 'AuthenticationManager' to authenticate the user, which is the under the hood logic of authenticating the user in service/UserService class.
     @Bean
@@ -47,18 +43,24 @@ public class WebSecurityConfig
     {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();   //Create an object of type 'DaoAuthenticationProvider'.
         authProvider.setUserDetailsService(userDetailsService);     //Set the user details service.
-        authProvider.setPasswordEncoder(passwordEncoder());         //Set the password encoder.
+        authProvider.setPasswordEncoder(passwordEncoder);           //Set the password encoder (the 'PasswordEncoder' bean is the BoundedPasswordEncoder component). Bcrypt is a secure password hashing function designed to protect passwords by making them computationally expensive to crack, it is a one-way hashing algorithm, so a bcrypt hash can't be "decoded" back into the original password.
+        authProvider.setUserDetailsPasswordService(userDetailsService);     //Stores the new hash when the password encoder asks for a rehash after a successful login (the BCrypt cost changed).
         return authProvider;                                    //Return the object of type 'DaoAuthenticationProvider'.
     }
 
     @Bean       //The @Bean annotation is essential for Spring to recognize and use your security configuration. Without it, Spring Security will use its default configuration, which includes CSRF protection.
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception
+    //The actuator endpoints are served on 'management.server.port' (9091 by default, see clixify-metrics.properties), which only Prometheus and the health checks
+    //should be able to reach. If it's set to the public port (or left out), the Prometheus scrape needs an admin token like any other admin endpoint.
+    public SecurityFilterChain filterChain(HttpSecurity http, Environment environment) throws Exception
     {
+        boolean separateManagementPort = ManagementPortType.get(environment) != ManagementPortType.SAME;       //DIFFERENT, or DISABLED (-1: no actuator over HTTP at all)
         http.csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()    //Allow all requests from '/api/auth/**' endpoint.
                         .requestMatchers("/api/url/**").authenticated()     //Allow authenticated requests from '/api/url/**' endpoint.
                         .requestMatchers("/{shortUrl}").permitAll()     //Allow all requests from '/{shortUrl}' endpoint.
+                        .requestMatchers("/actuator/health").permitAll()        //Health checks (only the status, no details), no other actuator endpoint than these two is exposed.
+                        .requestMatchers("/actuator/prometheus").access(separateManagementPort ? SingleResultAuthorizationManager.permitAll() : AuthorityAuthorizationManager.hasRole("ADMIN"))   //The Prometheus scrape (see config/MetricsConfig)
                         .anyRequest().authenticated()       //Allow authenticated requests from any other endpoint.
                 );
 
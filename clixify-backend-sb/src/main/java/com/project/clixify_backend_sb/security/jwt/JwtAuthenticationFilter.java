@@ -1,10 +1,10 @@
 package com.project.clixify_backend_sb.security.jwt;
 
-import com.project.clixify_backend_sb.service.UserDetailsServiceImpl;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,15 +15,13 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+@Slf4j
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter       //JwtAuthenticationFilter' extends 'OncePerRequestFilter' to make sure each request is processed only once and checks the validity of the token for each request.
 {
     @Autowired
     private JwtUtils jwtUtils;      //Injected the 'JwtUtils' bean to use its methods for extracting the JWT token from the Authorization Header of the incoming Request and validating it.
 
-    @Autowired
-    private UserDetailsServiceImpl userDetailsServiceImpl;  //we use 'UserDetailsServiceImpl' instead of 'UserDetailsService' as we have implemented our own 'UserDetailsServiceImpl' class for fetching user details from the database using 'username' (with the help of 'UserRepository')
-
     @Override
     protected void doFilterInternal(        //'doFilterInternal' method (from 'OncePerRequestFilter' class) is overridden to implement the logic for filtering the incoming requests.
             HttpServletRequest request,
@@ -35,14 +33,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter       //JwtAut
             //Step 1: Extract/get JWT Token From the Authorization Header of the incoming Request
             String jwt = jwtUtils.getJwtFromHeader(request);
 
-            //Step 2: If there is token, Validate the JWT Token
-            if(jwt != null && jwtUtils.validateToken(jwt))
+            //Step 2: If there is token, Validate the JWT Token and build the user details from its claims (username and roles) in a single verification.
+            //Tokens that were already verified are answered from a cache in JwtUtils, and we don't load the user from the database as everything we need is in the signed token.
+            if(jwt != null)
             {
-                //Step 3: If token is Valid, extract/get username from it and load corresponding User Details from database using UserDetailsService.
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                UserDetails userDetails = userDetailsServiceImpl.loadUserByUsername(username);      //In 'UserDetailsServiceImpl', we override the 'loadUserByUsername' method to load the user details from the database and return the 'User' object as 'UserDetailsImpl' object.
+                UserDetails userDetails = jwtUtils.getUserDetailsFromJwtToken(jwt);       //null if the token is invalid or expired
 
-                //Step 4: Set the Authentication in the Security Context Holder (by getting object of 'UsernamePasswordAuthenticationToken' by passing the 'userDetails' and 'null' as credentials)
+                //Step 3: Set the Authentication in the Security Context Holder (by getting object of 'UsernamePasswordAuthenticationToken' by passing the 'userDetails' and 'null' as credentials)
                 if(userDetails != null)
                 {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
@@ -53,10 +50,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter       //JwtAut
         }
         catch(Exception e)
         {
-            e.printStackTrace();
+            //Invalid/expired tokens don't end up here (they are counted in the 'clixify.jwt.failures' metric by JwtUtils), only unexpected errors do.
+            //The request continues unauthenticated, so a protected endpoint answers 401/403.
+            log.error("Could not set the user authentication for {}", request.getRequestURI(), e);
         }
 
-        //Step 5: Continue with the Filter Chain
+        //Step 4: Continue with the Filter Chain
         filterChain.doFilter(request, response);
 
 
@@ -11,4 +11,5 @@ import lombok.Data;
 public class JwtAuthenticationResponse
 {
     private String token;
+    private String refreshToken;    //Trades for a new token (and a new refresh token) at /api/auth/public/refresh without the password, see service/RefreshTokenService
 }
@@ -2,18 +2,33 @@ package com.project.clixify_backend_sb.security.jwt;
 
 //JwtUtils.java is a service layer for JwtAuthenticationFilter.java.
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.project.clixify_backend_sb.service.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
-import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
@@ -26,6 +41,44 @@ public class JwtUtils
     @Value("${jwt.expiration.inMs}")
     private long jwtExpirationMs;
 
+    @Value("${clixify.jwt.verified-cache.max-size:10000}")
+    private long verifiedTokenCacheSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private SecretKey signingKey;       //HMAC key built once from the secret (instead of base64-decoding the secret on every sign/verify)
+    private JwtParser jwtParser;        //Parser (with the verification key set) built once, it is immutable and thread-safe
+
+    //Tokens that already passed signature verification, mapped to the principal built from their claims.
+    //Each entry expires exactly when its token expires, so an expired token is never served from here, and the size is bounded to 'clixify.jwt.verified-cache.max-size'.
+    //Only valid tokens are cached, so random/forged tokens can't be used to fill the cache.
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    private Timer verificationTimer;        //'clixify.jwt.verification', time of the signature verification + building the principal (cache misses only)
+
+    private record VerifiedToken(UserDetailsImpl principal, long expiresAtMillis)
+    {
+    }
+
+    @PostConstruct
+    void init()
+    {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecretKey));     //applying HMAC-SHA-256 on secret key after decoding it into Base 64.
+        jwtParser = Jwts.parser().verifyWith(signingKey).build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedTokenCacheSize)
+                .expireAfter(Expiry.creating((String token, VerifiedToken verified) ->
+                        Duration.ofMillis(Math.max(0, verified.expiresAtMillis() - System.currentTimeMillis()))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt-verified-tokens");      //cache hits are the requests that skipped the verification
+        verificationTimer = Timer.builder("clixify.jwt.verification")
+                .description("Time to verify a JWT that was not in the verified-token cache")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     //Method to extract JWT token from Authorization header of the request (Authorization Header -> Bearer <Token>)
     public String getJwtFromHeader(HttpServletRequest request)
     {
@@ -68,37 +121,64 @@ public class JwtUtils
     */
 
 
-    //Method to generate sign-in key that is used in token generation - The resulting key is used for both signing new tokens and verifying existing ones
-    private Key key()
+    //Returns the sign-in key that is used in token generation - The resulting key is used for both signing new tokens and verifying existing ones (built once in init())
+    private SecretKey key()
     {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecretKey));    //applying HMAC-SHA-256 on secret key after decoding it into Base 64.
+        return signingKey;
     }
 
 
 
-    //Method to parse the JWT token and extract the username from it
-    public String getUserNameFromJwtToken(String token)
+    //Method used by JwtAuthenticationFilter on every authenticated request: verifies the token ONCE and builds the principal straight from its claims
+    //('sub' -> username, 'roles' -> authorities), so there's no second parse and no database lookup of the user.
+    //Tokens seen before are answered from the verified-token cache. Returns null if the token is invalid or expired.
+    public UserDetailsImpl getUserDetailsFromJwtToken(String token)
     {
-        return Jwts.parser().verifyWith((SecretKey) key())          //.parser() as we are parsing the token for extracting username from it
-                .build().parseSignedClaims(token)
-                .getPayload().getSubject();     //extracting 'subject' which has 'username' (as mentioned in method for generating token) from the 'Payload' part of the JWT token.
+        VerifiedToken verified = verifiedTokens.getIfPresent(token);
+        if(verified == null)
+        {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            Claims claims;
+            try
+            {
+                claims = jwtParser.parseSignedClaims(token).getPayload();     //verifies the signature and the expiration
+            }
+            catch(JwtException | IllegalArgumentException e)
+            {
+                sample.stop(verificationTimer);
+                meterRegistry.counter("clixify.jwt.failures", "reason", failureReason(e)).increment();
+                return null;
+            }
+            verified = new VerifiedToken(toUserDetails(claims), claims.getExpiration().getTime());
+            sample.stop(verificationTimer);
+            verifiedTokens.put(token, verified);
+        }
+        return verified.principal();
     }
 
-
-    //Method to validate the JWT token. (returns boolean value)
-    public boolean validateToken(String token)
+    //Tag of the 'clixify.jwt.failures' counter, so expired sessions can be told apart from forged or broken tokens.
+    private static String failureReason(Exception e)
     {
-        try {
-            Jwts.parser().verifyWith((SecretKey) key())         //.parser() as we are parsing the token for validating ti.
-                    .build().parseSignedClaims(token);
-            return true;                                        //returning true if token is valid or else throwing exception.
-        } catch (JwtException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException(e);
-        } catch (Exception e)
+        if(e instanceof ExpiredJwtException)
         {
-            throw new RuntimeException(e);
+            return "expired";
         }
+        if(e instanceof SignatureException)
+        {
+            return "signature";
+        }
+        return "malformed";
+    }
+
+    private UserDetailsImpl toUserDetails(Claims claims)
+    {
+        String roles = claims.get("roles", String.class);        //comma-separated roles, as written by generateToken()
+        List<GrantedAuthority> authorities = roles == null || roles.isBlank()
+                ? List.of()
+                : AuthorityUtils.commaSeparatedStringToAuthorityList(roles);
+        UserDetailsImpl userDetails = new UserDetailsImpl();
+        userDetails.setUsername(claims.getSubject());
+        userDetails.setAuthorities(authorities);
+        return userDetails;
     }
 }
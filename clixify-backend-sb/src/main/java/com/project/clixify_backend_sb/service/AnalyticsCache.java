@@ -0,0 +1,85 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Two-tier cache (see TwoTierCache) of the analytics results (clicks per day of a link, total clicks per day of a user).
+- Only ranges that ended before yesterday are cached: their clicks are all written (clicks are recorded with the time of the click,
+  so only today's and, right after midnight, yesterday's counts still grow). Ranges up to today are always computed.
+- Nothing invalidates these entries, the downsampling of the click retention keeps the totals and old clicks aren't changed otherwise.
+  They live 'clixify.analytics-cache.ttl' (both tiers), at most 'clixify.analytics-cache.max-size' per result type in the in-process tier.
+- version() gives the ETag of a result without computing it, so a dashboard that polls an unchanged range gets a 304 (see UrlMappingController):
+  for a settled range it only changes once a day, otherwise it changes with the click count (which grows with every recorded click) and at
+  least every 'clixify.analytics.etag-window'. The window bounds how long a client can see a stale result: the click count and the click
+  events are written separately (ClickCounter, ClickEventWriter), so a result computed in between can carry the new count but miss the click.
+*/
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.clixify_backend_sb.dtos.ClickEventDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+@Component
+public class AnalyticsCache implements MeterBinder
+{
+    private final TwoTierCache<List<ClickEventDTO>> clicksPerDay;
+    private final TwoTierCache<Map<LocalDate, Long>> clicksPerDayByUser;
+    private final long etagWindowMillis;
+
+    public AnalyticsCache(@Value("${clixify.analytics-cache.max-size:10000}") long maxSize,
+                          @Value("${clixify.analytics-cache.ttl:PT15M}") Duration ttl,
+                          @Value("${clixify.cache.load-lock-ttl:PT2S}") Duration loadLockTtl,
+                          @Value("${clixify.analytics.etag-window:PT1M}") Duration etagWindow,
+                          ObjectProvider<SharedCache> sharedCache,
+                          ObjectMapper objectMapper)
+    {
+        this.etagWindowMillis = Math.max(1, etagWindow.toMillis());
+        SharedCache shared = sharedCache.getIfAvailable();
+        this.clicksPerDay = new TwoTierCache<>("analytics-link", maxSize, ttl, ttl, loadLockTtl, shared, objectMapper,
+                objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, ClickEventDTO.class));
+        this.clicksPerDayByUser = new TwoTierCache<>("analytics-user", maxSize, ttl, ttl, loadLockTtl, shared, objectMapper,
+                objectMapper.getTypeFactory().constructMapType(TreeMap.class, LocalDate.class, Long.class));
+    }
+
+    public List<ClickEventDTO> clicksPerDay(String shortUrl, LocalDateTime start, LocalDateTime end, Supplier<List<ClickEventDTO>> loader)
+    {
+        return isSettled(end.toLocalDate()) ? clicksPerDay.get(shortUrl + "/" + start + "/" + end, key -> loader.get()) : loader.get();
+    }
+
+    public Map<LocalDate, Long> clicksPerDayByUser(Long userId, LocalDate start, LocalDate end, Supplier<Map<LocalDate, Long>> loader)
+    {
+        return isSettled(end) ? clicksPerDayByUser.get(userId + "/" + start + "/" + end, key -> loader.get()) : loader.get();
+    }
+
+    //The version of the result 'key' (the request it answers) ending on 'end', as a hex hash. 'clickCount' is only asked for ranges that aren't settled.
+    public String version(String key, LocalDate end, LongSupplier clickCount)
+    {
+        String state = isSettled(end) ? "settled/" + LocalDate.now() : clickCount.getAsLong() + "/" + System.currentTimeMillis() / etagWindowMillis;
+        return DigestUtils.md5DigestAsHex((key + "/" + state).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isSettled(LocalDate end)
+    {
+        return end.isBefore(LocalDate.now().minusDays(1));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        clicksPerDay.bindTo(registry);
+        clicksPerDayByUser.bindTo(registry);
+    }
+}
@@ -0,0 +1,111 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+In-memory click counters, one per UrlMapping, flushed to the database on a schedule.
+- Each counter is an AtomicLong that a click bumps with one atomic add (getAndIncrement, a single LOCK XADD on x86, no retry loop), so many threads
+  clicking the same viral link don't queue on one database row lock as 'setClickCount(getClickCount() + 1)' + save() did. Not a LongAdder: its
+  striped sum can't be retired atomically (see below).
+- Every 'clixify.click-counter.flush-interval' the accumulated count of each dirty link is written with one atomic 'UPDATE ... SET clickCount = clickCount + ?',
+  so the click count in the database stays accurate (no lost updates) and lags by at most one flush interval.
+- Counters that stayed at zero for a whole flush are removed, so the map only holds recently clicked links. Removing first swaps the 0 for
+  RETIRED (compareAndSet), so a click that got hold of the counter just before either lands first (and the counter stays) or gets a negative
+  value back (RETIRED is Long.MIN_VALUE, still negative after any number of increments) and counts itself on the counter that replaces it:
+  never lost, never counted twice.
+- With sharding each UPDATE goes to the link's shard, and links whose slot is being moved keep their count in memory until the move is over.
+*/
+
+import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class ClickCounter
+{
+    private final UrlMappingRepository urlMappingRepository;
+    private final Shards shards;
+    private static final long RETIRED = Long.MIN_VALUE;        //the value of a counter flush() has removed from the map (negative from then on)
+
+    private final ConcurrentHashMap<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public ClickCounter(UrlMappingRepository urlMappingRepository, Shards shards)
+    {
+        this.urlMappingRepository = urlMappingRepository;
+        this.shards = shards;
+    }
+
+    //Called on the redirect path, only touches memory.
+    public void increment(Long urlMappingId)
+    {
+        while(true)
+        {
+            AtomicLong counter = counters.computeIfAbsent(urlMappingId, id -> new AtomicLong());
+            if(counter.getAndIncrement() >= 0)
+            {
+                return;
+            }
+            //Removed by flush() after we looked it up (it was at zero, so without this click): count it on the counter that replaces it
+        }
+    }
+
+    //Clicks counted in memory for this mapping that have not been flushed yet.
+    public long pendingCount(Long urlMappingId)
+    {
+        AtomicLong counter = counters.get(urlMappingId);
+        long clicks = counter == null ? 0 : counter.get();
+        return clicks < 0 ? 0 : clicks;
+    }
+
+    @Scheduled(fixedDelayString = "${clixify.click-counter.flush-interval:PT5S}")
+    public void flush()
+    {
+        for(Map.Entry<Long, AtomicLong> entry : counters.entrySet())
+        {
+            Long urlMappingId = entry.getKey();
+            AtomicLong counter = entry.getValue();
+            if(shards.isMoving(urlMappingId))
+            {
+                continue;
+            }
+            long delta = counter.get();
+            if(delta == 0)
+            {
+                //Idle since the last flush, drop the counter, unless a click arrived in the meantime (then the compareAndSet fails and we flush it)
+                if(counter.compareAndSet(0, RETIRED))
+                {
+                    counters.remove(urlMappingId, counter);
+                    continue;
+                }
+                delta = counter.get();
+            }
+            if(delta <= 0)
+            {
+                continue;       //a retired (negative) counter is never flushed
+            }
+            try
+            {
+                long clicks = delta;
+                shards.run(shards.shardOf(urlMappingId), () -> urlMappingRepository.incrementClickCount(urlMappingId, Math.toIntExact(clicks)));
+                //Only subtract once the database has the clicks, so pendingCount() + the database value never under-reports while the UPDATE is running.
+                counter.addAndGet(-delta);
+            }
+            catch(DataAccessException e)
+            {
+                log.error("Failed to flush {} clicks for url mapping {}", delta, urlMappingId, e);       //still in the counter, retried on the next flush
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown()
+    {
+        flush();
+    }
+}
@@ -0,0 +1,164 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Monthly RANGE partitions of click_events on MySQL, so the click retention (ClickRetention) drops the raw clicks of whole months with
+ALTER TABLE ... DROP PARTITION (a file removal, no matter how many rows) instead of deleting them row by row. Enable it with
+'clixify.retention.partitioning=true' (needs 'clixify.retention.enabled=true' and the database click store).
+- MySQL only partitions a table by a column of every unique key, so the first run on a shard converts the table once:
+  the foreign key to url_mappings is dropped (partitioned tables can't have foreign keys, model/ClickEvent doesn't ask Hibernate for one),
+  the primary key becomes (click_event_id, click_date) and the table is partitioned by TO_DAYS(click_date), one partition per month from
+  the month of the oldest click on, plus 'pmax' for everything later. The conversion rewrites the table, run it in a quiet hour on a big one.
+  If several instances start it at the same time, the ALTER TABLEs of all but one fail and their retention run stops; the next run finds
+  the table partitioned.
+- Every run of the retention (rotate()) makes sure the months up to 'clixify.retention.partitions-ahead' (3) after the current one have
+  their partition, by splitting the empty 'pmax' (REORGANIZE PARTITION), so new clicks never land in pmax.
+- dropBefore() drops the partitions that end on or before the raw boundary. The days of the boundary's month before it are left to the
+  batched deletes of DatabaseClickStore.dropBefore, which then find only those rows.
+- Partitions are named after their month (p202601 holds January 2026).
+*/
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "clixify.retention.partitioning", havingValue = "true")
+public class ClickEventPartitions
+{
+    static final String FUTURE = "pmax";
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'uuuuMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+
+    public ClickEventPartitions(JdbcTemplate jdbcTemplate,
+                                @Value("${clixify.click-store:database}") String clickStore,
+                                @Value("${clixify.retention.partitions-ahead:3}") int monthsAhead)
+    {
+        if(!"database".equals(clickStore) || monthsAhead < 1)
+        {
+            throw new IllegalArgumentException("clixify.retention.partitioning needs clixify.click-store=database and partitions-ahead >= 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    //Partitions the click_events table of the current shard if it isn't yet, then adds the partitions of the coming months.
+    public void rotate(LocalDate today)
+    {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if(!"MySQL".equals(database))
+        {
+            throw new IllegalStateException("clixify.retention.partitioning needs MySQL, the database is " + database);
+        }
+        List<String> partitions = partitions();
+        if(partitions.isEmpty())
+        {
+            partition(today);
+            return;
+        }
+        String reorganize = reorganizeFuture(partitions, today, monthsAhead);
+        if(reorganize != null)
+        {
+            jdbcTemplate.execute(reorganize);
+            log.info("Added the click_events partitions up to {}", YearMonth.from(today).plusMonths(monthsAhead));
+        }
+    }
+
+    //Drops the partitions of the current shard that only hold clicks from before 'day'.
+    public void dropBefore(LocalDate day)
+    {
+        String drop = dropPartitions(partitions(), day);
+        if(drop != null)
+        {
+            jdbcTemplate.execute(drop);
+            log.info("Dropped the click_events partitions before {}", day);
+        }
+    }
+
+    private List<String> partitions()
+    {
+        return jdbcTemplate.queryForList("select partition_name from information_schema.partitions where table_schema = database() " +
+                                         "and table_name = 'click_events' and partition_name is not null order by partition_ordinal_position", String.class);
+    }
+
+    //The one-time conversion, see above.
+    private void partition(LocalDate today)
+    {
+        for(String foreignKey : jdbcTemplate.queryForList("select constraint_name from information_schema.referential_constraints " +
+                                                          "where constraint_schema = database() and table_name = 'click_events'", String.class))
+        {
+            jdbcTemplate.execute("alter table click_events drop foreign key " + foreignKey);
+        }
+        jdbcTemplate.execute("alter table click_events modify click_date datetime(6) not null, drop primary key, add primary key (click_event_id, click_date)");
+        LocalDateTime first = jdbcTemplate.queryForObject("select min(click_date) from click_events", LocalDateTime.class);
+        jdbcTemplate.execute(partitionTable(first == null ? today : first.toLocalDate(), today, monthsAhead));
+        log.info("Partitioned click_events by month");
+    }
+
+    //The statements are built from the partition names alone (package-private for the tests).
+    static String partitionTable(LocalDate first, LocalDate today, int monthsAhead)
+    {
+        List<YearMonth> months = new ArrayList<>();
+        for(YearMonth month = YearMonth.from(first), last = YearMonth.from(today).plusMonths(monthsAhead); !month.isAfter(last); month = month.plusMonths(1))
+        {
+            months.add(month);
+        }
+        return "alter table click_events partition by range (to_days(click_date)) " + definitions(months);
+    }
+
+    //Null if the partitions up to 'monthsAhead' after the month of 'today' exist.
+    static String reorganizeFuture(List<String> partitions, LocalDate today, int monthsAhead)
+    {
+        YearMonth newest = monthOf(partitions.get(partitions.size() - 2));     //the last one is pmax
+        List<YearMonth> months = new ArrayList<>();
+        for(YearMonth month = newest.plusMonths(1), last = YearMonth.from(today).plusMonths(monthsAhead); !month.isAfter(last); month = month.plusMonths(1))
+        {
+            months.add(month);
+        }
+        return months.isEmpty() ? null : "alter table click_events reorganize partition " + FUTURE + " into " + definitions(months);
+    }
+
+    //Null if no partition ends on or before 'day'. The newest month partition is always kept, so the table never runs out of month partitions.
+    static String dropPartitions(List<String> partitions, LocalDate day)
+    {
+        StringJoiner dropped = new StringJoiner(", ", "alter table click_events drop partition ", "");
+        dropped.setEmptyValue("");
+        for(String partition : partitions.subList(0, partitions.size() - 2))
+        {
+            if(!monthOf(partition).plusMonths(1).atDay(1).isAfter(day))
+            {
+                dropped.add(partition);
+            }
+        }
+        return dropped.length() == 0 ? null : dropped.toString();
+    }
+
+    private static String definitions(List<YearMonth> months)
+    {
+        StringJoiner definitions = new StringJoiner(", ", "(", ")");
+        for(YearMonth month : months)
+        {
+            definitions.add("partition " + month.format(NAME) + " values less than (to_days('" + month.plusMonths(1).atDay(1) + "'))");
+        }
+        definitions.add("partition " + FUTURE + " values less than maxvalue");
+        return definitions.toString();
+    }
+
+    private static YearMonth monthOf(String partition)
+    {
+        return YearMonth.parse(partition, NAME);
+    }
+}
@@ -0,0 +1,276 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Asynchronous, batched click ingestion.
+- The redirect path only calls record(), which puts a PendingClick into a bounded in-memory queue and returns immediately, so the 302 never waits on MySQL.
+- A single background thread drains the queue and writes the clicks in batches of 'clixify.clicks.batch-size' to the ClickStore
+  (the click_events table by default, see ClickStore). In the same transaction it adds the batch's clicks to the per-day rollups (click_daily_rollups),
+  so the rollups always match the click events.
+- With sharding (see Shards) a batch is split by the shard of the links, one transaction per shard. Clicks on links whose slot is being moved
+  to another shard are held back by the writer until the move is over.
+  (The click_count column of url_mappings is maintained separately by ClickCounter.)
+- When the queue is full, the overflow policy decides what happens:
+    BLOCK - the request thread waits up to 'clixify.clicks.block-timeout' for space (backpressure), and the click is dropped if there is still no space.
+    DROP  - the click is dropped straight away.
+  Dropped clicks are counted, see getDroppedCount().
+- The queue size and the written/dropped/failed clicks are published as the clixify.clicks.* metrics.
+- On shutdown the writer stops accepting clicks and flushes everything still in the queue before the DataSource is closed.
+*/
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class ClickEventWriter implements MeterBinder
+{
+    public enum OverflowPolicy { BLOCK, DROP }
+
+    private static final String UPSERT_DAILY_ROLLUP = "insert into click_daily_rollups (u_map_id, click_day, click_count) values (?, ?, ?) " +
+                                                      "on duplicate key update click_count = click_count + values(click_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClickStore clickStore;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingClick> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration blockTimeout;
+    private final boolean virtualThreads;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+    private final List<PendingClick> held = new ArrayList<>();         //clicks on links of a slot that is being moved (only used by the writer thread)
+
+    public ClickEventWriter(JdbcTemplate jdbcTemplate,
+                            ClickStore clickStore,
+                            Shards shards,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${clixify.clicks.queue-capacity:100000}") int queueCapacity,
+                            @Value("${clixify.clicks.batch-size:500}") int batchSize,
+                            @Value("${clixify.clicks.flush-interval:PT1S}") Duration flushInterval,
+                            @Value("${clixify.clicks.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                            @Value("${clixify.clicks.block-timeout:PT0.05S}") Duration blockTimeout,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clickStore = clickStore;
+        this.shards = shards;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    void start()
+    {
+        running = true;
+        //In the virtual-thread mode (spring.threads.virtual.enabled=true) the writer runs on a virtual thread too, it spends nearly all its time blocked on the queue or on JDBC.
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        worker = builder.name("click-event-writer").start(this::drainLoop);
+    }
+
+    //Hands the click over to the background writer. Returns false if the click was dropped because the queue was full (or the writer is shutting down).
+    public boolean record(PendingClick click)
+    {
+        boolean accepted = false;
+        if(running)
+        {
+            if(overflowPolicy == OverflowPolicy.BLOCK)
+            {
+                try
+                {
+                    accepted = queue.offer(click, blockTimeout.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else
+            {
+                accepted = queue.offer(click);
+            }
+        }
+        if(!accepted)
+        {
+            droppedCount.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    //Background loop: waits up to 'flushInterval' for the first click, then takes whatever else is queued (up to batchSize) and writes it as one batch.
+    //It keeps going after stop() was called until the queue is empty, so nothing accepted before shutdown is lost.
+    private void drainLoop()
+    {
+        List<PendingClick> batch = new ArrayList<>(batchSize);
+        while(running || !queue.isEmpty())
+        {
+            try
+            {
+                PendingClick first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                if(first == null)
+                {
+                    if(!held.isEmpty())
+                    {
+                        write(batch);       //only the held clicks, their slot may be done moving
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+    }
+
+    //Writes one batch (plus the held clicks whose slot is no longer moving) to the shards of its links.
+    private void write(List<PendingClick> batch)
+    {
+        List<PendingClick> clicks = batch;
+        if(shards.count() > 1)
+        {
+            clicks = new ArrayList<>(held.size() + batch.size());
+            List<PendingClick> candidates = new ArrayList<>(held);
+            candidates.addAll(batch);
+            held.clear();
+            for(PendingClick click : candidates)
+            {
+                (shards.isMoving(click.urlMappingId()) ? held : clicks).add(click);
+            }
+        }
+        shards.groupByShard(clicks, PendingClick::urlMappingId).forEach((shard, shardClicks) -> shards.run(shard, () -> writeToShard(shardClicks)));
+    }
+
+    //Writes the clicks of one shard: one rollup upsert per (mapping, day) in the batch plus the clicks themselves into the click store, all in one transaction.
+    //The click store comes last, so if it fails the rollups are rolled back with it.
+    private void writeToShard(List<PendingClick> batch)
+    {
+        if(batch.isEmpty())
+        {
+            return;
+        }
+        Map<DailyKey, Integer> dailyCounts = new HashMap<>();
+        for(PendingClick click : batch)
+        {
+            dailyCounts.merge(new DailyKey(click.urlMappingId(), click.clickDate().toLocalDate()), 1, Integer::sum);
+        }
+        try
+        {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPSERT_DAILY_ROLLUP, new ArrayList<>(dailyCounts.entrySet()), dailyCounts.size(), (ps, daily) -> {
+                    ps.setLong(1, daily.getKey().urlMappingId());
+                    ps.setDate(2, Date.valueOf(daily.getKey().day()));
+                    ps.setLong(3, daily.getValue());
+                });
+                clickStore.append(batch);
+            });
+            writtenCount.addAndGet(batch.size());
+        }
+        catch(DataAccessException | UncheckedIOException e)
+        {
+            failedCount.addAndGet(batch.size());
+            log.error("Failed to write a batch of {} click events", batch.size(), e);
+        }
+    }
+
+    private record DailyKey(Long urlMappingId, LocalDate day)
+    {
+    }
+
+    //Stops accepting new clicks and waits (bounded) for the background thread to flush what is still queued.
+    @PreDestroy
+    void stop() throws InterruptedException
+    {
+        running = false;
+        if(worker != null)
+        {
+            worker.join(Duration.ofSeconds(30));
+        }
+        if(!queue.isEmpty())
+        {
+            log.warn("Shut down with {} click events still queued", queue.size());
+        }
+        if(!held.isEmpty())
+        {
+            log.warn("Shut down with {} click events held back for a slot that is being moved", held.size());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("clixify.clicks.queued", this, ClickEventWriter::getQueuedCount)
+                .description("Clicks accepted but not written yet")
+                .register(registry);
+        FunctionCounter.builder("clixify.clicks.written", this, ClickEventWriter::getWrittenCount).register(registry);
+        FunctionCounter.builder("clixify.clicks.dropped", this, ClickEventWriter::getDroppedCount)
+                .description("Clicks dropped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("clixify.clicks.failed", this, ClickEventWriter::getFailedCount)
+                .description("Clicks lost because their batch failed to write")
+                .register(registry);
+    }
+
+    public int getQueuedCount()
+    {
+        return queue.size();
+    }
+
+    public long getWrittenCount()
+    {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+}
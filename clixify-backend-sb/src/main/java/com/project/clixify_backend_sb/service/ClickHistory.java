@@ -0,0 +1,178 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Clicks per day for the analytics, read from the storage tiers of the click history (see ClickRetention):
+    monthly rollups  before dailyFrom      one entry per month, dated to the first day of the month
+    daily rollups    from dailyFrom on     whole days
+    hourly rollups   from hourlyFrom on    only for ranges starting or ending in the middle of a day, to the hour
+    raw clicks       from rawFrom on       only for such ranges (and the per-user totals, as before the retention), to the millisecond
+Each period is read from exactly one tier, chosen by the boundaries in click_retention_state, so nothing is counted twice or missed while
+the retention job is deleting the rows of a finer tier. As long as the retention never ran (all boundaries null) the reads are the same
+as before: whole days from the daily rollups, everything else from the ClickStore.
+A monthly total can't be split, so a range reaching before dailyFrom must start on the first day of a month there (at midnight) and, if it
+also ends before dailyFrom, end on the last day of a month; other ranges are rejected with a MonthlyClicksRangeException.
+*/
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import com.project.clixify_backend_sb.model.ClickDailyRollup;
+import com.project.clixify_backend_sb.model.ClickHourlyRollup;
+import com.project.clixify_backend_sb.repository.ClickDailyRollupRepository;
+import com.project.clixify_backend_sb.repository.ClickHourlyRollupRepository;
+import com.project.clixify_backend_sb.repository.ClickMonthlyRollupRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+public class ClickHistory
+{
+    private final ClickStore clickStore;
+    private final ClickDailyRollupRepository clickDailyRollupRepository;
+    private final ClickHourlyRollupRepository clickHourlyRollupRepository;
+    private final ClickMonthlyRollupRepository clickMonthlyRollupRepository;
+    private final ClickRetention clickRetention;
+
+    public ClickHistory(ClickStore clickStore,
+                        ClickDailyRollupRepository clickDailyRollupRepository,
+                        ClickHourlyRollupRepository clickHourlyRollupRepository,
+                        ClickMonthlyRollupRepository clickMonthlyRollupRepository,
+                        ClickRetention clickRetention)
+    {
+        this.clickStore = clickStore;
+        this.clickDailyRollupRepository = clickDailyRollupRepository;
+        this.clickHourlyRollupRepository = clickHourlyRollupRepository;
+        this.clickMonthlyRollupRepository = clickMonthlyRollupRepository;
+        this.clickRetention = clickRetention;
+    }
+
+    //Clicks per day (only days with clicks, ordered by day) of one URL mapping between start and end (both inclusive).
+    public Map<LocalDate, Long> clicksPerDay(Long urlMappingId, LocalDateTime start, LocalDateTime end)
+    {
+        ClickRetention.Watermarks watermarks = clickRetention.watermarks();
+        Map<LocalDate, Long> perDay = new TreeMap<>();
+        LocalDate startDay = start.toLocalDate();
+        LocalDate endDay = end.toLocalDate();
+
+        //monthly tier
+        if(watermarks.dailyFrom() != null && startDay.isBefore(watermarks.dailyFrom()))
+        {
+            checkWholeMonths(start.toLocalTime().equals(LocalTime.MIDNIGHT) ? startDay : null,
+                    endDay.isBefore(watermarks.dailyFrom()) && end.toLocalTime().isBefore(LocalTime.of(23, 59, 59)) ? null : endDay, watermarks.dailyFrom());
+            LocalDate lastMonth = earlier(endDay, watermarks.dailyFrom().minusDays(1)).withDayOfMonth(1);
+            for(DailyClickCount monthly : clickMonthlyRollupRepository.countClicksPerMonth(urlMappingId, startDay.withDayOfMonth(1), lastMonth))
+            {
+                perDay.merge(monthly.getClickDate(), monthly.getClickCount(), Long::sum);
+            }
+        }
+        LocalDate dailyStart = later(startDay, watermarks.dailyFrom());
+
+        //A range like 2024-12-01T00:00:00 .. 2024-12-07T23:59:59 covers whole days and can be answered from the daily rollups.
+        if(start.toLocalTime().equals(LocalTime.MIDNIGHT) && !end.toLocalTime().isBefore(LocalTime.of(23, 59, 59)))
+        {
+            addDailyRollups(perDay, urlMappingId, dailyStart, endDay);
+            return perDay;
+        }
+
+        //daily tier: days whose hours are gone are counted as whole days
+        LocalDate hourlyStart = later(dailyStart, watermarks.hourlyFrom());
+        if(dailyStart.isBefore(hourlyStart))
+        {
+            addDailyRollups(perDay, urlMappingId, dailyStart, earlier(endDay, hourlyStart.minusDays(1)));
+        }
+
+        //hourly tier: hours that overlap the range
+        LocalDateTime rawStart = watermarks.rawFrom() == null ? start : later(start, watermarks.rawFrom().atStartOfDay());
+        LocalDateTime hourlyFrom = later(start, hourlyStart.atStartOfDay()).truncatedTo(ChronoUnit.HOURS);
+        if(watermarks.rawFrom() != null && hourlyFrom.isBefore(rawStart))
+        {
+            LocalDateTime hourlyTo = earlier(end, rawStart.minusNanos(1));
+            for(ClickHourlyRollup hourly : clickHourlyRollupRepository.findByUrlMappingIdAndHourRange(urlMappingId, hourlyFrom, hourlyTo))
+            {
+                perDay.merge(hourly.getClickHour().toLocalDate(), hourly.getClickCount(), Long::sum);
+            }
+        }
+
+        //raw tier
+        if(!rawStart.isAfter(end))
+        {
+            for(DailyClickCount daily : clickStore.countClicksPerDay(urlMappingId, rawStart, end))
+            {
+                perDay.merge(daily.getClickDate(), daily.getClickCount(), Long::sum);
+            }
+        }
+        return perDay;
+    }
+
+    //Clicks per day (only days with clicks, ordered by day) across all URL mappings of one user between two days (both inclusive).
+    public Map<LocalDate, Long> clicksPerDayByUser(Long userId, LocalDate start, LocalDate end)
+    {
+        ClickRetention.Watermarks watermarks = clickRetention.watermarks();
+        Map<LocalDate, Long> perDay = new TreeMap<>();
+        if(watermarks.dailyFrom() != null && start.isBefore(watermarks.dailyFrom()))
+        {
+            checkWholeMonths(start, end, watermarks.dailyFrom());
+            LocalDate lastMonth = earlier(end, watermarks.dailyFrom().minusDays(1)).withDayOfMonth(1);
+            for(DailyClickCount monthly : clickMonthlyRollupRepository.countClicksPerMonthByUser(userId, start.withDayOfMonth(1), lastMonth))
+            {
+                perDay.merge(monthly.getClickDate(), monthly.getClickCount(), Long::sum);
+            }
+        }
+        LocalDate dailyStart = later(start, watermarks.dailyFrom());
+        LocalDate rawStart = later(dailyStart, watermarks.rawFrom());
+        if(dailyStart.isBefore(rawStart))
+        {
+            for(DailyClickCount daily : clickDailyRollupRepository.countClicksPerDayByUser(userId, dailyStart, earlier(end, rawStart.minusDays(1))))
+            {
+                perDay.merge(daily.getClickDate(), daily.getClickCount(), Long::sum);
+            }
+        }
+        if(!rawStart.isAfter(end))
+        {
+            for(DailyClickCount daily : clickStore.countClicksPerDayByUser(userId, rawStart.atStartOfDay(), end.plusDays(1).atStartOfDay()))
+            {
+                perDay.merge(daily.getClickDate(), daily.getClickCount(), Long::sum);
+            }
+        }
+        return perDay;
+    }
+
+    //A range starting before dailyFrom covers whole months of the monthly tier: it starts on the first day of a month and, unless it reaches dailyFrom
+    //(always the first day of a month), ends on the last day of a month. A null start or end day is one that starts or ends in the middle of a day of the monthly tier.
+    private static void checkWholeMonths(LocalDate startDay, LocalDate endDay, LocalDate dailyFrom)
+    {
+        boolean wholeStart = startDay != null && startDay.getDayOfMonth() == 1;
+        boolean wholeEnd = endDay != null && (!endDay.isBefore(dailyFrom) || endDay.equals(endDay.withDayOfMonth(endDay.lengthOfMonth())));
+        if(!wholeStart || !wholeEnd)
+        {
+            throw new MonthlyClicksRangeException("Clicks before " + dailyFrom + " are only kept per month, a range reaching before that day must start on the first day of a month"
+                    + " and end on the last day of a month or later");
+        }
+    }
+
+    private void addDailyRollups(Map<LocalDate, Long> perDay, Long urlMappingId, LocalDate startDay, LocalDate endDay)
+    {
+        if(!startDay.isAfter(endDay))
+        {
+            for(ClickDailyRollup rollup : clickDailyRollupRepository.findByUrlMappingIdAndDayRange(urlMappingId, startDay, endDay))
+            {
+                perDay.merge(rollup.getClickDay(), rollup.getClickCount(), Long::sum);
+            }
+        }
+    }
+
+    //The later of the two (a null boundary doesn't restrict anything).
+    private static <T extends Comparable<? super T>> T later(T value, T boundary)
+    {
+        return boundary != null && boundary.compareTo(value) > 0 ? boundary : value;
+    }
+
+    private static <T extends Comparable<? super T>> T earlier(T value, T other)
+    {
+        return other.compareTo(value) < 0 ? other : value;
+    }
+}
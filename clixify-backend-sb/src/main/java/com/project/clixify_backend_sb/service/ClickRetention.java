@@ -0,0 +1,289 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Retention of the click history: old clicks are downsampled into coarser tiers and the finer rows are dropped, so the click tables (and their
+indexes) stop growing with the age of the service. Enable it with 'clixify.retention.enabled=true'. Every 'clixify.retention.interval':
+1. raw -> hourly: each day older than 'clixify.retention.raw-age' (P30D) is counted per (link, hour) from the ClickStore into
+   click_hourly_rollups, then the raw clicks of those days are dropped (click_events rows in batches of 'clixify.retention.batch-size',
+   or the day files of the segmented click log).
+2. hourly -> daily: hourly rollups older than 'clixify.retention.hourly-age' (P180D) are dropped, the daily rollups (written with every click
+   since the rollups exist) already hold their totals.
+3. daily -> monthly: whole months older than 'clixify.retention.daily-age' (P2Y) are summed up per link into click_monthly_rollups, then their
+   daily rollups are dropped.
+- The boundary of each tier (see model/ClickRetentionState) is moved in the same transaction that writes the downsampled rows, one day or month
+  per transaction, under a row lock on the state, so several instances can run the job at the same time. ClickHistory reads every period
+  from exactly one tier according to the boundaries, so the analytics stay correct while the old rows are deleted.
+- Downsampled periods keep their totals; only the time precision of the analytics gets coarser: ranges starting or ending in the middle of a
+  day are answered to the hour for clicks older than raw-age, to the day for clicks older than hourly-age, and months older than daily-age
+  are reported as one entry.
+- Unique visitor sketches (click_daily_visitor_sketches) are not touched.
+- With sharding (see Shards) every shard has its own click_retention_state and the steps run on one shard after the other. The segmented
+  click log holds the clicks of all shards: each shard downsamples only its own links, and a day is dropped once every shard has downsampled it.
+- Raw clicks in click_events are deleted in batches, each a short transaction found through the click date index. On MySQL, with
+  'clixify.retention.partitioning=true', the table is RANGE-partitioned by month instead and whole months are dropped as partitions before
+  the batches delete the rest (see ClickEventPartitions, which also adds the partitions of the coming months on every run).
+*/
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Component
+public class ClickRetention
+{
+    private static final String SELECT_WATERMARKS = "select raw_from, hourly_from, daily_from from click_retention_state where id = 1";
+
+    private final ClickStore clickStore;
+    private final ObjectProvider<ClickEventPartitions> partitions;     //only with 'clixify.retention.partitioning=true'
+    private final Shards shards;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Period rawAge;
+    private final Period hourlyAge;
+    private final Period dailyAge;
+    private final int batchSize;
+
+    //The tier boundaries: raw clicks from 'rawFrom' on, hourly rollups from 'hourlyFrom' on, daily rollups from 'dailyFrom' on (null: not moved yet, the finer tier holds everything).
+    public record Watermarks(LocalDate rawFrom, LocalDate hourlyFrom, LocalDate dailyFrom)
+    {
+    }
+
+    public ClickRetention(ClickStore clickStore,
+                          ObjectProvider<ClickEventPartitions> partitions,
+                          Shards shards,
+                          JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${clixify.retention.enabled:false}") boolean enabled,
+                          @Value("${clixify.retention.raw-age:P30D}") Period rawAge,
+                          @Value("${clixify.retention.hourly-age:P180D}") Period hourlyAge,
+                          @Value("${clixify.retention.daily-age:P2Y}") Period dailyAge,
+                          @Value("${clixify.retention.batch-size:10000}") int batchSize)
+    {
+        LocalDate reference = LocalDate.of(2000, 1, 1);
+        if(!reference.minus(rawAge).isBefore(reference) || reference.minus(hourlyAge).isAfter(reference.minus(rawAge))
+                || reference.minus(dailyAge).isAfter(reference.minus(hourlyAge)) || batchSize <= 0)
+        {
+            throw new IllegalArgumentException("clixify.retention needs 0 < raw-age <= hourly-age <= daily-age and batch-size > 0");
+        }
+        this.clickStore = clickStore;
+        this.partitions = partitions;
+        this.shards = shards;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.rawAge = rawAge;
+        this.hourlyAge = hourlyAge;
+        this.dailyAge = dailyAge;
+        this.batchSize = batchSize;
+    }
+
+    //The current tier boundaries (all null if the job never ran).
+    public Watermarks watermarks()
+    {
+        List<Watermarks> rows = jdbcTemplate.query(SELECT_WATERMARKS, (rs, row) -> new Watermarks(
+                rs.getObject(1, LocalDate.class), rs.getObject(2, LocalDate.class), rs.getObject(3, LocalDate.class)));
+        return rows.isEmpty() ? new Watermarks(null, null, null) : rows.get(0);
+    }
+
+    //Must be called inside a transaction: the other instances wait for it before they can move a boundary.
+    private Watermarks lockWatermarks()
+    {
+        return jdbcTemplate.queryForObject(SELECT_WATERMARKS + " for update", (rs, row) -> new Watermarks(
+                rs.getObject(1, LocalDate.class), rs.getObject(2, LocalDate.class), rs.getObject(3, LocalDate.class)));
+    }
+
+    @Scheduled(fixedDelayString = "${clixify.retention.interval:PT1H}", initialDelayString = "${clixify.retention.interval:PT1H}")
+    public void run()
+    {
+        if(!enabled)
+        {
+            return;
+        }
+        try
+        {
+            retain(LocalDate.now());
+        }
+        catch(DataAccessException | UncheckedIOException e)
+        {
+            log.error("Click retention failed, it continues where it stopped on the next run", e);
+        }
+    }
+
+    //Runs the three steps for 'today' on every shard (package-private for the tests).
+    void retain(LocalDate today)
+    {
+        List<LocalDate> rawFroms = new ArrayList<>(shards.count());
+        shards.forEach(shard -> {
+            createStateRow();
+            partitions.ifAvailable(clickEventPartitions -> clickEventPartitions.rotate(today));
+            rawFroms.add(downsampleRawClicks(today.minus(rawAge)));
+        });
+        if(!clickStore.isInDatabase() && !rawFroms.contains(null))
+        {
+            LocalDate rawFrom = rawFroms.stream().min(LocalDate::compareTo).orElseThrow();
+            clickStore.dropBefore(rawFrom, batchSize);
+            log.info("Raw clicks are kept from {} on", rawFrom);
+        }
+        shards.forEach(shard -> {
+            dropHourlyRollups(today.minus(hourlyAge));
+            downsampleDailyRollups(today.minus(dailyAge).withDayOfMonth(1));
+        });
+    }
+
+    private void createStateRow()
+    {
+        if(jdbcTemplate.queryForObject("select count(*) from click_retention_state where id = 1", Integer.class) == 0)
+        {
+            try
+            {
+                jdbcTemplate.update("insert into click_retention_state (id) values (1)");
+            }
+            catch(DataIntegrityViolationException e)
+            {
+                //another instance was faster
+            }
+        }
+    }
+
+    //1. raw -> hourly, one day per transaction, then the raw clicks before the boundary are dropped (clicks outside the database by retain()).
+    //Returns the raw boundary.
+    private LocalDate downsampleRawClicks(LocalDate before)
+    {
+        int shard = Shards.current();
+        LocalDate day = watermarks().rawFrom();
+        if(day == null)
+        {
+            day = clickStore.firstDay();
+        }
+        for(; day != null && day.isBefore(before); day = day.plusDays(1))
+        {
+            LocalDate downsampled = day;
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDate rawFrom = lockWatermarks().rawFrom();
+                if(rawFrom != null && rawFrom.isAfter(downsampled))
+                {
+                    return;         //done by another instance
+                }
+                List<Object[]> rows = new ArrayList<>(batchSize);
+                clickStore.forEachHourlyCount(downsampled, (urlMappingId, hour, clicks) -> {
+                    if(shards.shardOf(urlMappingId) != shard)
+                    {
+                        return;         //a link of another shard (the segmented click log holds the clicks of all shards)
+                    }
+                    rows.add(new Object[] { urlMappingId, Timestamp.valueOf(hour), clicks });
+                    if(rows.size() == batchSize)
+                    {
+                        insertHourlyRollups(rows);
+                    }
+                });
+                insertHourlyRollups(rows);
+                jdbcTemplate.update("update click_retention_state set raw_from = ? where id = 1", downsampled.plusDays(1));
+            });
+        }
+
+        LocalDate rawFrom = watermarks().rawFrom();
+        if(rawFrom != null && clickStore.isInDatabase())
+        {
+            partitions.ifAvailable(clickEventPartitions -> clickEventPartitions.dropBefore(rawFrom));
+            clickStore.dropBefore(rawFrom, batchSize);
+            log.info("Raw clicks are kept from {} on", rawFrom);
+        }
+        return rawFrom;
+    }
+
+    private void insertHourlyRollups(List<Object[]> rows)
+    {
+        if(!rows.isEmpty())
+        {
+            jdbcTemplate.batchUpdate("insert into click_hourly_rollups (u_map_id, click_hour, click_count) values (?, ?, ?)", rows);
+            rows.clear();
+        }
+    }
+
+    //2. hourly -> daily: the daily rollups already have the totals, so only the boundary moves (never past the raw boundary) and the hourly rows go.
+    private void dropHourlyRollups(LocalDate before)
+    {
+        LocalDate hourlyFrom = transactionTemplate.execute(status -> {
+            Watermarks watermarks = lockWatermarks();
+            if(watermarks.rawFrom() == null)
+            {
+                return watermarks.hourlyFrom();
+            }
+            LocalDate target = before.isAfter(watermarks.rawFrom()) ? watermarks.rawFrom() : before;
+            if(watermarks.hourlyFrom() == null || watermarks.hourlyFrom().isBefore(target))
+            {
+                jdbcTemplate.update("update click_retention_state set hourly_from = ? where id = 1", target);
+                return target;
+            }
+            return watermarks.hourlyFrom();
+        });
+        if(hourlyFrom != null)
+        {
+            deleteInBatches("delete from click_hourly_rollups where click_hour < ?", Timestamp.valueOf(hourlyFrom.atStartOfDay()));
+        }
+    }
+
+    //3. daily -> monthly, one month per transaction (only months before the hourly boundary), then the daily rollups before the boundary are dropped.
+    private void downsampleDailyRollups(LocalDate before)
+    {
+        Watermarks watermarks = watermarks();
+        if(watermarks.hourlyFrom() == null)
+        {
+            return;
+        }
+        LocalDate until = watermarks.hourlyFrom().withDayOfMonth(1).isBefore(before) ? watermarks.hourlyFrom().withDayOfMonth(1) : before;
+        LocalDate month = watermarks.dailyFrom();
+        if(month == null)
+        {
+            LocalDate firstDay = jdbcTemplate.queryForObject("select min(click_day) from click_daily_rollups", LocalDate.class);
+            month = firstDay == null ? null : firstDay.withDayOfMonth(1);
+        }
+        for(; month != null && month.isBefore(until); month = month.plusMonths(1))
+        {
+            LocalDate downsampled = month;
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDate dailyFrom = lockWatermarks().dailyFrom();
+                if(dailyFrom != null && dailyFrom.isAfter(downsampled))
+                {
+                    return;         //done by another instance
+                }
+                jdbcTemplate.update("insert into click_monthly_rollups (u_map_id, click_month, click_count) " +
+                                    "select u_map_id, ?, sum(click_count) from click_daily_rollups where click_day >= ? and click_day < ? group by u_map_id",
+                        downsampled, downsampled, downsampled.plusMonths(1));
+                jdbcTemplate.update("update click_retention_state set daily_from = ? where id = 1", downsampled.plusMonths(1));
+            });
+        }
+
+        LocalDate dailyFrom = watermarks().dailyFrom();
+        if(dailyFrom != null)
+        {
+            deleteInBatches("delete from click_daily_rollups where click_day < ?", dailyFrom);
+        }
+    }
+
+    //Deletes in statements of at most 'batchSize' rows (each one a short transaction of its own) until a statement deletes less.
+    private void deleteInBatches(String delete, Object before)
+    {
+        int deleted;
+        do
+        {
+            deleted = jdbcTemplate.update(delete + " limit " + batchSize, before);
+        }
+        while(deleted == batchSize);
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Fills the click_daily_rollups table from the existing click_events the first time the application starts with the rollups feature,
+so the analytics served from the rollups also include clicks recorded before the rollups existed.
+It only runs when the rollup table is still empty, and it runs before the web server starts accepting requests,
+so no new click can be counted twice. (Disable with 'clixify.rollups.backfill-on-startup=false'.)
+*/
+
+import com.project.clixify_backend_sb.repository.ClickDailyRollupRepository;
+import com.project.clixify_backend_sb.repository.ClickEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "clixify.rollups.backfill-on-startup", havingValue = "true", matchIfMissing = true)
+public class ClickRollupBackfill implements SmartInitializingSingleton
+{
+    private final ClickDailyRollupRepository clickDailyRollupRepository;
+    private final ClickEventRepository clickEventRepository;
+
+    public ClickRollupBackfill(ClickDailyRollupRepository clickDailyRollupRepository, ClickEventRepository clickEventRepository)
+    {
+        this.clickDailyRollupRepository = clickDailyRollupRepository;
+        this.clickEventRepository = clickEventRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated()
+    {
+        if(clickDailyRollupRepository.count() == 0 && clickEventRepository.count() > 0)
+        {
+            int rows = clickDailyRollupRepository.backfillFromClickEvents();
+            log.info("Backfilled {} daily click rollups from existing click events", rows);
+        }
+    }
+}
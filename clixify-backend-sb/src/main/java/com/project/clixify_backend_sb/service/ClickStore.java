@@ -0,0 +1,48 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Where the individual click events are stored, chosen with 'clixify.click-store':
+    database       - the click_events table (DatabaseClickStore, the default)
+    segmented-file - append-only, day-segmented files on the local disk (SegmentedFileClickStore), which takes the biggest write load off the database
+The per-day rollups (click_daily_rollups) and the click counts of url_mappings stay in the database with both stores.
+Raw clicks older than 'clixify.retention.raw-age' are downsampled and dropped by ClickRetention (when enabled), through the last three methods.
+*/
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ClickStore
+{
+    //Stores a batch of clicks. Called by ClickEventWriter inside the transaction that also updates the rollups, so a failure here rolls them back.
+    void append(List<PendingClick> clicks);
+
+    //Clicks per day of one URL mapping with a click date between start and end (both inclusive), ordered by day.
+    List<DailyClickCount> countClicksPerDay(Long urlMappingId, LocalDateTime start, LocalDateTime end);
+
+    //Clicks per day across all URL mappings of one user with a click date between start and end (both inclusive), ordered by day.
+    List<DailyClickCount> countClicksPerDayByUser(Long userId, LocalDateTime start, LocalDateTime end);
+
+    //The day of the oldest click in the store, or null if it is empty.
+    LocalDate firstDay();
+
+    //Hands the number of clicks of every (URL mapping, hour) of one day to 'handler', without collecting the clicks first.
+    void forEachHourlyCount(LocalDate day, HourlyCountHandler handler);
+
+    //Drops the clicks of every day before 'day'. The database store deletes at most 'batchSize' rows per statement, so no huge transaction or lock is needed.
+    void dropBefore(LocalDate day, int batchSize);
+
+    //True if the clicks are kept in the database, so with sharding (see Shards) every shard holds the clicks of its own links.
+    default boolean isInDatabase()
+    {
+        return true;
+    }
+
+    @FunctionalInterface
+    interface HourlyCountHandler
+    {
+        void accept(long urlMappingId, LocalDateTime hour, long clicks);
+    }
+}
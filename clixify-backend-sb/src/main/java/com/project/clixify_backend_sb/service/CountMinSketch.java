@@ -0,0 +1,76 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Count-Min Sketch of click counts per URL mapping id (used by TrendingLinks).
+- 'depth' rows of 'width' counters; a click increments one counter per row, picked by a different hash of the id in each row.
+  The estimate is the smallest of the id's counters: never below the true count, and above it by at most 2/width of all clicks
+  in the sketch with probability 1 - 2^-depth.
+- Memory is fixed (depth * width ints) no matter how many distinct links are clicked.
+- Counters are updated with atomic adds, so the redirect threads need no lock.
+*/
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class CountMinSketch
+{
+    private final int depth;
+    private final int width;            //power of two
+    private final AtomicIntegerArray counters;
+
+    public CountMinSketch(int depth, int width)
+    {
+        if(depth <= 0 || Integer.bitCount(width) != 1)
+        {
+            throw new IllegalArgumentException("depth must be > 0 and width a power of two");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicIntegerArray(depth * width);
+    }
+
+    public void add(long key, int count)
+    {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x9e3779b97f4a7c15L) | 1;
+        for(int row = 0; row < depth; row++)
+        {
+            counters.addAndGet(row * width + (int) ((h1 + row * h2) & (width - 1)), count);
+        }
+    }
+
+    public int estimate(long key)
+    {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x9e3779b97f4a7c15L) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for(int row = 0; row < depth; row++)
+        {
+            estimate = Math.min(estimate, counters.get(row * width + (int) ((h1 + row * h2) & (width - 1))));
+        }
+        return estimate;
+    }
+
+    //Empties this sketch and subtracts what it held from 'total' (a sketch of the same size that received the same adds).
+    public void clearAndSubtractFrom(CountMinSketch total)
+    {
+        for(int i = 0; i < counters.length(); i++)
+        {
+            int count = counters.getAndSet(i, 0);
+            if(count != 0)
+            {
+                total.counters.addAndGet(i, -count);
+            }
+        }
+    }
+
+    //MurmurHash3 finalizer.
+    private static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+ClickStore on the click_events table: a JDBC batch insert per batch of clicks, and the analytics are the GROUP BY queries of ClickEventRepository.
+Note: for MySQL, add 'rewriteBatchedStatements=true' to the JDBC URL so the driver sends each batch as a multi-row INSERT.
+*/
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import com.project.clixify_backend_sb.repository.ClickEventRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "clixify.click-store", havingValue = "database", matchIfMissing = true)
+public class DatabaseClickStore implements ClickStore
+{
+    private static final String INSERT_CLICK_EVENT = "insert into click_events (click_date, u_map_id) values (?, ?)";
+    private static final String HOURLY_COUNTS = "select u_map_id, extract(hour from click_date), count(*) from click_events " +
+                                                "where click_date >= ? and click_date < ? group by u_map_id, extract(hour from click_date)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClickEventRepository clickEventRepository;
+
+    public DatabaseClickStore(JdbcTemplate jdbcTemplate, ClickEventRepository clickEventRepository)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clickEventRepository = clickEventRepository;
+    }
+
+    @Override
+    public void append(List<PendingClick> clicks)
+    {
+        jdbcTemplate.batchUpdate(INSERT_CLICK_EVENT, clicks, clicks.size(), (ps, click) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(click.clickDate()));
+            ps.setLong(2, click.urlMappingId());
+        });
+    }
+
+    @Override
+    public List<DailyClickCount> countClicksPerDay(Long urlMappingId, LocalDateTime start, LocalDateTime end)
+    {
+        return clickEventRepository.countClicksPerDayByUrlMapping(urlMappingId, start, end);
+    }
+
+    @Override
+    public List<DailyClickCount> countClicksPerDayByUser(Long userId, LocalDateTime start, LocalDateTime end)
+    {
+        return clickEventRepository.countClicksPerDayByUser(userId, start, end);
+    }
+
+    @Override
+    public LocalDate firstDay()
+    {
+        LocalDateTime first = jdbcTemplate.queryForObject("select min(click_date) from click_events", LocalDateTime.class);
+        return first == null ? null : first.toLocalDate();
+    }
+
+    //One GROUP BY over the click date index range of the day, the rows are handed over as the driver returns them.
+    @Override
+    public void forEachHourlyCount(LocalDate day, HourlyCountHandler handler)
+    {
+        jdbcTemplate.query(HOURLY_COUNTS,
+                (RowCallbackHandler) rs -> handler.accept(rs.getLong(1), day.atTime(rs.getInt(2), 0), rs.getLong(3)),
+                Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+    }
+
+    //Deletes in statements of at most 'batchSize' rows (each one a short transaction of its own), oldest first, until a statement deletes less.
+    @Override
+    public void dropBefore(LocalDate day, int batchSize)
+    {
+        int deleted;
+        do
+        {
+            deleted = jdbcTemplate.update("delete from click_events where click_date < ? limit " + batchSize, Timestamp.valueOf(day.atStartOfDay()));
+        }
+        while(deleted == batchSize);
+    }
+}
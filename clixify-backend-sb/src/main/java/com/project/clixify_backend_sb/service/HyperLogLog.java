@@ -0,0 +1,150 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+HyperLogLog sketch for counting distinct visitors (used by UniqueVisitorCounter).
+- 2^12 = 4096 registers, each holding the highest "number of leading zeros + 1" seen among the 64-bit hashes that map to it.
+  The number of distinct hashes is estimated from the registers with a standard error of 1.04 / sqrt(4096) = 1.6%, whatever the traffic.
+- The registers take 4 KB in memory (four 8-bit registers packed into each int of an AtomicIntegerArray) and are updated with a CAS,
+  so many request threads can add to the same sketch without a lock.
+- Two sketches are merged by taking the maximum of each register, which gives exactly the sketch of the union of both visitor sets.
+  Merging is idempotent, so merging the same sketch twice (e.g. a flush that is retried) doesn't change the result.
+- toBytes() deflates the registers: a sketch of a link with few visitors is mostly zeros and compresses to a few dozen bytes.
+*/
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class HyperLogLog
+{
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final AtomicIntegerArray registers = new AtomicIntegerArray(REGISTERS / 4);
+
+    //Adds a 64-bit hash (it must be well mixed, the top 12 bits pick the register). Returns true if the sketch changed.
+    public boolean add(long hash)
+    {
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;      //1..53
+        return raise(register, rank);
+    }
+
+    //Raises the register to 'value' if it is lower.
+    private boolean raise(int register, int value)
+    {
+        int index = register >> 2;
+        int shift = (register & 3) * 8;
+        while(true)
+        {
+            int packed = registers.get(index);
+            if(((packed >>> shift) & 0xFF) >= value)
+            {
+                return false;
+            }
+            if(registers.compareAndSet(index, packed, (packed & ~(0xFF << shift)) | (value << shift)))
+            {
+                return true;
+            }
+        }
+    }
+
+    private int get(int register)
+    {
+        return (registers.get(register >> 2) >>> ((register & 3) * 8)) & 0xFF;
+    }
+
+    public void merge(HyperLogLog other)
+    {
+        for(int register = 0; register < REGISTERS; register++)
+        {
+            int value = other.get(register);
+            if(value > 0)
+            {
+                raise(register, value);
+            }
+        }
+    }
+
+    //Estimated number of distinct hashes added (raw HyperLogLog estimate, with linear counting for small numbers).
+    public long estimate()
+    {
+        double sum = 0;
+        int zeros = 0;
+        for(int register = 0; register < REGISTERS; register++)
+        {
+            int value = get(register);
+            sum += 1.0 / (1L << value);
+            if(value == 0)
+            {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if(estimate <= 2.5 * REGISTERS && zeros > 0)
+        {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes()
+    {
+        byte[] raw = new byte[REGISTERS];
+        for(int register = 0; register < REGISTERS; register++)
+        {
+            raw[register] = (byte) get(register);
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            byte[] chunk = new byte[1024];
+            while(!deflater.finished())
+            {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes)
+    {
+        byte[] raw = new byte[REGISTERS];
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(bytes);
+            if(inflater.inflate(raw) != REGISTERS || !inflater.finished())
+            {
+                throw new IllegalArgumentException("Not a HyperLogLog sketch of " + REGISTERS + " registers");
+            }
+        }
+        catch(DataFormatException e)
+        {
+            throw new IllegalArgumentException("Not a HyperLogLog sketch", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        for(int register = 0; register < REGISTERS; register++)
+        {
+            if(raw[register] != 0)
+            {
+                sketch.raise(register, raw[register]);
+            }
+        }
+        return sketch;
+    }
+}
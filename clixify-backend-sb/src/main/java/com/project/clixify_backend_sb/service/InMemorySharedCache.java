@@ -0,0 +1,77 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Stand-in for the shared cache server ('clixify.cache.shared=memory'): the same operations as RedisSharedCache, kept in this process.
+- Values expire after their own ttl, like keys set with 'SET ... PX' on the server. At most 'clixify.cache.memory.max-entries' are kept.
+- Invalidations are handed to the listeners of this instance straight away, there are no other instances to tell.
+Useful to run the two-tier caching code paths without a server (in development and in the tests), not as a cache shared between instances.
+*/
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+@Component
+@ConditionalOnProperty(name = "clixify.cache.shared", havingValue = "memory")
+public class InMemorySharedCache implements SharedCache
+{
+    private final Cache<String, Entry> entries;
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+
+    private record Entry(byte[] value, long ttlNanos)
+    {
+    }
+
+    public InMemorySharedCache(@Value("${clixify.cache.memory.max-entries:100000}") long maxEntries)
+    {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(Expiry.<String, Entry>writing((key, entry) -> Duration.ofNanos(entry.ttlNanos())))
+                .build();
+    }
+
+    @Override
+    public byte[] get(String key)
+    {
+        Entry entry = entries.getIfPresent(key);
+        return entry == null ? null : entry.value();
+    }
+
+    @Override
+    public void set(String key, byte[] value, Duration ttl)
+    {
+        entries.put(key, new Entry(value, ttl.toNanos()));
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, byte[] value, Duration ttl)
+    {
+        return entries.asMap().putIfAbsent(key, new Entry(value, ttl.toNanos())) == null;
+    }
+
+    @Override
+    public void delete(String key)
+    {
+        entries.invalidate(key);
+    }
+
+    @Override
+    public void publishInvalidation(String cache, String key)
+    {
+        listeners.forEach(listener -> listener.accept(cache, key));
+    }
+
+    @Override
+    public void onInvalidation(BiConsumer<String, String> listener)
+    {
+        listeners.add(listener);
+    }
+}
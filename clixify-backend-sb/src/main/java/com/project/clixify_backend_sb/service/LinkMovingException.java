@@ -0,0 +1,11 @@
+package com.project.clixify_backend_sb.service;
+
+//Thrown when a link can't be changed because its shard slot is being moved to another shard (see Resharding): the change could be written
+//to the old shard after the link was copied and be lost with the old rows. UrlMappingController answers it with 409, the client retries later.
+public class LinkMovingException extends RuntimeException
+{
+    public LinkMovingException(String message)
+    {
+        super(message);
+    }
+}
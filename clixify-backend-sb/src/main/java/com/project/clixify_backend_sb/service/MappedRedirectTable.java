@@ -0,0 +1,351 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Off-heap hash table (short code -> RedirectTarget) in a memory-mapped file, used by RedirectIndex.
+- The entries live in the page cache instead of the Java heap, so millions of links cost no GC time, and the file can be mapped again
+  after a restart, so the table is usable straight away without reading the database.
+- File layout (native byte order, all offsets 8-byte aligned):
+    header   HEADER_SIZE bytes: magic, version, slot count, data capacity, end of the data area, number of entries
+    slots    slotCount x 16 bytes: [long hash of the code (0 = empty slot)] [long offset of the current record in the data area]
+    data     appended records: [long urlMappingId (-1 = removed)] [int url length] [short code length] [byte redirect mode] [code as ASCII] [url as UTF-8], padded to 8 bytes
+- Open addressing with linear probing. The slot count is a power of two and the table takes at most 3/4 of it, so probe sequences stay short.
+- Lookups take no lock and allocate nothing while probing: the code is hashed from the String's chars and compared byte by byte against the record.
+  Only a hit creates objects (the URL String and the RedirectTarget it's returned in).
+- Writes (put/remove) are serialized by a ReentrantLock (not 'synchronized', which would pin a virtual thread on Java 21).
+  A record is completely written before its offset and hash are published with release stores, and lookups read the slots with acquire loads,
+  so a lookup sees either nothing or a complete record. Changing a code's target appends a new record and repoints the slot,
+  the old record is left behind as garbage until the next rebuild.
+- A process crash keeps everything written so far (it's in the page cache). After an operating system crash the file may be inconsistent,
+  RedirectIndex rebuilds it from the database periodically.
+*/
+
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import com.project.clixify_backend_sb.model.RedirectMode;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class MappedRedirectTable
+{
+    private static final long MAGIC = 0x436c6978496478L;        //"ClixIdx"
+    private static final int VERSION = 2;                       //2: records carry the redirect mode (a file of version 1 is rebuilt)
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 15;           //id, url length, code length, redirect mode
+    private static final int MAX_CODE_LENGTH = 255;
+    private static final long REMOVED = -1;
+    private static final RedirectMode[] REDIRECT_MODES = RedirectMode.values();
+
+    //header fields
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int SLOT_COUNT_OFFSET = 12;
+    private static final int DATA_CAPACITY_OFFSET = 16;
+    private static final int DATA_END_OFFSET = 24;
+    private static final int ENTRIES_OFFSET = 32;
+
+    //Aligned long access to the mapped buffer with acquire/release semantics.
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int dataStart;
+    private final long dataCapacity;
+    private final int maxEntries;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private MappedRedirectTable(MappedByteBuffer buffer, int slotCount, long dataCapacity)
+    {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.dataStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+        this.dataCapacity = dataCapacity;
+        this.maxEntries = slotCount / 4 * 3;
+    }
+
+    //Creates (or overwrites) the file with an empty table for up to 'maxEntries' links and 'dataCapacity' bytes of records.
+    public static MappedRedirectTable create(Path path, int maxEntries, long dataCapacity) throws IOException
+    {
+        int slotCount = slotCountFor(maxEntries);
+        MappedByteBuffer buffer = map(path, fileSize(slotCount, dataCapacity), true);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+        buffer.putLong(DATA_CAPACITY_OFFSET, dataCapacity);
+        buffer.putLong(DATA_END_OFFSET, 0);
+        buffer.putLong(ENTRIES_OFFSET, 0);
+        LONGS.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+        return new MappedRedirectTable(buffer, slotCount, dataCapacity);
+    }
+
+    //Maps an existing file, or returns null if there is none or it was created with other settings (then it has to be rebuilt).
+    public static MappedRedirectTable open(Path path, int maxEntries, long dataCapacity) throws IOException
+    {
+        int slotCount = slotCountFor(maxEntries);
+        long size = fileSize(slotCount, dataCapacity);
+        if(!Files.isRegularFile(path) || Files.size(path) != size)
+        {
+            return null;
+        }
+        MappedByteBuffer buffer = map(path, size, false);
+        if(buffer.getLong(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION
+                || buffer.getInt(SLOT_COUNT_OFFSET) != slotCount || buffer.getLong(DATA_CAPACITY_OFFSET) != dataCapacity)
+        {
+            return null;
+        }
+        return new MappedRedirectTable(buffer, slotCount, dataCapacity);
+    }
+
+    private static int slotCountFor(int maxEntries)
+    {
+        long slots = Long.highestOneBit(Math.max(16, (long) maxEntries * 4 / 3) * 2 - 1);       //next power of two with room for maxEntries at a 3/4 load factor
+        return Math.toIntExact(slots);
+    }
+
+    private static long fileSize(int slotCount, long dataCapacity)
+    {
+        long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE + dataCapacity;
+        if(size > Integer.MAX_VALUE || dataCapacity % 8 != 0)
+        {
+            throw new IllegalArgumentException("The redirect table must fit into 2 GB and the data capacity must be a multiple of 8, got " + size + " bytes");
+        }
+        return size;
+    }
+
+    private static MappedByteBuffer map(Path path, long size, boolean truncate) throws IOException
+    {
+        try(FileChannel channel = truncate
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);      //stays valid after the channel is closed
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+
+    //Returns the target of the short code, or null if the code isn't in the table (or was removed).
+    public RedirectTarget get(String shortUrl)
+    {
+        int record = find(shortUrl);
+        if(record < 0)
+        {
+            return null;
+        }
+        long urlMappingId = (long) LONGS.getAcquire(buffer, record);
+        if(urlMappingId == REMOVED)
+        {
+            return null;
+        }
+        int urlLength = buffer.getInt(record + 8);
+        int codeLength = buffer.getShort(record + 12);
+        byte[] url = new byte[urlLength];
+        buffer.get(record + RECORD_HEADER_SIZE + codeLength, url);
+        return new RedirectTarget(urlMappingId, new String(url, StandardCharsets.UTF_8), REDIRECT_MODES[buffer.get(record + 14)]);
+    }
+
+    //Adds the short code or changes its target. Returns false if the table is full or the code can't be stored (the caller falls back to the database).
+    public boolean put(String shortUrl, RedirectTarget target)
+    {
+        if(!storable(shortUrl))
+        {
+            return false;
+        }
+        writeLock.lock();
+        try
+        {
+            return append(shortUrl, target);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean append(String shortUrl, RedirectTarget target)
+    {
+        byte[] url = target.originalUrl().getBytes(StandardCharsets.UTF_8);
+        long dataEnd = buffer.getLong(DATA_END_OFFSET);
+        long recordSize = (RECORD_HEADER_SIZE + shortUrl.length() + url.length + 7) & ~7L;
+        long hash = hash(shortUrl);
+        int slot = findSlot(shortUrl, hash);
+        boolean newEntry = buffer.getLong(slotOffset(slot)) == 0;
+        if(dataEnd + recordSize > dataCapacity || (newEntry && entries() >= maxEntries))
+        {
+            return false;
+        }
+
+        //write the record first...
+        int record = dataStart + (int) dataEnd;
+        buffer.putInt(record + 8, url.length);
+        buffer.putShort(record + 12, (short) shortUrl.length());
+        buffer.put(record + 14, (byte) target.redirectMode().ordinal());
+        for(int i = 0; i < shortUrl.length(); i++)
+        {
+            buffer.put(record + RECORD_HEADER_SIZE + i, (byte) shortUrl.charAt(i));
+        }
+        buffer.put(record + RECORD_HEADER_SIZE + shortUrl.length(), url);
+        LONGS.setRelease(buffer, record, target.urlMappingId().longValue());
+        buffer.putLong(DATA_END_OFFSET, dataEnd + recordSize);
+
+        //...then publish it: the offset before the hash, so a lookup that sees the hash also sees the offset
+        LONGS.setRelease(buffer, slotOffset(slot) + 8, dataEnd);
+        if(newEntry)
+        {
+            LONGS.setRelease(buffer, slotOffset(slot), hash);
+            buffer.putLong(ENTRIES_OFFSET, entries() + 1);
+        }
+        return true;
+    }
+
+    //Marks the short code as removed (lookups miss it until it is put again).
+    public void remove(String shortUrl)
+    {
+        writeLock.lock();
+        try
+        {
+            int record = find(shortUrl);
+            if(record >= 0)
+            {
+                LONGS.setRelease(buffer, record, REMOVED);
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    //Writes the changed pages to the file, so they also survive an operating system crash.
+    public void force()
+    {
+        buffer.force();
+    }
+
+    public long entries()
+    {
+        return buffer.getLong(ENTRIES_OFFSET);
+    }
+
+    public int maxEntries()
+    {
+        return maxEntries;
+    }
+
+    //Bytes of the data area in use, records replaced by a later put() included.
+    public long dataSize()
+    {
+        return buffer.getLong(DATA_END_OFFSET);
+    }
+
+    public long dataCapacity()
+    {
+        return dataCapacity;
+    }
+
+    //Position of the short code's current record in the buffer, or -1. Allocation free.
+    private int find(String shortUrl)
+    {
+        if(!storable(shortUrl))
+        {
+            return -1;
+        }
+        long hash = hash(shortUrl);
+        int slot = (int) hash & (slotCount - 1);
+        while(true)
+        {
+            long slotHash = (long) LONGS.getAcquire(buffer, slotOffset(slot));
+            if(slotHash == 0)
+            {
+                return -1;
+            }
+            if(slotHash == hash)
+            {
+                int record = dataStart + (int) (long) LONGS.getAcquire(buffer, slotOffset(slot) + 8);
+                if(codeEquals(record, shortUrl))
+                {
+                    return record;
+                }
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+    }
+
+    //The slot holding the short code, or the empty slot where it would go. Only called by writers (under the lock).
+    private int findSlot(String shortUrl, long hash)
+    {
+        int slot = (int) hash & (slotCount - 1);
+        while(true)
+        {
+            long slotHash = buffer.getLong(slotOffset(slot));
+            if(slotHash == 0 || (slotHash == hash && codeEquals(dataStart + (int) buffer.getLong(slotOffset(slot) + 8), shortUrl)))
+            {
+                return slot;
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+    }
+
+    private boolean codeEquals(int record, String shortUrl)
+    {
+        if(buffer.getShort(record + 12) != shortUrl.length())
+        {
+            return false;
+        }
+        for(int i = 0; i < shortUrl.length(); i++)
+        {
+            if(buffer.get(record + RECORD_HEADER_SIZE + i) != (byte) shortUrl.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slotOffset(int slot)
+    {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    //Short codes are ASCII (base62), anything else is simply never stored and always goes to the database.
+    private static boolean storable(String shortUrl)
+    {
+        if(shortUrl.isEmpty() || shortUrl.length() > MAX_CODE_LENGTH)
+        {
+            return false;
+        }
+        for(int i = 0; i < shortUrl.length(); i++)
+        {
+            if(shortUrl.charAt(i) > 127)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //64-bit FNV-1a of the chars with a MurmurHash3 finalizer (like ShortCodeBloomFilter), never 0 as 0 marks an empty slot.
+    private static long hash(String shortUrl)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < shortUrl.length(); i++)
+        {
+            hash ^= shortUrl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,12 @@
+package com.project.clixify_backend_sb.service;
+
+//Thrown by ClickHistory for a range that starts or ends in the middle of a month whose clicks are only kept as a monthly total (before the
+//daily boundary of ClickRetention): the total can't be split, and counting it for the part of the month in the range would over-count.
+//UrlMappingController answers it with 400 and the message, which names the boundary.
+public class MonthlyClicksRangeException extends IllegalArgumentException
+{
+    public MonthlyClicksRangeException(String message)
+    {
+        super(message);
+    }
+}
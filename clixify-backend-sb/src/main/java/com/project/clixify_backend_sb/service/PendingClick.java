@@ -0,0 +1,11 @@
+package com.project.clixify_backend_sb.service;
+
+import java.time.LocalDateTime;
+
+//A click that has been accepted on the redirect path but not yet written to the click_events table (see ClickEventWriter).
+public record PendingClick(
+        Long urlMappingId,          //id of the UrlMapping that was clicked
+        LocalDateTime clickDate     //when the click happened (taken on the request thread, not when it's written)
+)
+{
+}
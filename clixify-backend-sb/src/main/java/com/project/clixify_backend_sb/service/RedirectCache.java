@@ -0,0 +1,79 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Cache that sits in front of the database on the redirect path (shortUrl -> RedirectTarget), with two tiers (see TwoTierCache):
+- In-process (L1): backed by Caffeine, which uses W-TinyLFU eviction, so frequently hit (viral) links stay in the cache while one-off links get evicted first.
+  Bounded by 'clixify.redirect-cache.max-size' entries and every entry expires 'clixify.redirect-cache.ttl' after it was loaded, so a stale entry can never live forever.
+- Shared (L2, with 'clixify.cache.shared'): asked through getShared() by the loader of the L1, after the redirect index and the short code filter
+  (which answer without a network round trip), and kept for 'clixify.cache.shared-ttl'.
+- Hit/miss/eviction stats of the L1 are recorded and can be read through stats(), and are published as the cache_* metrics with the tag cache="redirect".
+- Unknown short URLs are not cached (the loader returns null and Caffeine does not store null values).
+- invalidate() also drops the link from the shared tier and from the L1 of every other instance, and those instances remove it from their
+  redirect index too (it would otherwise keep serving the old target until its next rebuild).
+*/
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+public class RedirectCache implements MeterBinder
+{
+    private final TwoTierCache<RedirectTarget> cache;
+
+    public RedirectCache(@Value("${clixify.redirect-cache.max-size:100000}") long maxSize,
+                         @Value("${clixify.redirect-cache.ttl:PT1H}") Duration ttl,
+                         @Value("${clixify.cache.shared-ttl:PT10M}") Duration sharedTtl,
+                         @Value("${clixify.cache.load-lock-ttl:PT2S}") Duration loadLockTtl,
+                         ObjectProvider<SharedCache> sharedCache,
+                         ObjectProvider<RedirectIndex> redirectIndex,      //lazily, like UrlMappingCacheListener (the index needs the repositories, this cache is needed to create them)
+                         ObjectMapper objectMapper)
+    {
+        this.cache = new TwoTierCache<>("redirect", maxSize, ttl, sharedTtl, loadLockTtl,
+                sharedCache.getIfAvailable(), objectMapper, objectMapper.constructType(RedirectTarget.class));
+        this.cache.onRemoteInvalidation(shortUrl -> redirectIndex.getObject().remove(shortUrl));
+    }
+
+    //Returns the cached target for the short URL, or calls the loader (only once per key even under concurrent misses) and caches its result.
+    public RedirectTarget get(String shortUrl, Function<String, RedirectTarget> loader)
+    {
+        return cache.getLocal(shortUrl, loader);
+    }
+
+    //Returns the target from the shared cache, or calls the loader (at most one instance at a time per key) and shares its result.
+    public RedirectTarget getShared(String shortUrl, Function<String, RedirectTarget> loader)
+    {
+        return cache.getShared(shortUrl, loader);
+    }
+
+    //Removes the short URL from the cache, called whenever the underlying UrlMapping is changed or deleted.
+    public void invalidate(String shortUrl)
+    {
+        cache.invalidate(shortUrl);
+    }
+
+    //Called by Spring Boot once the MeterRegistry exists.
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        cache.bindTo(registry);
+    }
+
+    public CacheStats stats()
+    {
+        return cache.stats();
+    }
+
+    public long size()
+    {
+        return cache.size();
+    }
+}
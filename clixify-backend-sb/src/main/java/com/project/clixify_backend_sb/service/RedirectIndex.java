@@ -0,0 +1,245 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Off-heap redirect index: a memory-mapped hash table of every short code (see MappedRedirectTable), checked on a redirect cache miss before the database.
+Enable it with 'clixify.redirect-index.enabled=true' (then the redirect cache can be made a lot smaller, as the index already keeps
+the lookups of cold links away from the database without putting them on the heap).
+- The table lives in the file 'clixify.redirect-index.path'. At startup an existing file that matches the settings is mapped and used straight away,
+  so a restarted node serves redirects from it immediately. Otherwise it is built from the database before the web server accepts requests.
+- Links created by this instance are added as they are saved. Links created by other instances are added the first time they are loaded from the database.
+- Changed or deleted links are removed through UrlMappingCacheListener, and the whole file is rebuilt from the database every
+  'clixify.redirect-index.rebuild-interval' (into a new file that then replaces the old one), which also picks up changes made by other instances.
+- Room for 'clixify.redirect-index.max-entries' links and 'clixify.redirect-index.data-size' bytes of records (the file is sparse, unused space takes no disk).
+  Once full, further links simply aren't indexed and go to the database until the next rebuild; size it above the number of links.
+- With sharding (see Shards) a rebuild reads the shards one after the other into the same file.
+- Hits, misses and the fill level are published as the clixify.redirect.index.* metrics.
+*/
+
+import com.project.clixify_backend_sb.dtos.IndexedRedirectTarget;
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+public class RedirectIndex implements SmartInitializingSingleton, MeterBinder
+{
+    private final UrlMappingRepository urlMappingRepository;
+    private final Shards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path path;
+    private final int maxEntries;
+    private final long dataSize;
+
+    private volatile MappedRedirectTable table;         //null until the index is opened or built (and always when disabled)
+
+    //Changes made while a rebuild is running, replayed into the new table before it replaces the current one. Guarded by changeLock.
+    private final ReentrantLock changeLock = new ReentrantLock();
+    private List<IndexedRedirectTarget> changesDuringRebuild;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RedirectIndex(UrlMappingRepository urlMappingRepository,
+                         Shards shards,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${clixify.redirect-index.enabled:false}") boolean enabled,
+                         @Value("${clixify.redirect-index.path:redirect-index.dat}") Path path,
+                         @Value("${clixify.redirect-index.max-entries:1000000}") int maxEntries,
+                         @Value("${clixify.redirect-index.data-size:256MB}") DataSize dataSize)
+    {
+        this.urlMappingRepository = urlMappingRepository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.path = path.toAbsolutePath();
+        this.maxEntries = maxEntries;
+        this.dataSize = dataSize.toBytes();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated()
+    {
+        if(!enabled)
+        {
+            return;
+        }
+        try
+        {
+            table = MappedRedirectTable.open(path, maxEntries, dataSize);
+        }
+        catch(IOException e)
+        {
+            log.warn("Could not open the redirect index {}, rebuilding it", path, e);
+        }
+        if(table != null)
+        {
+            log.info("Opened the redirect index {} with {} links", path, table.entries());
+        }
+        else
+        {
+            rebuild();
+        }
+    }
+
+    //Returns the target of the short code, or null if it isn't indexed (then the database has to be asked).
+    public RedirectTarget get(String shortUrl)
+    {
+        MappedRedirectTable current = table;
+        if(current == null)
+        {
+            return null;
+        }
+        RedirectTarget redirectTarget = current.get(shortUrl);
+        (redirectTarget != null ? hits : misses).increment();
+        return redirectTarget;
+    }
+
+    //Adds a link that exists in the database (just saved, or just loaded after an index miss).
+    public void add(String shortUrl, RedirectTarget redirectTarget)
+    {
+        change(new IndexedRedirectTarget(shortUrl, redirectTarget.urlMappingId(), redirectTarget.originalUrl(), redirectTarget.redirectMode()));
+    }
+
+    //Removes a changed or deleted link, it's loaded from the database (and added again) on its next redirect.
+    public void remove(String shortUrl)
+    {
+        if(shortUrl != null)
+        {
+            change(new IndexedRedirectTarget(shortUrl, null, null, null));
+        }
+    }
+
+    private void change(IndexedRedirectTarget change)
+    {
+        if(table == null)
+        {
+            return;
+        }
+        changeLock.lock();
+        try
+        {
+            apply(table, change);
+            if(changesDuringRebuild != null)
+            {
+                changesDuringRebuild.add(change);
+            }
+        }
+        finally
+        {
+            changeLock.unlock();
+        }
+    }
+
+    private static void apply(MappedRedirectTable table, IndexedRedirectTarget change)
+    {
+        if(change.urlMappingId() == null)
+        {
+            table.remove(change.shortUrl());
+        }
+        else
+        {
+            table.put(change.shortUrl(), change.redirectTarget());
+        }
+    }
+
+    //Builds a new table file from the database and swaps it in. Redirects keep using the current table while the new one is built.
+    @Scheduled(fixedDelayString = "${clixify.redirect-index.rebuild-interval:PT6H}", initialDelayString = "${clixify.redirect-index.rebuild-interval:PT6H}")
+    public void rebuild()
+    {
+        if(!enabled)
+        {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        Path rebuildPath = path.resolveSibling(path.getFileName() + ".rebuild");
+        setChangesDuringRebuild(new ArrayList<>());
+        try
+        {
+            MappedRedirectTable rebuilt = MappedRedirectTable.create(rebuildPath, maxEntries, dataSize);
+            long[] skipped = new long[1];
+            shards.forEach(shard -> skipped[0] += readOnlyTransaction.execute(status -> {
+                try(Stream<IndexedRedirectTarget> redirectTargets = urlMappingRepository.streamAllRedirectTargets())
+                {
+                    return redirectTargets.filter(target -> !rebuilt.put(target.shortUrl(), target.redirectTarget())).count();
+                }
+            }));
+            if(skipped[0] > 0)
+            {
+                log.warn("The redirect index is full, {} links were left out (raise clixify.redirect-index.max-entries / data-size)", skipped[0]);
+            }
+
+            changeLock.lock();
+            try
+            {
+                changesDuringRebuild.forEach(change -> apply(rebuilt, change));
+                rebuilt.force();
+                Files.move(rebuildPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                table = rebuilt;            //the old mapping is released when it is garbage collected
+                changesDuringRebuild = null;
+            }
+            finally
+            {
+                changeLock.unlock();
+            }
+            log.info("Built the redirect index {} with {} links in {} ms", path, rebuilt.entries(), System.currentTimeMillis() - startedAt);
+        }
+        catch(IOException | UncheckedIOException | DataAccessException e)
+        {
+            setChangesDuringRebuild(null);
+            log.error("Could not build the redirect index, the previous one stays in use", e);
+        }
+    }
+
+    private void setChangesDuringRebuild(List<IndexedRedirectTarget> changes)
+    {
+        changeLock.lock();
+        try
+        {
+            changesDuringRebuild = changes;
+        }
+        finally
+        {
+            changeLock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("clixify.redirect.index.entries", this, index -> index.table == null ? 0 : index.table.entries()).register(registry);
+        Gauge.builder("clixify.redirect.index.data.size", this, index -> index.table == null ? 0 : index.table.dataSize())
+                .baseUnit("bytes")
+                .description("Bytes of the data area in use, out of clixify.redirect-index.data-size")
+                .register(registry);
+        FunctionCounter.builder("clixify.redirect.index.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("clixify.redirect.index.misses", misses, LongAdder::sum)
+                .description("Redirect cache misses that were not in the index and went to the database")
+                .register(registry);
+    }
+}
@@ -0,0 +1,117 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Shared cache on a Redis-protocol server ('clixify.cache.shared=redis', 'clixify.cache.redis.url', e.g. redis://cache-host:6379/0), through Lettuce.
+- Values are plain keys with an expiry (SET ... PX), the load locks of TwoTierCache are SET ... NX PX.
+- Invalidations are published on the channel 'clixify:invalidations' as "cache\nkey", every instance subscribes to it.
+- Commands time out after 'clixify.cache.redis.timeout', so a slow or unreachable server costs a redirect at most that long before the
+  database answers instead. Lettuce reconnects (and resubscribes) on its own. Invalidations published while an instance was disconnected
+  don't reach it, its in-process copies then live until their ttl (e.g. 'clixify.redirect-cache.ttl'), keep those short with a shared cache.
+*/
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "clixify.cache.shared", havingValue = "redis")
+public class RedisSharedCache implements SharedCache
+{
+    private static final String CHANNEL = "clixify:invalidations";
+
+    private final RedisClient client;
+    private final StatefulRedisConnection<String, byte[]> connection;
+    private final RedisCommands<String, byte[]> commands;
+    private final StatefulRedisPubSubConnection<String, String> subscription;
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+
+    public RedisSharedCache(@Value("${clixify.cache.redis.url}") String url,
+                            @Value("${clixify.cache.redis.timeout:PT0.2S}") Duration timeout)
+    {
+        RedisURI uri = RedisURI.create(url);
+        uri.setTimeout(timeout);
+        this.client = RedisClient.create(uri);
+        this.connection = client.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+        this.commands = connection.sync();
+        this.subscription = client.connectPubSub();
+        this.subscription.addListener(new RedisPubSubAdapter<>()
+        {
+            @Override
+            public void message(String channel, String message)
+            {
+                int separator = message.indexOf('\n');
+                if(separator > 0)
+                {
+                    String cache = message.substring(0, separator);
+                    String key = message.substring(separator + 1);
+                    listeners.forEach(listener -> listener.accept(cache, key));
+                }
+            }
+        });
+        this.subscription.sync().subscribe(CHANNEL);
+        log.info("Using the shared cache at {}", uri.getHost());
+    }
+
+    @Override
+    public byte[] get(String key)
+    {
+        return commands.get(key);
+    }
+
+    @Override
+    public void set(String key, byte[] value, Duration ttl)
+    {
+        commands.set(key, value, SetArgs.Builder.px(ttl));
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, byte[] value, Duration ttl)
+    {
+        return "OK".equals(commands.set(key, value, SetArgs.Builder.nx().px(ttl)));
+    }
+
+    @Override
+    public void delete(String key)
+    {
+        commands.del(key);
+    }
+
+    @Override
+    public void publishInvalidation(String cache, String key)
+    {
+        commands.publish(CHANNEL, (cache + "\n" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onInvalidation(BiConsumer<String, String> listener)
+    {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    void close()
+    {
+        subscription.close();
+        connection.close();
+        client.shutdown();
+    }
+}
@@ -0,0 +1,116 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Refresh tokens, so clients get new access tokens (JWTs) without sending the password again, i.e. without a BCrypt check per renewal.
+- A refresh token is 32 random bytes (URL-safe Base64) handed out next to the access token at login. Only its SHA-256 is stored
+  (model/RefreshToken), a leaked table doesn't give anyone a usable token, and looking one up is a single indexed read.
+- Tokens are short-lived ('clixify.auth.refresh-token.ttl') and work once: refresh() deletes the used token and returns a new access token
+  together with a new refresh token. A client that keeps using the API therefore never has to log in again, one that stops for longer than
+  the ttl has to. Two requests with the same token can't both succeed (the delete decides, see RefreshTokenRepository.deleteByTokenHash).
+- The new access token is built from the user's current row, so a changed role takes effect at the next refresh.
+- Expired tokens are deleted every 'clixify.auth.refresh-token.cleanup-interval'.
+*/
+
+import com.project.clixify_backend_sb.model.RefreshToken;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.RefreshTokenRepository;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import com.project.clixify_backend_sb.security.jwt.JwtAuthenticationResponse;
+import com.project.clixify_backend_sb.security.jwt.JwtUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+
+@Slf4j
+@Service
+public class RefreshTokenService
+{
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtUtils jwtUtils;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository, JwtUtils jwtUtils,
+                               @Value("${clixify.auth.refresh-token.ttl:P1D}") Duration ttl)
+    {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.jwtUtils = jwtUtils;
+        this.ttl = ttl;
+    }
+
+    //Creates a refresh token for the user and returns it (it can't be read back later, only its hash is kept).
+    public String issue(Long userId)
+    {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setTokenHash(hash(token));
+        refreshToken.setUser(userRepository.getReferenceById(userId));
+        refreshToken.setCreatedDate(LocalDateTime.now());
+        refreshToken.setExpiresAt(refreshToken.getCreatedDate().plus(ttl));
+        refreshTokenRepository.save(refreshToken);
+        return token;
+    }
+
+    //Trades a refresh token for a new access token and a new refresh token. Returns null if the token is unknown, expired or already used.
+    @Transactional
+    public JwtAuthenticationResponse refresh(String token)
+    {
+        if(token == null || token.isEmpty())
+        {
+            return null;
+        }
+        String tokenHash = hash(token);
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(tokenHash).orElse(null);
+        if(refreshToken == null || refreshTokenRepository.deleteByTokenHash(tokenHash) == 0)
+        {
+            return null;
+        }
+        if(refreshToken.getExpiresAt().isBefore(LocalDateTime.now()))
+        {
+            return null;        //deleted above all the same
+        }
+        User user = refreshToken.getUser();
+        String jwt = jwtUtils.generateToken(UserDetailsImpl.build(user));
+        return new JwtAuthenticationResponse(jwt, issue(user.getUserId()));
+    }
+
+    @Scheduled(fixedDelayString = "${clixify.auth.refresh-token.cleanup-interval:PT1H}", initialDelayString = "${clixify.auth.refresh-token.cleanup-interval:PT1H}")
+    public void deleteExpired()
+    {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if(deleted > 0)
+        {
+            log.debug("Deleted {} expired refresh tokens", deleted);
+        }
+    }
+
+    private static String hash(String token)
+    {
+        try
+        {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Moves the links of one slot (see Shards) from their shard to another one, e.g. onto a newly added database. The links keep their short codes
+and ids, and their redirects keep working during the whole move:
+1. The slot is marked moving, and the move waits until every running instance has loaded the map with the mark (see Shards.awaitSlotMap)
+   plus 'clixify.sharding.move-settle' for the writes that had already started: new short codes skip the slot, changes of its links are
+   rejected, and clicks, click counts and visitor sketches of its links stay in memory.
+2. The users, the slot's url_mappings and everything recorded per link are copied to the target (rows a failed earlier move left there are
+   deleted first). Legacy links (ids from before the slots) are never copied, they stay on shard 0.
+3. The slot is switched to the target, still moving. Once every instance has loaded that map (and another settle time) they all read
+   the slot from the target.
+4. The mark is removed, the held writes go to the target, and the slot's rows are deleted from the old shard in batches.
+If a step fails before the switch, the mark is removed and the slot stays where it was. Only one slot moves at a time (per instance, and
+the mark can only be set on a slot that isn't moving already).
+Waiting for the instances to acknowledge the map, rather than for a fixed time, keeps a move safe when an instance's map refresh runs late
+(e.g. behind a long scheduled job). An instance that stopped refreshing is only waited for up to 'clixify.sharding.instance-timeout'.
+*/
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Component
+public class Resharding
+{
+    //The tables with rows per link besides url_mappings (all with a u_map_id column), with the generated id column to leave out when copying.
+    private static final String[][] LINK_TABLES = {
+            { "click_events", "click_event_id" },
+            { "click_daily_rollups", null },
+            { "click_hourly_rollups", null },
+            { "click_monthly_rollups", null },
+            { "click_daily_visitor_sketches", null }
+    };
+    private static final String SLOT_ROWS = "u_map_id >= ? and mod(u_map_id, ?) = ?";
+
+    private final Shards shards;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration settle;
+    private final int batchSize;
+    private final ReentrantLock moveLock = new ReentrantLock();
+
+    //The result of a move: how many links went from one shard to the other, and how long it took.
+    public record SlotMove(int slot, int from, int to, long links, long millis)
+    {
+    }
+
+    public Resharding(Shards shards,
+                      JdbcTemplate jdbcTemplate,
+                      @Value("${clixify.sharding.move-settle:PT5S}") Duration settle,
+                      @Value("${clixify.retention.batch-size:10000}") int batchSize)
+    {
+        this.shards = shards;
+        this.jdbcTemplate = jdbcTemplate;
+        this.settle = settle;
+        this.batchSize = batchSize;
+    }
+
+    //Number of slots on each shard (shards without slots included).
+    public Map<Integer, Integer> slotsPerShard()
+    {
+        Map<Integer, Integer> slots = new TreeMap<>();
+        for(int shard = 0; shard < shards.count(); shard++)
+        {
+            slots.put(shard, 0);
+        }
+        shards.run(0, () -> jdbcTemplate.query("select shard, count(*) from shard_slots group by shard",
+                (RowCallbackHandler) rs -> slots.put(rs.getInt(1), rs.getInt(2))));
+        return slots;
+    }
+
+    public SlotMove moveSlot(int slot, int to)
+    {
+        if(shards.count() == 1)
+        {
+            throw new IllegalStateException("Sharding is not configured (clixify.datasource.shards.urls)");
+        }
+        if(slot < 0 || slot >= Shards.SLOTS || to < 0 || to >= shards.count())
+        {
+            throw new IllegalArgumentException("No slot " + slot + " or no shard " + to);
+        }
+        if(!moveLock.tryLock())
+        {
+            throw new IllegalStateException("Another slot is being moved");
+        }
+        try
+        {
+            return move(slot, to);
+        }
+        finally
+        {
+            moveLock.unlock();
+        }
+    }
+
+    private SlotMove move(int slot, int to)
+    {
+        long startedAt = System.currentTimeMillis();
+        int from = shards.on(0, () -> jdbcTemplate.queryForObject("select shard from shard_slots where slot = ?", Integer.class, slot));
+        if(from == to)
+        {
+            return new SlotMove(slot, from, to, 0, 0);
+        }
+        if(shards.on(0, () -> jdbcTemplate.update("update shard_slots set moving = true where slot = ? and shard = ? and moving = false", slot, from)) == 0)
+        {
+            throw new IllegalStateException("Slot " + slot + " is already being moved");
+        }
+        log.info("Moving slot {} from shard {} to shard {}", slot, from, to);
+        long links;
+        try
+        {
+            awaitSlotMap();
+            shards.copyUsers();
+            deleteSlotRows(to, slot);
+            links = shards.copyRows(from, to, "url_mappings", SLOT_ROWS, slotRows(slot), null);
+            for(String[] table : LINK_TABLES)
+            {
+                shards.copyRows(from, to, table[0], SLOT_ROWS, slotRows(slot), table[1]);
+            }
+            shards.run(0, () -> jdbcTemplate.update("update shard_slots set shard = ? where slot = ?", to, slot));
+        }
+        catch(RuntimeException e)
+        {
+            log.error("Moving slot {} to shard {} failed, it stays on shard {}", slot, to, from, e);
+            shards.run(0, () -> jdbcTemplate.update("update shard_slots set moving = false where slot = ?", slot));
+            shards.nextSlotMapVersion();
+            shards.refresh();
+            deleteSlotRows(to, slot);
+            throw e;
+        }
+
+        awaitSlotMap();
+        shards.run(0, () -> jdbcTemplate.update("update shard_slots set moving = false where slot = ?", slot));
+        shards.nextSlotMapVersion();
+        shards.refresh();
+        deleteSlotRows(from, slot);
+        SlotMove move = new SlotMove(slot, from, to, links, System.currentTimeMillis() - startedAt);
+        log.info("Moved slot {} with {} links from shard {} to shard {} in {} ms", slot, links, from, to, move.millis());
+        return move;
+    }
+
+    //After a change of shard_slots: waits until every instance has loaded it, then for the writes they started with the map before.
+    private void awaitSlotMap()
+    {
+        shards.awaitSlotMap(shards.nextSlotMapVersion());
+        sleep(settle);
+    }
+
+    //Deletes the rows of a slot from a shard in batches, the per-link tables before url_mappings (their foreign keys point to it).
+    private void deleteSlotRows(int shard, int slot)
+    {
+        shards.run(shard, () -> {
+            for(String[] table : LINK_TABLES)
+            {
+                deleteInBatches("delete from " + table[0] + " where " + SLOT_ROWS, slot);
+            }
+            deleteInBatches("delete from url_mappings where " + SLOT_ROWS, slot);
+        });
+    }
+
+    private void deleteInBatches(String delete, int slot)
+    {
+        int deleted;
+        do
+        {
+            deleted = jdbcTemplate.update(delete + " limit " + batchSize, slotRows(slot));
+        }
+        while(deleted == batchSize);
+    }
+
+    private static Object[] slotRows(int slot)
+    {
+        return new Object[] { Shards.FIRST_SLOTTED_ID, Shards.SLOTS, slot };
+    }
+
+    private static void sleep(Duration duration)
+    {
+        try
+        {
+            Thread.sleep(duration);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writes to the slot to settle", e);
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+ClickStore on append-only, day-segmented files in 'clixify.click-store.directory' (enable with 'clixify.click-store=segmented-file'),
+so the click history doesn't have to live in the relational database.
+- Clicks are appended to the log of their day (yyyy-MM-dd.log) as fixed-width 16 byte records: [long urlMappingId] [long epoch millis].
+  Each batch from ClickEventWriter is one write per day followed by one fsync (turn it off with 'clixify.click-store.fsync=false').
+- Once a day is over (plus 'clixify.click-store.compaction-grace' for late clicks) its log is compacted into yyyy-MM-dd.seg:
+  the records are sorted by (mapping, time), the ids and times are delta encoded as variable-length numbers and the result is GZIP compressed,
+  which takes a fraction of the 16 bytes per click. Clicks that still arrive for a compacted day go to a new log, merged by the next compaction.
+- The analytics scan the segments and logs of the days in the range. A compacted segment is sorted by mapping, so a scan for one link stops
+  as soon as it has passed the link's id.
+- Compaction first renames the log to yyyy-MM-dd.compacting (new clicks go to a fresh log), then writes the new segment to a temporary file,
+  fsyncs it and swaps it in: the .compacting file is renamed to yyyy-MM-dd.compacted (its clicks are in the temporary segment), the temporary
+  segment is moved over the old one and the .compacted file is deleted. Scans read segment + compacting + log under a read lock that only
+  these renames wait for, so a scan never counts a click twice or misses one.
+- After a crash: a leftover .compacting file is picked up by the next compaction. A leftover .compacted file means the crash hit the swap,
+  its clicks are in the temporary segment if that still exists (moved in on startup) or already in the segment, so it is deleted either way.
+- With 'clixify.retention.enabled' the files of days older than 'clixify.retention.raw-age' are deleted after ClickRetention downsampled them.
+- Times are stored as epoch millis in the system time zone, so the days match the click dates the database store would have (LocalDateTime).
+*/
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "clixify.click-store", havingValue = "segmented-file")
+public class SegmentedFileClickStore implements ClickStore
+{
+    private static final int RECORD_SIZE = 16;
+    private static final int SEGMENT_MAGIC = 0x436c6b53;        //"ClkS"
+    private static final int TIME_OF_DAY_BITS = 27;            //2^27 ms is more than the longest (25 hour) day, the rank of the mapping id gets the other 36 bits while sorting
+    private static final String LOG = ".log";
+    private static final String COMPACTING = ".compacting";
+    private static final String COMPACTED = ".compacted";
+    private static final String SEGMENT = ".seg";
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final Path directory;
+    private final boolean fsync;
+    private final Duration compactionGrace;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ReentrantLock appendLock = new ReentrantLock();                   //serializes appends and the log -> compacting rename
+    private final ReentrantReadWriteLock filesLock = new ReentrantReadWriteLock();  //read: scans, write: renaming/replacing files
+    private final Map<LocalDate, FileChannel> openLogs = new HashMap<>();           //guarded by appendLock
+
+    public SegmentedFileClickStore(UrlMappingRepository urlMappingRepository,
+                                   @Value("${clixify.click-store.directory:click-log}") Path directory,
+                                   @Value("${clixify.click-store.fsync:true}") boolean fsync,
+                                   @Value("${clixify.click-store.compaction-grace:PT1H}") Duration compactionGrace) throws IOException
+    {
+        this.urlMappingRepository = urlMappingRepository;
+        this.directory = Files.createDirectories(directory);
+        this.fsync = fsync;
+        this.compactionGrace = compactionGrace;
+        for(LocalDate day : days("*" + COMPACTED))      //compactions interrupted by a crash while swapping in their segment
+        {
+            finishSwap(day);
+            log.info("Finished the interrupted compaction of the click log of {}", day);
+        }
+    }
+
+    @Override
+    public void append(List<PendingClick> clicks)
+    {
+        Map<LocalDate, List<PendingClick>> clicksPerDay = clicks.stream().collect(Collectors.groupingBy(click -> click.clickDate().toLocalDate()));
+        appendLock.lock();
+        try
+        {
+            List<FileChannel> written = new ArrayList<>(clicksPerDay.size());
+            for(Map.Entry<LocalDate, List<PendingClick>> day : clicksPerDay.entrySet())
+            {
+                ByteBuffer records = ByteBuffer.allocate(day.getValue().size() * RECORD_SIZE);
+                for(PendingClick click : day.getValue())
+                {
+                    records.putLong(click.urlMappingId()).putLong(epochMillis(click.clickDate()));
+                }
+                records.flip();
+                FileChannel log = openLog(day.getKey());
+                while(records.hasRemaining())
+                {
+                    log.write(records);
+                }
+                written.add(log);
+            }
+            if(fsync)
+            {
+                for(FileChannel log : written)
+                {
+                    log.force(false);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Could not append " + clicks.size() + " clicks to the click log", e);
+        }
+        finally
+        {
+            appendLock.unlock();
+        }
+    }
+
+    private FileChannel openLog(LocalDate day) throws IOException
+    {
+        FileChannel log = openLogs.get(day);
+        if(log == null)
+        {
+            log = FileChannel.open(file(day, LOG), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            log.truncate(log.size() / RECORD_SIZE * RECORD_SIZE);      //drops a record torn by a crash, so the following records stay aligned
+            log.position(log.size());
+            openLogs.put(day, log);
+        }
+        return log;
+    }
+
+    @Override
+    public List<DailyClickCount> countClicksPerDay(Long urlMappingId, LocalDateTime start, LocalDateTime end)
+    {
+        return countClicksPerDay(new long[] { urlMappingId }, start, end);
+    }
+
+    @Override
+    public List<DailyClickCount> countClicksPerDayByUser(Long userId, LocalDateTime start, LocalDateTime end)
+    {
+        long[] urlMappingIds = urlMappingRepository.findIdsByUserId(userId).stream().mapToLong(Long::longValue).sorted().toArray();
+        return urlMappingIds.length == 0 ? List.of() : countClicksPerDay(urlMappingIds, start, end);
+    }
+
+    //Scans the files of every day between start and end for clicks on one of the (sorted) URL mapping ids.
+    List<DailyClickCount> countClicksPerDay(long[] urlMappingIds, LocalDateTime start, LocalDateTime end)
+    {
+        Range range = new Range(urlMappingIds, epochMillis(start), epochMillis(end));
+        List<DailyClickCount> dailyCounts = new ArrayList<>();
+        filesLock.readLock().lock();
+        try
+        {
+            for(LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate()); day = day.plusDays(1))
+            {
+                long clicks = countInSegment(file(day, SEGMENT), range) + countInLog(file(day, COMPACTING), range) + countInLog(file(day, LOG), range);
+                if(clicks > 0)
+                {
+                    dailyCounts.add(new DailyClicks(day, clicks));
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Could not read the click log", e);
+        }
+        finally
+        {
+            filesLock.readLock().unlock();
+        }
+        return dailyCounts;
+    }
+
+    private record Range(long[] urlMappingIds, long fromMillis, long toMillis)
+    {
+        boolean contains(long urlMappingId, long epochMillis)
+        {
+            return epochMillis >= fromMillis && epochMillis <= toMillis && Arrays.binarySearch(urlMappingIds, urlMappingId) >= 0;
+        }
+
+        long maxUrlMappingId()
+        {
+            return urlMappingIds[urlMappingIds.length - 1];
+        }
+    }
+
+    private long countInLog(Path file, Range range) throws IOException
+    {
+        long[] clicks = new long[1];
+        scanLog(file, (urlMappingId, epochMillis) -> {
+            if(range.contains(urlMappingId, epochMillis))
+            {
+                clicks[0]++;
+            }
+        });
+        return clicks[0];
+    }
+
+    private long countInSegment(Path file, Range range) throws IOException
+    {
+        long[] clicks = new long[1];
+        scanSegment(file, range.maxUrlMappingId(), (urlMappingId, epochMillis) -> {
+            if(range.contains(urlMappingId, epochMillis))
+            {
+                clicks[0]++;
+            }
+        });
+        return clicks[0];
+    }
+
+    @FunctionalInterface
+    private interface ClickVisitor
+    {
+        void visit(long urlMappingId, long epochMillis);
+    }
+
+    //Visits every click of a log (nothing if it doesn't exist).
+    private void scanLog(Path file, ClickVisitor visitor) throws IOException
+    {
+        try(FileChannel log = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer records = ByteBuffer.allocateDirect(4096 * RECORD_SIZE);
+            while(log.read(records) > 0 || records.position() >= RECORD_SIZE)
+            {
+                records.flip();
+                while(records.remaining() >= RECORD_SIZE)
+                {
+                    visitor.visit(records.getLong(), records.getLong());
+                }
+                records.compact();      //keeps a record that was only partly read (or is still being appended)
+            }
+        }
+        catch(NoSuchFileException e)
+        {
+            //no clicks
+        }
+    }
+
+    //Visits the clicks of a segment (nothing if it doesn't exist) up to the last one of 'maxUrlMappingId'.
+    private void scanSegment(Path file, long maxUrlMappingId, ClickVisitor visitor) throws IOException
+    {
+        try(DataInputStream segment = openSegment(file))
+        {
+            long dayStartMillis = segment.readLong();
+            int count = segment.readInt();
+            long urlMappingId = -1;
+            long epochMillis = 0;
+            for(int i = 0; i < count; i++)
+            {
+                long idDelta = readVarLong(segment);
+                if(idDelta != 0)
+                {
+                    urlMappingId += idDelta;
+                    epochMillis = dayStartMillis + readVarLong(segment);
+                    if(urlMappingId > maxUrlMappingId)
+                    {
+                        break;          //sorted by mapping id, nothing of interest after this point
+                    }
+                }
+                else
+                {
+                    epochMillis += readVarLong(segment);
+                }
+                visitor.visit(urlMappingId, epochMillis);
+            }
+        }
+        catch(NoSuchFileException e)
+        {
+            //no clicks
+        }
+    }
+
+    private DataInputStream openSegment(Path file) throws IOException
+    {
+        DataInputStream segment = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 64 * 1024)));
+        if(segment.readInt() != SEGMENT_MAGIC)
+        {
+            segment.close();
+            throw new IOException(file + " is not a click log segment");
+        }
+        return segment;
+    }
+
+    @Override
+    public LocalDate firstDay()
+    {
+        try
+        {
+            TreeSet<LocalDate> days = days("*{" + LOG + "," + COMPACTING + "," + SEGMENT + "}");
+            return days.isEmpty() ? null : days.first();
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Could not list the click log", e);
+        }
+    }
+
+    //Counts the clicks of the day's files per (mapping, hour of the day) in memory: at most 24 counters per link clicked that day.
+    @Override
+    public void forEachHourlyCount(LocalDate day, HourlyCountHandler handler)
+    {
+        Map<Long, long[]> hourlyCounts = new HashMap<>();
+        ClickVisitor counter = (urlMappingId, epochMillis) ->
+                hourlyCounts.computeIfAbsent(urlMappingId, id -> new long[24])[LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone).getHour()]++;
+        filesLock.readLock().lock();
+        try
+        {
+            scanSegment(file(day, SEGMENT), Long.MAX_VALUE, counter);
+            scanLog(file(day, COMPACTING), counter);
+            scanLog(file(day, LOG), counter);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Could not read the click log of " + day, e);
+        }
+        finally
+        {
+            filesLock.readLock().unlock();
+        }
+        hourlyCounts.forEach((urlMappingId, counts) -> {
+            for(int hour = 0; hour < counts.length; hour++)
+            {
+                if(counts[hour] > 0)
+                {
+                    handler.accept(urlMappingId, day.atTime(hour, 0), counts[hour]);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isInDatabase()
+    {
+        return false;
+    }
+
+    //Deletes the files of the days before 'day' (a day is one file per stage, so there's nothing to batch).
+    @Override
+    public void dropBefore(LocalDate day, int batchSize)
+    {
+        appendLock.lock();
+        filesLock.writeLock().lock();
+        try
+        {
+            for(LocalDate old : days("*"))
+            {
+                if(old.isBefore(day))
+                {
+                    FileChannel open = openLogs.remove(old);
+                    if(open != null)
+                    {
+                        open.close();
+                    }
+                    for(String suffix : new String[] { LOG, COMPACTING, COMPACTED, SEGMENT, SEGMENT + ".tmp" })
+                    {
+                        Files.deleteIfExists(file(old, suffix));
+                    }
+                    log.info("Dropped the click log of {}", old);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Could not drop the click log before " + day, e);
+        }
+        finally
+        {
+            filesLock.writeLock().unlock();
+            appendLock.unlock();
+        }
+    }
+
+    //The days that have files matching the glob.
+    private TreeSet<LocalDate> days(String glob) throws IOException
+    {
+        TreeSet<LocalDate> days = new TreeSet<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob))
+        {
+            for(Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    days.add(LocalDate.parse(name.substring(0, Math.max(0, name.indexOf('.')))));
+                }
+                catch(DateTimeParseException e)
+                {
+                    log.warn("Ignoring {} in the click log directory", file);
+                }
+            }
+        }
+        return days;
+    }
+
+    @Scheduled(fixedDelayString = "${clixify.click-store.compaction-interval:PT1H}")
+    public void compact()
+    {
+        try
+        {
+            compact(LocalDateTime.now());
+        }
+        catch(IOException | UncheckedIOException e)
+        {
+            log.error("Could not compact the click log", e);
+        }
+    }
+
+    //Compacts the logs of every day that ended more than 'compactionGrace' before 'now'.
+    void compact(LocalDateTime now) throws IOException
+    {
+        for(LocalDate day : days("*{" + LOG + "," + COMPACTING + "}"))
+        {
+            if(!now.isBefore(day.plusDays(1).atStartOfDay().plus(compactionGrace)))
+            {
+                compactDay(day);
+            }
+        }
+    }
+
+    private void compactDay(LocalDate day) throws IOException
+    {
+        long startedAt = System.currentTimeMillis();
+        Path logFile = file(day, LOG);
+        Path compacting = file(day, COMPACTING);
+        Path segment = file(day, SEGMENT);
+        Path temporary = file(day, SEGMENT + ".tmp");
+
+        //1. the log becomes the file being compacted, clicks arriving from now on go to a new log (a leftover from a crash is compacted first)
+        appendLock.lock();
+        filesLock.writeLock().lock();
+        try
+        {
+            FileChannel open = openLogs.remove(day);
+            if(open != null)
+            {
+                open.close();
+            }
+            if(!Files.exists(compacting))
+            {
+                Files.move(logFile, compacting, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        finally
+        {
+            filesLock.writeLock().unlock();
+            appendLock.unlock();
+        }
+
+        //2. merge the existing segment and the compacted log into a new, sorted segment (without holding a lock)
+        long dayStartMillis = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        SortedClicks clicks = sort(readForCompaction(segment, compacting, dayStartMillis));
+        writeSegment(temporary, dayStartMillis, clicks);
+
+        //3. swap it in: from the first rename on the compacted log is known to be in the temporary segment, so a crash in between double-counts nothing
+        filesLock.writeLock().lock();
+        try
+        {
+            Files.move(compacting, file(day, COMPACTED), StandardCopyOption.ATOMIC_MOVE);
+            finishSwap(day);
+        }
+        finally
+        {
+            filesLock.writeLock().unlock();
+        }
+        log.info("Compacted the click log of {}: {} clicks in {} bytes ({} ms)", day, clicks.records().length, Files.size(segment), System.currentTimeMillis() - startedAt);
+    }
+
+    //Moves the temporary segment over the segment (unless a crash came after that) and deletes the .compacted log that is now part of it.
+    private void finishSwap(LocalDate day) throws IOException
+    {
+        Path temporary = file(day, SEGMENT + ".tmp");
+        if(Files.exists(temporary))
+        {
+            Files.move(temporary, file(day, SEGMENT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.delete(file(day, COMPACTED));
+    }
+
+    //The clicks of one day as read for compaction: the URL mapping id and the millis since the start of the day of each click.
+    private record DayClicks(long[] urlMappingIds, int[] timesOfDay)
+    {
+    }
+
+    //The clicks of one day sorted by (mapping, time): 'urlMappingIds' holds every id once, ascending, and each record is
+    //(index of its id in 'urlMappingIds' << TIME_OF_DAY_BITS | time of day). The index instead of the id itself keeps the packed value small
+    //whatever the ids are (sharded ids are 2^42 and more, see Shards), and sorting the longs still sorts by mapping and time.
+    private record SortedClicks(long[] urlMappingIds, long[] records)
+    {
+    }
+
+    //Every click of the segment and the log.
+    private DayClicks readForCompaction(Path segment, Path logFile, long dayStartMillis) throws IOException
+    {
+        int logged = Math.toIntExact(Files.size(logFile) / RECORD_SIZE);
+        long[] urlMappingIds = new long[logged];
+        int[] timesOfDay = new int[logged];
+        int size = 0;
+        if(Files.exists(segment))
+        {
+            try(DataInputStream in = openSegment(segment))
+            {
+                in.readLong();
+                int count = in.readInt();
+                urlMappingIds = Arrays.copyOf(urlMappingIds, logged + count);
+                timesOfDay = Arrays.copyOf(timesOfDay, logged + count);
+                long urlMappingId = -1;
+                long timeOfDay = 0;
+                for(int i = 0; i < count; i++)
+                {
+                    long idDelta = readVarLong(in);
+                    urlMappingId += idDelta;
+                    timeOfDay = idDelta != 0 ? readVarLong(in) : timeOfDay + readVarLong(in);
+                    urlMappingIds[size] = urlMappingId;
+                    timesOfDay[size++] = checkedTimeOfDay(urlMappingId, timeOfDay);
+                }
+            }
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 64 * 1024)))
+        {
+            while(size < urlMappingIds.length)
+            {
+                long urlMappingId = in.readLong();
+                urlMappingIds[size] = urlMappingId;
+                timesOfDay[size++] = checkedTimeOfDay(urlMappingId, in.readLong() - dayStartMillis);
+            }
+        }
+        return new DayClicks(urlMappingIds, timesOfDay);
+    }
+
+    private static int checkedTimeOfDay(long urlMappingId, long timeOfDay)
+    {
+        if(urlMappingId < 0 || timeOfDay < 0 || timeOfDay >= 1L << TIME_OF_DAY_BITS)
+        {
+            throw new IllegalStateException("Click of URL mapping " + urlMappingId + " at " + timeOfDay + " ms into the day can't be compacted");
+        }
+        return (int) timeOfDay;
+    }
+
+    private static SortedClicks sort(DayClicks clicks)
+    {
+        long[] ids = clicks.urlMappingIds().clone();
+        Arrays.sort(ids);
+        int distinct = 0;
+        for(int i = 0; i < ids.length; i++)
+        {
+            if(i == 0 || ids[i] != ids[i - 1])
+            {
+                ids[distinct++] = ids[i];
+            }
+        }
+        long[] urlMappingIds = Arrays.copyOf(ids, distinct);
+
+        long[] records = new long[clicks.urlMappingIds().length];
+        for(int i = 0; i < records.length; i++)
+        {
+            long index = Arrays.binarySearch(urlMappingIds, clicks.urlMappingIds()[i]);      //below 2^31, far from the 36 bits it may take
+            records[i] = index << TIME_OF_DAY_BITS | clicks.timesOfDay()[i];
+        }
+        Arrays.sort(records);
+        return new SortedClicks(urlMappingIds, records);
+    }
+
+    //Segment: magic, start of the day (epoch millis), number of clicks, then per click the id delta and either the time of day (new id) or the time delta (same id).
+    private void writeSegment(Path file, long dayStartMillis, SortedClicks clicks) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024))))
+        {
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeLong(dayStartMillis);
+            out.writeInt(clicks.records().length);
+            long previousId = -1;
+            long previousTime = 0;
+            for(long record : clicks.records())
+            {
+                long urlMappingId = clicks.urlMappingIds()[(int) (record >>> TIME_OF_DAY_BITS)];
+                long timeOfDay = record & ((1L << TIME_OF_DAY_BITS) - 1);
+                writeVarLong(out, urlMappingId - previousId);
+                writeVarLong(out, urlMappingId != previousId ? timeOfDay : timeOfDay - previousTime);
+                previousId = urlMappingId;
+                previousTime = timeOfDay;
+            }
+        }
+        try(FileChannel written = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            written.force(true);
+        }
+    }
+
+    //Unsigned LEB128: 7 bits per byte, the high bit marks that another byte follows.
+    private static void writeVarLong(DataOutput out, long value) throws IOException
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException
+    {
+        long value = 0;
+        for(int shift = 0; ; shift += 7)
+        {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0)
+            {
+                return value;
+            }
+        }
+    }
+
+    private Path file(LocalDate day, String suffix)
+    {
+        return directory.resolve(day + suffix);
+    }
+
+    private long epochMillis(LocalDateTime dateTime)
+    {
+        return dateTime.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    @PreDestroy
+    void close() throws IOException
+    {
+        appendLock.lock();
+        try
+        {
+            for(FileChannel log : openLogs.values())
+            {
+                log.close();
+            }
+            openLogs.clear();
+        }
+        finally
+        {
+            appendLock.unlock();
+        }
+    }
+
+    //DailyClickCount as returned by the database queries.
+    private record DailyClicks(LocalDate clickDate, Long clickCount) implements DailyClickCount
+    {
+        @Override
+        public LocalDate getClickDate()
+        {
+            return clickDate;
+        }
+
+        @Override
+        public Long getClickCount()
+        {
+            return clickCount;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Horizontal sharding of the links: the URL mappings and everything recorded per link (click events, rollups, visitor sketches) are spread over
+the databases listed in 'clixify.datasource.shards.urls' (see config/ShardingConfig), the database of 'spring.datasource.*' being shard 0.
+Without that property there is one shard and every method here runs its work directly, as before.
+- Each link belongs to one of SLOTS (1024) slots, fixed for good by its short code (slotOf), and its id carries the same slot in its low bits
+  (see model/SlottedSequenceGenerator). The shard_slots table on shard 0 maps each slot to a shard, and every instance keeps a copy of it
+  that is refreshed every 'clixify.sharding.map-refresh'. Adding a database only means moving slots to it (see Resharding), the short links
+  themselves never change.
+- Every change of the map gets a new version (shard_map_version), and each instance records the version it loaded in shard_map_readers,
+  so a move waits until all running instances have its change (awaitSlotMap) instead of guessing how long that takes.
+- The shard of a statement is picked by the routing data source from the current thread (on()): a link's operations run on its shard,
+  per-user queries run on every shard in parallel and the results are merged (onEach()).
+- Links created before the ids carried their slot (ids below FIRST_SLOTTED_ID) stay on shard 0, and slots are never moved away with them.
+  A short code that isn't found on its slot's shard is therefore also looked up on shard 0.
+- A new shard gets the schema from the entity mappings on its first start (with spring.jpa.hibernate.ddl-auto other than none/validate),
+  its url_mapping_seq is started in a range of its own so ids stay unique across shards, and the users are copied to it: users live on
+  shard 0, every other shard holds a copy of the rows for the url_mappings foreign key (new users are copied as they register).
+- The map is filled on the first start: slot % shard count for an empty database, every slot on shard 0 if there are links already
+  (spread them with Resharding).
+Note: creating links in bulk is one transaction per shard, not one for the whole request.
+*/
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+@Slf4j
+@Component
+public class Shards
+{
+    public static final int SLOTS = 1024;
+    public static final long FIRST_SLOTTED_ID = 10_000_000L * SLOTS;       //the first value of url_mapping_seq times SLOTS, older ids are below it
+    private static final long SEQUENCE_RANGE = 1L << 32;                   //url_mapping_seq of shard k starts at k * SEQUENCE_RANGE (shard 0 at 10 000 000)
+    private static final int COPY_BATCH_SIZE = 1000;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean createSchema;
+    private final Duration instanceTimeout;
+    private final String instance = UUID.randomUUID().toString();       //this instance's row in shard_map_readers
+    private final ExecutorService scatter = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile SlotMap slotMap;
+
+    //Where each slot is, and whether it is being moved to another shard (writes to its links are held back meanwhile, see Resharding).
+    private record SlotMap(int[] shards, boolean[] moving)
+    {
+    }
+
+    public Shards(JdbcTemplate jdbcTemplate,
+                  PlatformTransactionManager transactionManager,
+                  EntityManagerFactory entityManagerFactory,
+                  @Value("${clixify.datasource.shards.urls:}") List<String> shardUrls,
+                  @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto,
+                  @Value("${clixify.sharding.instance-timeout:PT1M}") Duration instanceTimeout)
+    {
+        this.count = 1 + shardUrls.size();
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityManagerFactory = entityManagerFactory;
+        this.createSchema = !ddlAuto.equals("none") && !ddlAuto.equals("validate");
+        this.instanceTimeout = instanceTimeout;
+        this.slotMap = new SlotMap(new int[SLOTS], new boolean[SLOTS]);
+    }
+
+    //The shard the statements of the current thread go to (read by config/ShardRoutingDataSource).
+    public static int current()
+    {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    //The slot of a short code, fixed for good.
+    public static int slotOf(String shortUrl)
+    {
+        return (shortUrl.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SLOTS));       //Fibonacci hashing: the top 10 bits of the scrambled String hash
+    }
+
+    //The slot of a URL mapping id, -1 for the ids from before the slots (they stay on shard 0).
+    public static int slotOf(long urlMappingId)
+    {
+        return urlMappingId < FIRST_SLOTTED_ID ? -1 : (int) (urlMappingId % SLOTS);
+    }
+
+    public int count()
+    {
+        return count;
+    }
+
+    public int shardOf(String shortUrl)
+    {
+        return count == 1 ? 0 : slotMap.shards()[slotOf(shortUrl)];
+    }
+
+    public int shardOf(Long urlMappingId)
+    {
+        int slot = slotOf(urlMappingId);
+        return count == 1 || slot < 0 ? 0 : slotMap.shards()[slot];
+    }
+
+    //True while the link's slot is being moved: its clicks, counts and sketches stay in memory until the move is over.
+    public boolean isMoving(Long urlMappingId)
+    {
+        int slot = slotOf(urlMappingId);
+        return count > 1 && slot >= 0 && slotMap.moving()[slot];
+    }
+
+    //True if new links must not get this short code (its slot is being moved).
+    public boolean isMoving(String shortUrl)
+    {
+        return count > 1 && slotMap.moving()[slotOf(shortUrl)];
+    }
+
+    //Runs 'work' with its statements going to 'shard'. Inside a transaction it runs in a new transaction of its own (the surrounding one may be on another shard).
+    //An EntityManager bound to the thread without a transaction (open-in-view, if someone turns it back on) holds the connection of the shard
+    //it was first used on, so it is set aside while 'work' runs and 'work' gets EntityManagers of its own.
+    public <T> T on(int shard, Supplier<T> work)
+    {
+        if(count == 1)
+        {
+            return work.get();
+        }
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        Object boundEntityManager = inTransaction ? null : TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        try
+        {
+            return inTransaction ? newTransaction.execute(status -> work.get()) : work.get();
+        }
+        finally
+        {
+            if(boundEntityManager != null)
+            {
+                TransactionSynchronizationManager.bindResource(entityManagerFactory, boundEntityManager);
+            }
+            CURRENT.set(previous);
+        }
+    }
+
+    public void run(int shard, Runnable work)
+    {
+        on(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    //Runs 'work' on every shard in parallel (each on a virtual thread of its own) and returns the results in shard order (scatter-gather).
+    public <T> List<T> onEach(IntFunction<T> work)
+    {
+        if(count == 1)
+        {
+            List<T> results = new ArrayList<>(1);
+            results.add(work.apply(0));
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for(int shard = 0; shard < count; shard++)
+        {
+            int target = shard;
+            futures.add(scatter.submit(() -> on(target, () -> work.apply(target))));
+        }
+        List<T> results = new ArrayList<>(count);
+        try
+        {
+            for(Future<T> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof RuntimeException cause)
+            {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    //Runs 'work' on one shard after the other (for background jobs that shouldn't load all databases at once).
+    public void forEach(IntConsumer work)
+    {
+        for(int shard = 0; shard < count; shard++)
+        {
+            int target = shard;
+            run(shard, () -> work.accept(target));
+        }
+    }
+
+    //Splits the items by the shard of their URL mapping id.
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, ToLongFunction<T> urlMappingId)
+    {
+        Map<Integer, List<T>> byShard = new HashMap<>();
+        if(count == 1)
+        {
+            byShard.put(0, new ArrayList<>(items));
+            return byShard;
+        }
+        for(T item : items)
+        {
+            byShard.computeIfAbsent(shardOf(urlMappingId.applyAsLong(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return byShard;
+    }
+
+    @PostConstruct
+    void start()
+    {
+        if(count == 1)
+        {
+            return;
+        }
+        for(int shard = 1; shard < count; shard++)
+        {
+            int target = shard;
+            run(shard, () -> prepareShard(target));
+        }
+        run(0, this::fillSlotMap);
+        refresh();
+        copyUsers();
+        log.info("Sharding over {} databases", count);
+    }
+
+    @PreDestroy
+    void stop()
+    {
+        scatter.shutdown();
+        if(count > 1)
+        {
+            try
+            {
+                run(0, () -> jdbcTemplate.update("delete from shard_map_readers where instance = ?", instance));     //moves don't wait for a stopped instance
+            }
+            catch(DataAccessException e)
+            {
+                log.warn("Could not remove this instance from the shard map readers, moves ignore it after {}", instanceTimeout, e);
+            }
+        }
+    }
+
+    //Gives a shard that has no url_mappings table yet the schema and its own range of ids.
+    private void prepareShard(int shard)
+    {
+        if(!createSchema || tableExists("url_mappings"))
+        {
+            return;
+        }
+        entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager().exportMappedObjects(true);
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        long start = shard * SEQUENCE_RANGE;
+        if("MySQL".equals(database) || "MariaDB".equals(database))
+        {
+            jdbcTemplate.update("update url_mapping_seq set next_val = ?", start);        //Hibernate's table emulation of the sequence
+        }
+        else
+        {
+            jdbcTemplate.execute("alter sequence url_mapping_seq restart with " + start);
+        }
+        log.info("Created the schema of shard {}", shard);
+    }
+
+    private boolean tableExists(String table)
+    {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for(String name : new String[] { table, table.toUpperCase() })
+            {
+                try(ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, null))
+                {
+                    if(tables.next())
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+
+    private void fillSlotMap()
+    {
+        if(jdbcTemplate.queryForObject("select count(*) from shard_map_version", Integer.class) == 0)
+        {
+            jdbcTemplate.update("insert into shard_map_version (id, map_version) values (1, 0)");
+        }
+        if(jdbcTemplate.queryForObject("select count(*) from shard_slots", Integer.class) > 0)
+        {
+            return;
+        }
+        boolean hasLinks = jdbcTemplate.queryForObject("select count(*) from url_mappings", Integer.class) > 0;
+        List<Object[]> slots = new ArrayList<>(SLOTS);
+        for(int slot = 0; slot < SLOTS; slot++)
+        {
+            slots.add(new Object[] { slot, hasLinks ? 0 : slot % count });
+        }
+        jdbcTemplate.batchUpdate("insert into shard_slots (slot, shard, moving) values (?, ?, false)", slots);
+    }
+
+    //Reloads the slot map from shard 0, so slots moved by any instance are picked up, and records the version loaded (see awaitSlotMap).
+    @Scheduled(fixedDelayString = "${clixify.sharding.map-refresh:PT5S}")
+    public void refresh()
+    {
+        if(count == 1)
+        {
+            return;
+        }
+        try
+        {
+            run(0, () -> {
+                long version = jdbcTemplate.queryForObject("select map_version from shard_map_version where id = 1", Long.class);     //before the slots: they have at least this version's changes
+                int[] shards = new int[SLOTS];
+                boolean[] moving = new boolean[SLOTS];
+                jdbcTemplate.query("select slot, shard, moving from shard_slots", (RowCallbackHandler) rs -> {
+                    shards[rs.getInt(1)] = rs.getInt(2);
+                    moving[rs.getInt(1)] = rs.getBoolean(3);
+                });
+                slotMap = new SlotMap(shards, moving);
+                long now = System.currentTimeMillis();
+                if(jdbcTemplate.update("update shard_map_readers set map_version = ?, seen_millis = ? where instance = ?", version, now, instance) == 0)
+                {
+                    jdbcTemplate.update("insert into shard_map_readers (instance, map_version, seen_millis) values (?, ?, ?)", instance, version, now);
+                }
+            });
+        }
+        catch(DataAccessException e)
+        {
+            log.error("Could not reload the shard slot map, the previous one stays in use", e);
+        }
+    }
+
+    //Gives the slot map a new version after a change of shard_slots, returns it (to wait for with awaitSlotMap).
+    //Versions only grow, so the one returned is the change's own or a later one, which has the change as well.
+    public long nextSlotMapVersion()
+    {
+        return on(0, () -> {
+            jdbcTemplate.update("update shard_map_version set map_version = map_version + 1 where id = 1");
+            return jdbcTemplate.queryForObject("select map_version from shard_map_version where id = 1", Long.class);
+        });
+    }
+
+    //Waits until every running instance has loaded the slot map of 'version' (or a later one), this one right away.
+    //Running means it refreshed its map within 'clixify.sharding.instance-timeout': an instance that crashed, or can't reach shard 0 any more,
+    //stops holding up the move once its last refresh is that old.
+    public void awaitSlotMap(long version)
+    {
+        refresh();
+        long pollMillis = 100;
+        while(true)
+        {
+            long behind = on(0, () -> jdbcTemplate.queryForObject("select count(*) from shard_map_readers where map_version < ? and seen_millis > ?",
+                    Long.class, version, System.currentTimeMillis() - instanceTimeout.toMillis()));
+            if(behind == 0)
+            {
+                return;
+            }
+            log.debug("Waiting for {} instances to load version {} of the shard map", behind, version);
+            try
+            {
+                Thread.sleep(pollMillis);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the instances to load the shard map", e);
+            }
+            pollMillis = Math.min(pollMillis * 2, 1000);
+        }
+    }
+
+    //Copies the users that a shard doesn't have yet from shard 0 (users are only ever added, so the ones above its highest id).
+    public void copyUsers()
+    {
+        for(int shard = 1; shard < count; shard++)
+        {
+            Long highest = on(shard, () -> jdbcTemplate.queryForObject("select coalesce(max(user_id), 0) from users", Long.class));
+            copyRows(0, shard, "users", "user_id > ?", new Object[] { highest }, null);
+        }
+    }
+
+    //Copies a newly registered user to the other shards.
+    public void copyUser(Long userId)
+    {
+        for(int shard = 1; shard < count; shard++)
+        {
+            copyRows(0, shard, "users", "user_id = ?", new Object[] { userId }, null);
+        }
+    }
+
+    //Copies the rows of 'table' matching 'where' from one shard to another in batches, leaving out 'skipColumn' (a generated id) if not null.
+    //Returns the number of rows copied.
+    long copyRows(int from, int to, String table, String where, Object[] arguments, String skipColumn)
+    {
+        List<Object[]> batch = new ArrayList<>(COPY_BATCH_SIZE);
+        String[] insert = new String[1];
+        long[] copied = new long[1];
+        run(from, () -> jdbcTemplate.query("select * from " + table + " where " + where, (RowCallbackHandler) rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            if(insert[0] == null)
+            {
+                List<String> columns = new ArrayList<>();
+                for(int i = 1; i <= metaData.getColumnCount(); i++)
+                {
+                    if(!metaData.getColumnLabel(i).equalsIgnoreCase(skipColumn))
+                    {
+                        columns.add(metaData.getColumnLabel(i));
+                    }
+                }
+                insert[0] = "insert into " + table + " (" + String.join(", ", columns) + ") values (" + "?, ".repeat(columns.size() - 1) + "?)";
+            }
+            List<Object> row = new ArrayList<>(metaData.getColumnCount());
+            for(int i = 1; i <= metaData.getColumnCount(); i++)
+            {
+                if(!metaData.getColumnLabel(i).equalsIgnoreCase(skipColumn))
+                {
+                    row.add(rs.getObject(i));
+                }
+            }
+            batch.add(row.toArray());
+            if(batch.size() == COPY_BATCH_SIZE)
+            {
+                copied[0] += insertBatch(to, insert[0], batch);
+            }
+        }, arguments));
+        copied[0] += insertBatch(to, insert[0], batch);
+        return copied[0];
+    }
+
+    private int insertBatch(int shard, String insert, List<Object[]> batch)
+    {
+        int rows = batch.size();
+        if(rows > 0)
+        {
+            run(shard, () -> jdbcTemplate.batchUpdate(insert, batch));
+            batch.clear();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,32 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+The second (shared) tier of the caches (see TwoTierCache), seen by every instance, chosen with 'clixify.cache.shared':
+    none   - no shared tier, every instance only has its in-process caches (the default)
+    redis  - a Redis-protocol server at 'clixify.cache.redis.url' (RedisSharedCache)
+    memory - an in-process stand-in with the same behaviour (InMemorySharedCache), for development and tests on one machine
+Besides the values it carries the invalidations: when a cached value changes, every instance is told to drop its in-process copy.
+Implementations may throw RuntimeExceptions (e.g. when the server can't be reached), TwoTierCache then falls back to the database.
+*/
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+public interface SharedCache
+{
+    //The value of the key, or null if there is none (or it expired).
+    byte[] get(String key);
+
+    void set(String key, byte[] value, Duration ttl);
+
+    //Sets the value only if the key has none, returns true if it was set (used as a short-lived lock).
+    boolean setIfAbsent(String key, byte[] value, Duration ttl);
+
+    void delete(String key);
+
+    //Tells every instance (this one included) that 'key' of the cache 'cache' changed.
+    void publishInvalidation(String cache, String key);
+
+    //Registers a listener for the invalidations published by any instance: (cache, key).
+    void onInvalidation(BiConsumer<String, String> listener);
+}
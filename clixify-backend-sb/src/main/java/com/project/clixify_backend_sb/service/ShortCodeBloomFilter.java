@@ -0,0 +1,118 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Thread-safe Bloom filter of short codes (used by ShortCodeFilter).
+- mightContain() never returns false for a code that was put(), and returns true for a code that was never put() with a probability
+  of about the false positive rate it was sized for (as long as no more than 'expectedInsertions' codes are put).
+- Sized with the usual formulas: bits m = -n * ln(p) / ln(2)^2 and hash functions k = m / n * ln(2), e.g. 10 million codes at 1% take 12 MB and 7 hash functions.
+- The k bit positions come from two 64-bit hashes of the code (double hashing: h1 + i * h2), so each lookup hashes the code only once.
+- Bits are set with an atomic OR on an AtomicLongArray, so puts from many threads and concurrent lookups need no lock.
+*/
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ShortCodeBloomFilter
+{
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final LongAdder insertions = new LongAdder();
+
+    public ShortCodeBloomFilter(long expectedInsertions, double falsePositiveRate)
+    {
+        if(expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+        {
+            throw new IllegalArgumentException("expectedInsertions must be > 0 and falsePositiveRate between 0 and 1");
+        }
+        long words = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) / Long.SIZE);
+        this.bits = new AtomicLongArray(Math.toIntExact(Math.max(1, words)));
+        this.bitSize = (long) bits.length() * Long.SIZE;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String code)
+    {
+        long hash = hash(code);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L);
+        for(int i = 0; i < hashFunctions; i++)
+        {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            long mask = 1L << bit;          //only the low 6 bits of the shift count are used
+            int word = (int) (bit >>> 6);
+            if((bits.get(word) & mask) == 0)
+            {
+                bits.accumulateAndGet(word, mask, (current, add) -> current | add);
+            }
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(String code)
+    {
+        long hash = hash(code);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L);
+        for(int i = 0; i < hashFunctions; i++)
+        {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            if((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize()
+    {
+        return bitSize;
+    }
+
+    public int hashFunctions()
+    {
+        return hashFunctions;
+    }
+
+    //Number of put() calls (a code put twice counts twice).
+    public long insertions()
+    {
+        return insertions.sum();
+    }
+
+    //Current false positive rate, from the share of bits that are set: a code that was never put only passes if all its k bits happen to be set.
+    //Counts every set bit, so call it for stats only, not per request.
+    public double expectedFalsePositiveRate()
+    {
+        long setBits = 0;
+        for(int i = 0; i < bits.length(); i++)
+        {
+            setBits += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double) setBits / bitSize, hashFunctions);
+    }
+
+    //64-bit FNV-1a hash of the code's characters.
+    private static long hash(String code)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < code.length(); i++)
+        {
+            hash ^= code.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    //MurmurHash3 finalizer, spreads the FNV hash over all 64 bits.
+    private static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,189 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Guard in front of the redirect lookup that answers "this short code does not exist" without a database query,
+so scanners and bots trying random codes end up in a 404 straight away.
+- At startup (before the web server accepts requests) a Bloom filter of every short code in url_mappings is built, and codes created
+  by this instance are added to it as they are created. The filter is rebuilt every 'clixify.shortcode-filter.rebuild-interval',
+  sized for twice the current number of links (at least 'clixify.shortcode-filter.expected-insertions') and 'clixify.shortcode-filter.false-positive-rate'.
+- Codes created by OTHER instances after the last build are not in our filter. The creation time of a code can be read back from the code
+  (see ShortCodeGenerator.createdAtMillis()), so codes created after the last build (minus 'clixify.shortcode-filter.recent-margin',
+  for transactions that were still open during the build) always go to the database. A new link is therefore never answered with a 404.
+- Only codes that are neither in the filter nor recent are rejected. A Bloom filter has no false negatives, so a rejected code really doesn't exist.
+  The codes that pass the filter but are not in the database are the false positives, counted in stats() together with the rejected codes.
+- The build reads in a read-only transaction, so with read replicas (see config/ReadReplicaConfig) it scans a replica. Codes the replica
+  doesn't have yet are younger than its lag, which is kept below 'clixify.datasource.replica.max-lag' (default 5 s), far inside the recent margin.
+- With sharding (see Shards) the build reads the shards one after the other into the same filter.
+- Until the first build has finished (or with 'clixify.shortcode-filter.enabled=false') every code goes to the database.
+*/
+
+import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+public class ShortCodeFilter implements SmartInitializingSingleton, MeterBinder
+{
+    private final UrlMappingRepository urlMappingRepository;
+    private final Shards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final long recentMarginMillis;
+
+    private volatile Snapshot snapshot;         //null until the first build has finished
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    //The filter together with the time its build started: codes created from then on may be missing from it.
+    private record Snapshot(ShortCodeBloomFilter filter, long builtFromMillis)
+    {
+    }
+
+    //Numbers for monitoring the filter, see stats().
+    public record Stats(
+            boolean ready,                      //false until the first build has finished (everything goes to the database until then)
+            long bitSize,                       //size of the filter in bits (bitSize / 8 bytes of memory)
+            int hashFunctions,
+            long insertions,                    //codes put into the current filter
+            double expectedFalsePositiveRate,   //computed from the share of set bits
+            long rejected,                      //lookups answered as "doesn't exist" without a database query
+            long falsePositives                 //lookups that passed the filter but were not in the database
+    )
+    {
+    }
+
+    public ShortCodeFilter(UrlMappingRepository urlMappingRepository,
+                           Shards shards,
+                           PlatformTransactionManager transactionManager,
+                           ShortCodeGenerator shortCodeGenerator,
+                           @Value("${clixify.shortcode-filter.enabled:true}") boolean enabled,
+                           @Value("${clixify.shortcode-filter.expected-insertions:10000000}") long expectedInsertions,
+                           @Value("${clixify.shortcode-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${clixify.shortcode-filter.recent-margin:PT1M}") Duration recentMargin)
+    {
+        this.urlMappingRepository = urlMappingRepository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.recentMarginMillis = recentMargin.toMillis();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated()
+    {
+        rebuild();
+    }
+
+    //False only if the short code certainly doesn't exist.
+    public boolean mightExist(String shortUrl)
+    {
+        Snapshot current = snapshot;
+        if(current == null || current.filter().mightContain(shortUrl))
+        {
+            return true;
+        }
+        long createdAt = shortCodeGenerator.createdAtMillis(shortUrl);
+        if(createdAt >= current.builtFromMillis() - recentMarginMillis && createdAt <= System.currentTimeMillis() + recentMarginMillis)
+        {
+            return true;        //created after the last build, possibly by another instance
+        }
+        rejected.increment();
+        return false;
+    }
+
+    //Called for every short code created by this instance (before it is saved, so it can't be rejected once it's visible).
+    public void add(String shortUrl)
+    {
+        Snapshot current = snapshot;
+        if(current != null)
+        {
+            current.filter().put(shortUrl);
+        }
+    }
+
+    //Called when a code passed mightExist() but was not found in the database.
+    public void recordFalsePositive()
+    {
+        falsePositives.increment();
+    }
+
+    //Builds a new filter from the database and swaps it in. Codes added while it is being built are covered by the "recent" check.
+    @Scheduled(fixedDelayString = "${clixify.shortcode-filter.rebuild-interval:PT6H}", initialDelayString = "${clixify.shortcode-filter.rebuild-interval:PT6H}")
+    public void rebuild()
+    {
+        if(!enabled)
+        {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try
+        {
+            long links = shards.onEach(shard -> urlMappingRepository.count()).stream().mapToLong(Long::longValue).sum();
+            ShortCodeBloomFilter filter = new ShortCodeBloomFilter(Math.max(expectedInsertions, links * 2), falsePositiveRate);
+            shards.forEach(shard -> readOnlyTransaction.executeWithoutResult(status -> {
+                try(Stream<String> shortUrls = urlMappingRepository.streamAllShortUrls())
+                {
+                    shortUrls.forEach(filter::put);
+                }
+            }));
+            snapshot = new Snapshot(filter, startedAt);
+            log.info("Built the short code filter with {} codes ({} KB) in {} ms", filter.insertions(), filter.bitSize() / 8 / 1024, System.currentTimeMillis() - startedAt);
+        }
+        catch(DataAccessException e)
+        {
+            log.error("Could not build the short code filter, the previous one stays in use", e);
+        }
+    }
+
+    public Stats stats()
+    {
+        Snapshot current = snapshot;
+        if(current == null)
+        {
+            return new Stats(false, 0, 0, 0, 1.0, rejected.sum(), falsePositives.sum());
+        }
+        ShortCodeBloomFilter filter = current.filter();
+        return new Stats(true, filter.bitSize(), filter.hashFunctions(), filter.insertions(), filter.expectedFalsePositiveRate(), rejected.sum(), falsePositives.sum());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("clixify.shortcode.filter.size", this, filter -> filter.snapshot == null ? 0 : filter.snapshot.filter().bitSize() / 8.0)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("clixify.shortcode.filter.insertions", this, filter -> filter.snapshot == null ? 0 : filter.snapshot.filter().insertions()).register(registry);
+        Gauge.builder("clixify.shortcode.filter.false.positive.rate", this, filter -> filter.stats().expectedFalsePositiveRate())
+                .description("Expected false positive rate, from the share of set bits")
+                .register(registry);
+        FunctionCounter.builder("clixify.shortcode.filter.rejected", rejected, LongAdder::sum)
+                .description("Unknown short codes answered without a database query")
+                .register(registry);
+        FunctionCounter.builder("clixify.shortcode.filter.false.positives", falsePositives, LongAdder::sum)
+                .description("Short codes that passed the filter but were not in the database")
+                .register(registry);
+    }
+}
@@ -0,0 +1,16 @@
+package com.project.clixify_backend_sb.service;
+
+//Strategy for generating the short code of a new URL mapping (the '{shortUrl}' part of the short link).
+//Implementations must be thread-safe and must never return the same code twice, so createShortUrl doesn't need to check the database for an existing code
+//(a code that turns out to be taken all the same, e.g. from a misconfigured second instance, is replaced by the next one).
+public interface ShortCodeGenerator
+{
+    String nextCode();
+
+    //Time (epoch milliseconds) at which this generator created the code, or -1 if the code can't have come from this generator.
+    //Used by ShortCodeFilter to recognize codes that were created after its Bloom filter was built (possibly by another instance).
+    default long createdAtMillis(String code)
+    {
+        return -1;
+    }
+}
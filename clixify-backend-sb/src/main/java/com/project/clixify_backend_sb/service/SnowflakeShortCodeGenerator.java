@@ -0,0 +1,175 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Short code generator based on a time + node + counter id (like Twitter's "Snowflake" ids):
+
+    | 41 bits: milliseconds since 2024-01-01 | 10 bits: node id | 12 bits: counter within the millisecond |
+
+- Unique without asking the database: two ids from the same node differ in time or counter, and ids from different nodes differ in the node id
+  ('clixify.shortcode.node-id', 0-1023, must be different for every running instance). Left unset, a single instance uses 0 and says so loudly
+  in the log; with a shared cache ('clixify.cache.shared', i.e. several instances) the application refuses to start without it. Should two
+  instances still share a node id, UrlMappingService retries the insert that hits a taken code with a new one.
+- Lock-free: the (time, counter) pair is kept in one AtomicLong and advanced with compare-and-set. When more than 4096 codes are asked for in one millisecond,
+  the counter overflows into the time part, i.e. we borrow the next millisecond instead of waiting for it. That also keeps ids increasing if the clock goes backwards.
+- The id is then scrambled with a reversible (bijective) 64-bit mix, so consecutive links don't get guessable, consecutive codes,
+  and written as exactly 11 base62 characters [0-9A-Za-z] (62^11 > 2^64, so every 64-bit value fits).
+- As the mix can be reversed, createdAtMillis() reads the creation time back out of a code (used by ShortCodeFilter).
+*/
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class SnowflakeShortCodeGenerator implements ShortCodeGenerator
+{
+    static final int CODE_LENGTH = 11;
+
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int COUNTER_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final long nodeId;
+    private final AtomicLong state = new AtomicLong();     //(milliseconds since EPOCH_MILLIS << COUNTER_BITS) | counter
+
+    @Autowired
+    public SnowflakeShortCodeGenerator(@Value("${clixify.shortcode.node-id:}") String nodeId, @Value("${clixify.cache.shared:none}") String sharedCache)
+    {
+        this(configuredNodeId(nodeId, sharedCache));
+    }
+
+    public SnowflakeShortCodeGenerator(long nodeId)
+    {
+        if(nodeId < 0 || nodeId > MAX_NODE_ID)
+        {
+            throw new IllegalArgumentException("clixify.shortcode.node-id must be between 0 and " + MAX_NODE_ID + " but was " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    //The node id of the configuration. Unset is only acceptable for a single instance: two instances on the same node id create the same codes.
+    private static long configuredNodeId(String nodeId, String sharedCache)
+    {
+        if(!nodeId.isBlank())
+        {
+            return Long.parseLong(nodeId.trim());
+        }
+        if(!sharedCache.equalsIgnoreCase("none"))
+        {
+            throw new IllegalStateException("clixify.shortcode.node-id must be set, to a different value on every instance, when several instances run"
+                    + " (clixify.cache.shared=" + sharedCache + ")");
+        }
+        log.warn("clixify.shortcode.node-id is not set, using 0. Give every instance its own node id before starting a second one,"
+                + " or both will create the same short codes");
+        return 0;
+    }
+
+    @Override
+    public String nextCode()
+    {
+        return encode(mix(nextId()));
+    }
+
+    //Next unique 64-bit id of this node (before scrambling).
+    long nextId()
+    {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << COUNTER_BITS;
+        long previous;
+        long next;
+        do
+        {
+            previous = state.get();
+            next = now > previous ? now : previous + 1;     //new millisecond -> counter restarts at 0, same (or earlier) millisecond -> counter + 1
+        }
+        while(!state.compareAndSet(previous, next));
+
+        long millis = next >>> COUNTER_BITS;
+        long counter = next & COUNTER_MASK;
+        return (millis << (NODE_BITS + COUNTER_BITS)) | (nodeId << COUNTER_BITS) | counter;
+    }
+
+    @Override
+    public long createdAtMillis(String code)
+    {
+        if(code == null || code.length() != CODE_LENGTH)
+        {
+            return -1;
+        }
+        long value = 0;
+        for(int i = 0; i < CODE_LENGTH; i++)
+        {
+            int digit = digit(code.charAt(i));
+            //not base62, or larger than an unsigned 64-bit value (value * 62 + digit must stay <= 2^64 - 1)
+            if(digit < 0 || Long.compareUnsigned(value, Long.divideUnsigned(-1L - digit, ALPHABET.length)) > 0)
+            {
+                return -1;
+            }
+            value = value * ALPHABET.length + digit;
+        }
+        long id = unmix(value);
+        if(id < 0)
+        {
+            return -1;      //the time part is only 41 bits, so the top bit of a real id is never set
+        }
+        return (id >>> (NODE_BITS + COUNTER_BITS)) + EPOCH_MILLIS;
+    }
+
+    private static int digit(char c)
+    {
+        if(c >= '0' && c <= '9')
+        {
+            return c - '0';
+        }
+        if(c >= 'A' && c <= 'Z')
+        {
+            return c - 'A' + 10;
+        }
+        if(c >= 'a' && c <= 'z')
+        {
+            return c - 'a' + 36;
+        }
+        return -1;
+    }
+
+    //Reversible 64-bit mix (the finalizer of MurmurHash3): every step is a bijection, so different ids always give different results.
+    static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    //Inverse of mix(): the same steps in reverse order, multiplying by the modular inverses of the two constants.
+    static long unmix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0x9cb4b2f8129337dbL;
+        value ^= value >>> 33;
+        value *= 0x4f74430c22a54005L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    //Writes the value as an unsigned number in base62, left-padded to CODE_LENGTH characters.
+    static String encode(long value)
+    {
+        char[] code = new char[CODE_LENGTH];
+        for(int i = CODE_LENGTH - 1; i >= 0; i--)
+        {
+            code[i] = ALPHABET[(int) Long.remainderUnsigned(value, ALPHABET.length)];
+            value = Long.divideUnsigned(value, ALPHABET.length);
+        }
+        return new String(code);
+    }
+}
@@ -0,0 +1,175 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+"Trending now": the most clicked links of the last 'clixify.trending.buckets' x 'clixify.trending.bucket-duration' (12 x 5 minutes = the last hour by default),
+fed from the redirect path and answered without touching the click events.
+- Clicks are counted in a ring of Count-Min Sketches, one per time bucket, plus one sketch holding the sum of all buckets (the window).
+  Every bucket-duration the oldest bucket is subtracted from the window and cleared, and becomes the bucket that new clicks go to,
+  so the window always covers the last buckets * bucket-duration (minus the part of the current bucket that hasn't happened yet).
+- Next to the sketches we keep the 'clixify.trending.capacity' links with the highest window estimates (the candidates). A click on a candidate
+  just updates its estimate; any other link is only admitted when its estimate beats the smallest candidate, which is remembered as a threshold,
+  so most clicks don't take the admission lock at all (and if it's busy the click skips admission, the link's next click tries again).
+  Candidates are re-estimated when a bucket expires, so links that stopped being clicked drop out.
+- Memory is fixed: (buckets + 1) * depth * width ints for the sketches (1.7 MB by default) plus the candidates.
+- top() answers from the candidates (O(capacity), no sketch or database access). topOf() ranks a given set of links (e.g. the candidates
+  of one user's trending links, see UrlMappingService.getTrendingUrlsByUser) by their window estimate with a bounded min-heap of the 'limit' best.
+*/
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class TrendingLinks
+{
+    private final CountMinSketch[] buckets;
+    private final CountMinSketch window;                //sum of all buckets
+    private final int capacity;
+    private volatile int current;                       //index of the bucket new clicks go to
+
+    private final ConcurrentHashMap<Long, Integer> candidates = new ConcurrentHashMap<>();      //url mapping id -> window estimate
+    private final ReentrantLock admissionLock = new ReentrantLock();                            //admissions and re-estimation of the candidates
+    private volatile int admissionThreshold;            //estimate a link needs to beat to become a candidate (0 while there's room)
+
+    //A link and its estimated clicks in the window.
+    public record TrendingLink(Long urlMappingId, int clicks)
+    {
+    }
+
+    public TrendingLinks(@Value("${clixify.trending.buckets:12}") int buckets,
+                         @Value("${clixify.trending.sketch-depth:4}") int depth,
+                         @Value("${clixify.trending.sketch-width:8192}") int width,
+                         @Value("${clixify.trending.capacity:100}") int capacity)
+    {
+        this.buckets = new CountMinSketch[buckets];
+        for(int i = 0; i < buckets; i++)
+        {
+            this.buckets[i] = new CountMinSketch(depth, width);
+        }
+        this.window = new CountMinSketch(depth, width);
+        this.capacity = capacity;
+    }
+
+    //Called on the redirect path for every click.
+    public void record(Long urlMappingId)
+    {
+        buckets[current].add(urlMappingId, 1);
+        window.add(urlMappingId, 1);
+        int estimate = window.estimate(urlMappingId);
+        if(candidates.replace(urlMappingId, estimate) == null && estimate > admissionThreshold && admissionLock.tryLock())
+        {
+            try
+            {
+                admit(urlMappingId, estimate);
+            }
+            finally
+            {
+                admissionLock.unlock();
+            }
+        }
+    }
+
+    private void admit(Long urlMappingId, int estimate)
+    {
+        if(candidates.size() >= capacity)
+        {
+            Map.Entry<Long, Integer> smallest = smallestCandidate();
+            if(estimate <= smallest.getValue())
+            {
+                admissionThreshold = smallest.getValue();
+                return;
+            }
+            candidates.remove(smallest.getKey());
+        }
+        candidates.put(urlMappingId, estimate);
+        updateThreshold();
+    }
+
+    private Map.Entry<Long, Integer> smallestCandidate()
+    {
+        return candidates.entrySet().stream().min(Map.Entry.comparingByValue()).orElseThrow();
+    }
+
+    private void updateThreshold()
+    {
+        admissionThreshold = candidates.size() < capacity ? 0 : smallestCandidate().getValue();
+    }
+
+    //Expires the oldest bucket: its clicks leave the window, and it's reused for the clicks of the next bucket-duration.
+    @Scheduled(fixedRateString = "${clixify.trending.bucket-duration:PT5M}", initialDelayString = "${clixify.trending.bucket-duration:PT5M}")
+    public void rotate()
+    {
+        int next = (current + 1) % buckets.length;
+        buckets[next].clearAndSubtractFrom(window);     //nobody adds to it before 'current' points to it
+        current = next;
+
+        admissionLock.lock();
+        try
+        {
+            for(Long urlMappingId : candidates.keySet())
+            {
+                int estimate = window.estimate(urlMappingId);
+                if(estimate > 0)
+                {
+                    candidates.put(urlMappingId, estimate);
+                }
+                else
+                {
+                    candidates.remove(urlMappingId);
+                }
+            }
+            updateThreshold();
+        }
+        finally
+        {
+            admissionLock.unlock();
+        }
+    }
+
+    //The 'limit' most clicked links of the window, most clicked first (limit is capped at the capacity).
+    public List<TrendingLink> top(int limit)
+    {
+        return candidates.entrySet().stream()
+                .map(candidate -> new TrendingLink(candidate.getKey(), candidate.getValue()))
+                .sorted(Comparator.comparingInt(TrendingLink::clicks).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    //The links with the highest window estimates, at most 'clixify.trending.capacity' (a copy, in no particular order).
+    public Set<Long> candidateIds()
+    {
+        return Set.copyOf(candidates.keySet());
+    }
+
+    //The 'limit' most clicked of the given links in the window, most clicked first (links without clicks are left out).
+    public List<TrendingLink> topOf(Collection<Long> urlMappingIds, int limit)
+    {
+        PriorityQueue<TrendingLink> best = new PriorityQueue<>(limit + 1, Comparator.comparingInt(TrendingLink::clicks));      //min-heap: the head is the weakest of the best so far
+        for(Long urlMappingId : urlMappingIds)
+        {
+            int estimate = window.estimate(urlMappingId);
+            if(estimate > 0 && (best.size() < limit || estimate > best.peek().clicks()))
+            {
+                best.add(new TrendingLink(urlMappingId, estimate));
+                if(best.size() > limit)
+                {
+                    best.poll();
+                }
+            }
+        }
+        List<TrendingLink> top = new ArrayList<>(best);
+        top.sort(Comparator.comparingInt(TrendingLink::clicks).reversed());
+        return top;
+    }
+}
@@ -0,0 +1,269 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+A cache with two tiers: an in-process Caffeine cache (L1) in front of the shared cache (L2, see SharedCache) in front of the loader (the database).
+- A miss in L1 asks L2 before the loader, so an instance that just started warms up from what the others already loaded instead of
+  sending every first lookup to the database. Values are stored in L2 as JSON, under "clixify:<cache name>:<key>".
+- Stampede guard: Caffeine already runs one load per key per instance. Across instances, the one that misses L2 first takes a short lock
+  in L2 (SET NX, 'clixify.cache.load-lock-ttl') and loads, the others wait for its value to appear in L2 (or the lock to go away) instead of
+  all loading the same key from the database at the same time.
+- invalidate() drops the key from L1 and L2 and publishes the invalidation, so the other instances drop their L1 copy as well. Inside a
+  transaction it is done again after the commit, so a concurrent load can't put back the value from before the change.
+  Copies kept outside the cache (e.g. the redirect index) are dropped through onRemoteInvalidation().
+- Missing values (the loader returns null) are not cached, neither in L1 nor in L2.
+- Without a shared cache ('clixify.cache.shared=none') it is a plain Caffeine cache. L2 errors (server unreachable, timeouts) are logged
+  and the loader answers, the cache never fails a request.
+*/
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+@Slf4j
+public class TwoTierCache<V> implements MeterBinder
+{
+    private static final byte[] LOCKED = { 1 };
+    private static final long LOCK_POLL_MILLIS = 10;
+
+    private final String name;
+    private final Cache<String, V> local;
+    private final SharedCache shared;           //null without a shared cache
+    private final ObjectMapper objectMapper;
+    private final JavaType type;
+    private final Duration sharedTtl;
+    private final Duration loadLockTtl;
+
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder sharedMisses = new LongAdder();
+    private final LongAdder sharedErrors = new LongAdder();
+    private final List<Consumer<String>> remoteInvalidationListeners = new CopyOnWriteArrayList<>();
+
+    public TwoTierCache(String name, long maxSize, Duration localTtl, Duration sharedTtl, Duration loadLockTtl,
+                        SharedCache shared, ObjectMapper objectMapper, JavaType type)
+    {
+        this.name = name;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        this.shared = shared;
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.sharedTtl = sharedTtl;
+        this.loadLockTtl = loadLockTtl;
+        if(shared != null)
+        {
+            shared.onInvalidation((cache, key) -> {
+                if(name.equals(cache))
+                {
+                    remoteInvalidationListeners.forEach(listener -> listener.accept(key));     //first, so L1 can't be reloaded from their old copy
+                    local.invalidate(key);
+                }
+            });
+        }
+    }
+
+    //Runs 'listener' with every key invalidated by another instance (or this one, through the shared cache), before the key is dropped from L1.
+    //Without a shared cache there are no such invalidations.
+    public void onRemoteInvalidation(Consumer<String> listener)
+    {
+        remoteInvalidationListeners.add(listener);
+    }
+
+    //L1, then L2, then the loader.
+    public V get(String key, Function<String, V> loader)
+    {
+        return local.get(key, k -> getShared(k, loader));
+    }
+
+    //Only L1 in front of the loader (for callers that do cheaper checks of their own before asking L2, see getShared()).
+    public V getLocal(String key, Function<String, V> loader)
+    {
+        return local.get(key, loader);
+    }
+
+    //L2, then the loader, with the stampede guard (the result is not put into L1).
+    public V getShared(String key, Function<String, V> loader)
+    {
+        if(shared == null)
+        {
+            return loader.apply(key);
+        }
+        String sharedKey = "clixify:" + name + ":" + key;
+        String lockKey = sharedKey + ":loading";
+        boolean locked;
+        try
+        {
+            V value = read(sharedKey);
+            if(value != null)
+            {
+                return value;
+            }
+            locked = shared.setIfAbsent(lockKey, LOCKED, loadLockTtl);
+            if(!locked)
+            {
+                value = awaitLoad(sharedKey, lockKey);      //another instance is loading it
+                if(value != null)
+                {
+                    return value;
+                }
+            }
+        }
+        catch(IOException | RuntimeException e)
+        {
+            sharedFailed(key, e);
+            return loader.apply(key);
+        }
+
+        V value = null;
+        try
+        {
+            value = loader.apply(key);      //exceptions of the loader are passed on
+            return value;
+        }
+        finally
+        {
+            try
+            {
+                if(value != null)
+                {
+                    shared.set(sharedKey, objectMapper.writeValueAsBytes(value), sharedTtl);
+                }
+                if(locked)
+                {
+                    shared.delete(lockKey);
+                }
+            }
+            catch(IOException | RuntimeException e)
+            {
+                sharedFailed(key, e);
+            }
+        }
+    }
+
+    private void sharedFailed(String key, Exception e)
+    {
+        sharedErrors.increment();
+        log.debug("Shared cache {} failed for {}, the loader answers", name, key, e);
+    }
+
+    private V read(String sharedKey) throws IOException
+    {
+        byte[] bytes = shared.get(sharedKey);
+        if(bytes == null)
+        {
+            sharedMisses.increment();
+            return null;
+        }
+        sharedHits.increment();
+        return objectMapper.readValue(bytes, type);
+    }
+
+    //Waits (at most the lock ttl) until the loading instance has put the value into L2, returns null if it doesn't.
+    private V awaitLoad(String sharedKey, String lockKey) throws IOException
+    {
+        long deadline = System.nanoTime() + loadLockTtl.toNanos();
+        while(System.nanoTime() < deadline)
+        {
+            try
+            {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            byte[] bytes = shared.get(sharedKey);
+            if(bytes != null)
+            {
+                sharedHits.increment();
+                return objectMapper.readValue(bytes, type);
+            }
+            if(shared.get(lockKey) == null)
+            {
+                return null;        //loaded nothing (the key doesn't exist) or failed
+            }
+        }
+        return null;
+    }
+
+    //Drops the key everywhere: L1 here, L2, and (through the published invalidation) L1 of the other instances.
+    public void invalidate(String key)
+    {
+        if(key == null)
+        {
+            return;
+        }
+        invalidateNow(key);
+        if(TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    invalidateNow(key);
+                }
+            });
+        }
+    }
+
+    private void invalidateNow(String key)
+    {
+        local.invalidate(key);
+        if(shared != null)
+        {
+            try
+            {
+                shared.delete("clixify:" + name + ":" + key);
+                shared.publishInvalidation(name, key);
+            }
+            catch(RuntimeException e)
+            {
+                sharedErrors.increment();
+                log.warn("Could not invalidate {} in the shared cache {}, it expires after {}", key, name, sharedTtl, e);
+            }
+        }
+    }
+
+    public CacheStats stats()
+    {
+        return local.stats();
+    }
+
+    public long size()
+    {
+        return local.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        CaffeineCacheMetrics.monitor(registry, local, name);
+        if(shared != null)
+        {
+            FunctionCounter.builder("clixify.cache.shared.requests", sharedHits, LongAdder::sum).tag("cache", name).tag("result", "hit").register(registry);
+            FunctionCounter.builder("clixify.cache.shared.requests", sharedMisses, LongAdder::sum).tag("cache", name).tag("result", "miss").register(registry);
+            FunctionCounter.builder("clixify.cache.shared.requests", sharedErrors, LongAdder::sum).tag("cache", name).tag("result", "error").register(registry);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Approximate unique visitor counts per link and day, with HyperLogLog sketches (see HyperLogLog).
+- On every redirect the visitor is reduced to a 64-bit fingerprint (a hash of the client address and the User-Agent), which is added to the
+  in-memory sketch of (link, today). The fingerprint itself is never stored, only the sketch registers it raises.
+- A sketch takes 4 KB in memory at any traffic level, and only links clicked in the last two flush intervals have one: a sketch that had
+  no new visitor since it was flushed is dropped, whatever its day, and a later visit starts a new sketch that is merged on top.
+- Every 'clixify.uniques.flush-interval' the sketches that changed are merged into click_daily_visitor_sketches (read the stored sketch
+  with 'select ... for update', take the register-wise maximum, write it back), so instances can flush the same (link, day) concurrently.
+  Merging is idempotent, so a failed flush is simply retried with the same sketch.
+- Reads merge the stored sketches with the ones not flushed yet: per day for one link, and per day across all links of a user
+  (a visitor of two of the user's links counts once).
+- With sharding (see Shards) each sketch is merged on the shard of its link, sketches of links whose slot is being moved wait for the next
+  flush after the move, and the per-user reads gather the stored sketches and the user's links from every shard.
+- Disable with 'clixify.uniques.enabled=false', then nothing is recorded and the responses leave the unique visitors out.
+Note: behind a reverse proxy, set 'server.forward-headers-strategy' so the client address is the visitor's and not the proxy's.
+*/
+
+import com.project.clixify_backend_sb.model.ClickDailyVisitorSketch;
+import com.project.clixify_backend_sb.repository.ClickDailyVisitorSketchRepository;
+import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+public class UniqueVisitorCounter implements MeterBinder
+{
+    private static final int FLUSH_CHUNK_SIZE = 100;        //sketches merged per transaction (in id/day order, so concurrent flushes lock rows in the same order)
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClickDailyVisitorSketchRepository clickDailyVisitorSketchRepository;
+    private final UrlMappingRepository urlMappingRepository;
+    private final Shards shards;
+    private final boolean enabled;
+
+    private final ConcurrentHashMap<DailyKey, PendingSketch> sketches = new ConcurrentHashMap<>();
+
+    private record DailyKey(Long urlMappingId, LocalDate day)
+    {
+    }
+
+    //A sketch with the visitors recorded since it was created, 'dirty' once it has changed since the last flush, 'retired' while flush()
+    //drops it (see record() for why no visitor gets lost that way).
+    private static final class PendingSketch
+    {
+        final HyperLogLog sketch = new HyperLogLog();
+        volatile boolean dirty;
+        volatile boolean retired;
+    }
+
+    public UniqueVisitorCounter(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ClickDailyVisitorSketchRepository clickDailyVisitorSketchRepository,
+                                UrlMappingRepository urlMappingRepository,
+                                Shards shards,
+                                @Value("${clixify.uniques.enabled:true}") boolean enabled)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.clickDailyVisitorSketchRepository = clickDailyVisitorSketchRepository;
+        this.urlMappingRepository = urlMappingRepository;
+        this.shards = shards;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    //Called on the redirect path, only touches memory.
+    public void record(Long urlMappingId, String clientAddress, String userAgent)
+    {
+        if(!enabled)
+        {
+            return;
+        }
+        DailyKey key = new DailyKey(urlMappingId, LocalDate.now());
+        long fingerprint = fingerprint(clientAddress, userAgent);
+        while(true)
+        {
+            PendingSketch pending = sketches.computeIfAbsent(key, k -> new PendingSketch());
+            if(pending.sketch.add(fingerprint))
+            {
+                pending.dirty = true;
+            }
+            //flush() sets 'retired' before it checks 'dirty' a last time, so either it sees this visitor or we see 'retired'. Then we add the visitor
+            //again to the sketch that replaces it, which is harmless if flush() kept the sketch after all: a sketch counts a visitor once however often it's added.
+            if(!pending.retired)
+            {
+                return;
+            }
+        }
+    }
+
+    //64-bit FNV-1a of the client address and the User-Agent, spread with the MurmurHash3 finalizer (HyperLogLog needs well mixed bits).
+    static long fingerprint(String clientAddress, String userAgent)
+    {
+        long hash = 0xcbf29ce484222325L;
+        String[] parts = { clientAddress, userAgent };
+        for(String part : parts)
+        {
+            if(part != null)
+            {
+                for(int i = 0; i < part.length(); i++)
+                {
+                    hash ^= part.charAt(i);
+                    hash *= 0x100000001b3L;
+                }
+            }
+            hash ^= 0xFFFF;         //separator, so ("ab", "c") and ("a", "bc") differ
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    //Unique visitors per day (only days with visitors) of one URL mapping between two days (both inclusive).
+    public Map<LocalDate, Long> uniqueVisitorsPerDay(Long urlMappingId, LocalDate start, LocalDate end)
+    {
+        Map<LocalDate, HyperLogLog> perDay = new TreeMap<>();
+        for(ClickDailyVisitorSketch stored : clickDailyVisitorSketchRepository.findByUrlMappingIdAndDayRange(urlMappingId, start, end))
+        {
+            perDay.put(stored.getClickDay(), HyperLogLog.fromBytes(stored.getVisitorSketch()));
+        }
+        for(LocalDate day = start; !day.isAfter(end); day = day.plusDays(1))
+        {
+            PendingSketch pending = sketches.get(new DailyKey(urlMappingId, day));
+            if(pending != null)
+            {
+                perDay.computeIfAbsent(day, d -> new HyperLogLog()).merge(pending.sketch);
+            }
+        }
+        return estimates(perDay);
+    }
+
+    //Unique visitors per day (only days with visitors) across all URL mappings of one user between two days (both inclusive).
+    public Map<LocalDate, Long> uniqueVisitorsPerDayByUser(Long userId, LocalDate start, LocalDate end)
+    {
+        Map<LocalDate, HyperLogLog> perDay = new TreeMap<>();
+        Set<Long> urlMappingIds = new HashSet<>();
+        for(UserSketches shardSketches : shards.onEach(shard -> new UserSketches(
+                clickDailyVisitorSketchRepository.findByUserIdAndDayRange(userId, start, end), urlMappingRepository.findIdsByUserId(userId))))
+        {
+            for(ClickDailyVisitorSketch stored : shardSketches.stored())
+            {
+                perDay.computeIfAbsent(stored.getClickDay(), day -> new HyperLogLog()).merge(HyperLogLog.fromBytes(stored.getVisitorSketch()));
+            }
+            urlMappingIds.addAll(shardSketches.urlMappingIds());
+        }
+        sketches.forEach((key, pending) -> {
+            if(urlMappingIds.contains(key.urlMappingId()) && !key.day().isBefore(start) && !key.day().isAfter(end))
+            {
+                perDay.computeIfAbsent(key.day(), day -> new HyperLogLog()).merge(pending.sketch);
+            }
+        });
+        return estimates(perDay);
+    }
+
+    //What one shard holds of a user: the stored sketches and the ids of the links.
+    private record UserSketches(List<ClickDailyVisitorSketch> stored, List<Long> urlMappingIds)
+    {
+    }
+
+    private static Map<LocalDate, Long> estimates(Map<LocalDate, HyperLogLog> perDay)
+    {
+        Map<LocalDate, Long> estimates = new TreeMap<>();
+        perDay.forEach((day, sketch) -> estimates.put(day, sketch.estimate()));
+        return estimates;
+    }
+
+    @Scheduled(fixedDelayString = "${clixify.uniques.flush-interval:PT1M}")
+    public void flush()
+    {
+        List<Map.Entry<DailyKey, PendingSketch>> changed = new ArrayList<>();
+        for(Map.Entry<DailyKey, PendingSketch> entry : sketches.entrySet())
+        {
+            PendingSketch pending = entry.getValue();
+            if(pending.dirty)
+            {
+                if(shards.isMoving(entry.getKey().urlMappingId()))
+                {
+                    continue;           //flushed after the move, to the new shard
+                }
+                changed.add(entry);
+            }
+            else
+            {
+                //Flushed and no new visitor since: drop it (today's too, the next visit starts a new sketch that is merged on top)
+                pending.retired = true;
+                if(pending.dirty)
+                {
+                    pending.retired = false;        //a visitor came after all, flushed next time
+                    continue;
+                }
+                sketches.remove(entry.getKey(), pending);
+            }
+        }
+        changed.sort(Map.Entry.comparingByKey(Comparator.comparing(DailyKey::urlMappingId).thenComparing(DailyKey::day)));
+        shards.groupByShard(changed, entry -> entry.getKey().urlMappingId()).forEach((shard, shardChanged) -> shards.run(shard, () -> flush(shardChanged)));
+    }
+
+    private void flush(List<Map.Entry<DailyKey, PendingSketch>> changed)
+    {
+        for(int from = 0; from < changed.size(); from += FLUSH_CHUNK_SIZE)
+        {
+            List<Map.Entry<DailyKey, PendingSketch>> chunk = changed.subList(from, Math.min(changed.size(), from + FLUSH_CHUNK_SIZE));
+            chunk.forEach(entry -> entry.getValue().dirty = false);        //before reading the registers, so a visitor added meanwhile marks it dirty again
+            try
+            {
+                transactionTemplate.executeWithoutResult(status -> chunk.forEach(entry -> mergeIntoDatabase(entry.getKey(), entry.getValue().sketch)));
+            }
+            catch(DataAccessException | IllegalArgumentException e)
+            {
+                chunk.forEach(entry -> entry.getValue().dirty = true);     //retried on the next flush
+                log.error("Failed to flush {} unique visitor sketches", chunk.size(), e);
+            }
+        }
+    }
+
+    private void mergeIntoDatabase(DailyKey key, HyperLogLog sketch)
+    {
+        List<byte[]> stored = jdbcTemplate.query("select visitor_sketch from click_daily_visitor_sketches where u_map_id = ? and click_day = ? for update",
+                (rs, row) -> rs.getBytes(1), key.urlMappingId(), Date.valueOf(key.day()));
+        if(stored.isEmpty())
+        {
+            jdbcTemplate.update("insert into click_daily_visitor_sketches (u_map_id, click_day, visitor_sketch) values (?, ?, ?)",
+                    key.urlMappingId(), Date.valueOf(key.day()), sketch.toBytes());
+        }
+        else
+        {
+            HyperLogLog merged = HyperLogLog.fromBytes(stored.get(0));
+            merged.merge(sketch);
+            jdbcTemplate.update("update click_daily_visitor_sketches set visitor_sketch = ? where u_map_id = ? and click_day = ?",
+                    merged.toBytes(), key.urlMappingId(), Date.valueOf(key.day()));
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown()
+    {
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("clixify.uniques.sketches", sketches, Map::size)
+                .description("Unique visitor sketches in memory (4 KB each)")
+                .register(registry);
+    }
+}
@@ -1,145 +1,538 @@
 package com.project.clixify_backend_sb.service;
 
 import com.project.clixify_backend_sb.dtos.ClickEventDTO;
+import com.project.clixify_backend_sb.dtos.IndexedRedirectTarget;
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import com.project.clixify_backend_sb.dtos.TrendingUrlDTO;
 import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
-import com.project.clixify_backend_sb.model.ClickEvent;
+import com.project.clixify_backend_sb.dtos.UrlMappingPage;
+import com.project.clixify_backend_sb.dtos.UrlMappingRow;
+import com.project.clixify_backend_sb.model.RedirectMode;
 import com.project.clixify_backend_sb.model.UrlMapping;
 import com.project.clixify_backend_sb.model.User;
-import com.project.clixify_backend_sb.repository.ClickEventRepository;
 import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
 
+@Slf4j
+@Timed(value = "clixify.service", histogram = true)      //Times every public method, tagged with the method name, so a slow request can be tied to the service call (see config/MetricsConfig)
 @Service        //Marking the class with the @Service annotation to indicate that it is a Spring Managed Service.
 @AllArgsConstructor     //Marking the class with the @AllArgsConstructor annotation to generate a constructor with all the required fields, which here, we are mainly using for dependency injection of 'UrlMappingRepository'.
 public class UrlMappingService
 {
+    private static final int BULK_CHUNK_SIZE = 500;         //URL mappings saved (and detached) together by createShortUrls(), a multiple of the JDBC batch size
+    private static final int MAX_CODE_ATTEMPTS = 3;         //Short codes tried by createShortUrl() when the code turns out to be taken (see SnowflakeShortCodeGenerator)
+    private static final int TRENDING_SCAN_PER_SHARD = 500;   //Most clicked and newest links of a user per shard looked up in the trending sketch (see getTrendingUrlsByUser)
+    private static final long RECENT_CODE_MILLIS = 60_000;  //Short codes this young that a read replica doesn't know are looked up again on the primary (far above the replicas' max-lag)
+
     private UrlMappingRepository urlMappingRepository;      //Injecting the 'UrlMappingRepository' dependency into the 'UrlMappingService' class to perform database operations of 'UrlMapping' entity.
-    private ClickEventRepository clickEventRepository;      //Injecting the 'ClickEventRepository' dependency into the 'UrlMappingService' class to perform database operations of 'ClickEvent' entity.
+    private ClickHistory clickHistory;                      //Clicks per day for the analytics, from the daily rollups, the click store (see ClickStore) and the downsampled tiers of the click retention.
+    private RedirectCache redirectCache;                    //In-process cache (shortUrl -> RedirectTarget) checked first on the redirect path so hot links don't hit the database.
+    private ClickEventWriter clickEventWriter;              //Background writer that records clicks asynchronously in batches, so the redirect doesn't wait on database writes.
+    private ClickCounter clickCounter;                      //In-memory click counters (one AtomicLong per link), periodically flushed to 'clickCount' with an atomic increment.
+    private ShortCodeGenerator shortCodeGenerator;          //Generates unique short codes for new URL mappings (see SnowflakeShortCodeGenerator).
+    private ShortCodeFilter shortCodeFilter;                //Bloom filter guard that answers unknown short codes (scanners, bots) without a database query.
+    private RedirectIndex redirectIndex;                    //Off-heap, memory-mapped short code -> RedirectTarget table checked on a cache miss before the database (when enabled).
+    private UniqueVisitorCounter uniqueVisitorCounter;      //HyperLogLog sketches of the visitors of each link per day, for the unique visitor counts in the analytics.
+    private TrendingLinks trendingLinks;                    //Count-Min Sketches of the clicks of the last hour (by default) and the most clicked links among them, for the trending links.
+    private Shards shards;                                  //Which database each link is on (a single one unless sharding is configured), see Shards.
+    private AnalyticsCache analyticsCache;                  //Two-tier cache of the analytics of ranges that are over (their clicks don't change any more).
+    private EntityManager entityManager;                    //Used by the bulk shortening to detach saved entities after each chunk.
 
     //Business logic for generating short URL
     public UrlMappingDTO createShortUrl(String originalUrl, User user)
     {
-        String shortUrl = generateShortUrl();       //Generating the short URL
-        UrlMapping urlMapping = new UrlMapping();   //Creating a new UrlMapping object to store the short URL in the database along with the original URL and user details.
+        return createShortUrl(originalUrl, RedirectMode.TEMPORARY, user);
+    }
 
-        urlMapping.setOriginalUrl(originalUrl);     //Setting the original URL in the UrlMapping object
-        urlMapping.setShortUrl(shortUrl);       //Setting the short URL in the UrlMapping object
-        urlMapping.setUser(user);           //Setting the user details in the UrlMapping object
-        urlMapping.setCreatedDate(LocalDateTime.now());     //Setting the created date in the UrlMapping object
+    //The same with the redirect mode of the new link (see RedirectMode).
+    public UrlMappingDTO createShortUrl(String originalUrl, RedirectMode redirectMode, User user)
+    {
+        for(int attempt = 1; ; attempt++)
+        {
+            String shortUrl = nextShortCode();       //Generating the short URL (the generator guarantees it's unique as long as every instance has its own node id, so we don't check the database first)
+            shortCodeFilter.add(shortUrl);          //Adding it to the short code filter before it's saved, so the redirect is never rejected once the link exists
+            UrlMapping urlMapping = new UrlMapping();   //Creating a new UrlMapping object to store the short URL in the database along with the original URL and user details (a new one per attempt, as the id depends on the code).
 
-        UrlMapping savedUrlMapping = urlMappingRepository.save(urlMapping);    //First Saving the UrlMapping object in the database and returns the saved object and stores it in the 'savedUrlMapping' variable of type 'UrlMapping'.
+            urlMapping.setOriginalUrl(originalUrl);     //Setting the original URL in the UrlMapping object
+            urlMapping.setShortUrl(shortUrl);       //Setting the short URL in the UrlMapping object
+            urlMapping.setUser(user);           //Setting the user details in the UrlMapping object
+            urlMapping.setCreatedDate(LocalDateTime.now());     //Setting the created date in the UrlMapping object
+            urlMapping.setRedirectMode(redirectMode);
 
-        return convertToDto(savedUrlMapping);        //Then returning after converting the 'UrlMapping' object to 'UrlMappingDTO' object as 'UrlMappingDTO' is the object that we want to return to the client
+            int shard = shards.shardOf(shortUrl);
+            UrlMapping savedUrlMapping;
+            try
+            {
+                savedUrlMapping = shards.on(shard, () -> urlMappingRepository.save(urlMapping));    //Saving the UrlMapping object in the database and keeping the saved object in 'savedUrlMapping'.
+            }
+            catch(DataIntegrityViolationException e)
+            {
+                //The code is taken (two instances on the same 'clixify.shortcode.node-id'), try a new one. Any other violation is passed on.
+                if(attempt == MAX_CODE_ATTEMPTS || shards.on(shard, () -> urlMappingRepository.findRedirectTargetByShortUrlOnPrimary(shortUrl)) == null)
+                {
+                    throw e;
+                }
+                log.warn("Short code {} is taken already, check that every instance has its own clixify.shortcode.node-id", shortUrl);
+                continue;
+            }
+            redirectIndex.add(shortUrl, new RedirectTarget(savedUrlMapping.getUMapId(), originalUrl, redirectMode));     //Once it's saved, the redirect index can answer its redirects
+
+            return convertToDto(savedUrlMapping);        //Then returning after converting the 'UrlMapping' object to 'UrlMappingDTO' object as 'UrlMappingDTO' is the object that we want to return to the client
+        }
     }
 
-    //Business logic for generating short URL(called in createShortUrl method), this is where the actual logic of generating the short URL takes place
-    /*
-    * Steps for Shortening the Original URL to Short URL:
-    * 1. First we will have the length of the short URL set to 8 characters. (We can change this length as per our wish/requirement)
-    * 2. Then we take any random character from the 'characters' string (which contains chars [A-Z, a-z, 0-9]) and append it until length of the short URL reaches 8 characters*/
-    private String generateShortUrl()
+    //A new short code whose shard slot isn't being moved to another shard right now (see Resharding), almost always the first one.
+    private String nextShortCode()
     {
-        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";           //String containing all the characters that can be used to generate the short URL
-
-        Random random = new Random();       //Creating a Random object to generate random numbers
-        StringBuilder shortUrl = new StringBuilder(8);      //Creating a StringBuilder object to store the short URL
+        String shortUrl = shortCodeGenerator.nextCode();
+        while(shards.isMoving(shortUrl))
+        {
+            shortUrl = shortCodeGenerator.nextCode();
+        }
+        return shortUrl;
+    }
 
-        //Generating the short URL
-        for(int i = 0; i < 8; i++)
+    //Business logic for shortening many URLs at once (called in the bulk shortening endpoint).
+    //The URL mappings are saved with saveAll() in chunks: as UrlMapping ids come from a pooled sequence, Hibernate sends the INSERTs of each chunk as one JDBC batch,
+    //and clearing the persistence context after every chunk keeps memory flat no matter how many URLs are sent.
+    //With sharding the links are grouped by shard and each shard's links are saved in a transaction of their own; the DTOs keep the order of the passed URLs.
+    @Transactional
+    public List<UrlMappingDTO> createShortUrls(List<String> originalUrls, User user)
+    {
+        UrlMappingDTO[] urlMappingDTOs = new UrlMappingDTO[originalUrls.size()];
+        LocalDateTime createdDate = LocalDateTime.now();
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        String[] shortUrls = new String[originalUrls.size()];
+        for(int position = 0; position < shortUrls.length; position++)
         {
-            shortUrl.append(characters.charAt(random.nextInt(characters.length())));        //appending random char from 'characters' string to 'shortUrl' StringBuilder object
+            shortUrls[position] = nextShortCode();
+            shortCodeFilter.add(shortUrls[position]);
+            positionsByShard.computeIfAbsent(shards.shardOf(shortUrls[position]), shard -> new ArrayList<>()).add(position);
         }
 
-        return shortUrl.toString();     //Returning the generated short URL (after converting type from StringBuilder to String)
+        positionsByShard.forEach((shard, positions) -> shards.run(shard, () -> {
+            List<UrlMapping> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+            List<Integer> chunkPositions = new ArrayList<>(BULK_CHUNK_SIZE);
+            for(int position : positions)
+            {
+                UrlMapping urlMapping = new UrlMapping();
+                urlMapping.setOriginalUrl(originalUrls.get(position));
+                urlMapping.setShortUrl(shortUrls[position]);
+                urlMapping.setUser(user);
+                urlMapping.setCreatedDate(createdDate);
+                chunk.add(urlMapping);
+                chunkPositions.add(position);
+
+                if(chunk.size() == BULK_CHUNK_SIZE)
+                {
+                    saveChunk(chunk, chunkPositions, urlMappingDTOs);
+                }
+            }
+            if(!chunk.isEmpty())
+            {
+                saveChunk(chunk, chunkPositions, urlMappingDTOs);
+            }
+        }));
+        return Arrays.asList(urlMappingDTOs);
+    }
+
+    private void saveChunk(List<UrlMapping> chunk, List<Integer> chunkPositions, UrlMappingDTO[] urlMappingDTOs)
+    {
+        urlMappingRepository.saveAll(chunk);
+        urlMappingRepository.flush();       //sends the batched INSERTs now, so the entities can be detached right after
+        List<IndexedRedirectTarget> redirectTargets = new ArrayList<>(chunk.size());
+        for(int i = 0; i < chunk.size(); i++)
+        {
+            UrlMapping urlMapping = chunk.get(i);
+            urlMappingDTOs[chunkPositions.get(i)] = convertToDto(urlMapping);
+            redirectTargets.add(new IndexedRedirectTarget(urlMapping.getShortUrl(), urlMapping.getUMapId(), urlMapping.getOriginalUrl(), urlMapping.getRedirectMode()));
+        }
+        //The links are only added to the redirect index once the transaction has committed, so a rolled back bulk request leaves nothing behind in the index
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                redirectTargets.forEach(target -> redirectIndex.add(target.shortUrl(), target.redirectTarget()));
+            }
+        });
+        entityManager.clear();
+        chunk.clear();
+        chunkPositions.clear();
     }
 
     //Business logic for converting UrlMapping object to UrlMappingDTO object(called in createShortUrl method), we convert the UrlMapping object to UrlMappingDTO object to return it to the client as UrlMappingDTO
-    private UrlMappingDTO convertToDto(UrlMapping urlMapping)
+    //(package-private so the JMH benchmarks in src/jmh can call it)
+    UrlMappingDTO convertToDto(UrlMapping urlMapping)
     {
         UrlMappingDTO urlMappingDTO = new UrlMappingDTO();      //Instantiating the 'UrlMappingDTO' object to fill it with 'UrlMapping' object details
 
         urlMappingDTO.setId(urlMapping.getUMapId());
         urlMappingDTO.setOriginalUrl(urlMapping.getOriginalUrl());
         urlMappingDTO.setShortUrl(urlMapping.getShortUrl());
-        urlMappingDTO.setClickCount(urlMapping.getClickCount());
+        urlMappingDTO.setClickCount(urlMapping.getClickCount() + (int) clickCounter.pendingCount(urlMapping.getUMapId()));     //clicks already in the database plus the ones still waiting in the in-memory counter for the next flush
         urlMappingDTO.setCreatedDate(urlMapping.getCreatedDate());
         urlMappingDTO.setUsername(urlMapping.getUser().getUsername());
+        urlMappingDTO.setRedirectMode(urlMapping.getRedirectMode() == null ? RedirectMode.TEMPORARY : urlMapping.getRedirectMode());
 
         return urlMappingDTO;       //returning the 'UrlMappingDTO' object after converting the 'UrlMapping' object to 'UrlMappingDTO' object
     }
 
-    //Business logic for getting the list of UrlMappingDTO objects associated with the user(called in getUrlsByUser method)
-    public List<UrlMappingDTO> getUrlsByUser(User user)
+    //Changes how the user's link redirects. Returns null if the user has no link with this short code.
+    //Saving the change evicts the link from the redirect cache and index (UrlMappingCacheListener), the next redirect loads the new mode.
+    //Throws LinkMovingException while the link's slot is being moved (see Resharding), as the change could land on the shard the link is leaving.
+    public UrlMappingDTO setRedirectMode(String shortUrl, RedirectMode redirectMode, User user)
     {
-        return urlMappingRepository.findByUser(user).stream()   //findByUser(user) method of urlMappindRepository returns a list of UrlMapping objects associated with the user, but we want to return a list of UrlMappingDTO objects associated with the user,
-                .map(this::convertToDto)        //so we use stream() to convert it to a stream and then use map() to convert each UrlMapping object to UrlMappingDTO object
-                .toList();          //and finally we use toList() to convert the stream to a list and return it
+        int shard = shards.shardOf(shortUrl);
+        UrlMappingDTO urlMappingDTO = setRedirectMode(shard, shortUrl, redirectMode, user);
+        if(urlMappingDTO == null && shard != 0)
+        {
+            urlMappingDTO = setRedirectMode(0, shortUrl, redirectMode, user);      //links from before sharding stay on shard 0
+        }
+        return urlMappingDTO;
+    }
+
+    private UrlMappingDTO setRedirectMode(int shard, String shortUrl, RedirectMode redirectMode, User user)
+    {
+        return shards.on(shard, () -> {
+            UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
+            if(urlMapping == null || !urlMapping.getUser().getUserId().equals(user.getUserId()))
+            {
+                return null;
+            }
+            if(shards.isMoving(urlMapping.getUMapId()))
+            {
+                throw new LinkMovingException("The link " + shortUrl + " is being moved to another shard, try again later");
+            }
+            urlMapping.setRedirectMode(redirectMode);
+            return convertToDto(urlMappingRepository.save(urlMapping));
+        });
+    }
+
+    //Business logic for getting one page of the URLs of the user (called in getUserUrls method of UrlMappingController), in the given order, starting after 'cursor' (null for the first page).
+    //Keyset pagination: the cursor holds the sort value and id of the last row of the previous page, and the next page is queried with 'where (sort value, id) after the cursor',
+    //so every page costs the same index range read of 'limit' rows, however many URLs the user owns and however deep the page is.
+    //The rows come from a projection query (no UrlMapping entity and no User are loaded), the username is the one of the requesting user.
+    //With sharding every shard returns its first rows after the cursor, and the page is the first rows of all of them merged in the same order.
+    //Throws IllegalArgumentException if the cursor is malformed or belongs to another sort.
+    @Transactional(readOnly = true)
+    public UrlMappingPage getUrlsByUser(User user, UrlMappingSort sort, String cursor, int limit)
+    {
+        String[] after = cursor == null ? null : decodeCursor(cursor, sort);
+        List<UrlMappingRow> rows = new ArrayList<>();
+        shards.onEach(shard -> findPageRows(user, sort, after, limit + 1)).forEach(rows::addAll);       //one row more than the page, to know whether there is a next page
+        if(shards.count() > 1)
+        {
+            rows.sort(sort.comparator());
+        }
+
+        boolean hasNext = rows.size() > limit;
+        List<UrlMappingDTO> urls = new ArrayList<>(Math.min(rows.size(), limit));
+        for(UrlMappingRow row : hasNext ? rows.subList(0, limit) : rows)
+        {
+            urls.add(toUrlMappingDto(row, user.getUsername()));
+        }
+        String nextCursor = hasNext ? encodeCursor(sort, rows.get(limit - 1)) : null;
+        return new UrlMappingPage(urls, nextCursor);
+    }
+
+    //The first 'limit' rows of the user's URLs after the cursor position 'after' (null: from the start) on the current shard.
+    private List<UrlMappingRow> findPageRows(User user, UrlMappingSort sort, String[] after, int limit)
+    {
+        Limit pageSize = Limit.of(limit);
+        try
+        {
+            return switch(sort)
+            {
+                case NEWEST -> after == null ? urlMappingRepository.findNewestByUserId(user.getUserId(), pageSize)
+                        : urlMappingRepository.findNewestByUserIdAfter(user.getUserId(), LocalDateTime.parse(after[0]), Long.valueOf(after[1]), pageSize);
+                case OLDEST -> after == null ? urlMappingRepository.findOldestByUserId(user.getUserId(), pageSize)
+                        : urlMappingRepository.findOldestByUserIdAfter(user.getUserId(), LocalDateTime.parse(after[0]), Long.valueOf(after[1]), pageSize);
+                case CLICKS -> after == null ? urlMappingRepository.findMostClickedByUserId(user.getUserId(), pageSize)
+                        : urlMappingRepository.findMostClickedByUserIdAfter(user.getUserId(), Integer.parseInt(after[0]), Long.valueOf(after[1]), pageSize);
+            };
+        }
+        catch(DateTimeParseException | NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    private UrlMappingDTO toUrlMappingDto(UrlMappingRow row, String username)
+    {
+        UrlMappingDTO urlMappingDTO = new UrlMappingDTO();
+        urlMappingDTO.setId(row.id());
+        urlMappingDTO.setOriginalUrl(row.originalUrl());
+        urlMappingDTO.setShortUrl(row.shortUrl());
+        urlMappingDTO.setClickCount(row.clickCount() + (int) clickCounter.pendingCount(row.id()));     //same as convertToDto: plus the clicks waiting for the next flush
+        urlMappingDTO.setCreatedDate(row.createdDate());
+        urlMappingDTO.setUsername(username);
+        urlMappingDTO.setRedirectMode(row.redirectMode() == null ? RedirectMode.TEMPORARY : row.redirectMode());
+        return urlMappingDTO;
+    }
+
+    //The cursor is opaque to clients: URL-safe Base64 of "<sort>|<sort value>|<id>" of the last row of a page.
+    private static String encodeCursor(UrlMappingSort sort, UrlMappingRow last)
+    {
+        Object sortValue = sort == UrlMappingSort.CLICKS ? last.clickCount() : last.createdDate();
+        String cursor = sort.name() + "|" + sortValue + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Returns the sort value and the id of the cursor.
+    private static String[] decodeCursor(String cursor, UrlMappingSort sort)
+    {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");      //decode() throws IllegalArgumentException on anything that isn't Base64
+        if(parts.length != 3 || !parts[0].equals(sort.name()))
+        {
+            throw new IllegalArgumentException("Not a cursor of the " + sort + " order");
+        }
+        return new String[] { parts[1], parts[2] };
     }
 
     //Business logic for getting the analytics of the URL mapped/associated with the user(principal) who made the request(called in getUrlAnalytics method), and return List of ClickEventDTO object in response.
-    //In this method we write the business logic wherein we'll be involving Repository and with the help of repository, we are going to get the list of ClickEvent objects, and then we'll be converting it to list of ClickEventDTO objects and return it to the controller.
+    //When the range covers whole days, the clicks are read from the click_daily_rollups table (one row per day, maintained while clicks are recorded).
+    //Otherwise (a range starting or ending in the middle of a day) the click store counts the raw click events per day for us (a GROUP BY query in the database, or a scan of the click log). In both cases no ClickEvent entity is loaded.
+    //Clicks older than the retention ages come from the coarser rollups instead (see ClickHistory and ClickRetention).
+    @Transactional(readOnly = true)
     public List<ClickEventDTO> getClickEventByDate(String shortUrl, LocalDateTime start, LocalDateTime end)
     {
-        //First we need UrlMapping object associated with the shortUrl to get the list of ClickEvent objects associated with the UrlMapping object
-        UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
-
-        if(urlMapping != null)
-        {
-            //If UrlMapping object is not null, then we need to get the list of ClickEvent objects associated with the UrlMapping object
-            //And then we need to group the ClickEvent objects by date and count the number of clicks on each date
-            //And finally we need to convert the list of ClickEvent objects to list of ClickEventDTO objects
-            return clickEventRepository.findByUrlMappingAndClickDateBetween(urlMapping, start, end).stream()           //findByUrlMappingAndClickDateBetween method of clickEventRepository returns a list of ClickEvent objects associated with the UrlMapping object
-                    .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()))         //collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting())) groups the ClickEvent objects by date and counts the number of clicks on each date
-                    .entrySet().stream()                        //entrySet() returns a set of all the entries in the map
-                    .map(entry -> {             //map() is used to convert each entry in the map to a ClickEventDTO object
-                       ClickEventDTO clickEventDTO = new ClickEventDTO();               //Instantiating the 'ClickEventDTO' object to fill it with 'ClickEvent' object details
-                       clickEventDTO.setClickDate(entry.getKey());                  //setClickDate() method of ClickEventDTO object is used to set the clickDate of the ClickEventDTO object
-                       clickEventDTO.setCount(entry.getValue());                //setCount() method of ClickEventDTO object is used to set the count of the ClickEventDTO object
-                       return clickEventDTO;                        //returning the 'ClickEventDTO' object after converting the 'ClickEvent' object to 'ClickEventDTO' object
-                    })
-                    .collect(Collectors.toList());              //collect(Collectors.toList()) collects the ClickEventDTO objects into a list
+        return analyticsCache.clicksPerDay(shortUrl, start, end, () -> loadClickEventByDate(shortUrl, start, end));
+    }
+
+    private List<ClickEventDTO> loadClickEventByDate(String shortUrl, LocalDateTime start, LocalDateTime end)
+    {
+        //First we need the id of the UrlMapping associated with the shortUrl (served from the redirect cache when possible)
+        RedirectTarget redirectTarget = redirectCache.get(shortUrl, this::loadRedirectTarget);
+
+        if(redirectTarget != null)
+        {
+            Long urlMappingId = redirectTarget.urlMappingId();
+            return shards.on(shards.shardOf(urlMappingId), () -> {      //the clicks of a link are on the link's shard
+                //We get the clicks per day between start and end and convert each day to a ClickEventDTO
+                List<ClickEventDTO> clickEventDTOs = new ArrayList<>();
+                clickHistory.clicksPerDay(urlMappingId, start, end).forEach((day, clicks) -> clickEventDTOs.add(toClickEventDto(day, clicks)));
+                if(uniqueVisitorCounter.isEnabled())
+                {
+                    //Unique visitors are counted per whole day, also when the range starts or ends in the middle of a day
+                    Map<LocalDate, Long> uniqueVisitors = uniqueVisitorCounter.uniqueVisitorsPerDay(urlMappingId, start.toLocalDate(), end.toLocalDate());
+                    clickEventDTOs.forEach(clickEventDTO -> clickEventDTO.setUniqueVisitors(uniqueVisitors.getOrDefault(clickEventDTO.getClickDate(), 0L)));
+                }
+                return clickEventDTOs;
+            });
         }
         return null;        //If no UrlMapping object is found associated with the shortUrl, then return null
     }
 
+    //The version of getClickEventByDate's result for its ETag (see AnalyticsCache.version), answered with a single row lookup instead of the aggregation.
+    //Null if there is no such link. The clicks still waiting in this instance's ClickCounter are counted, so a click here changes the version right away.
+    @Transactional(readOnly = true)
+    public String getClickEventVersion(String shortUrl, LocalDateTime start, LocalDateTime end)
+    {
+        RedirectTarget redirectTarget = redirectCache.get(shortUrl, this::loadRedirectTarget);
+        if(redirectTarget == null)
+        {
+            return null;
+        }
+        Long urlMappingId = redirectTarget.urlMappingId();
+        return analyticsCache.version("link/" + shortUrl + "/" + start + "/" + end + "/" + uniqueVisitorCounter.isEnabled(), end.toLocalDate(), () -> {
+            Integer clickCount = shards.on(shards.shardOf(urlMappingId), () -> urlMappingRepository.findClickCountById(urlMappingId));
+            return (clickCount == null ? 0 : clickCount) + clickCounter.pendingCount(urlMappingId);
+        });
+    }
+
+    ClickEventDTO toClickEventDto(LocalDate clickDate, long count)
+    {
+        ClickEventDTO clickEventDTO = new ClickEventDTO();      //Instantiating the 'ClickEventDTO' object to fill it with the date and the number of clicks on that date
+        clickEventDTO.setClickDate(clickDate);
+        clickEventDTO.setCount(count);
+        return clickEventDTO;
+    }
+
     //Business logic for getting the total clicks by user and date(called in getTotalClicksByUserAndDate method)
+    @Transactional(readOnly = true)
     public Map<LocalDate, Long> getTotalClicksByUserAndDate(User user, LocalDate start, LocalDate end)
     {
-        //First we need to get the list of UrlMapping objects associated with the user
-        List<UrlMapping> urlMappings = urlMappingRepository.findByUser(user);
+        return analyticsCache.clicksPerDayByUser(user.getUserId(), start, end, () -> loadTotalClicksByUserAndDate(user, start, end));
+    }
+
+    private Map<LocalDate, Long> loadTotalClicksByUserAndDate(User user, LocalDate start, LocalDate end)
+    {
+        //The click store counts the clicks on the user's URL mappings per day (the database store joins them by user id and groups them by day), so we only get one row per day back (ordered by date).
+        //Days whose raw clicks were dropped by the click retention come from the rollups. With sharding every shard counts the user's links it has, and the days are added up.
+        Map<LocalDate, Long> perDay = new TreeMap<>();
+        shards.onEach(shard -> clickHistory.clicksPerDayByUser(user.getUserId(), start, end))
+                .forEach(shardPerDay -> shardPerDay.forEach((day, clicks) -> perDay.merge(day, clicks, Long::sum)));
+        return perDay;
+    }
 
-        //Then we need to get the list of ClickEvent objects associated with the UrlMapping objects
-        List<ClickEvent> clickEvents = clickEventRepository.findByUrlMappingInAndClickDateBetween(urlMappings, start.atStartOfDay(), end.plusDays(1).atStartOfDay());   //findByUrlMappingInAndClickDateBetween method of clickEventRepository returns a list of ClickEvent objects associated with the UrlMapping objects
+    //The version of getTotalClicksByUserAndDate's (or getDailyClicksByUserAndDate's) result for its ETag, from the sum of the click counts of the user's links on every shard.
+    @Transactional(readOnly = true)
+    public String getTotalClicksVersion(User user, LocalDate start, LocalDate end, boolean uniqueVisitors)
+    {
+        return analyticsCache.version("user/" + user.getUserId() + "/" + start + "/" + end + "/" + (uniqueVisitors && uniqueVisitorCounter.isEnabled()), end,
+                () -> shards.onEach(shard -> urlMappingRepository.sumClickCountByUserId(user.getUserId())).stream().mapToLong(Long::longValue).sum());
+    }
 
-        //Then we Collect the data and, we need to group the ClickEvent objects by date and count the number of clicks on each date and return it as a map
-        return clickEvents.stream()
-                .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()));
+    //Like getTotalClicksByUserAndDate, with the approximate number of distinct visitors of all the user's URLs per day next to the clicks (a visitor of two of the user's URLs counts once).
+    @Transactional(readOnly = true)
+    public Map<LocalDate, ClickEventDTO> getDailyClicksByUserAndDate(User user, LocalDate start, LocalDate end)
+    {
+        Map<LocalDate, Long> uniqueVisitors = uniqueVisitorCounter.isEnabled() ? uniqueVisitorCounter.uniqueVisitorsPerDayByUser(user.getUserId(), start, end) : Map.of();
+        Map<LocalDate, ClickEventDTO> dailyClicks = new LinkedHashMap<>();
+        getTotalClicksByUserAndDate(user, start, end).forEach((day, clicks) -> {
+            ClickEventDTO clickEventDTO = toClickEventDto(day, clicks);
+            if(uniqueVisitorCounter.isEnabled())
+            {
+                clickEventDTO.setUniqueVisitors(uniqueVisitors.getOrDefault(day, 0L));
+            }
+            dailyClicks.put(day, clickEventDTO);
+        });
+        return dailyClicks;
     }
 
-    //Business logic for getting the original URL(called in RedirectController)
-    public UrlMapping getOriginalUrl(String shortUrl)
+    //The most clicked links across all users in the trending window, most clicked first. Answered from the tracked top links of TrendingLinks (no click events are read), plus one query for their short and original URLs.
+    @Transactional(readOnly = true)
+    public List<TrendingUrlDTO> getTrendingUrls(int limit)
     {
-        UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);  //We need to get the UrlMapping object associated with the shortUrl to increment the click count and record the click event, and the UrlMapping object.
+        return toTrendingUrlDtos(trendingLinks.top(limit));
+    }
 
-        if(urlMapping != null)      //If UrlMapping object is not null, then we need to increment the click count and record the click event
+    //The most clicked of the user's links in the trending window, most clicked first (links without clicks in the window are left out).
+    //Only candidates are looked up in the sketch, not every link of the user, so the cost doesn't grow with the number of links: the user's links
+    //among the globally tracked top links of TrendingLinks, plus the TRENDING_SCAN_PER_SHARD most clicked (all time) and newest links of the user
+    //on each shard, read in index order. A link that is none of these (an old, rarely clicked link of a user with many links that gets a few clicks
+    //now, too few to be tracked globally) is missed.
+    @Transactional(readOnly = true)
+    public List<TrendingUrlDTO> getTrendingUrlsByUser(User user, int limit)
+    {
+        Set<Long> tracked = trendingLinks.candidateIds();
+        Limit scan = Limit.of(TRENDING_SCAN_PER_SHARD);
+        Set<Long> urlMappingIds = new HashSet<>();
+        shards.onEach(shard -> {
+            List<Long> candidates = new ArrayList<>(urlMappingRepository.findMostClickedIdsByUserId(user.getUserId(), scan));
+            candidates.addAll(urlMappingRepository.findNewestIdsByUserId(user.getUserId(), scan));
+            if(!tracked.isEmpty())
+            {
+                candidates.addAll(urlMappingRepository.findIdsByUserIdAndIdIn(user.getUserId(), tracked));
+            }
+            return candidates;
+        }).forEach(urlMappingIds::addAll);
+        return toTrendingUrlDtos(trendingLinks.topOf(urlMappingIds, limit));
+    }
+
+    private List<TrendingUrlDTO> toTrendingUrlDtos(List<TrendingLinks.TrendingLink> trending)
+    {
+        if(trending.isEmpty())
         {
-            urlMapping.setClickCount(urlMapping.getClickCount() + 1);
-            urlMappingRepository.save(urlMapping);      //We need to save the UrlMapping object in the database after incrementing the click count by of the associated URL by 1.
+            return List.of();
+        }
+        Map<Long, IndexedRedirectTarget> targets = new HashMap<>();
+        shards.groupByShard(trending, TrendingLinks.TrendingLink::urlMappingId).forEach((shard, links) -> shards.run(shard, () ->
+                urlMappingRepository.findRedirectTargetsByIds(links.stream().map(TrendingLinks.TrendingLink::urlMappingId).toList())
+                        .forEach(target -> targets.put(target.urlMappingId(), target))));
+        List<TrendingUrlDTO> trendingUrls = new ArrayList<>(trending.size());
+        for(TrendingLinks.TrendingLink link : trending)
+        {
+            IndexedRedirectTarget target = targets.get(link.urlMappingId());
+            if(target != null)          //deleted since it was clicked
+            {
+                trendingUrls.add(new TrendingUrlDTO(target.shortUrl(), target.originalUrl(), link.clicks()));
+            }
+        }
+        return trendingUrls;
+    }
 
-            //Record Click Event (that will be saved in click_events table in the database)
-            ClickEvent clickEvent = new ClickEvent();       //We need to create a new ClickEvent object to record the click event. This ClickEvent object will be saved in the click_events table in the database.
-            clickEvent.setClickDate(LocalDateTime.now());   //The click_events table has 2 fields, clickDate and urlMapping. clickDate is the date and time when the click event occurred, and urlMapping is the UrlMapping object associated with the click event.
-            clickEvent.setUrlMapping(urlMapping);
-            clickEventRepository.save(clickEvent);         //We need to save the ClickEvent object in the database. This will be used for analytics purpose.
+    //Loads the RedirectTarget on a redirect cache miss: from the off-heap redirect index if it has the short code, otherwise from the shared cache or the database.
+    //Short codes that the short code filter knows don't exist are answered (with null, i.e. a 404) without a database query.
+    private RedirectTarget loadRedirectTarget(String shortUrl)
+    {
+        RedirectTarget redirectTarget = redirectIndex.get(shortUrl);
+        if(redirectTarget != null)
+        {
+            return redirectTarget;
+        }
+        if(!shortCodeFilter.mightExist(shortUrl))
+        {
+            return null;
+        }
+        redirectTarget = redirectCache.getShared(shortUrl, this::findRedirectTarget);      //the shared cache (when configured) before the database
+        if(redirectTarget != null)
+        {
+            //e.g. created by another instance since the index was built. If the row was changed while we read it, UrlMappingCacheListener removes it again after the commit.
+            redirectIndex.add(shortUrl, redirectTarget);
+        }
+        return redirectTarget;
+    }
+
+    //The database lookup behind the shared cache: on the shard of the short code, on shard 0 for links from before the sharding, and on the primary for recent codes.
+    private RedirectTarget findRedirectTarget(String shortUrl)
+    {
+        int shard = shards.shardOf(shortUrl);
+        RedirectTarget redirectTarget = shards.on(shard, () -> urlMappingRepository.findRedirectTargetByShortUrl(shortUrl));
+        if(redirectTarget == null && shard != 0)
+        {
+            redirectTarget = shards.on(0, () -> urlMappingRepository.findRedirectTargetByShortUrl(shortUrl));       //links from before sharding stay on shard 0
+        }
+        if(redirectTarget == null && isRecent(shortUrl))
+        {
+            //The lookup above may have been answered by a read replica (see config/ReadReplicaConfig) that hasn't received the link yet
+            redirectTarget = shards.on(shard, () -> urlMappingRepository.findRedirectTargetByShortUrlOnPrimary(shortUrl));
+        }
+        if(redirectTarget == null)
+        {
+            shortCodeFilter.recordFalsePositive();
+        }
+        return redirectTarget;
+    }
+
+    //True if the short code was created in the last minute (or its creation time is unknown), i.e. it may not have reached the read replicas yet.
+    private boolean isRecent(String shortUrl)
+    {
+        long createdAt = shortCodeGenerator.createdAtMillis(shortUrl);
+        return createdAt < 0 || System.currentTimeMillis() - createdAt <= RECENT_CODE_MILLIS;
+    }
+
+    //Business logic for getting the original URL(called in RedirectController), the RedirectTarget also carries the redirect mode of the link.
+    //'clientAddress' and 'userAgent' identify the visitor for the unique visitor counts (only a hash of them is used, nothing is stored).
+    public RedirectTarget getOriginalUrl(String shortUrl, String clientAddress, String userAgent)
+    {
+        //We first look the short URL up in the redirect cache, and only on a cache miss we go to the database (with a projection query, so no full 'UrlMapping' entity is loaded).
+        RedirectTarget redirectTarget = redirectCache.get(shortUrl, this::loadRedirectTarget);
+
+        if(redirectTarget != null)      //If the short URL exists, then we need to increment the click count and record the click event
+        {
+            //We don't write anything to the database on the request thread: the click count is incremented in memory (ClickCounter flushes it periodically),
+            //and the click event is handed over to the ClickEventWriter which inserts click events in batches in the background.
+            clickCounter.increment(redirectTarget.urlMappingId());
+            clickEventWriter.record(new PendingClick(redirectTarget.urlMappingId(), LocalDateTime.now()));
+            uniqueVisitorCounter.record(redirectTarget.urlMappingId(), clientAddress, userAgent);
+            trendingLinks.record(redirectTarget.urlMappingId());
         }
-        return urlMapping;      //Then we return the UrlMapping object associated with the shortUrl to the 'redirect()' method in RedirectController..
+        return redirectTarget;      //Then we return the RedirectTarget (id and original URL) associated with the shortUrl to the 'redirect()' method in RedirectController..
     }
-}
+}
\ No newline at end of file
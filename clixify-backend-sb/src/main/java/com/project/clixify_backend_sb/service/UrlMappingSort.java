@@ -0,0 +1,38 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.UrlMappingRow;
+
+import java.util.Comparator;
+
+//Orders of the URL list of /api/urls/myurls. Every order ends with the id, so rows with the same creation date (bulk shortening) or click count
+//still have a strict order, which keyset pagination needs to continue exactly after the last row of a page.
+public enum UrlMappingSort
+{
+    NEWEST,     //createdDate descending, then id descending (the default)
+    OLDEST,     //createdDate ascending, then id ascending
+    CLICKS;     //clickCount descending, then id descending (clicks not flushed yet by the ClickCounter don't count for the order)
+
+    //The same order in memory, used to merge the pages of several shards.
+    public Comparator<UrlMappingRow> comparator()
+    {
+        return switch(this)
+        {
+            case NEWEST -> Comparator.comparing(UrlMappingRow::createdDate).thenComparing(UrlMappingRow::id).reversed();
+            case OLDEST -> Comparator.comparing(UrlMappingRow::createdDate).thenComparing(UrlMappingRow::id);
+            case CLICKS -> Comparator.comparingInt(UrlMappingRow::clickCount).thenComparing(UrlMappingRow::id).reversed();
+        };
+    }
+
+    //The sort named by the 'sort' request parameter (case-insensitive), or null if there is no such sort.
+    public static UrlMappingSort fromParam(String param)
+    {
+        for(UrlMappingSort sort : values())
+        {
+            if(sort.name().equalsIgnoreCase(param))
+            {
+                return sort;
+            }
+        }
+        return null;
+    }
+}
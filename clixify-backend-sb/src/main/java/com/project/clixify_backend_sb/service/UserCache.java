@@ -0,0 +1,70 @@
+package com.project.clixify_backend_sb.service;
+
+/*
+Two-tier cache (see TwoTierCache) of the users looked up by name on every authenticated API call (UserService.findByUsername).
+- Only the id, name, email and role are cached, never the password hash, so the users handed out by it have no password.
+- Every get() returns a new User, callers can't change the cached one.
+- Entries live 'clixify.user-cache.ttl' (both tiers), at most 'clixify.user-cache.max-size' in the in-process tier, and are invalidated
+  on every instance when a user is saved through UserService.
+*/
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.clixify_backend_sb.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+public class UserCache implements MeterBinder
+{
+    private final TwoTierCache<CachedUser> cache;
+
+    record CachedUser(Long userId, String username, String email, String role)
+    {
+    }
+
+    public UserCache(@Value("${clixify.user-cache.max-size:10000}") long maxSize,
+                     @Value("${clixify.user-cache.ttl:PT10M}") Duration ttl,
+                     @Value("${clixify.cache.load-lock-ttl:PT2S}") Duration loadLockTtl,
+                     ObjectProvider<SharedCache> sharedCache,
+                     ObjectMapper objectMapper)
+    {
+        this.cache = new TwoTierCache<>("user", maxSize, ttl, ttl, loadLockTtl,
+                sharedCache.getIfAvailable(), objectMapper, objectMapper.constructType(CachedUser.class));
+    }
+
+    //The user with that name, from the cache or the loader (which may throw if there is none).
+    public User get(String username, Function<String, User> loader)
+    {
+        CachedUser cached = cache.get(username, name -> {
+            User user = loader.apply(name);
+            return user == null ? null : new CachedUser(user.getUserId(), user.getUsername(), user.getEmail(), user.getRole());
+        });
+        if(cached == null)
+        {
+            return null;
+        }
+        User user = new User();
+        user.setUserId(cached.userId());
+        user.setUsername(cached.username());
+        user.setEmail(cached.email());
+        user.setRole(cached.role());
+        return user;
+    }
+
+    public void invalidate(String username)
+    {
+        cache.invalidate(username);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        cache.bindTo(registry);
+    }
+}
@@ -5,18 +5,21 @@ We created the 'UserDetailsServiceImpl' class (by implementing 'UserDetailsServi
                          so we created this so that Spring Security can understand how to load the user details from the database for our custom user representation.
                          In our 'UserDetailsServiceImpl', We override the 'loadUserByUsername' method to load the user details from the database.
                          This class helps to load user details from the database and convert it to UserDetailsImpl object (by UserDetailsImpl.build(user)).
+It is also the 'UserDetailsPasswordService' of the DaoAuthenticationProvider: when the BCrypt cost was changed ('clixify.auth.bcrypt-strength'), the password
+of a user is hashed again with the new cost on their next successful login and stored with updatePassword() (see security/BoundedPasswordEncoder).
 */
 
 import com.project.clixify_backend_sb.model.User;
 import com.project.clixify_backend_sb.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService
 {
     @Autowired
     UserRepository userRepository;
@@ -27,6 +30,15 @@ public class UserDetailsServiceImpl implements UserDetailsService
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
         return UserDetailsImpl.build(user);     //after loading the user from the database, we convert it into UserDetailsImpl object (by UserDetailsImpl.build(user)) so that spring security can work with the user.
     }
+
+    //Stores the rehashed password. Only the password column is updated (users live on shard 0, the copies on the other shards only serve the foreign keys).
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword)
+    {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        UserDetailsImpl userDetails = (UserDetailsImpl) user;
+        return new UserDetailsImpl(userDetails.getId(), userDetails.getEmail(), userDetails.getUsername(), newPassword, userDetails.getAuthorities());
+    }
 }
 
 //Spring security knows as how to authenticate the user for our application because it is aware of the 'UserDetailsServiceImpl' class and 'UserDetailsImpl' class that we created.
@@ -0,0 +1,266 @@
+package com.project.clixify_backend_sb.benchmark;
+
+/*
+Compares the application on Tomcat's pool of platform threads with the virtual-thread mode (application-virtual-threads.properties)
+when the database is slow, end to end over HTTP.
+
+The whole application is booted twice on a random port against the embedded (H2) database, once with the default thread model and once with
+the virtual-threads profile, both with the same connection pool size. Its DataSource is wrapped so every statement takes 'bench.dbLatencyMs'
+longer (the connection is held meanwhile, as with a slow database server). 'bench.concurrency' closed-loop clients then send
+ - redirects of links that are in the redirect cache      GET /{shortUrl}          (no database on the request thread), and
+ - requests that need the database                        GET /api/urls/myurls     (the user lookup and the page query),
+mixed by 'bench.cacheHitRatio'.
+
+With platform threads, requests waiting for a connection hold on to one of Tomcat's worker threads (server.tomcat.threads.max, 200), so once
+the clients outnumber them the cached redirects queue up behind the slow requests. With virtual threads a request waiting for a connection
+only parks its virtual thread, and the redirects are served straight away. The database-bound throughput is the same in both modes (it is
+capped by pool size / latency), the interesting numbers are the redirect latencies. The 'errors' are requests that didn't get their 302/200,
+e.g. when a request waited longer than spring.datasource.hikari.connection-timeout for a connection (2 s in the virtual-threads profile).
+
+Run with: mvn -Pbenchmarks test -Dtest=VirtualThreadSlowDbBenchmark
+*/
+
+import com.project.clixify_backend_sb.ClixifyBackendSbApplication;
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import com.project.clixify_backend_sb.security.jwt.JwtUtils;
+import com.project.clixify_backend_sb.service.UrlMappingService;
+import com.project.clixify_backend_sb.service.UserDetailsImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Tag("benchmark")
+class VirtualThreadSlowDbBenchmark
+{
+    private static final int CONCURRENCY = Integer.getInteger("bench.concurrency", 400);             //above Tomcat's default server.tomcat.threads.max (200)
+    private static final int DB_POOL_SIZE = Integer.getInteger("bench.dbPoolSize", 20);             //spring.datasource.hikari.maximum-pool-size of the virtual-threads profile
+    private static final long DB_LATENCY_MS = Long.getLong("bench.dbLatencyMs", 25);
+    private static final double CACHE_HIT_RATIO = Double.parseDouble(System.getProperty("bench.cacheHitRatio", "0.9"));
+    private static final int LINKS = Integer.getInteger("bench.links", 100);
+    private static final Duration WARMUP = Duration.parse(System.getProperty("bench.warmup", "PT5S"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("bench.duration", "PT15S"));
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate", "executeBatch", "executeLargeUpdate", "executeLargeBatch");
+
+    private static volatile boolean slowDatabase;       //off while the application starts and the links are created
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)        //we measure the 302 itself, not the target site
+            .build();
+
+    @Test
+    void compareThreadModels() throws Exception
+    {
+        System.out.printf("%nSlow database: %d ms per statement, %d connections, %d clients, %.0f%% cached redirects, %s per mode%n",
+                DB_LATENCY_MS, DB_POOL_SIZE, CONCURRENCY, CACHE_HIT_RATIO * 100, DURATION);
+        System.out.printf("%-18s %10s %8s %16s %16s %12s %12s%n", "mode", "req/s", "errors", "redirect p50 ms", "redirect p99 ms", "db p50 ms", "db p99 ms");
+        run("platform threads", "embedded");
+        run("virtual threads", "embedded", "virtual-threads");
+    }
+
+    private void run(String mode, String... profiles) throws Exception
+    {
+        slowDatabase = false;
+        try(ConfigurableApplicationContext context = new SpringApplicationBuilder(ClixifyBackendSbApplication.class, SlowDatabase.class)
+                .profiles(profiles)
+                .properties("server.port=0",
+                            "management.server.port=-1",
+                            "spring.datasource.url=jdbc:h2:mem:slow-db-" + profiles.length + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                            "spring.datasource.hikari.maximum-pool-size=" + DB_POOL_SIZE,
+                            "spring.datasource.hikari.minimum-idle=" + DB_POOL_SIZE)
+                .run())
+        {
+            String baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            User user = new User();
+            user.setUsername("benchmark-user");
+            user.setEmail("benchmark-user@example.com");
+            user.setPassword("unused");
+            user = context.getBean(UserRepository.class).save(user);
+            List<String> originalUrls = new ArrayList<>(LINKS);
+            for(int i = 0; i < LINKS; i++)
+            {
+                originalUrls.add("https://example.com/benchmark/" + i);
+            }
+            List<String> shortUrls = context.getBean(UrlMappingService.class).createShortUrls(originalUrls, user).stream().map(UrlMappingDTO::getShortUrl).toList();
+            String bearer = "Bearer " + context.getBean(JwtUtils.class).generateToken(UserDetailsImpl.build(user));
+            for(String shortUrl : shortUrls)
+            {
+                send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + shortUrl)).GET().build());       //into the redirect cache
+            }
+
+            slowDatabase = true;
+            HttpRequest dbRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/api/urls/myurls?limit=10")).header("Authorization", bearer).GET().build();
+            load(WARMUP, baseUrl, shortUrls, dbRequest);
+            Recorder[] results = load(DURATION, baseUrl, shortUrls, dbRequest);
+            slowDatabase = false;
+
+            System.out.printf("%-18s %,10.0f %8d %16.2f %16.2f %12.2f %12.2f%n", mode, (results[0].count + results[1].count) / (DURATION.toNanos() / 1e9),
+                    results[0].errors + results[1].errors,
+                    results[0].percentileMillis(0.50), results[0].percentileMillis(0.99),
+                    results[1].percentileMillis(0.50), results[1].percentileMillis(0.99));
+        }
+    }
+
+    //Closed-loop load for the given duration, returns the recorded redirects [0] and database requests [1].
+    private Recorder[] load(Duration duration, String baseUrl, List<String> shortUrls, HttpRequest dbRequest) throws Exception
+    {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Recorder[]>> clients = new ArrayList<>(CONCURRENCY);
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(int i = 0; i < CONCURRENCY; i++)
+            {
+                clients.add(executor.submit(() -> client(deadline, baseUrl, shortUrls, dbRequest)));
+            }
+        }
+        Recorder[] merged = { new Recorder(), new Recorder() };
+        for(Future<Recorder[]> client : clients)
+        {
+            Recorder[] recorders = client.get();
+            merged[0].addAll(recorders[0]);
+            merged[1].addAll(recorders[1]);
+        }
+        return merged;
+    }
+
+    private Recorder[] client(long deadline, String baseUrl, List<String> shortUrls, HttpRequest dbRequest) throws InterruptedException
+    {
+        Recorder[] recorders = { new Recorder(), new Recorder() };
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while(System.nanoTime() < deadline)
+        {
+            boolean cacheHit = random.nextDouble() < CACHE_HIT_RATIO;
+            HttpRequest request = cacheHit ? HttpRequest.newBuilder(URI.create(baseUrl + "/" + shortUrls.get(random.nextInt(shortUrls.size())))).GET().build() : dbRequest;
+            long start = System.nanoTime();
+            int status = send(request);
+            recorders[cacheHit ? 0 : 1].record(System.nanoTime() - start, status == (cacheHit ? 302 : 200));
+        }
+        return recorders;
+    }
+
+    private int send(HttpRequest request) throws InterruptedException
+    {
+        try
+        {
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+        catch(IOException e)
+        {
+            return -1;
+        }
+    }
+
+    //Makes every statement of the application's DataSource take DB_LATENCY_MS longer while 'slowDatabase' is set (a source of the benchmark's application only, not scanned).
+    static class SlowDatabase
+    {
+        @Bean
+        static BeanPostProcessor slowDataSource()
+        {
+            return new BeanPostProcessor()
+            {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName)
+                {
+                    return bean instanceof DataSource dataSource && beanName.equals("dataSource") ? slow(dataSource, DataSource.class) : bean;
+                }
+            };
+        }
+
+        //Proxies the DataSource, the connections it hands out and their statements, the statements sleep before they execute.
+        @SuppressWarnings("unchecked")
+        private static <T> T slow(T target, Class<T> type)
+        {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+                if(slowDatabase && Statement.class.isAssignableFrom(type) && EXECUTE.contains(method.getName()))
+                {
+                    Thread.sleep(DB_LATENCY_MS);
+                }
+                Object result;
+                try
+                {
+                    result = method.invoke(target, args);
+                }
+                catch(InvocationTargetException e)
+                {
+                    throw e.getCause();
+                }
+                Class<?> returned = method.getReturnType();
+                if(returned == Connection.class || (Statement.class.isAssignableFrom(returned) && returned.isInterface()))
+                {
+                    return slow(result, (Class<Object>) returned);
+                }
+                return result;
+            });
+        }
+    }
+
+    //Latencies (in nanoseconds) of one kind of request, plus the number of requests that didn't get the expected status.
+    private static final class Recorder
+    {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        void record(long latencyNanos, boolean expected)
+        {
+            if(count == latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if(!expected)
+            {
+                errors++;
+            }
+        }
+
+        void addAll(Recorder other)
+        {
+            if(count + other.count > latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+
+        double percentileMillis(double percentile)
+        {
+            if(count == 0)
+            {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(count - 1, Math.ceil(percentile * count) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.project.clixify_backend_sb.config;
+
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import com.project.clixify_backend_sb.service.UrlMappingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//A primary and a healthy read replica that never receives anything (databases of their own, so this context doesn't share the tables of the other tests).
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-primary;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "clixify.datasource.replica.urls=jdbc:h2:mem:replica-lagging;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "clixify.datasource.replica.username=sa",
+        "clixify.datasource.replica.max-lag=PT1H",
+        "clixify.datasource.replica.heartbeat-interval=PT1H"
+})
+@AutoConfigureMockMvc
+class ReadReplicaFallbackTests
+{
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica-lagging;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    //A link created a moment ago isn't on the replica yet: the redirect finds it on the primary instead of answering 404.
+    @Test
+    void redirectsToLinksTheReplicaHasNotReceivedYet() throws Exception
+    {
+        //the replica gets the schema (without any rows) and the primary's heartbeat, so it counts as caught up and serves the lookup
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        List<String> schema = jdbcTemplate.queryForList("script nodata", String.class);
+        schema.stream().filter(statement -> statement.startsWith("CREATE ")).forEach(replica::execute);
+        replicaRoutingDataSource.heartbeat();
+        replica.update("insert into replication_heartbeat (id, beat_millis) values (1, ?)",
+                jdbcTemplate.queryForObject("select beat_millis from replication_heartbeat where id = 1", Long.class));
+        replicaRoutingDataSource.heartbeat();
+
+        User user = new User();
+        user.setUsername("replica-user");
+        user.setEmail("replica-user@example.com");
+        user.setPassword("unused");
+        user = userRepository.save(user);
+        String shortUrl = urlMappingService.createShortUrl("https://example.com/fresh", user).getShortUrl();
+
+        mockMvc.perform(get("/" + shortUrl)).andExpect(status().isFound())
+                .andExpect(header().string("Location", "https://example.com/fresh"));
+        mockMvc.perform(get("/" + shortUrl + "x")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,77 @@
+package com.project.clixify_backend_sb.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTests
+{
+    //Two embedded databases that tell themselves apart by the row in 'whoami'. Replication is simulated by copying the heartbeat.
+    private static DataSource database(String name)
+    {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table whoami (name varchar(20))");
+        jdbcTemplate.update("insert into whoami (name) values (?)", name);
+        jdbcTemplate.execute("create table replication_heartbeat (id int primary key, beat_millis bigint)");
+        return dataSource;
+    }
+
+    private static void replicateHeartbeat(DataSource primary, DataSource replica, long lagMillis)
+    {
+        Long beat = new JdbcTemplate(primary).queryForObject("select beat_millis from replication_heartbeat where id = 1", Long.class);
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.update("delete from replication_heartbeat");
+        replicaJdbc.update("insert into replication_heartbeat (id, beat_millis) values (1, ?)", beat - lagMillis);
+    }
+
+    @Test
+    void routesReadOnlyTransactionsToHealthyReplicas()
+    {
+        DataSource primary = database("routing-primary");
+        DataSource replica = database("routing-replica");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replica), Duration.ofSeconds(5));
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        String whoami = "select name from whoami";
+
+        //no heartbeat seen yet: everything goes to the primary
+        assertEquals("routing-primary", readOnly.execute(status -> jdbcTemplate.queryForObject(whoami, String.class)));
+
+        routing.heartbeat();
+        replicateHeartbeat(primary, replica, 0);
+        routing.heartbeat();        //the replica's copy of the previous beat is a moment old, well within max-lag
+        assertEquals("routing-replica", readOnly.execute(status -> jdbcTemplate.queryForObject(whoami, String.class)));
+        assertEquals("routing-primary", readWrite.execute(status -> jdbcTemplate.queryForObject(whoami, String.class)));
+        assertEquals("routing-primary", jdbcTemplate.queryForObject(whoami, String.class));      //no transaction
+
+        //the replica falls behind
+        replicateHeartbeat(primary, replica, 60_000);
+        routing.heartbeat();
+        assertEquals("routing-primary", readOnly.execute(status -> jdbcTemplate.queryForObject(whoami, String.class)));
+
+        //and catches up
+        replicateHeartbeat(primary, replica, 0);
+        routing.heartbeat();
+        assertEquals("routing-replica", readOnly.execute(status -> jdbcTemplate.queryForObject(whoami, String.class)));
+
+        //the heartbeat table is gone on the replica (e.g. a broken replica)
+        new JdbcTemplate(replica).execute("drop table replication_heartbeat");
+        routing.heartbeat();
+        assertEquals("routing-primary", readOnly.execute(status -> jdbcTemplate.queryForObject(whoami, String.class)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.project.clixify_backend_sb.controller;
+
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.model.RedirectMode;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import com.project.clixify_backend_sb.security.jwt.JwtUtils;
+import com.project.clixify_backend_sb.service.UrlMappingService;
+import com.project.clixify_backend_sb.service.UserDetailsImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class HttpCachingTests
+{
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+
+    @Test
+    void redirectsWithTheCachingOfTheLinksMode() throws Exception
+    {
+        User user = user("caching-redirects");
+        UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/tracked", user);
+        assertEquals(RedirectMode.TEMPORARY, link.getRedirectMode());
+
+        HttpResponse<String> temporary = send(get("/" + link.getShortUrl()));
+        assertEquals(302, temporary.statusCode());
+        assertEquals("max-age=60, private", temporary.headers().firstValue("Cache-Control").orElse(null));      //not Spring Security's 'no-store'
+
+        HttpResponse<String> changed = send(HttpRequest.newBuilder(uri("/api/urls/" + link.getShortUrl() + "/redirectMode"))
+                .header("Authorization", bearer(user))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"redirectMode\":\"permanent_keep_method\"}")));
+        assertEquals(200, changed.statusCode());
+
+        HttpResponse<String> permanent = send(get("/" + link.getShortUrl()));
+        assertEquals(308, permanent.statusCode());
+        assertEquals("https://example.com/tracked", permanent.headers().firstValue("Location").orElse(null));
+        assertEquals("max-age=86400, public", permanent.headers().firstValue("Cache-Control").orElse(null));
+
+        UrlMappingDTO created = urlMappingService.createShortUrl("https://example.com/permanent", RedirectMode.PERMANENT, user);
+        assertEquals(301, send(get("/" + created.getShortUrl())).statusCode());
+    }
+
+    @Test
+    void answersUnchangedAnalyticsWithNotModified() throws Exception
+    {
+        User user = user("caching-analytics");
+        String shortUrl = urlMappingService.createShortUrl("https://example.com/analytics", user).getShortUrl();
+        LocalDate today = LocalDate.now();
+
+        //a range that is over: the same ETag until tomorrow
+        String settled = "/api/urls/analytics/" + shortUrl + "?startDate=" + today.minusDays(30) + "T00:00:00&endDate=" + today.minusDays(10) + "T00:00:00";
+        HttpResponse<String> first = send(get(settled).header("Authorization", bearer(user)));
+        assertEquals(200, first.statusCode());
+        String eTag = first.headers().firstValue("ETag").orElseThrow();
+        assertEquals(1, first.headers().allValues("ETag").size());
+        assertEquals(304, send(get(settled).header("Authorization", bearer(user)).header("If-None-Match", eTag)).statusCode());
+
+        //a range up to today: a click changes the ETag
+        String current = "/api/urls/analytics/" + shortUrl + "?startDate=" + today + "T00:00:00&endDate=" + today + "T23:59:59";
+        String before = send(get(current).header("Authorization", bearer(user))).headers().firstValue("ETag").orElseThrow();
+        assertEquals(302, send(get("/" + shortUrl)).statusCode());
+        HttpResponse<String> after = send(get(current).header("Authorization", bearer(user)).header("If-None-Match", before));
+        assertEquals(200, after.statusCode());
+        assertNotEquals(before, after.headers().firstValue("ETag").orElseThrow());
+        assertTrue(after.headers().firstValue("Cache-Control").orElseThrow().contains("no-cache"));
+
+        String totals = "/api/urls/totalClicks?startDate=" + today.minusDays(30) + "&endDate=" + today.minusDays(10);
+        String totalsETag = send(get(totals).header("Authorization", bearer(user))).headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, send(get(totals).header("Authorization", bearer(user)).header("If-None-Match", totalsETag)).statusCode());
+        assertEquals(200, send(get(totals + "&uniqueVisitors=true").header("Authorization", bearer(user)).header("If-None-Match", totalsETag)).statusCode());
+    }
+
+    private User user(String username)
+    {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("unused");
+        return userRepository.save(user);
+    }
+
+    private String bearer(User user)
+    {
+        return "Bearer " + jwtUtils.generateToken(UserDetailsImpl.build(user));
+    }
+
+    private URI uri(String path)
+    {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private HttpRequest.Builder get(String path)
+    {
+        return HttpRequest.newBuilder(uri(path)).GET();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception
+    {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
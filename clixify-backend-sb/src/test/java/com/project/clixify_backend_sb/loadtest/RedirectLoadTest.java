@@ -0,0 +1,338 @@
+package com.project.clixify_backend_sb.loadtest;
+
+/*
+End-to-end load test: boots the whole application on a random port against the embedded (H2) database profile and drives it over HTTP.
+1. Seeds 'loadtest.users' users and 'loadtest.urlMappings' URL mappings (spread over the users) straight into the database with JDBC batch inserts.
+2. Runs a closed-loop load generator: 'loadtest.concurrency' virtual threads each send one request, wait for the response and send the next one,
+   first for 'loadtest.warmup' (results thrown away, lets the JIT and the caches warm up) and then for 'loadtest.duration'.
+   Each request is picked from the mix
+     redirect    GET  /{shortUrl}                     weight 'loadtest.mix.redirect'   (80% of them go to the hottest 1% of the links, like real traffic)
+     shorten     POST /api/urls/shorten               weight 'loadtest.mix.shorten'
+     analytics   GET  /api/urls/analytics/{shortUrl}  weight 'loadtest.mix.analytics'
+     totalClicks GET  /api/urls/totalClicks           weight 'loadtest.mix.totalClicks'
+3. Prints the throughput and the p50/p99/p999/max latency of every endpoint, and fails if any request got an unexpected status
+   or if the redirect p99 is above 'loadtest.maxRedirectP99Ms' (only checked when set, so CI can use it as a latency budget).
+
+Run with: mvn -Ploadtest test -Dloadtest.urlMappings=200000 -Dloadtest.concurrency=128 -Dloadtest.duration=PT60S
+*/
+
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import com.project.clixify_backend_sb.security.jwt.JwtUtils;
+import com.project.clixify_backend_sb.service.ShortCodeGenerator;
+import com.project.clixify_backend_sb.service.UserDetailsImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RedirectLoadTest
+{
+    private static final int USERS = Integer.getInteger("loadtest.users", 100);
+    private static final int URL_MAPPINGS = Integer.getInteger("loadtest.urlMappings", 50_000);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 64);
+    private static final Duration WARMUP = Duration.parse(System.getProperty("loadtest.warmup", "PT5S"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT20S"));
+    private static final long MAX_REDIRECT_P99_MS = Long.getLong("loadtest.maxRedirectP99Ms", 0);
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    private enum Endpoint
+    {
+        REDIRECT("loadtest.mix.redirect", 90),
+        SHORTEN("loadtest.mix.shorten", 4),
+        ANALYTICS("loadtest.mix.analytics", 4),
+        TOTAL_CLICKS("loadtest.mix.totalClicks", 2);
+
+        final int weight;
+
+        Endpoint(String property, int defaultWeight)
+        {
+            this.weight = Integer.getInteger(property, defaultWeight);
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ShortCodeGenerator shortCodeGenerator;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)        //we measure the 302 itself, not the target site
+            .build();
+
+    private String baseUrl;
+    private List<String> tokens;                //bearer token of every seeded user
+    private List<List<String>> shortUrlsByUser; //short URLs owned by every seeded user (same index as 'tokens')
+    private String[] shortUrls;                 //all seeded short URLs, the first 1% are the "hot" links
+
+    @Test
+    void redirectAndApiLatencyUnderLoad() throws Exception
+    {
+        baseUrl = "http://localhost:" + port;
+        long seedStart = System.nanoTime();
+        seed();
+        System.out.printf("%nSeeded %,d users and %,d URL mappings in %,d ms%n", USERS, URL_MAPPINGS, (System.nanoTime() - seedStart) / 1_000_000);
+
+        run(WARMUP);
+        Map<Endpoint, Recorder> results = run(DURATION);
+
+        System.out.printf("Load: %d concurrent clients for %s (after a %s warm-up)%n", CONCURRENCY, DURATION, WARMUP);
+        System.out.printf("%-14s %10s %8s %10s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long totalRequests = 0;
+        for(Map.Entry<Endpoint, Recorder> entry : results.entrySet())
+        {
+            Recorder recorder = entry.getValue();
+            totalRequests += recorder.count;
+            System.out.printf("%-14s %,10d %8d %,10.0f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(), recorder.count, recorder.errors,
+                    recorder.count / (DURATION.toNanos() / 1e9),
+                    recorder.percentileMillis(0.50), recorder.percentileMillis(0.99), recorder.percentileMillis(0.999), recorder.percentileMillis(1.0));
+        }
+        System.out.printf("%-14s %,10d %8s %,10.0f%n", "total", totalRequests, "", totalRequests / (DURATION.toNanos() / 1e9));
+
+        for(Map.Entry<Endpoint, Recorder> entry : results.entrySet())
+        {
+            assertEquals(0, entry.getValue().errors, () -> entry.getKey() + " requests failed, first failure: " + entry.getValue().firstError);
+        }
+        if(MAX_REDIRECT_P99_MS > 0)
+        {
+            double redirectP99 = results.get(Endpoint.REDIRECT).percentileMillis(0.99);
+            assertTrue(redirectP99 <= MAX_REDIRECT_P99_MS, "redirect p99 " + redirectP99 + " ms is above the budget of " + MAX_REDIRECT_P99_MS + " ms");
+        }
+    }
+
+    //Inserts the users and URL mappings with JDBC batches (going through the API would take minutes for realistic sizes), and creates a token for every user.
+    private void seed()
+    {
+        String password = passwordEncoder.encode("loadtest-password");      //one BCrypt hash for all users, encoding is deliberately slow
+        List<User> users = new ArrayList<>(USERS);
+        tokens = new ArrayList<>(USERS);
+        shortUrlsByUser = new ArrayList<>(USERS);
+        for(int i = 0; i < USERS; i++)
+        {
+            User user = new User();
+            user.setUsername("loadtest-user-" + i);
+            user.setEmail("loadtest-user-" + i + "@example.com");
+            user.setPassword(password);
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+        for(User user : users)
+        {
+            tokens.add(jwtUtils.generateToken(UserDetailsImpl.build(user)));
+            shortUrlsByUser.add(new ArrayList<>());
+        }
+
+        shortUrls = new String[URL_MAPPINGS];
+        Timestamp createdDate = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for(int i = 0; i < URL_MAPPINGS; i++)
+        {
+            int owner = i % USERS;
+            String shortUrl = shortCodeGenerator.nextCode();
+            shortUrls[i] = shortUrl;
+            shortUrlsByUser.get(owner).add(shortUrl);
+            //Seeded ids start at 1, far below the sequence's initial value, so they never collide with mappings created through the API during the run.
+            batch.add(new Object[] { i + 1L, "https://example.com/loadtest/" + i, shortUrl, 0, createdDate, users.get(owner).getUserId() });
+            if(batch.size() == SEED_BATCH_SIZE || i == URL_MAPPINGS - 1)
+            {
+                jdbcTemplate.batchUpdate("insert into url_mappings (u_map_id, original_url, short_url, click_count, created_date, user_id) values (?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    //Runs the closed-loop load for the given duration and returns the latencies recorded per endpoint.
+    private Map<Endpoint, Recorder> run(Duration duration) throws Exception
+    {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Map<Endpoint, Recorder>>> clients = new ArrayList<>(CONCURRENCY);
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(int i = 0; i < CONCURRENCY; i++)
+            {
+                clients.add(executor.submit(() -> client(deadline)));
+            }
+        }
+
+        Map<Endpoint, Recorder> merged = new EnumMap<>(Endpoint.class);
+        for(Endpoint endpoint : Endpoint.values())
+        {
+            merged.put(endpoint, new Recorder());
+        }
+        for(Future<Map<Endpoint, Recorder>> client : clients)
+        {
+            client.get().forEach((endpoint, recorder) -> merged.get(endpoint).addAll(recorder));
+        }
+        return merged;
+    }
+
+    //One simulated client: sends requests back to back until the deadline, recording the latency of each in its own recorders (no sharing between clients).
+    private Map<Endpoint, Recorder> client(long deadline) throws InterruptedException
+    {
+        Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+        for(Endpoint endpoint : Endpoint.values())
+        {
+            recorders.put(endpoint, new Recorder());
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while(System.nanoTime() < deadline)
+        {
+            Endpoint endpoint = pickEndpoint(random);
+            HttpRequest request = request(endpoint, random);
+            long start = System.nanoTime();
+            int status;
+            try
+            {
+                status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+            catch(IOException e)
+            {
+                status = -1;
+            }
+            recorders.get(endpoint).record(System.nanoTime() - start, status, endpoint == Endpoint.REDIRECT ? 302 : 200, request);
+        }
+        return recorders;
+    }
+
+    private Endpoint pickEndpoint(ThreadLocalRandom random)
+    {
+        int totalWeight = Arrays.stream(Endpoint.values()).mapToInt(endpoint -> endpoint.weight).sum();
+        int pick = random.nextInt(totalWeight);
+        for(Endpoint endpoint : Endpoint.values())
+        {
+            pick -= endpoint.weight;
+            if(pick < 0)
+            {
+                return endpoint;
+            }
+        }
+        return Endpoint.REDIRECT;
+    }
+
+    private HttpRequest request(Endpoint endpoint, ThreadLocalRandom random)
+    {
+        int user = random.nextInt(USERS);
+        String bearer = "Bearer " + tokens.get(user);
+        LocalDate today = LocalDate.now();
+        return switch(endpoint)
+        {
+            case REDIRECT -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + pickRedirectShortUrl(random))).GET().build();
+            case SHORTEN -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/urls/shorten"))
+                    .header("Authorization", bearer)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"originalUrl\":\"https://example.com/loadtest/new/" + random.nextLong(Long.MAX_VALUE) + "\"}"))
+                    .build();
+            case ANALYTICS -> {
+                List<String> owned = shortUrlsByUser.get(user);
+                String shortUrl = owned.get(random.nextInt(owned.size()));
+                yield HttpRequest.newBuilder(URI.create(baseUrl + "/api/urls/analytics/" + shortUrl + "?startDate=" + today.minusDays(6) + "T00:00:00&endDate=" + today + "T23:59:59"))
+                        .header("Authorization", bearer)
+                        .GET().build();
+            }
+            case TOTAL_CLICKS -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/urls/totalClicks?startDate=" + today.minusDays(6) + "&endDate=" + today))
+                    .header("Authorization", bearer)
+                    .GET().build();
+        };
+    }
+
+    //80% of the redirects go to the hottest 1% of the links, the rest is spread over all links.
+    private String pickRedirectShortUrl(ThreadLocalRandom random)
+    {
+        int hotLinks = Math.max(1, shortUrls.length / 100);
+        return shortUrls[random.nextDouble() < 0.8 ? random.nextInt(hotLinks) : random.nextInt(shortUrls.length)];
+    }
+
+    //Latencies (in nanoseconds) of one endpoint, kept in a growing array, plus the number of requests that didn't get the expected status.
+    private static final class Recorder
+    {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private String firstError;
+
+        void record(long latencyNanos, int status, int expectedStatus, HttpRequest request)
+        {
+            if(count == latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if(status != expectedStatus)
+            {
+                errors++;
+                if(firstError == null)
+                {
+                    firstError = request.method() + " " + request.uri() + " -> " + status;
+                }
+            }
+        }
+
+        void addAll(Recorder other)
+        {
+            if(count + other.count > latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+            if(firstError == null)
+            {
+                firstError = other.firstError;
+            }
+        }
+
+        double percentileMillis(double percentile)
+        {
+            if(count == 0)
+            {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(count - 1, Math.ceil(percentile * count) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
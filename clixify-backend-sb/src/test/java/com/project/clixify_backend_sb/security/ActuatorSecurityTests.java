@@ -0,0 +1,48 @@
+package com.project.clixify_backend_sb.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@AutoConfigureObservability     //the Prometheus registry is left out of tests otherwise
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)     //the management port is a random port of its own (application-embedded.properties)
+class ActuatorSecurityTests
+{
+    @LocalServerPort
+    private int port;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void servesTheScrapeOnlyOnTheManagementPort() throws Exception
+    {
+        assertNotEquals(port, managementPort);
+
+        HttpResponse<String> scrape = get(managementPort, "/actuator/prometheus");
+        assertEquals(200, scrape.statusCode());
+        assertTrue(scrape.body().contains("jvm_memory_used_bytes"));
+        assertEquals(200, get(managementPort, "/actuator/health").statusCode());
+
+        assertNotEquals(200, get(port, "/actuator/prometheus").statusCode());
+        assertNotEquals(200, get(port, "/actuator/health").statusCode());
+    }
+
+    private HttpResponse<String> get(int port, String path) throws Exception
+    {
+        return httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
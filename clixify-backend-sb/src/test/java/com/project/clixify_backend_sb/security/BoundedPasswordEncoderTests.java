@@ -0,0 +1,69 @@
+package com.project.clixify_backend_sb.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedPasswordEncoderTests
+{
+    @Test
+    void rejectsWhatDoesntFitIntoThePool() throws Exception
+    {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(10, 1, 1, Duration.ofSeconds(30));      //one running, one waiting
+        String hash = encoder.encode("secret");
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<Boolean>> logins = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+        {
+            logins.add(clients.submit(() -> {
+                start.await();
+                return encoder.matches("secret", hash);
+            }));
+        }
+        start.countDown();
+        int checked = 0;
+        int rejected = 0;
+        for(Future<Boolean> login : logins)
+        {
+            try
+            {
+                assertTrue(login.get());
+                checked++;
+            }
+            catch(ExecutionException e)
+            {
+                assertInstanceOf(PasswordHashingBusyException.class, e.getCause());
+                rejected++;
+            }
+        }
+        clients.shutdown();
+        encoder.stop();
+        assertTrue(checked >= 1 && checked <= 2, "checked " + checked);
+        assertEquals(8, checked + rejected);
+    }
+
+    @Test
+    void asksForARehashWhenTheCostChanged()
+    {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(5, 1, 4, Duration.ofSeconds(5));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));      //lowered as well
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+        assertFalse(encoder.upgradeEncoding("not a bcrypt hash"));
+        encoder.stop();
+    }
+}
@@ -0,0 +1,69 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.repository.UrlMappingRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClickCounterTests
+{
+    private static final int THREADS = 4;
+    private static final int CLICKS_PER_THREAD = 200_000;
+
+    //Clicks on a few links in bursts while flush() runs in a loop, so counters are dropped and recreated all the time: the database ends up with every click.
+    @Test
+    void neverLosesClicksToRemovedCounters() throws Exception
+    {
+        ConcurrentHashMap<Long, Long> flushed = new ConcurrentHashMap<>();
+        UrlMappingRepository repository = (UrlMappingRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { UrlMappingRepository.class },
+                (proxy, method, args) -> {
+                    if(!method.getName().equals("incrementClickCount"))
+                    {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    flushed.merge((Long) args[0], (long) (int) args[1], Long::sum);
+                    return 1;
+                });
+        ClickCounter clickCounter = new ClickCounter(repository, new Shards(null, null, null, List.of(), "none", Duration.ofMinutes(1)));
+
+        AtomicBoolean clicking = new AtomicBoolean(true);
+        try(ExecutorService executor = Executors.newFixedThreadPool(THREADS))
+        {
+            List<Future<?>> clickers = IntStream.range(0, THREADS).<Future<?>>mapToObj(thread -> executor.submit(() -> {
+                for(int i = 0; i < CLICKS_PER_THREAD; i++)
+                {
+                    clickCounter.increment((long) (i / 100 % 3));         //bursts of 100 clicks per link, so each link sits idle now and then
+                }
+            })).toList();
+            Thread flusher = Thread.ofPlatform().start(() -> {
+                while(clicking.get())
+                {
+                    clickCounter.flush();
+                }
+            });
+            for(Future<?> clicker : clickers)
+            {
+                clicker.get();
+            }
+            clicking.set(false);
+            flusher.join();
+        }
+        clickCounter.flush();
+
+        assertEquals((long) THREADS * CLICKS_PER_THREAD, flushed.values().stream().mapToLong(Long::longValue).sum());
+        for(long link = 0; link < 3; link++)
+        {
+            assertEquals(0, clickCounter.pendingCount(link));
+        }
+    }
+}
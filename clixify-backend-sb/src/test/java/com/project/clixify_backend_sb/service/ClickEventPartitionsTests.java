@@ -0,0 +1,48 @@
+package com.project.clixify_backend_sb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//The partition statements only; running them needs MySQL (the tests run on H2).
+class ClickEventPartitionsTests
+{
+    @Test
+    void partitionsFromTheOldestClickToTheMonthsAhead()
+    {
+        assertEquals("alter table click_events partition by range (to_days(click_date)) (" +
+                     "partition p202511 values less than (to_days('2025-12-01')), " +
+                     "partition p202512 values less than (to_days('2026-01-01')), " +
+                     "partition p202601 values less than (to_days('2026-02-01')), " +
+                     "partition p202602 values less than (to_days('2026-03-01')), " +
+                     "partition pmax values less than maxvalue)",
+                ClickEventPartitions.partitionTable(LocalDate.of(2025, 11, 17), LocalDate.of(2025, 12, 31), 2));
+    }
+
+    @Test
+    void addsTheMissingMonthsAhead()
+    {
+        List<String> partitions = List.of("p202511", "p202512", "p202601", "pmax");
+        assertNull(ClickEventPartitions.reorganizeFuture(partitions, LocalDate.of(2025, 11, 30), 2));
+        assertEquals("alter table click_events reorganize partition pmax into (" +
+                     "partition p202602 values less than (to_days('2026-03-01')), " +
+                     "partition p202603 values less than (to_days('2026-04-01')), " +
+                     "partition pmax values less than maxvalue)",
+                ClickEventPartitions.reorganizeFuture(partitions, LocalDate.of(2026, 1, 5), 2));
+    }
+
+    @Test
+    void dropsTheMonthsBeforeTheRawBoundary()
+    {
+        List<String> partitions = List.of("p202510", "p202511", "p202512", "p202601", "pmax");
+        assertNull(ClickEventPartitions.dropPartitions(partitions, LocalDate.of(2025, 10, 31)));
+        assertEquals("alter table click_events drop partition p202510", ClickEventPartitions.dropPartitions(partitions, LocalDate.of(2025, 11, 1)));
+        assertEquals("alter table click_events drop partition p202510, p202511", ClickEventPartitions.dropPartitions(partitions, LocalDate.of(2025, 12, 20)));
+        //the newest month stays, however old
+        assertEquals("alter table click_events drop partition p202510, p202511, p202512", ClickEventPartitions.dropPartitions(partitions, LocalDate.of(2027, 1, 1)));
+    }
+}
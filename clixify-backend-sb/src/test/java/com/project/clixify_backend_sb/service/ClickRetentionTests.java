@@ -0,0 +1,98 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.ClickEventDTO;
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class ClickRetentionTests
+{
+    @Autowired
+    private ClickRetention clickRetention;
+
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void keepsTheAnalyticsWhileDownsampling()
+    {
+        User user = new User();
+        user.setUsername("retention-user");
+        user.setEmail("retention-user@example.com");
+        user.setPassword("unused");
+        user = userRepository.save(user);
+        UrlMappingDTO url = urlMappingService.createShortUrl("https://example.com/retention", user);
+
+        //3 clicks an hour on days from 3 years ago (monthly tier) to 2 days ago (raw), like the ClickEventWriter records them
+        LocalDate today = LocalDate.now();
+        List<LocalDate> days = List.of(today.minusYears(3).withDayOfMonth(1), today.minusYears(3).withDayOfMonth(2), today.minusDays(400), today.minusDays(90), today.minusDays(89), today.minusDays(2));
+        for(LocalDate day : days)
+        {
+            List<Object[]> clicks = new ArrayList<>();
+            for(int minute = 0; minute < 24 * 60; minute += 20)
+            {
+                clicks.add(new Object[] { Timestamp.valueOf(day.atStartOfDay().plusMinutes(minute)), url.getId() });
+            }
+            jdbcTemplate.batchUpdate("insert into click_events (click_date, u_map_id) values (?, ?)", clicks);
+            jdbcTemplate.update("insert into click_daily_rollups (u_map_id, click_day, click_count) values (?, ?, ?)", url.getId(), day, clicks.size());
+        }
+
+        LocalDateTime allStart = today.minusDays(1200).withDayOfMonth(1).atStartOfDay();     //ranges into the monthly tier start on the first day of a month
+        LocalDateTime allEnd = today.atTime(23, 59, 59);
+        LocalDateTime partialStart = today.minusDays(90).atTime(10, 0);         //hourly tier after the retention
+        LocalDateTime partialEnd = today.minusDays(2).atTime(14, 59, 59);
+        List<ClickEventDTO> recent = urlMappingService.getClickEventByDate(url.getShortUrl(), partialStart, partialEnd);
+        Map<LocalDate, Long> userTotals = urlMappingService.getTotalClicksByUserAndDate(user, today.minusDays(120), today);
+
+        clickRetention.retain(today);
+        clickRetention.retain(today);       //nothing left to do
+
+        ClickRetention.Watermarks watermarks = clickRetention.watermarks();
+        assertEquals(today.minusDays(30), watermarks.rawFrom());
+        assertEquals(today.minusDays(180), watermarks.hourlyFrom());
+        assertEquals(today.minusYears(2).withDayOfMonth(1), watermarks.dailyFrom());
+        assertEquals(72, jdbcTemplate.queryForObject("select count(*) from click_events where u_map_id = ?", Long.class, url.getId()));
+        assertEquals(48, jdbcTemplate.queryForObject("select count(*) from click_hourly_rollups where u_map_id = ?", Long.class, url.getId()));
+        assertEquals(4, jdbcTemplate.queryForObject("select count(*) from click_daily_rollups where u_map_id = ?", Long.class, url.getId()));
+
+        //same totals and (to the hour) the same partial days as before
+        assertEquals(6 * 72, urlMappingService.getClickEventByDate(url.getShortUrl(), allStart, allEnd).stream().mapToLong(ClickEventDTO::getCount).sum());
+        assertEquals(recent, urlMappingService.getClickEventByDate(url.getShortUrl(), partialStart, partialEnd));
+        assertEquals(userTotals, urlMappingService.getTotalClicksByUserAndDate(user, today.minusDays(120), today));
+        assertEquals(Map.of(today.minusYears(3).withDayOfMonth(1), 144L, today.minusDays(400), 72L, today.minusDays(90), 72L, today.minusDays(89), 72L, today.minusDays(2), 72L),
+                urlMappingService.getTotalClicksByUserAndDate(user, today.minusDays(1200).withDayOfMonth(1), today));
+
+        //a month of the monthly tier is answered whole, a range cutting through it is rejected (its total would be counted for a part of the month)
+        LocalDate month = today.minusYears(3).withDayOfMonth(1);
+        LocalDate monthEnd = month.withDayOfMonth(month.lengthOfMonth());
+        assertEquals(List.of(month), urlMappingService.getClickEventByDate(url.getShortUrl(), month.atStartOfDay(), monthEnd.atTime(23, 59, 59)).stream().map(ClickEventDTO::getClickDate).toList());
+        assertEquals(Map.of(month, 144L), urlMappingService.getTotalClicksByUserAndDate(user, month, monthEnd));
+        String shortUrl = url.getShortUrl();
+        User owner = user;
+        assertThrows(MonthlyClicksRangeException.class, () -> urlMappingService.getClickEventByDate(shortUrl, month.plusDays(1).atStartOfDay(), allEnd));
+        assertThrows(MonthlyClicksRangeException.class, () -> urlMappingService.getClickEventByDate(shortUrl, month.atTime(6, 0), allEnd));
+        assertThrows(MonthlyClicksRangeException.class, () -> urlMappingService.getTotalClicksByUserAndDate(owner, month.plusDays(1), today));
+        assertThrows(MonthlyClicksRangeException.class, () -> urlMappingService.getTotalClicksByUserAndDate(owner, month, month.plusDays(4)));
+    }
+}
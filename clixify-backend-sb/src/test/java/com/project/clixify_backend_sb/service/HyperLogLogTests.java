@@ -0,0 +1,50 @@
+package com.project.clixify_backend_sb.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTests
+{
+    @Test
+    void estimatesAndMergesWithinTheStandardError()
+    {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for(int visitor = 0; visitor < 150_000; visitor++)
+        {
+            long fingerprint = UniqueVisitorCounter.fingerprint("10.0." + visitor / 256 + "." + visitor % 256, "Mozilla/5.0");
+            if(visitor < 100_000)
+            {
+                monday.add(fingerprint);
+                monday.add(fingerprint);        //the same visitor twice counts once
+            }
+            if(visitor >= 50_000)
+            {
+                tuesday.add(fingerprint);
+            }
+        }
+        assertWithin(100_000, monday.estimate());
+        assertWithin(100_000, tuesday.estimate());
+
+        HyperLogLog week = HyperLogLog.fromBytes(monday.toBytes());
+        assertEquals(monday.estimate(), week.estimate());
+        week.merge(tuesday);
+        week.merge(tuesday);            //merging is idempotent
+        assertWithin(150_000, week.estimate());
+
+        HyperLogLog few = new HyperLogLog();
+        for(int visitor = 0; visitor < 20; visitor++)
+        {
+            few.add(UniqueVisitorCounter.fingerprint("192.168.0." + visitor, null));
+        }
+        assertEquals(20, few.estimate());
+        assertTrue(few.toBytes().length < 200, "a nearly empty sketch should compress well");
+    }
+
+    private static void assertWithin(long expected, long estimate)
+    {
+        assertTrue(Math.abs(estimate - expected) < expected * 0.05, "estimate " + estimate + " for " + expected);
+    }
+}
@@ -0,0 +1,58 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.LoginRequest;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import com.project.clixify_backend_sb.security.jwt.JwtAuthenticationResponse;
+import com.project.clixify_backend_sb.security.jwt.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class LoginTests
+{
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Test
+    void rehashesOnLoginAndRenewsWithRefreshTokens()
+    {
+        User user = new User();
+        user.setUsername("login-user");
+        user.setEmail("login-user@example.com");
+        user.setPassword(new BCryptPasswordEncoder(4).encode("secret"));      //hashed with an older cost
+        userRepository.save(user);
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsername("login-user");
+        loginRequest.setPassword("secret");
+        JwtAuthenticationResponse login = userService.authenticateUser(loginRequest);
+        assertEquals("login-user", jwtUtils.getUserDetailsFromJwtToken(login.getToken()).getUsername());
+        assertTrue(userRepository.findByUsername("login-user").orElseThrow().getPassword().startsWith("$2a$10$"));      //rehashed with the configured cost
+
+        JwtAuthenticationResponse refreshed = refreshTokenService.refresh(login.getRefreshToken());
+        assertNotNull(refreshed);
+        assertEquals("login-user", jwtUtils.getUserDetailsFromJwtToken(refreshed.getToken()).getUsername());
+        assertNotEquals(login.getRefreshToken(), refreshed.getRefreshToken());
+        assertNull(refreshTokenService.refresh(login.getRefreshToken()));       //each refresh token works once
+        assertNotNull(refreshTokenService.refresh(refreshed.getRefreshToken()));
+        assertNull(refreshTokenService.refresh("unknown"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MappedRedirectTableTests
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void lookupsSurviveReopeningTheFile() throws IOException
+    {
+        Path file = directory.resolve("redirect-index.dat");
+        int links = 50_000;
+        MappedRedirectTable table = MappedRedirectTable.create(file, links, 8 * 1024 * 1024);
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(1);
+        String[] codes = new String[links];
+        for(int i = 0; i < links; i++)
+        {
+            codes[i] = generator.nextCode();
+            table.put(codes[i], new RedirectTarget((long) i, "https://example.com/" + i + "/ü"));
+        }
+        table.put(codes[0], new RedirectTarget(0L, "https://example.com/changed"));
+        table.remove(codes[1]);
+
+        MappedRedirectTable reopened = MappedRedirectTable.open(file, links, 8 * 1024 * 1024);
+        assertNotNull(reopened);
+        assertEquals(links, reopened.entries());
+        assertEquals(new RedirectTarget(0L, "https://example.com/changed"), reopened.get(codes[0]));
+        assertNull(reopened.get(codes[1]));
+        for(int i = 2; i < links; i++)
+        {
+            assertEquals(new RedirectTarget((long) i, "https://example.com/" + i + "/ü"), reopened.get(codes[i]), codes[i]);
+        }
+        assertNull(reopened.get(new SnowflakeShortCodeGenerator(2).nextCode()));
+
+        assertNull(MappedRedirectTable.open(file, links * 4, 8 * 1024 * 1024));        //other settings, has to be rebuilt
+    }
+
+    @Test
+    void refusesLinksOnceFull() throws IOException
+    {
+        MappedRedirectTable table = MappedRedirectTable.create(directory.resolve("small.dat"), 12, 1024);
+        int stored = 0;
+        for(int i = 0; i < 100; i++)
+        {
+            if(table.put("code" + i, new RedirectTarget((long) i, "https://example.com/" + i)))
+            {
+                stored++;
+            }
+        }
+        assertEquals(table.entries(), stored);
+        assertFalse(table.put("x".repeat(300), new RedirectTarget(1L, "https://example.com")));
+        assertNull(table.get("code99"));
+    }
+}
@@ -0,0 +1,157 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.DailyClickCount;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedFileClickStoreTests
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void countsTheSameBeforeAndAfterCompaction() throws IOException
+    {
+        SegmentedFileClickStore store = new SegmentedFileClickStore(null, directory, true, Duration.ofHours(1));
+        LocalDate firstDay = LocalDate.of(2024, 12, 1);
+        List<PendingClick> clicks = new ArrayList<>();
+        for(int i = 0; i < 30_000; i++)
+        {
+            //mappings 1..50, spread over three days, every minute of the day
+            clicks.add(new PendingClick((long) (i % 50) + 1, firstDay.plusDays(i % 3).atStartOfDay().plusMinutes(i % 1440)));
+            if(clicks.size() == 500)
+            {
+                store.append(clicks);
+                clicks = new ArrayList<>();
+            }
+        }
+        LocalDateTime start = firstDay.atTime(6, 0);
+        LocalDateTime end = firstDay.plusDays(2).atTime(12, 0);
+        Map<LocalDate, Long> mapping7 = counts(store.countClicksPerDay(7L, start, end));
+        Map<LocalDate, Long> mappings3And8 = counts(store.countClicksPerDay(new long[] { 3, 8 }, start, end));
+        assertEquals(3, mapping7.size());
+        assertEquals(expected(7, start, end), mapping7.values().stream().mapToLong(Long::longValue).sum());
+
+        store.compact(firstDay.plusDays(1).atTime(0, 30));         //within the grace period of the first day, nothing to do yet
+        assertFalse(Files.exists(directory.resolve("2024-12-01.seg")));
+        store.compact(firstDay.plusDays(3).atTime(1, 0));
+        assertTrue(Files.exists(directory.resolve("2024-12-01.seg")));
+        assertFalse(Files.exists(directory.resolve("2024-12-01.log")));
+        assertTrue(Files.size(directory.resolve("2024-12-01.seg")) < 10_000 * 16 / 4);
+
+        assertEquals(mapping7, counts(store.countClicksPerDay(7L, start, end)));
+        assertEquals(mappings3And8, counts(store.countClicksPerDay(new long[] { 3, 8 }, start, end)));
+
+        //a late click for a compacted day goes to a new log and is merged by the next compaction
+        store.append(List.of(new PendingClick(7L, firstDay.atTime(23, 0))));
+        long lateCount = counts(store.countClicksPerDay(7L, start, end)).get(firstDay);
+        assertEquals(mapping7.get(firstDay) + 1, lateCount);
+        store.compact(firstDay.plusDays(3).atTime(2, 0));
+        assertEquals(lateCount, counts(store.countClicksPerDay(7L, start, end)).get(firstDay));
+        assertFalse(Files.exists(directory.resolve("2024-12-01.log")));
+
+        //retention: the hourly counts of a (compacted) day add up to its clicks, and dropping removes the files of the older days
+        long[] hourlyTotal = new long[1];
+        store.forEachHourlyCount(firstDay, (urlMappingId, hour, count) -> {
+            assertEquals(firstDay, hour.toLocalDate());
+            hourlyTotal[0] += count;
+        });
+        assertEquals(10_001, hourlyTotal[0]);
+        assertEquals(firstDay, store.firstDay());
+        store.dropBefore(firstDay.plusDays(1), 1000);
+        assertEquals(firstDay.plusDays(1), store.firstDay());
+        assertFalse(Files.exists(directory.resolve("2024-12-01.seg")));
+        assertEquals(mapping7.get(firstDay.plusDays(1)), counts(store.countClicksPerDay(7L, start, end)).get(firstDay.plusDays(1)));
+    }
+
+    //Ids of links on shard 1 and later are 2^42 and more (see Shards), mixed with ids from before the sharding.
+    @Test
+    void compactsShardedIds() throws IOException
+    {
+        SegmentedFileClickStore store = new SegmentedFileClickStore(null, directory, true, Duration.ofHours(1));
+        LocalDate day = LocalDate.of(2025, 2, 1);
+        long[] urlMappingIds = { 5, Shards.FIRST_SLOTTED_ID + 17, (1L << 32) * Shards.SLOTS + 3, (5L << 32) * Shards.SLOTS + 1023 };
+        List<PendingClick> clicks = new ArrayList<>();
+        for(int i = 0; i < 400; i++)
+        {
+            clicks.add(new PendingClick(urlMappingIds[i % urlMappingIds.length], day.atStartOfDay().plusMinutes(i)));
+        }
+        store.append(clicks);
+        store.compact(day.plusDays(2).atStartOfDay());
+        store.append(List.of(new PendingClick(urlMappingIds[2], day.atTime(23, 0))));       //merged with the existing segment
+        store.compact(day.plusDays(2).atTime(1, 0));
+        assertTrue(Files.exists(directory.resolve("2025-02-01.seg")));
+        assertFalse(Files.exists(directory.resolve("2025-02-01.log")));
+
+        for(int i = 0; i < urlMappingIds.length; i++)
+        {
+            assertEquals(Map.of(day, i == 2 ? 101L : 100L), counts(store.countClicksPerDay(urlMappingIds[i], day.atStartOfDay(), day.atTime(23, 59))));
+        }
+    }
+
+    //A crash while the segment is swapped in: the clicks of the compacted log are counted once, whichever file rename it interrupted.
+    @Test
+    void finishesACompactionInterruptedWhileSwapping() throws IOException
+    {
+        SegmentedFileClickStore store = new SegmentedFileClickStore(null, directory, true, Duration.ofHours(1));
+        LocalDate day = LocalDate.of(2025, 3, 1);
+        store.append(List.of(new PendingClick(1L, day.atTime(8, 0)), new PendingClick(1L, day.atTime(9, 0))));
+        store.compact(day.plusDays(2).atStartOfDay());
+        Path oldSegment = Files.copy(directory.resolve("2025-03-01.seg"), directory.resolve("old-segment"));
+        store.append(List.of(new PendingClick(1L, day.atTime(23, 0))));
+        Path lateLog = Files.copy(directory.resolve("2025-03-01.log"), directory.resolve("late-log"));
+        store.compact(day.plusDays(2).atTime(1, 0));
+        Path newSegment = Files.copy(directory.resolve("2025-03-01.seg"), directory.resolve("new-segment"));
+        store.close();
+
+        //after the new segment was moved in, before the compacted log was deleted
+        Files.copy(lateLog, directory.resolve("2025-03-01.compacted"));
+        assertEquals(Map.of(day, 3L), counts(new SegmentedFileClickStore(null, directory, true, Duration.ofHours(1)).countClicksPerDay(1L, day.atStartOfDay(), day.atTime(23, 59))));
+        assertFalse(Files.exists(directory.resolve("2025-03-01.compacted")));
+
+        //after the log was marked as compacted, before the new segment was moved in
+        Files.copy(oldSegment, directory.resolve("2025-03-01.seg"), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(newSegment, directory.resolve("2025-03-01.seg.tmp"));
+        Files.copy(lateLog, directory.resolve("2025-03-01.compacted"));
+        assertEquals(Map.of(day, 3L), counts(new SegmentedFileClickStore(null, directory, true, Duration.ofHours(1)).countClicksPerDay(1L, day.atStartOfDay(), day.atTime(23, 59))));
+        assertFalse(Files.exists(directory.resolve("2025-03-01.compacted")));
+        assertFalse(Files.exists(directory.resolve("2025-03-01.seg.tmp")));
+    }
+
+    private static long expected(long urlMappingId, LocalDateTime start, LocalDateTime end)
+    {
+        long count = 0;
+        for(int i = 0; i < 30_000; i++)
+        {
+            LocalDateTime clickDate = LocalDate.of(2024, 12, 1).plusDays(i % 3).atStartOfDay().plusMinutes(i % 1440);
+            if(i % 50 + 1 == urlMappingId && !clickDate.isBefore(start) && !clickDate.isAfter(end))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Map<LocalDate, Long> counts(List<DailyClickCount> dailyCounts)
+    {
+        Map<LocalDate, Long> counts = new LinkedHashMap<>();
+        dailyCounts.forEach(daily -> counts.put(daily.getClickDate(), daily.getClickCount()));
+        return counts;
+    }
+}
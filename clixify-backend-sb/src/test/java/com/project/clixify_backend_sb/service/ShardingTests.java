@@ -0,0 +1,231 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.clixify_backend_sb.model.RedirectMode;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.security.jwt.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Two in-memory shards (databases of their own, so this context doesn't share the tables of the other tests).
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "clixify.datasource.shards.urls=jdbc:h2:mem:shard1;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "clixify.datasource.shards.username=sa",
+        "clixify.sharding.move-settle=PT0S"
+})
+@AutoConfigureMockMvc
+class ShardingTests
+{
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private Resharding resharding;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void spreadsLinksOverTheShardsAndMovesSlots()
+    {
+        User user = new User();
+        user.setUsername("sharded-user");
+        user.setEmail("sharded-user@example.com");
+        user.setPassword("unused");
+        user = userService.registerUser(user);
+
+        List<UrlMappingDTO> created = new ArrayList<>();
+        created.add(urlMappingService.createShortUrl("https://example.com/single", user));
+        created.addAll(urlMappingService.createShortUrls(IntStream.range(0, 40).mapToObj(i -> "https://example.com/bulk/" + i).toList(), user));
+
+        //every link is stored on the shard of its code's slot, with the same slot in its id, and both shards got some
+        int[] perShard = new int[2];
+        for(UrlMappingDTO url : created)
+        {
+            assertEquals(Shards.slotOf(url.getShortUrl()), Shards.slotOf(url.getId()));
+            int shard = shards.shardOf(url.getShortUrl());
+            assertEquals(1, linksOn(shard, url.getId()));
+            assertEquals(0, linksOn(1 - shard, url.getId()));
+            perShard[shard]++;
+            assertEquals(url.getOriginalUrl(), urlMappingService.getOriginalUrl(url.getShortUrl(), "203.0.113.1", "test").originalUrl());
+        }
+        assertEquals(2, IntStream.of(perShard).filter(links -> links > 0).count());
+
+        //per-user queries gather from both shards
+        List<Long> listed = new ArrayList<>();
+        String cursor = null;
+        do
+        {
+            var page = urlMappingService.getUrlsByUser(user, UrlMappingSort.CLICKS, cursor, 7);
+            page.urls().forEach(url -> listed.add(url.getId()));
+            cursor = page.nextCursor();
+        }
+        while(cursor != null);
+        assertEquals(created.stream().map(UrlMappingDTO::getId).sorted().toList(), listed.stream().sorted().toList());
+
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        for(UrlMappingDTO url : created)
+        {
+            shards.run(shards.shardOf(url.getId()), () -> jdbcTemplate.update("insert into click_events (click_date, u_map_id) values (?, ?)",
+                    Timestamp.valueOf(day.atTime(12, 0)), url.getId()));
+        }
+        assertEquals(Map.of(day, (long) created.size()), urlMappingService.getTotalClicksByUserAndDate(user, day, day));
+
+        //moving a slot takes its links and clicks along, and they still resolve
+        UrlMappingDTO moved = created.stream().filter(url -> shards.shardOf(url.getShortUrl()) == 1).findFirst().orElseThrow();
+        Resharding.SlotMove move = resharding.moveSlot(Shards.slotOf(moved.getShortUrl()), 0);
+        assertEquals(1, move.from());
+        assertEquals(0, shards.shardOf(moved.getShortUrl()));
+        assertEquals(1, linksOn(0, moved.getId()));
+        assertEquals(0, linksOn(1, moved.getId()));
+        assertEquals(1, (int) shards.on(0, () -> jdbcTemplate.queryForObject("select count(*) from click_events where u_map_id = ? and click_date < ?",
+                Integer.class, moved.getId(), Timestamp.valueOf(day.plusDays(1).atStartOfDay()))));
+        assertNotNull(urlMappingService.getOriginalUrl(moved.getShortUrl(), "203.0.113.1", "test"));
+        assertEquals(Map.of(day, (long) created.size()), urlMappingService.getTotalClicksByUserAndDate(user, day, day));
+    }
+
+    //Through the HTTP stack, where the request has already used a connection (the JWT filter loads the user from shard 0) before the service picks a shard.
+    @Test
+    void routesRequestsToTheShardOfTheLink() throws Exception
+    {
+        User user = new User();
+        user.setUsername("sharded-http-user");
+        user.setEmail("sharded-http-user@example.com");
+        user.setPassword("unused");
+        user = userService.registerUser(user);
+        String bearer = "Bearer " + jwtUtils.generateToken(UserDetailsImpl.build(user));
+
+        //links shortened over HTTP are saved on the shard of their code
+        int[] perShard = new int[2];
+        for(int i = 0; i < 12; i++)
+        {
+            String response = mockMvc.perform(post("/api/urls/shorten").header("Authorization", bearer)
+                            .contentType(MediaType.APPLICATION_JSON).content("{\"originalUrl\":\"https://example.com/http/" + i + "\"}"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            UrlMappingDTO created = objectMapper.readValue(response, UrlMappingDTO.class);
+            int shard = shards.shardOf(created.getShortUrl());
+            assertEquals(1, linksOn(shard, created.getId()));
+            perShard[shard]++;
+            mockMvc.perform(get("/" + created.getShortUrl())).andExpect(status().isFound())
+                    .andExpect(header().string("Location", "https://example.com/http/" + i));
+        }
+        assertTrue(perShard[1] > 0);
+
+        //a link from before sharding stays on shard 0 even though its code's slot is on shard 1
+        String legacyCode = IntStream.range(0, 100).mapToObj(i -> "legacy" + i).filter(code -> shards.shardOf(code) == 1).findFirst().orElseThrow();
+        Long userId = user.getUserId();
+        shards.run(0, () -> jdbcTemplate.update("insert into url_mappings (u_map_id, original_url, short_url, click_count, created_date, user_id) values (?, ?, ?, 0, ?, ?)",
+                42L, "https://example.com/legacy", legacyCode, Timestamp.valueOf(LocalDate.of(2023, 1, 1).atStartOfDay()), userId));
+        shortCodeFilter.add(legacyCode);        //as if the filter had been built after the row was written
+        mockMvc.perform(get("/" + legacyCode)).andExpect(status().isFound())
+                .andExpect(header().string("Location", "https://example.com/legacy"));
+    }
+
+    //The redirect mode of a link can't be changed while its slot is being moved: the change could be written to the shard the link is leaving.
+    @Test
+    void rejectsRedirectModeChangesWhileTheSlotIsMoving() throws Exception
+    {
+        User user = new User();
+        user.setUsername("sharded-mode-user");
+        user.setEmail("sharded-mode-user@example.com");
+        user.setPassword("unused");
+        user = userService.registerUser(user);
+        String bearer = "Bearer " + jwtUtils.generateToken(UserDetailsImpl.build(user));
+        UrlMappingDTO url = urlMappingService.createShortUrl("https://example.com/moving", user);
+        int slot = Shards.slotOf(url.getShortUrl());
+
+        shards.run(0, () -> jdbcTemplate.update("update shard_slots set moving = true where slot = ?", slot));      //step 1 of a move (see Resharding)
+        shards.refresh();
+        try
+        {
+            mockMvc.perform(put("/api/urls/" + url.getShortUrl() + "/redirectMode").header("Authorization", bearer)
+                            .contentType(MediaType.APPLICATION_JSON).content("{\"redirectMode\":\"PERMANENT\"}"))
+                    .andExpect(status().isConflict());
+            assertEquals(RedirectMode.TEMPORARY, urlMappingService.getOriginalUrl(url.getShortUrl(), "203.0.113.1", "test").redirectMode());
+        }
+        finally
+        {
+            shards.run(0, () -> jdbcTemplate.update("update shard_slots set moving = false where slot = ?", slot));
+            shards.refresh();
+        }
+
+        mockMvc.perform(put("/api/urls/" + url.getShortUrl() + "/redirectMode").header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"redirectMode\":\"PERMANENT\"}"))
+                .andExpect(status().isOk());
+        assertEquals(RedirectMode.PERMANENT, urlMappingService.getOriginalUrl(url.getShortUrl(), "203.0.113.1", "test").redirectMode());
+    }
+
+    //A move waits for every running instance to load its change of the map, not for instances whose last refresh is too old.
+    @Test
+    void waitsForTheInstancesToLoadTheSlotMap() throws Exception
+    {
+        long version = shards.nextSlotMapVersion();
+        shards.run(0, () -> {
+            jdbcTemplate.update("insert into shard_map_readers (instance, map_version, seen_millis) values ('crashed', ?, 0)", version - 1);
+            jdbcTemplate.update("insert into shard_map_readers (instance, map_version, seen_millis) values ('busy', ?, ?)", version - 1, System.currentTimeMillis());
+        });
+        try
+        {
+            CompletableFuture<Void> awaited = CompletableFuture.runAsync(() -> shards.awaitSlotMap(version));
+            Thread.sleep(500);
+            assertFalse(awaited.isDone());      //'busy' hasn't refreshed its map yet
+
+            shards.run(0, () -> jdbcTemplate.update("update shard_map_readers set map_version = ?, seen_millis = ? where instance = 'busy'", version, System.currentTimeMillis()));
+            awaited.get(5, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            shards.run(0, () -> jdbcTemplate.update("delete from shard_map_readers where instance in ('crashed', 'busy')"));
+        }
+    }
+
+    private int linksOn(int shard, Long urlMappingId)
+    {
+        return shards.on(shard, () -> jdbcTemplate.queryForObject("select count(*) from url_mappings where u_map_id = ?", Integer.class, urlMappingId));
+    }
+}
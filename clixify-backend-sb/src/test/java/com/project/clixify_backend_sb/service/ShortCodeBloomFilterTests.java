@@ -0,0 +1,39 @@
+package com.project.clixify_backend_sb.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShortCodeBloomFilterTests
+{
+    @Test
+    void noFalseNegativesAndFalsePositiveRateAsSized()
+    {
+        int codes = 200_000;
+        ShortCodeBloomFilter filter = new ShortCodeBloomFilter(codes, 0.01);
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(3);
+        String[] added = new String[codes];
+        for(int i = 0; i < codes; i++)
+        {
+            added[i] = generator.nextCode();
+            filter.put(added[i]);
+        }
+        for(String code : added)
+        {
+            assertTrue(filter.mightContain(code), code);
+        }
+
+        SnowflakeShortCodeGenerator otherNode = new SnowflakeShortCodeGenerator(4);
+        int falsePositives = 0;
+        for(int i = 0; i < codes; i++)
+        {
+            if(filter.mightContain(otherNode.nextCode()))
+            {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / codes;
+        assertTrue(rate < 0.015, "false positive rate " + rate);
+        assertTrue(Math.abs(filter.expectedFalsePositiveRate() - 0.01) < 0.005, "expected false positive rate " + filter.expectedFalsePositiveRate());
+    }
+}
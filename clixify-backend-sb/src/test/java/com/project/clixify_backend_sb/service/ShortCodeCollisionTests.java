@@ -0,0 +1,77 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@SpringBootTest
+class ShortCodeCollisionTests
+{
+    //Hands out a code a second time on request, like a second instance running with the same node id.
+    static class RepeatingShortCodeGenerator implements ShortCodeGenerator
+    {
+        private final SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(9);
+        volatile String repeatNext;
+
+        @Override
+        public String nextCode()
+        {
+            String repeated = repeatNext;
+            repeatNext = null;
+            return repeated != null ? repeated : generator.nextCode();
+        }
+
+        @Override
+        public long createdAtMillis(String code)
+        {
+            return generator.createdAtMillis(code);
+        }
+    }
+
+    @TestConfiguration
+    static class RepeatingShortCodeGeneratorConfig
+    {
+        @Bean
+        @Primary
+        RepeatingShortCodeGenerator repeatingShortCodeGenerator()
+        {
+            return new RepeatingShortCodeGenerator();
+        }
+    }
+
+    @Autowired
+    private RepeatingShortCodeGenerator shortCodeGenerator;
+
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void createsTheLinkWithAnotherCodeWhenTheCodeIsTaken()
+    {
+        User user = new User();
+        user.setUsername("collision-user");
+        user.setEmail("collision-user@example.com");
+        user.setPassword("unused");
+        user = userRepository.save(user);
+
+        UrlMappingDTO first = urlMappingService.createShortUrl("https://example.com/first", user);
+        shortCodeGenerator.repeatNext = first.getShortUrl();
+        UrlMappingDTO second = urlMappingService.createShortUrl("https://example.com/second", user);
+
+        assertNotEquals(first.getShortUrl(), second.getShortUrl());
+        assertEquals("https://example.com/first", urlMappingService.getOriginalUrl(first.getShortUrl(), "203.0.113.1", "test").originalUrl());
+        assertEquals("https://example.com/second", urlMappingService.getOriginalUrl(second.getShortUrl(), "203.0.113.1", "test").originalUrl());
+    }
+}
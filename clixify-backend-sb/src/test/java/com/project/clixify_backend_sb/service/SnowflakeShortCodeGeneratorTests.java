@@ -0,0 +1,110 @@
+package com.project.clixify_backend_sb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeShortCodeGeneratorTests
+{
+    @Test
+    void codesAreUniqueAcrossThreads() throws Exception
+    {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(1);
+        int threads = 8;
+        int codesPerThread = 250_000;
+        Set<String> codes = ConcurrentHashMap.newKeySet(threads * codesPerThread);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int t = 0; t < threads; t++)
+            {
+                futures.add(executor.submit(() -> {
+                    for(int i = 0; i < codesPerThread; i++)
+                    {
+                        codes.add(generator.nextCode());
+                    }
+                }));
+            }
+            for(Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * codesPerThread, codes.size());
+    }
+
+    @Test
+    void differentNodesNeverCollide()
+    {
+        SnowflakeShortCodeGenerator nodeA = new SnowflakeShortCodeGenerator(1);
+        SnowflakeShortCodeGenerator nodeB = new SnowflakeShortCodeGenerator(2);
+        Set<String> codes = new java.util.HashSet<>();
+        for(int i = 0; i < 100_000; i++)
+        {
+            codes.add(nodeA.nextCode());
+            codes.add(nodeB.nextCode());
+        }
+        assertEquals(200_000, codes.size());
+    }
+
+    @Test
+    void codesHaveFixedLengthAndBase62Alphabet()
+    {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(0);
+        for(int i = 0; i < 10_000; i++)
+        {
+            String code = generator.nextCode();
+            assertEquals(SnowflakeShortCodeGenerator.CODE_LENGTH, code.length());
+            assertTrue(code.chars().allMatch(Character::isLetterOrDigit), code);
+        }
+        assertEquals("00000000000", SnowflakeShortCodeGenerator.encode(0));
+        assertEquals("LygHa16AHYF", SnowflakeShortCodeGenerator.encode(-1L));     //2^64 - 1, the largest unsigned value still fits in 11 characters
+    }
+
+    @Test
+    void rejectsOutOfRangeNodeId()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeShortCodeGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeShortCodeGenerator(-1));
+    }
+
+    @Test
+    void requiresANodeIdWhenSeveralInstancesRun()
+    {
+        assertThrows(IllegalStateException.class, () -> new SnowflakeShortCodeGenerator("", "redis"));
+        new SnowflakeShortCodeGenerator("", "none");        //a single instance: 0, with a warning
+        new SnowflakeShortCodeGenerator("7", "redis");
+    }
+
+    @Test
+    void creationTimeCanBeReadBackFromTheCode()
+    {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(5);
+        long before = System.currentTimeMillis();
+        String code = generator.nextCode();
+        long after = System.currentTimeMillis();
+
+        long createdAt = generator.createdAtMillis(code);
+        assertTrue(createdAt >= before && createdAt <= after + 1, "created at " + createdAt + ", expected between " + before + " and " + after);
+        assertEquals(-1, generator.createdAtMillis("short"));              //wrong length
+        assertEquals(-1, generator.createdAtMillis("abc-def_ghi"));        //not base62
+        assertEquals(-1, generator.createdAtMillis("zzzzzzzzzzz"));        //62^11 - 1 doesn't fit in 64 bits
+    }
+}
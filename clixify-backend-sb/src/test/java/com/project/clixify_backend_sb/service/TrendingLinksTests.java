@@ -0,0 +1,45 @@
+package com.project.clixify_backend_sb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendingLinksTests
+{
+    @Test
+    void tracksTheMostClickedLinksOfTheWindow()
+    {
+        TrendingLinks trendingLinks = new TrendingLinks(3, 4, 1024, 5);
+        for(long link = 1; link <= 1000; link++)        //a long tail of links clicked once
+        {
+            trendingLinks.record(link);
+        }
+        for(long link = 1; link <= 8; link++)           //link n clicked 100 * n times, interleaved
+        {
+            for(int click = 0; click < 100 * link; click++)
+            {
+                trendingLinks.record(link);
+            }
+        }
+
+        List<TrendingLinks.TrendingLink> top = trendingLinks.top(3);
+        assertEquals(List.of(8L, 7L, 6L), top.stream().map(TrendingLinks.TrendingLink::urlMappingId).toList());
+        assertTrue(top.get(0).clicks() >= 801);         //a Count-Min Sketch never counts less than the real clicks
+        assertEquals(List.of(4L, 3L), trendingLinks.topOf(List.of(2L, 3L, 4L, 2000L), 2).stream().map(TrendingLinks.TrendingLink::urlMappingId).toList());
+
+        //Only clicks of the last 3 buckets count: after two rotations link 1 is clicked more than the rest, after the third the old clicks are gone.
+        trendingLinks.rotate();
+        trendingLinks.rotate();
+        for(int click = 0; click < 1000; click++)
+        {
+            trendingLinks.record(1L);
+        }
+        assertEquals(1L, trendingLinks.top(1).get(0).urlMappingId());
+        trendingLinks.rotate();
+        assertEquals(List.of(1L), trendingLinks.top(5).stream().map(TrendingLinks.TrendingLink::urlMappingId).toList());
+        assertEquals(1000, trendingLinks.top(1).get(0).clicks());
+    }
+}
@@ -0,0 +1,65 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.TrendingUrlDTO;
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class TrendingUrlsByUserTests
+{
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void findsTheUsersTrendingLinksWithoutReadingAllOfThem()
+    {
+        User user = user("trending-owner");
+        List<String> originalUrls = new ArrayList<>();
+        for(int i = 0; i < 1200; i++)
+        {
+            originalUrls.add("https://example.com/trending/" + i);
+        }
+        List<UrlMappingDTO> links = urlMappingService.createShortUrls(originalUrls, user);
+        UrlMappingDTO other = urlMappingService.createShortUrl("https://example.com/elsewhere", user("trending-other"));
+
+        //the oldest link is neither among the newest nor (no click is flushed yet) the most clicked links read per shard, it's found as a tracked link
+        UrlMappingDTO oldest = links.get(0);
+        UrlMappingDTO newest = links.get(links.size() - 1);
+        click(oldest, 5);
+        click(newest, 3);
+        click(other, 10);
+
+        List<TrendingUrlDTO> trending = urlMappingService.getTrendingUrlsByUser(user, 10);
+        assertEquals(List.of(oldest.getShortUrl(), newest.getShortUrl()), trending.stream().map(TrendingUrlDTO::getShortUrl).toList());
+        assertEquals(List.of(oldest.getShortUrl()), urlMappingService.getTrendingUrlsByUser(user, 1).stream().map(TrendingUrlDTO::getShortUrl).toList());
+    }
+
+    private void click(UrlMappingDTO link, int clicks)
+    {
+        for(int i = 0; i < clicks; i++)
+        {
+            urlMappingService.getOriginalUrl(link.getShortUrl(), "203.0.113.7", "test");
+        }
+    }
+
+    private User user(String username)
+    {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("unused");
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,102 @@
+package com.project.clixify_backend_sb.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.clixify_backend_sb.dtos.RedirectTarget;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TwoTierCacheTests
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SharedCache shared = new InMemorySharedCache(1000);
+
+    //Two caches on the same shared cache stand for the same cache on two instances.
+    private TwoTierCache<RedirectTarget> instance()
+    {
+        return new TwoTierCache<>("redirect", 100, Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofSeconds(2),
+                shared, objectMapper, objectMapper.constructType(RedirectTarget.class));
+    }
+
+    @Test
+    void warmsFromTheSharedTierAndInvalidatesEverywhere()
+    {
+        TwoTierCache<RedirectTarget> first = instance();
+        TwoTierCache<RedirectTarget> second = instance();
+        AtomicInteger loads = new AtomicInteger();
+        List<String> droppedElsewhere = new ArrayList<>();      //e.g. from the second instance's redirect index
+        second.onRemoteInvalidation(droppedElsewhere::add);
+
+        assertEquals("https://example.com/a", first.get("abc", key -> load(loads, "https://example.com/a")).originalUrl());
+        assertEquals("https://example.com/a", second.get("abc", key -> load(loads, "https://example.com/b")).originalUrl());
+        assertEquals(1, loads.get());       //the second instance got it from the shared tier
+
+        first.invalidate("abc");
+        assertEquals(List.of("abc"), droppedElsewhere);
+        assertEquals("https://example.com/b", second.get("abc", key -> load(loads, "https://example.com/b")).originalUrl());
+        assertEquals("https://example.com/b", first.get("abc", key -> load(loads, "https://example.com/c")).originalUrl());
+        assertEquals(2, loads.get());
+
+        assertNull(first.get("missing", key -> null));
+        assertNull(shared.get("clixify:redirect:missing"));
+    }
+
+    @Test
+    void loadsOnceWhenManyInstancesMissTogether() throws Exception
+    {
+        List<TwoTierCache<RedirectTarget>> instances = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+        {
+            instances.add(instance());
+        }
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(instances.size());
+        List<Future<RedirectTarget>> results = new ArrayList<>();
+        for(TwoTierCache<RedirectTarget> cache : instances)
+        {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cache.get("hot", key -> {
+                    sleep(200);         //a slow database query
+                    return load(loads, "https://example.com/hot");
+                });
+            }));
+        }
+        start.countDown();
+        for(Future<RedirectTarget> result : results)
+        {
+            assertEquals("https://example.com/hot", result.get().originalUrl());
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+    }
+
+    private static RedirectTarget load(AtomicInteger loads, String originalUrl)
+    {
+        loads.incrementAndGet();
+        return new RedirectTarget(1L, originalUrl);
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
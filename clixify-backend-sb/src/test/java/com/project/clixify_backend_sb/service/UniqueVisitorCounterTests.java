@@ -0,0 +1,70 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class UniqueVisitorCounterTests
+{
+    @Autowired
+    private UniqueVisitorCounter uniqueVisitorCounter;
+
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Today's sketches leave memory once flushed and idle, and the counts stay the same.
+    @Test
+    void dropsIdleSketchesOfToday()
+    {
+        User user = new User();
+        user.setUsername("uniques-user");
+        user.setEmail("uniques-user@example.com");
+        user.setPassword("unused");
+        user = userRepository.save(user);
+        Long urlMappingId = urlMappingService.createShortUrl("https://example.com/uniques", user).getId();
+        LocalDate today = LocalDate.now();
+        uniqueVisitorCounter.flush();
+        uniqueVisitorCounter.flush();       //whatever other tests left behind is flushed and dropped
+        assertEquals(0, sketchesInMemory());
+
+        for(int visitor = 0; visitor < 3; visitor++)
+        {
+            uniqueVisitorCounter.record(urlMappingId, "203.0.113." + visitor, "test");
+        }
+        uniqueVisitorCounter.flush();
+        assertEquals(1, sketchesInMemory());        //flushed, kept for one more interval
+
+        uniqueVisitorCounter.record(urlMappingId, "203.0.113.0", "test");      //a visitor the sketch has already seen doesn't change it
+        uniqueVisitorCounter.flush();
+        assertEquals(0, sketchesInMemory());
+        assertEquals(Map.of(today, 3L), uniqueVisitorCounter.uniqueVisitorsPerDay(urlMappingId, today, today));
+
+        uniqueVisitorCounter.record(urlMappingId, "203.0.113.1", "test");      //a new sketch, merged on top of the stored one
+        uniqueVisitorCounter.record(urlMappingId, "203.0.113.9", "test");
+        assertEquals(Map.of(today, 4L), uniqueVisitorCounter.uniqueVisitorsPerDay(urlMappingId, today, today));
+        uniqueVisitorCounter.flush();
+        uniqueVisitorCounter.flush();
+        assertEquals(0, sketchesInMemory());
+        assertEquals(Map.of(today, 4L), uniqueVisitorCounter.uniqueVisitorsPerDay(urlMappingId, today, today));
+    }
+
+    private double sketchesInMemory()
+    {
+        return meterRegistry.get("clixify.uniques.sketches").gauge().value();
+    }
+}
@@ -0,0 +1,66 @@
+package com.project.clixify_backend_sb.service;
+
+import com.project.clixify_backend_sb.dtos.UrlMappingDTO;
+import com.project.clixify_backend_sb.dtos.UrlMappingPage;
+import com.project.clixify_backend_sb.model.User;
+import com.project.clixify_backend_sb.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class UrlMappingPagingTests
+{
+    @Autowired
+    private UrlMappingService urlMappingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void walksEveryUrlOnceInEachOrder()
+    {
+        User user = new User();
+        user.setUsername("paging-user");
+        user.setEmail("paging-user@example.com");
+        user.setPassword("unused");
+        user = userRepository.save(user);
+
+        List<UrlMappingDTO> created = new ArrayList<>();
+        created.add(urlMappingService.createShortUrl("https://example.com/first", user));
+        created.addAll(urlMappingService.createShortUrls(IntStream.range(0, 23).mapToObj(i -> "https://example.com/bulk/" + i).toList(), user));    //all with the same createdDate
+        created.add(urlMappingService.createShortUrl("https://example.com/last", user));
+
+        List<Long> newest = created.stream().sorted(Comparator.comparing(UrlMappingDTO::getCreatedDate).thenComparing(UrlMappingDTO::getId).reversed()).map(UrlMappingDTO::getId).toList();
+        assertEquals(newest, walk(user, UrlMappingSort.NEWEST, 7));
+        assertEquals(newest.reversed(), walk(user, UrlMappingSort.OLDEST, 5));
+        assertEquals(created.stream().map(UrlMappingDTO::getId).sorted(Comparator.reverseOrder()).toList(), walk(user, UrlMappingSort.CLICKS, 25));     //no clicks: id order
+
+        String newestCursor = urlMappingService.getUrlsByUser(user, UrlMappingSort.NEWEST, null, 3).nextCursor();
+        User owner = user;
+        assertThrows(IllegalArgumentException.class, () -> urlMappingService.getUrlsByUser(owner, UrlMappingSort.CLICKS, newestCursor, 3));
+        assertThrows(IllegalArgumentException.class, () -> urlMappingService.getUrlsByUser(owner, UrlMappingSort.NEWEST, "not a cursor", 3));
+    }
+
+    private List<Long> walk(User user, UrlMappingSort sort, int limit)
+    {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do
+        {
+            UrlMappingPage page = urlMappingService.getUrlsByUser(user, sort, cursor, limit);
+            page.urls().forEach(url -> ids.add(url.getId()));
+            cursor = page.nextCursor();
+        }
+        while(cursor != null);
+        return ids;
+    }
+}
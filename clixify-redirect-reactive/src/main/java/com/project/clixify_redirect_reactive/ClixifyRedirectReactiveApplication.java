@@ -0,0 +1,24 @@
+package com.project.clixify_redirect_reactive;
+
+/*
+Optional non-blocking redirect service. It only serves 'GET /{shortUrl}' (and records the clicks), everything else stays in clixify-backend-sb.
+- Runs on WebFlux/Netty and reads and writes the database with R2DBC, so a request waiting on the database holds no thread:
+  a handful of event loop threads (one per core) can keep tens of thousands of redirects in flight.
+- Uses the same tables as clixify-backend-sb (url_mappings, click_events, click_daily_rollups), so both can run side by side against
+  one database, e.g. with the load balancer sending 'GET /{shortUrl}' here and '/api/**' to clixify-backend-sb.
+- Configure the database with the usual Spring properties/environment variables, e.g.
+  SPRING_R2DBC_URL=r2dbc:mysql://localhost:3306/clixify SPRING_R2DBC_USERNAME=... SPRING_R2DBC_PASSWORD=...
+Note: it reads one database only, so it can't be used while clixify-backend-sb spreads the links over several databases ('clixify.datasource.shards.urls').
+*/
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class ClixifyRedirectReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ClixifyRedirectReactiveApplication.class, args);
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.project.clixify_redirect_reactive.controller;
+
+import com.project.clixify_redirect_reactive.service.RedirectService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@RestController
+public class RedirectController
+{
+    private final RedirectService redirectService;
+    private final CacheControl temporaryCacheControl;
+    private final CacheControl permanentCacheControl;
+
+    //Same settings and defaults as RedirectController in clixify-backend-sb.
+    public RedirectController(RedirectService redirectService,
+                              @Value("${clixify.redirect.temporary-max-age:PT1M}") Duration temporaryMaxAge,
+                              @Value("${clixify.redirect.permanent-max-age:P1D}") Duration permanentMaxAge)
+    {
+        this.redirectService = redirectService;
+        this.temporaryCacheControl = CacheControl.maxAge(temporaryMaxAge).cachePrivate();
+        this.permanentCacheControl = CacheControl.maxAge(permanentMaxAge).cachePublic();
+    }
+
+    //Same contract as RedirectController in clixify-backend-sb: the original URL in the Location header with the status and Cache-Control of the link's
+    //redirect mode (302 by default, 301/308 for permanent links), or 404 for an unknown short URL.
+    @GetMapping("/{shortUrl}")
+    public Mono<ResponseEntity<Void>> redirect(@PathVariable String shortUrl)
+    {
+        return redirectService.resolve(shortUrl)
+                .map(redirectTarget -> {
+                    HttpStatus status = statusOf(redirectTarget.redirectMode());
+                    return ResponseEntity.status(status)
+                            .header(HttpHeaders.LOCATION, redirectTarget.originalUrl())
+                            .cacheControl(status == HttpStatus.FOUND ? temporaryCacheControl : permanentCacheControl)
+                            .<Void>build();
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private static HttpStatus statusOf(String redirectMode)
+    {
+        if("PERMANENT".equals(redirectMode))
+        {
+            return HttpStatus.MOVED_PERMANENTLY;
+        }
+        if("PERMANENT_KEEP_METHOD".equals(redirectMode))
+        {
+            return HttpStatus.PERMANENT_REDIRECT;
+        }
+        return HttpStatus.FOUND;
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.clixify_redirect_reactive.dtos;
+
+//What the redirect needs from a url_mappings row: the id (to record the click against), the original URL (for the Location header)
+//and the redirect mode (the name of a RedirectMode of clixify-backend-sb, null for links from before the column: a TEMPORARY 302).
+public record RedirectTarget(Long urlMappingId, String originalUrl, String redirectMode)
+{
+}
@@ -0,0 +1,23 @@
+package com.project.clixify_redirect_reactive.repository;
+
+import com.project.clixify_redirect_reactive.dtos.RedirectTarget;
+import lombok.AllArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+@AllArgsConstructor
+public class RedirectTargetRepository
+{
+    private DatabaseClient databaseClient;
+
+    //Looks the short URL up in the url_mappings table (unique index on short_url). Empty if there is no such short URL.
+    public Mono<RedirectTarget> findByShortUrl(String shortUrl)
+    {
+        return databaseClient.sql("select u_map_id, original_url, redirect_mode from url_mappings where short_url = :shortUrl")
+                .bind("shortUrl", shortUrl)
+                .map((row, metadata) -> new RedirectTarget(row.get("u_map_id", Long.class), row.get("original_url", String.class), row.get("redirect_mode", String.class)))
+                .one();
+    }
+}
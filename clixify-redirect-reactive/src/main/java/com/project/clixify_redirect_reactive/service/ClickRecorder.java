@@ -0,0 +1,209 @@
+package com.project.clixify_redirect_reactive.service;
+
+/*
+Non-blocking, batched click recording (the reactive counterpart of ClickEventWriter + ClickCounter in clixify-backend-sb).
+- The redirect only calls record(), which offers the click to a bounded in-memory queue and returns immediately. It never waits:
+  when the queue is full the click is dropped and counted (blocking isn't an option on an event loop thread).
+- Every 'clixify.clicks.flush-interval' the queue is drained in batches of 'clixify.clicks.batch-size', and each batch is written in one R2DBC transaction:
+    - one multi-row INSERT into click_events,
+    - one multi-row upsert into click_daily_rollups (one row per mapping and day in the batch),
+    - one 'click_count = click_count + n' UPDATE of url_mappings per mapping in the batch.
+  So the tables end up exactly as if clixify-backend-sb had served the clicks.
+- On shutdown the remaining clicks are flushed before the connection pool is closed.
+*/
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class ClickRecorder implements MeterBinder
+{
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final BlockingQueue<PendingClick> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private Disposable flusher;
+
+    public ClickRecorder(DatabaseClient databaseClient,
+                         TransactionalOperator transactionalOperator,
+                         @Value("${clixify.clicks.queue-capacity:100000}") int queueCapacity,
+                         @Value("${clixify.clicks.batch-size:500}") int batchSize,
+                         @Value("${clixify.clicks.flush-interval:PT1S}") Duration flushInterval)
+    {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    void start()
+    {
+        //concatMap: at most one flush runs at a time, ticks that come while a flush is still running are dropped (the running flush drains the queue anyway)
+        flusher = Flux.interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush(), 1)
+                .subscribe();
+    }
+
+    //Returns false if the click was dropped because the queue is full.
+    public boolean record(PendingClick click)
+    {
+        boolean accepted = queue.offer(click);
+        if(!accepted)
+        {
+            droppedCount.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    //Writes batches until the queue is empty.
+    Mono<Void> flush()
+    {
+        return Mono.defer(() -> {
+            List<PendingClick> batch = new ArrayList<>(batchSize);
+            queue.drainTo(batch, batchSize);
+            if(batch.isEmpty())
+            {
+                return Mono.empty();
+            }
+            return write(batch).then(flush());
+        });
+    }
+
+    private Mono<Void> write(List<PendingClick> batch)
+    {
+        Map<Long, Integer> clicksPerMapping = new HashMap<>();
+        Map<DailyKey, Integer> clicksPerDay = new HashMap<>();
+        for(PendingClick click : batch)
+        {
+            clicksPerMapping.merge(click.urlMappingId(), 1, Integer::sum);
+            clicksPerDay.merge(new DailyKey(click.urlMappingId(), click.clickDate().toLocalDate()), 1, Integer::sum);
+        }
+
+        Mono<Void> writes = insertClickEvents(batch)
+                .then(upsertDailyRollups(clicksPerDay))
+                .then(Flux.fromIterable(clicksPerMapping.entrySet())
+                        .concatMap(entry -> databaseClient.sql("update url_mappings set click_count = click_count + :delta where u_map_id = :id")
+                                .bind("delta", entry.getValue())
+                                .bind("id", entry.getKey())
+                                .fetch().rowsUpdated())
+                        .then());
+
+        return transactionalOperator.transactional(writes)
+                .doOnSuccess(done -> writtenCount.addAndGet(batch.size()))
+                .onErrorResume(e -> {
+                    failedCount.addAndGet(batch.size());
+                    log.error("Failed to write a batch of {} click events", batch.size(), e);
+                    return Mono.empty();
+                });
+    }
+
+    //insert into click_events (click_date, u_map_id) values (:clickDate0, :urlMappingId0), (:clickDate1, :urlMappingId1), ...
+    private Mono<Void> insertClickEvents(List<PendingClick> batch)
+    {
+        StringBuilder sql = new StringBuilder("insert into click_events (click_date, u_map_id) values ");
+        for(int i = 0; i < batch.size(); i++)
+        {
+            sql.append(i == 0 ? "" : ", ").append("(:clickDate").append(i).append(", :urlMappingId").append(i).append(')');
+        }
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql.toString());
+        for(int i = 0; i < batch.size(); i++)
+        {
+            statement = statement.bind("clickDate" + i, batch.get(i).clickDate()).bind("urlMappingId" + i, batch.get(i).urlMappingId());
+        }
+        return statement.fetch().rowsUpdated().then();
+    }
+
+    //Same upsert as clixify-backend-sb (MySQL syntax), for all (mapping, day) pairs of the batch in one statement.
+    private Mono<Void> upsertDailyRollups(Map<DailyKey, Integer> clicksPerDay)
+    {
+        StringBuilder sql = new StringBuilder("insert into click_daily_rollups (u_map_id, click_day, click_count) values ");
+        List<Map.Entry<DailyKey, Integer>> rows = new ArrayList<>(clicksPerDay.entrySet());
+        for(int i = 0; i < rows.size(); i++)
+        {
+            sql.append(i == 0 ? "" : ", ").append("(:urlMappingId").append(i).append(", :clickDay").append(i).append(", :clickCount").append(i).append(')');
+        }
+        sql.append(" on duplicate key update click_count = click_count + values(click_count)");
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql.toString());
+        for(int i = 0; i < rows.size(); i++)
+        {
+            statement = statement.bind("urlMappingId" + i, rows.get(i).getKey().urlMappingId())
+                    .bind("clickDay" + i, rows.get(i).getKey().day())
+                    .bind("clickCount" + i, (long) rows.get(i).getValue());
+        }
+        return statement.fetch().rowsUpdated().then();
+    }
+
+    private record DailyKey(Long urlMappingId, LocalDate day)
+    {
+    }
+
+    @PreDestroy
+    void stop()
+    {
+        if(flusher != null)
+        {
+            flusher.dispose();
+        }
+        flush().block(Duration.ofSeconds(30));      //runs on the shutdown thread, not on an event loop
+        if(!queue.isEmpty())
+        {
+            log.warn("Shut down with {} click events still queued", queue.size());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("clixify.clicks.queued", queue, BlockingQueue::size).register(registry);
+        FunctionCounter.builder("clixify.clicks.written", writtenCount, AtomicLong::get).register(registry);
+        FunctionCounter.builder("clixify.clicks.dropped", droppedCount, AtomicLong::get).register(registry);
+        FunctionCounter.builder("clixify.clicks.failed", failedCount, AtomicLong::get).register(registry);
+    }
+
+    public long getWrittenCount()
+    {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+}
@@ -0,0 +1,11 @@
+package com.project.clixify_redirect_reactive.service;
+
+import java.time.LocalDateTime;
+
+//A click that has been accepted on the redirect path but not yet written to the database (see ClickRecorder).
+public record PendingClick(
+        Long urlMappingId,          //id of the url_mappings row that was clicked
+        LocalDateTime clickDate     //when the click happened (taken when the redirect was answered, not when it's written)
+)
+{
+}
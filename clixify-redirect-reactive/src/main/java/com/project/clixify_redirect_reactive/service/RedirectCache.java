@@ -0,0 +1,51 @@
+package com.project.clixify_redirect_reactive.service;
+
+/*
+Non-blocking version of the redirect cache of clixify-backend-sb (shortUrl -> RedirectTarget), on a Caffeine AsyncCache.
+- Concurrent misses for the same short URL share one database query, and nothing blocks while it runs.
+- Same settings as clixify-backend-sb: 'clixify.redirect-cache.max-size' entries, each expiring 'clixify.redirect-cache.ttl' after it was loaded.
+  This service doesn't see the updates made through clixify-backend-sb, so the ttl is the upper bound on how long a changed link can be served stale.
+- Unknown short URLs are not cached (an empty result completes the future with null, which Caffeine doesn't store).
+*/
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.clixify_redirect_reactive.dtos.RedirectTarget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+public class RedirectCache implements MeterBinder
+{
+    private final AsyncCache<String, RedirectTarget> cache;
+
+    public RedirectCache(@Value("${clixify.redirect-cache.max-size:100000}") long maxSize,
+                         @Value("${clixify.redirect-cache.ttl:PT1H}") Duration ttl)
+    {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+    }
+
+    //Returns the cached target, or subscribes to the loader (once per key, even under concurrent misses) and caches its result.
+    public Mono<RedirectTarget> get(String shortUrl, Function<String, Mono<RedirectTarget>> loader)
+    {
+        //suppressCancel: a client that goes away must not cancel the load other requests are waiting for
+        return Mono.fromFuture(cache.get(shortUrl, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "redirect");
+    }
+}
@@ -0,0 +1,25 @@
+package com.project.clixify_redirect_reactive.service;
+
+import com.project.clixify_redirect_reactive.dtos.RedirectTarget;
+import com.project.clixify_redirect_reactive.repository.RedirectTargetRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Service
+@AllArgsConstructor
+public class RedirectService
+{
+    private RedirectTargetRepository redirectTargetRepository;
+    private RedirectCache redirectCache;
+    private ClickRecorder clickRecorder;
+
+    //Resolves the short URL (from the cache, or the database on a miss) and records the click. Empty if the short URL doesn't exist.
+    public Mono<RedirectTarget> resolve(String shortUrl)
+    {
+        return redirectCache.get(shortUrl, redirectTargetRepository::findByShortUrl)
+                .doOnNext(redirectTarget -> clickRecorder.record(new PendingClick(redirectTarget.urlMappingId(), LocalDateTime.now())));
+    }
+}
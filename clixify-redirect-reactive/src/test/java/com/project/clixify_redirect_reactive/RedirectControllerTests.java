@@ -0,0 +1,63 @@
+package com.project.clixify_redirect_reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RedirectControllerTests
+{
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void redirectsAndRecordsClicks() throws InterruptedException
+    {
+        for(int i = 0; i < 3; i++)
+        {
+            webTestClient.get().uri("/abc123").exchange()
+                    .expectStatus().isFound()
+                    .expectHeader().location("https://example.com/landing")
+                    .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofMinutes(1)).cachePrivate());
+        }
+        webTestClient.get().uri("/unknown").exchange().expectStatus().isNotFound();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while(count("select count(*) from click_events where u_map_id = 1") < 3 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(3, count("select count(*) from click_events where u_map_id = 1"));
+        assertEquals(3, count("select sum(click_count) from click_daily_rollups where u_map_id = 1"));
+        assertEquals(3, count("select click_count from url_mappings where u_map_id = 1"));
+    }
+
+    @Test
+    void answersPermanentLinksWithCacheableRedirects()
+    {
+        webTestClient.get().uri("/perm01").exchange()
+                .expectStatus().isEqualTo(HttpStatus.MOVED_PERMANENTLY)
+                .expectHeader().location("https://example.com/moved")
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePublic());
+        webTestClient.get().uri("/perm02").exchange()
+                .expectStatus().isEqualTo(HttpStatus.PERMANENT_REDIRECT)
+                .expectHeader().location("https://example.com/form");
+    }
+
+    private long count(String sql)
+    {
+        Number value = databaseClient.sql(sql).map(row -> row.get(0, Number.class)).one().block();
+        return value == null ? 0 : value.longValue();
+    }
+}
@@ -0,0 +1,8 @@
+-- The tables as clixify-backend-sb creates them (only the columns used here).
+create table url_mappings (u_map_id bigint primary key, original_url varchar(2048), short_url varchar(255) unique, click_count int not null default 0, created_date timestamp, user_id bigint, redirect_mode varchar(24));
+create table click_events (click_event_id bigint auto_increment primary key, click_date timestamp, u_map_id bigint);
+create table click_daily_rollups (u_map_id bigint not null, click_day date not null, click_count bigint not null, primary key (u_map_id, click_day));
+
+insert into url_mappings (u_map_id, original_url, short_url, click_count) values (1, 'https://example.com/landing', 'abc123', 0);
+insert into url_mappings (u_map_id, original_url, short_url, click_count, redirect_mode) values (2, 'https://example.com/moved', 'perm01', 0, 'PERMANENT');
+insert into url_mappings (u_map_id, original_url, short_url, click_count, redirect_mode) values (3, 'https://example.com/form', 'perm02', 0, 'PERMANENT_KEEP_METHOD');